@@ -0,0 +1,37 @@
+package org.entur.lamassu.cache;
+
+import java.util.Map;
+import java.util.Set;
+import org.entur.lamassu.model.entities.Entity;
+import org.entur.lamassu.model.entities.LocationEntity;
+
+/**
+ * A group of writes to entity caches and spatial indexes. Depending on the
+ * implementation, writes are either applied immediately or held back and sent together
+ * when the batch is executed. Writes are applied in the order they were added.
+ */
+public interface CacheWriteBatch {
+  <T extends Entity> void updateAll(EntityCache<T> cache, Map<String, T> entities);
+
+  /**
+   * See {@link EntityCache#updateAllStatus(Map)}
+   */
+  <T extends Entity> void updateAllStatus(EntityCache<T> cache, Map<String, T> entities);
+
+  <T extends Entity> void removeAll(EntityCache<T> cache, Set<String> keys);
+
+  <S extends SpatialIndexId, T extends LocationEntity> void addAll(
+    SpatialIndex<S, T> spatialIndex,
+    Map<S, T> spatialIndexUpdateMap
+  );
+
+  <S extends SpatialIndexId, T extends LocationEntity> void removeAll(
+    SpatialIndex<S, T> spatialIndex,
+    Set<S> ids
+  );
+
+  /**
+   * Apply all writes added to the batch. A batch can only be executed once.
+   */
+  void execute();
+}
@@ -0,0 +1,8 @@
+package org.entur.lamassu.cache;
+
+public interface CacheWriteBatchFactory {
+  /**
+   * Create a new, empty batch of cache writes.
+   */
+  CacheWriteBatch create();
+}
@@ -3,7 +3,9 @@ package org.entur.lamassu.cache;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import org.entur.lamassu.model.entities.Entity;
+import org.entur.lamassu.model.entities.SystemEntity;
 
 /**
  * Interface for read-write operations on entity caches.
@@ -28,6 +30,17 @@ public interface EntityCache<T extends Entity> extends EntityReader<T> {
    */
   void updateAll(Map<String, T> entities, int ttl, TimeUnit timeUnit);
 
+  /**
+   * Updates only the status part of multiple entities already in the cache, for caches
+   * that store the frequently changing status of an entity apart from the rest of it.
+   * Other caches update the whole entities.
+   *
+   * @param entities Map of entity keys to their corresponding entities
+   */
+  default void updateAllStatus(Map<String, T> entities) {
+    updateAll(entities);
+  }
+
   /**
    * Removes multiple entities from the cache by their keys.
    *
@@ -35,6 +48,34 @@ public interface EntityCache<T extends Entity> extends EntityReader<T> {
    */
   void removeAll(Set<String> keys);
 
+  /**
+   * Gets the keys of all entities belonging to the given system. Caches that do not
+   * index their entities by system read every entity to find them.
+   *
+   * @param systemId The id of the system
+   * @return Set of entity keys
+   */
+  default Set<String> getKeysBySystem(String systemId) {
+    return getAll()
+      .stream()
+      .filter(entity ->
+        entity instanceof SystemEntity systemEntity &&
+        systemId.equals(systemEntity.getSystemId())
+      )
+      .map(Entity::getId)
+      .collect(Collectors.toSet());
+  }
+
+  /**
+   * Counts the entities belonging to the given system.
+   *
+   * @param systemId The id of the system
+   * @return The number of entities
+   */
+  default int countBySystem(String systemId) {
+    return getKeysBySystem(systemId).size();
+  }
+
   /**
    * Registers a listener for entity events (create, update, delete).
    *
@@ -0,0 +1,81 @@
+package org.entur.lamassu.cache;
+
+import java.io.Serializable;
+import org.entur.lamassu.model.entities.Entity;
+
+/**
+ * A change of an entity, as published to the entity event shards and the entity event
+ * stream
+ *
+ * @param <T> The entity type
+ */
+public class EntityEvent<T extends Entity> implements Serializable {
+
+  public enum Type {
+    CREATED,
+    UPDATED,
+    DELETED,
+  }
+
+  private final Type type;
+  private final String id;
+  private final T entity;
+  private final String position;
+
+  /**
+   * @param type The type of the change
+   * @param id The id of the changed entity
+   * @param entity The entity after the change, or before it was deleted
+   */
+  public EntityEvent(Type type, String id, T entity) {
+    this(type, id, entity, null);
+  }
+
+  /**
+   * @param type The type of the change
+   * @param id The id of the changed entity
+   * @param entity The entity after the change, or before it was deleted
+   * @param position The position of the event in the entity event stream
+   */
+  public EntityEvent(Type type, String id, T entity, String position) {
+    this.type = type;
+    this.id = id;
+    this.entity = entity;
+    this.position = position;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public T getEntity() {
+    return entity;
+  }
+
+  /**
+   * The position of the event in the entity event stream, or null if it was not read
+   * from the stream
+   */
+  public String getPosition() {
+    return position;
+  }
+
+  public EntityEvent<T> withPosition(String position) {
+    return new EntityEvent<>(type, id, entity, position);
+  }
+
+  /**
+   * Pass the event to the matching method of the listener
+   */
+  public void dispatch(EntityListener<T> listener) {
+    switch (type) {
+      case CREATED -> listener.onEntityCreated(id, entity);
+      case UPDATED -> listener.onEntityUpdated(id, entity);
+      case DELETED -> listener.onEntityDeleted(id, entity);
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package org.entur.lamassu.cache;
+
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+import org.entur.lamassu.model.entities.Entity;
+
+/**
+ * Channels of entity events, sharded by the location of the entities, so instances
+ * only receive the events of the areas they need, instead of every event of an entity
+ * cache.
+ *
+ * <p>Shards are cells of whole degrees of latitude and longitude, and entities without
+ * a location are published to a shard of their own.
+ *
+ * @param <T> The entity type
+ */
+public interface EntityEventShards<T extends Entity> {
+  double SHARD_SIZE_DEGREES = 1.0;
+  String NO_LOCATION_SHARD = "none";
+
+  /**
+   * Publish an event to the subscribers of a shard
+   */
+  void publish(String shard, EntityEvent<T> event);
+
+  /**
+   * Subscribe to the events of a shard
+   *
+   * @return The id of the subscription, used to unsubscribe
+   */
+  int subscribe(String shard, Consumer<EntityEvent<T>> consumer);
+
+  void unsubscribe(String shard, int subscriptionId);
+
+  /**
+   * Subscribe to the events of every shard
+   *
+   * @return The id of the subscription, used to unsubscribe, once the subscription is
+   * confirmed
+   */
+  CompletionStage<Integer> subscribeAll(Consumer<EntityEvent<T>> consumer);
+
+  void unsubscribeAll(int subscriptionId);
+
+  /**
+   * The shard of a location
+   */
+  static String shard(Double lat, Double lon) {
+    if (lat == null || lon == null) {
+      return NO_LOCATION_SHARD;
+    }
+    return shard(index(lat), index(lon));
+  }
+
+  static String shard(int latitudeIndex, int longitudeIndex) {
+    return latitudeIndex + ":" + longitudeIndex;
+  }
+
+  static int index(double degrees) {
+    return (int) Math.floor(degrees / SHARD_SIZE_DEGREES);
+  }
+}
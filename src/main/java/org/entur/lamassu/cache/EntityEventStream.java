@@ -0,0 +1,49 @@
+package org.entur.lamassu.cache;
+
+import java.util.List;
+import java.util.function.Consumer;
+import org.entur.lamassu.model.entities.Entity;
+
+/**
+ * A capped, ordered log of the recent entity events, from which instances receive the
+ * events together with their position in the log, and replay the events after a
+ * position.
+ *
+ * @param <T> The entity type
+ */
+public interface EntityEventStream<T extends Entity> {
+  /**
+   * Append an event to the end of the stream, dropping the oldest events beyond the
+   * capacity of the stream
+   */
+  void append(EntityEvent<T> event);
+
+  /**
+   * Read the events after a position, with their positions, in order
+   *
+   * @param position The position to read after
+   * @param count The maximum number of events to read
+   */
+  List<EntityEvent<T>> readAfter(String position, int count);
+
+  /**
+   * The position of the oldest event in the stream, or null if the stream is empty
+   */
+  String getFirstPosition();
+
+  /**
+   * The position of the latest event in the stream, or null if the stream is empty
+   */
+  String getLastPosition();
+
+  /**
+   * Pass the events appended from now on to the consumer, with their positions, until
+   * the stream is closed
+   */
+  void listen(Consumer<EntityEvent<T>> consumer);
+
+  /**
+   * Compare two positions of the stream
+   */
+  int compare(String position, String otherPosition);
+}
@@ -0,0 +1,38 @@
+package org.entur.lamassu.cache;
+
+import java.io.Serializable;
+
+/**
+ * The serialized JSON body of a GBFS feed, with a gzip compressed copy, as served to
+ * clients. Stored once per update so that feeds can be served without decoding and
+ * re-serializing them for every request.
+ */
+public class FeedBody implements Serializable {
+
+  private final byte[] json;
+  private final byte[] gzip;
+  private final FeedMetadata metadata;
+
+  /**
+   * @param json The feed serialized as JSON
+   * @param gzip The JSON body compressed with gzip
+   * @param metadata The metadata of the JSON body, also stored on its own
+   */
+  public FeedBody(byte[] json, byte[] gzip, FeedMetadata metadata) {
+    this.json = json;
+    this.gzip = gzip;
+    this.metadata = metadata;
+  }
+
+  public byte[] getJson() {
+    return json;
+  }
+
+  public byte[] getGzip() {
+    return gzip;
+  }
+
+  public FeedMetadata getMetadata() {
+    return metadata;
+  }
+}
@@ -0,0 +1,44 @@
+package org.entur.lamassu.cache;
+
+import java.io.Serializable;
+
+/**
+ * Freshness of a cached GBFS feed, kept apart from the feed itself so that freshness
+ * can be checked without loading the feed.
+ */
+public class FeedFreshness implements Serializable {
+
+  private final long lastUpdated;
+  private final int ttl;
+  private final long receivedAt;
+
+  /**
+   * @param lastUpdated The last_updated time of the feed, in epoch seconds
+   * @param ttl The ttl of the feed, in seconds
+   * @param receivedAt The time the feed was cached, in epoch seconds
+   */
+  public FeedFreshness(long lastUpdated, int ttl, long receivedAt) {
+    this.lastUpdated = lastUpdated;
+    this.ttl = ttl;
+    this.receivedAt = receivedAt;
+  }
+
+  public long getLastUpdated() {
+    return lastUpdated;
+  }
+
+  public int getTtl() {
+    return ttl;
+  }
+
+  public long getReceivedAt() {
+    return receivedAt;
+  }
+
+  /**
+   * The time at which the feed is expected to be replaced, in epoch seconds
+   */
+  public long getExpiresAt() {
+    return lastUpdated + ttl;
+  }
+}
@@ -0,0 +1,31 @@
+package org.entur.lamassu.cache;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the freshness of the cached GBFS feeds of each system, in one small record per
+ * system, keyed by feed name.
+ */
+public interface FeedFreshnessCache {
+  /**
+   * Get the freshness of every cached feed of a system, keyed by feed name
+   */
+  Map<String, FeedFreshness> findAll(String systemId);
+
+  /**
+   * Get the freshness of a feed of a system, or null if the feed is not cached
+   */
+  FeedFreshness find(String systemId, String feedName);
+
+  /**
+   * Store the freshness of a feed, which expires together with the cached feed
+   */
+  void update(
+    String systemId,
+    String feedName,
+    FeedFreshness freshness,
+    int ttl,
+    TimeUnit timeUnit
+  );
+}
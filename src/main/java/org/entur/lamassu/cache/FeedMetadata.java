@@ -0,0 +1,48 @@
+package org.entur.lamassu.cache;
+
+import java.io.Serializable;
+
+/**
+ * Metadata of a stored GBFS feed body, which is enough to set the caching headers of a
+ * feed response, and to answer conditional requests without fetching the body.
+ */
+public class FeedMetadata implements Serializable {
+
+  private final long lastUpdated;
+  private final int ttl;
+  private final String contentHash;
+  private final int length;
+
+  /**
+   * @param lastUpdated The last_updated time of the feed, in epoch seconds
+   * @param ttl The ttl of the feed, in seconds
+   * @param contentHash Hex encoded hash of the JSON body of the feed
+   * @param length The length of the JSON body of the feed, in bytes
+   */
+  public FeedMetadata(long lastUpdated, int ttl, String contentHash, int length) {
+    this.lastUpdated = lastUpdated;
+    this.ttl = ttl;
+    this.contentHash = contentHash;
+    this.length = length;
+  }
+
+  public long getLastUpdated() {
+    return lastUpdated;
+  }
+
+  public int getTtl() {
+    return ttl;
+  }
+
+  public String getContentHash() {
+    return contentHash;
+  }
+
+  public int getLength() {
+    return length;
+  }
+
+  public String getETag() {
+    return "\"" + contentHash + "\"";
+  }
+}
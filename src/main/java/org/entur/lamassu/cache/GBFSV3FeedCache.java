@@ -39,4 +39,43 @@ public interface GBFSV3FeedCache {
     TimeUnit timeUnit
   );
   void remove(GBFSFeed.Name feedName, FeedProvider feedProvider);
+
+  /**
+   * Find the serialized body of a feed, or null if it has not been stored
+   */
+  FeedBody findBody(GBFSFeed.Name feedName, FeedProvider feedProvider);
+
+  /**
+   * Find the metadata of the serialized body of a feed, or null if it has not been
+   * stored
+   */
+  FeedMetadata findMetadata(GBFSFeed.Name feedName, FeedProvider feedProvider);
+
+  /**
+   * Store the serialized body of a feed together with its metadata
+   */
+  void updateBody(
+    GBFSFeed.Name feedName,
+    FeedProvider feedProvider,
+    FeedBody body,
+    int ttl,
+    TimeUnit timeUnit
+  );
+
+  /**
+   * Remove the serialized body of a feed together with its metadata, so the feed is
+   * rendered from the stored feed instead, and not validated against the metadata of
+   * the removed body
+   */
+  void removeBody(GBFSFeed.Name feedName, FeedProvider feedProvider);
+
+  /**
+   * Extend the expiration of a stored feed together with its body and metadata
+   */
+  void updateExpiration(
+    GBFSFeed.Name feedName,
+    FeedProvider feedProvider,
+    int ttl,
+    TimeUnit timeUnit
+  );
 }
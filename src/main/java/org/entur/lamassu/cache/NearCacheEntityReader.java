@@ -0,0 +1,222 @@
+package org.entur.lamassu.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+import org.entur.lamassu.model.entities.Entity;
+
+/**
+ * A read-only decorator for EntityReader that keeps entities in a bounded, process-wide
+ * map, so that reference data which rarely changes is not read from Redis for every
+ * request.
+ *
+ * <p>Entries are evicted when the map is full, least recently used first, and expire
+ * after the given time to live. They are invalidated as soon as the entity changes,
+ * from the events of the underlying entity cache.
+ */
+public class NearCacheEntityReader<T extends Entity>
+  implements EntityReader<T>, EntityListener<T> {
+
+  public static final String NEAR_CACHE_REQUESTS = "app.lamassu.nearcache.requests";
+  public static final String NEAR_CACHE_SIZE = "app.lamassu.nearcache.size";
+  public static final String LABEL_CACHE = "cache";
+  public static final String LABEL_RESULT = "result";
+
+  private record Entry<T>(T value, long expiresAt) {}
+
+  private final EntityReader<T> delegate;
+  private final long ttlNanos;
+  private final LongSupplier nanoTime;
+  private final Map<String, Entry<T>> entries;
+  private final Counter hits;
+  private final Counter misses;
+
+  // Incremented on every invalidation, so that entities read from the delegate while
+  // an invalidation happens are not put in the cache
+  private long generation = 0;
+
+  public NearCacheEntityReader(
+    EntityCache<T> delegate,
+    String name,
+    int maximumSize,
+    Duration ttl,
+    MeterRegistry meterRegistry
+  ) {
+    this(delegate, name, maximumSize, ttl, meterRegistry, System::nanoTime);
+    delegate.addListener(this);
+  }
+
+  NearCacheEntityReader(
+    EntityReader<T> delegate,
+    String name,
+    int maximumSize,
+    Duration ttl,
+    MeterRegistry meterRegistry,
+    LongSupplier nanoTime
+  ) {
+    this.delegate = delegate;
+    this.ttlNanos = ttl.toNanos();
+    this.nanoTime = nanoTime;
+    this.entries =
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry<T>> eldest) {
+          return size() > maximumSize;
+        }
+      };
+
+    hits =
+      Counter
+        .builder(NEAR_CACHE_REQUESTS)
+        .tag(LABEL_CACHE, name)
+        .tag(LABEL_RESULT, "hit")
+        .register(meterRegistry);
+    misses =
+      Counter
+        .builder(NEAR_CACHE_REQUESTS)
+        .tag(LABEL_CACHE, name)
+        .tag(LABEL_RESULT, "miss")
+        .register(meterRegistry);
+    Gauge
+      .builder(NEAR_CACHE_SIZE, this, NearCacheEntityReader::size)
+      .tag(LABEL_CACHE, name)
+      .register(meterRegistry);
+  }
+
+  @Override
+  public List<T> getAll(Set<String> keys) {
+    return new ArrayList<>(getAllAsMap(keys).values());
+  }
+
+  @Override
+  public List<T> getAll() {
+    return delegate.getAll();
+  }
+
+  @Override
+  public Map<String, T> getAllAsMap(Set<String> keys) {
+    Map<String, T> result = HashMap.newHashMap(keys.size());
+    Set<String> missingKeys = new HashSet<>();
+    long readGeneration;
+
+    synchronized (entries) {
+      readGeneration = generation;
+      long now = nanoTime.getAsLong();
+      for (String key : keys) {
+        T value = getValid(key, now);
+        if (value != null) {
+          result.put(key, value);
+        } else {
+          missingKeys.add(key);
+        }
+      }
+    }
+    hits.increment(result.size());
+
+    if (!missingKeys.isEmpty()) {
+      misses.increment(missingKeys.size());
+      Map<String, T> delegateResults = delegate.getAllAsMap(missingKeys);
+      result.putAll(delegateResults);
+      putAll(delegateResults, readGeneration);
+    }
+
+    return result;
+  }
+
+  @Override
+  public T get(String key) {
+    long readGeneration;
+    synchronized (entries) {
+      readGeneration = generation;
+      T value = getValid(key, nanoTime.getAsLong());
+      if (value != null) {
+        hits.increment();
+        return value;
+      }
+    }
+
+    misses.increment();
+    T value = delegate.get(key);
+    if (value != null) {
+      putAll(Map.of(key, value), readGeneration);
+    }
+    return value;
+  }
+
+  @Override
+  public boolean hasKey(String key) {
+    synchronized (entries) {
+      if (getValid(key, nanoTime.getAsLong()) != null) {
+        return true;
+      }
+    }
+    return delegate.hasKey(key);
+  }
+
+  @Override
+  public int count() {
+    return delegate.count();
+  }
+
+  @Override
+  public void onEntityCreated(String id, T entity) {
+    invalidate(id);
+  }
+
+  @Override
+  public void onEntityUpdated(String id, T entity) {
+    invalidate(id);
+  }
+
+  @Override
+  public void onEntityDeleted(String id, T entity) {
+    invalidate(id);
+  }
+
+  /**
+   * Get the number of entries currently held, including expired ones not yet evicted
+   */
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  private void invalidate(String id) {
+    synchronized (entries) {
+      generation++;
+      entries.remove(id);
+    }
+  }
+
+  private T getValid(String key, long now) {
+    Entry<T> entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (now - entry.expiresAt() >= 0) {
+      entries.remove(key);
+      return null;
+    }
+    return entry.value();
+  }
+
+  private void putAll(Map<String, T> values, long readGeneration) {
+    synchronized (entries) {
+      if (generation != readGeneration) {
+        return;
+      }
+      long expiresAt = nanoTime.getAsLong() + ttlNanos;
+      values.forEach((key, value) -> entries.put(key, new Entry<>(value, expiresAt)));
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package org.entur.lamassu.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.entur.lamassu.model.entities.FormFactor;
+import org.entur.lamassu.model.entities.PropulsionType;
+
+/**
+ * Compact string form of spatial index ids, used as members of the spatial indexes:
+ *
+ * <pre>{attributes}:{codespace}:{system}:{operator}:{id}</pre>
+ *
+ * <p>The attributes are a hexadecimal bitfield holding form factors, propulsion types
+ * and the reserved and disabled flags, and codespace, system and operator are
+ * {@link SpatialIndexDictionary} codes. The accessors parse single fields in place
+ * without allocating, so filters can be evaluated on the packed form.
+ *
+ * <p>Enum values are stored by ordinal, so reordering FormFactor or PropulsionType
+ * requires bumping the serialization version.
+ */
+public final class PackedSpatialIndexId {
+
+  private static final char SEPARATOR = ':';
+
+  private static final int FORM_FACTOR_SHIFT = 0;
+  private static final int PROPULSION_TYPE_SHIFT = 16;
+
+  public static final long RESERVED = 1L << 32;
+  public static final long DISABLED = 1L << 33;
+
+  private PackedSpatialIndexId() {}
+
+  public static String pack(
+    long attributes,
+    int codespace,
+    int system,
+    int operator,
+    String id
+  ) {
+    return (
+      Long.toHexString(attributes) +
+      SEPARATOR +
+      codespace +
+      SEPARATOR +
+      system +
+      SEPARATOR +
+      operator +
+      SEPARATOR +
+      id
+    );
+  }
+
+  public static long formFactor(FormFactor formFactor) {
+    return formFactor == null ? 0 : 1L << (FORM_FACTOR_SHIFT + formFactor.ordinal());
+  }
+
+  public static long formFactors(Collection<FormFactor> formFactors) {
+    long bits = 0;
+    if (formFactors != null) {
+      for (FormFactor formFactor : formFactors) {
+        bits |= formFactor(formFactor);
+      }
+    }
+    return bits;
+  }
+
+  public static long propulsionType(PropulsionType propulsionType) {
+    return propulsionType == null
+      ? 0
+      : 1L << (PROPULSION_TYPE_SHIFT + propulsionType.ordinal());
+  }
+
+  public static long propulsionTypes(Collection<PropulsionType> propulsionTypes) {
+    long bits = 0;
+    if (propulsionTypes != null) {
+      for (PropulsionType propulsionType : propulsionTypes) {
+        bits |= propulsionType(propulsionType);
+      }
+    }
+    return bits;
+  }
+
+  public static List<FormFactor> decodeFormFactors(long attributes) {
+    List<FormFactor> formFactors = new ArrayList<>();
+    for (FormFactor formFactor : FormFactor.values()) {
+      if ((attributes & formFactor(formFactor)) != 0) {
+        formFactors.add(formFactor);
+      }
+    }
+    return formFactors;
+  }
+
+  public static List<PropulsionType> decodePropulsionTypes(long attributes) {
+    List<PropulsionType> propulsionTypes = new ArrayList<>();
+    for (PropulsionType propulsionType : PropulsionType.values()) {
+      if ((attributes & propulsionType(propulsionType)) != 0) {
+        propulsionTypes.add(propulsionType);
+      }
+    }
+    return propulsionTypes;
+  }
+
+  public static long attributes(String member) {
+    long attributes = 0;
+    for (int i = 0; member.charAt(i) != SEPARATOR; i++) {
+      attributes = (attributes << 4) | Character.digit(member.charAt(i), 16);
+    }
+    return attributes;
+  }
+
+  public static int codespace(String member) {
+    return intField(member, 1);
+  }
+
+  public static int system(String member) {
+    return intField(member, 2);
+  }
+
+  public static int operator(String member) {
+    return intField(member, 3);
+  }
+
+  public static String id(String member) {
+    return member.substring(fieldStart(member, 4));
+  }
+
+  private static int intField(String member, int field) {
+    int value = 0;
+    for (int i = fieldStart(member, field); member.charAt(i) != SEPARATOR; i++) {
+      value = value * 10 + (member.charAt(i) - '0');
+    }
+    return value;
+  }
+
+  private static int fieldStart(String member, int field) {
+    int i = 0;
+    for (int separators = 0; separators < field; i++) {
+      if (member.charAt(i) == SEPARATOR) {
+        separators++;
+      }
+    }
+    return i;
+  }
+}
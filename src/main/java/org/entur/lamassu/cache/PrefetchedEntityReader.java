@@ -0,0 +1,93 @@
+package org.entur.lamassu.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.entur.lamassu.model.entities.Entity;
+
+/**
+ * A read-only decorator for EntityReader that fetches the entities needed for a unit of
+ * work in one bulk read up front. Every key that has been read, including keys of
+ * absent entities, is answered from memory afterwards. Keys not prefetched are read
+ * from the delegate on first use.
+ *
+ * <p>Not thread-safe, and not kept up to date with the delegate, so instances should
+ * be short-lived.
+ */
+public class PrefetchedEntityReader<T extends Entity> implements EntityReader<T> {
+
+  private final EntityReader<T> delegate;
+  private final Map<String, T> entities = new HashMap<>();
+  private final Set<String> fetchedKeys = new HashSet<>();
+
+  public PrefetchedEntityReader(EntityReader<T> delegate, Set<String> keys) {
+    this.delegate = delegate;
+    fetch(keys);
+  }
+
+  @Override
+  public List<T> getAll(Set<String> keys) {
+    return new ArrayList<>(getAllAsMap(keys).values());
+  }
+
+  @Override
+  public List<T> getAll() {
+    return delegate.getAll();
+  }
+
+  @Override
+  public Map<String, T> getAllAsMap(Set<String> keys) {
+    fetch(keys);
+
+    Map<String, T> result = new HashMap<>();
+    for (String key : keys) {
+      T entity = entities.get(key);
+      if (entity != null) {
+        result.put(key, entity);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public T get(String key) {
+    if (key == null) {
+      return null;
+    }
+    fetch(Set.of(key));
+    return entities.get(key);
+  }
+
+  @Override
+  public boolean hasKey(String key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public int count() {
+    return delegate.count();
+  }
+
+  private void fetch(Set<String> keys) {
+    Set<String> missingKeys = new HashSet<>();
+    for (String key : keys) {
+      if (key != null && !fetchedKeys.contains(key)) {
+        missingKeys.add(key);
+      }
+    }
+
+    if (!missingKeys.isEmpty()) {
+      delegate
+        .getAllAsMap(missingKeys)
+        .entrySet()
+        .stream()
+        .filter(entry -> Objects.nonNull(entry.getValue()))
+        .forEach(entry -> entities.put(entry.getKey(), entry.getValue()));
+      fetchedKeys.addAll(missingKeys);
+    }
+  }
+}
@@ -36,6 +36,46 @@ public interface SpatialIndex<S extends SpatialIndexId, T extends LocationEntity
     GeoUnit geoUnit,
     GeoOrder geoOrder
   );
+
+  /**
+   * Search the limit first members within the given radius, returning those accepted
+   * by the matcher.
+   */
+  SpatialIndexSearchResult<S> radius(
+    Double longitude,
+    Double latitude,
+    Double radius,
+    GeoUnit geoUnit,
+    GeoOrder geoOrder,
+    int limit,
+    SpatialIndexIdMatcher matcher
+  );
+
+  /**
+   * Find all members positioned inside the given bounding box, ordered by their distance
+   * from the center of the box.
+   */
+  List<S> boundingBox(
+    Double minimumLongitude,
+    Double minimumLatitude,
+    Double maximumLongitude,
+    Double maximumLatitude,
+    GeoOrder geoOrder
+  );
+
+  /**
+   * Search the limit first members positioned inside the given bounding box, returning
+   * those accepted by the matcher.
+   */
+  SpatialIndexSearchResult<S> boundingBox(
+    Double minimumLongitude,
+    Double minimumLatitude,
+    Double maximumLongitude,
+    Double maximumLatitude,
+    GeoOrder geoOrder,
+    int limit,
+    SpatialIndexIdMatcher matcher
+  );
   Collection<S> getAll();
 
   int count();
@@ -0,0 +1,32 @@
+package org.entur.lamassu.cache;
+
+/**
+ * Dictionary of short integer codes for the strings repeated across spatial index
+ * members, such as codespaces, system ids and operator ids. Codes are shared by all
+ * instances and never change once assigned.
+ */
+public interface SpatialIndexDictionary {
+  /**
+   * Code used for null values
+   */
+  int NULL_CODE = 0;
+
+  /**
+   * Get the code of the given value, assigning a new code if it has none.
+   */
+  int code(String value);
+
+  /**
+   * Get the code of the given value without assigning one.
+   *
+   * @return the code, or -1 if the value has no code
+   */
+  int findCode(String value);
+
+  /**
+   * Get the value of the given code.
+   *
+   * @return the value, or null if the code is unknown
+   */
+  String value(int code);
+}
@@ -0,0 +1,10 @@
+package org.entur.lamassu.cache;
+
+/**
+ * Converts spatial index ids to and from the packed members stored in the spatial index.
+ */
+public interface SpatialIndexIdCodec<S extends SpatialIndexId> {
+  String encode(S id);
+
+  S decode(String packedMember);
+}
@@ -0,0 +1,14 @@
+package org.entur.lamassu.cache;
+
+/**
+ * Filter evaluated directly on packed spatial index members, so that members which don't
+ * match never need to be decoded.
+ *
+ * @see PackedSpatialIndexId
+ */
+@FunctionalInterface
+public interface SpatialIndexIdMatcher {
+  SpatialIndexIdMatcher ALL = packedMember -> true;
+
+  boolean matches(String packedMember);
+}
@@ -0,0 +1,14 @@
+package org.entur.lamassu.cache;
+
+import java.util.List;
+
+/**
+ * Matching ids found when searching a limited number of spatial index members.
+ *
+ * @param ids the ids of the members that matched, in search order
+ * @param exhausted true if every member in the search area was searched
+ */
+public record SpatialIndexSearchResult<S extends SpatialIndexId>(
+  List<S> ids,
+  boolean exhausted
+) {}
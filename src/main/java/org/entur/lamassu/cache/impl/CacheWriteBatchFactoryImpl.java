@@ -0,0 +1,41 @@
+package org.entur.lamassu.cache.impl;
+
+import org.entur.lamassu.cache.CacheWriteBatch;
+import org.entur.lamassu.cache.CacheWriteBatchFactory;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class CacheWriteBatchFactoryImpl implements CacheWriteBatchFactory {
+
+  private final RedissonClient redissonClient;
+
+  @Value("${org.entur.lamassu.batched-cache-writes.enabled:true}")
+  private boolean batchedWritesEnabled;
+
+  @Value("${org.entur.lamassu.batched-cache-writes.atomic:false}")
+  private boolean atomicWritesEnabled;
+
+  public CacheWriteBatchFactoryImpl(RedissonClient redissonClient) {
+    this.redissonClient = redissonClient;
+  }
+
+  @Override
+  public CacheWriteBatch create() {
+    if (!batchedWritesEnabled) {
+      return new DirectCacheWriteBatch();
+    }
+
+    var options = BatchOptions
+      .defaults()
+      .executionMode(
+        atomicWritesEnabled
+          ? BatchOptions.ExecutionMode.IN_MEMORY_ATOMIC
+          : BatchOptions.ExecutionMode.IN_MEMORY
+      );
+
+    return new RedisCacheWriteBatch(redissonClient.createBatch(options));
+  }
+}
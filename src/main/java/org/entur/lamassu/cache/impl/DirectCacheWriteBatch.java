@@ -0,0 +1,58 @@
+package org.entur.lamassu.cache.impl;
+
+import java.util.Map;
+import java.util.Set;
+import org.entur.lamassu.cache.CacheWriteBatch;
+import org.entur.lamassu.cache.EntityCache;
+import org.entur.lamassu.cache.SpatialIndex;
+import org.entur.lamassu.cache.SpatialIndexId;
+import org.entur.lamassu.model.entities.Entity;
+import org.entur.lamassu.model.entities.LocationEntity;
+
+/**
+ * Applies each write immediately, as separate operations.
+ */
+public class DirectCacheWriteBatch implements CacheWriteBatch {
+
+  @Override
+  public <T extends Entity> void updateAll(
+    EntityCache<T> cache,
+    Map<String, T> entities
+  ) {
+    cache.updateAll(entities);
+  }
+
+  @Override
+  public <T extends Entity> void updateAllStatus(
+    EntityCache<T> cache,
+    Map<String, T> entities
+  ) {
+    cache.updateAllStatus(entities);
+  }
+
+  @Override
+  public <T extends Entity> void removeAll(EntityCache<T> cache, Set<String> keys) {
+    cache.removeAll(keys);
+  }
+
+  @Override
+  public <S extends SpatialIndexId, T extends LocationEntity> void addAll(
+    SpatialIndex<S, T> spatialIndex,
+    Map<S, T> spatialIndexUpdateMap
+  ) {
+    spatialIndex.addAll(spatialIndexUpdateMap);
+  }
+
+  @Override
+  public <S extends SpatialIndexId, T extends LocationEntity> void removeAll(
+    SpatialIndex<S, T> spatialIndex,
+    Set<S> ids
+  ) {
+    spatialIndex.removeAll(ids);
+  }
+
+  @Override
+  public void execute() {
+    // Writes have already been applied
+  }
+}
@@ -10,10 +10,13 @@ import java.util.concurrent.TimeoutException;
 import org.entur.lamassu.cache.EntityCache;
 import org.entur.lamassu.cache.EntityListener;
 import org.entur.lamassu.model.entities.Entity;
+import org.redisson.api.RBatch;
 import org.redisson.api.RMapCache;
+import org.redisson.api.RMapCacheAsync;
 import org.redisson.api.map.event.EntryCreatedListener;
 import org.redisson.api.map.event.EntryRemovedListener;
 import org.redisson.api.map.event.EntryUpdatedListener;
+import org.redisson.api.map.event.MapEntryListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
@@ -84,6 +87,22 @@ abstract class EntityCacheImpl<T extends Entity>
     cache.fastRemoveAsync(arr);
   }
 
+  void updateAll(RBatch batch, Map<String, T> entities) {
+    getBatchCache(batch).putAllAsync(entities);
+  }
+
+  void updateAllStatus(RBatch batch, Map<String, T> entities) {
+    updateAll(batch, entities);
+  }
+
+  void removeAll(RBatch batch, Set<String> keys) {
+    getBatchCache(batch).fastRemoveAsync(keys.toArray(String[]::new));
+  }
+
+  private RMapCacheAsync<String, T> getBatchCache(RBatch batch) {
+    return batch.getMapCache(cache.getName(), cache.getCodec());
+  }
+
   @Override
   public boolean hasKey(String key) {
     try {
@@ -103,30 +122,31 @@ abstract class EntityCacheImpl<T extends Entity>
 
   @Override
   public void addListener(EntityListener<T> listener) {
+    logger.debug("Added entity listener");
+
+    // Register Redisson listeners
+    addCacheListener(
+      (EntryCreatedListener<String, T>) event ->
+        listener.onEntityCreated(event.getKey(), event.getValue())
+    );
+
+    addCacheListener(
+      (EntryUpdatedListener<String, T>) event ->
+        listener.onEntityUpdated(event.getKey(), event.getValue())
+    );
+
+    addCacheListener(
+      (EntryRemovedListener<String, T>) event ->
+        listener.onEntityDeleted(event.getKey(), event.getValue())
+    );
+  }
+
+  /**
+   * Registers a Redisson listener on the cache, to be removed on shutdown
+   */
+  void addCacheListener(MapEntryListener listener) {
     synchronized (redissonListenerIds) {
-      logger.debug("Added entity listener");
-
-      // Register Redisson listeners
-      redissonListenerIds.add(
-        cache.addListener(
-          (EntryCreatedListener<String, T>) event ->
-            listener.onEntityCreated(event.getKey(), event.getValue())
-        )
-      );
-
-      redissonListenerIds.add(
-        cache.addListener(
-          (EntryUpdatedListener<String, T>) event ->
-            listener.onEntityUpdated(event.getKey(), event.getValue())
-        )
-      );
-
-      redissonListenerIds.add(
-        cache.addListener(
-          (EntryRemovedListener<String, T>) event ->
-            listener.onEntityDeleted(event.getKey(), event.getValue())
-        )
-      );
+      redissonListenerIds.add(cache.addListener(listener));
     }
   }
 
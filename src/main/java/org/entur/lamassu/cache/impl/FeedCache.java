@@ -21,6 +21,8 @@ package org.entur.lamassu.cache.impl;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import org.entur.lamassu.cache.FeedBody;
+import org.entur.lamassu.cache.FeedMetadata;
 import org.redisson.api.RMapCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,9 +31,17 @@ public abstract class FeedCache {
 
   private final Logger logger = LoggerFactory.getLogger(this.getClass());
   private final RMapCache<String, Object> cache;
+  private final RMapCache<String, FeedBody> bodyCache;
+  private final RMapCache<String, FeedMetadata> metadataCache;
 
-  protected FeedCache(RMapCache<String, Object> cache) {
+  protected FeedCache(
+    RMapCache<String, Object> cache,
+    RMapCache<String, FeedBody> bodyCache,
+    RMapCache<String, FeedMetadata> metadataCache
+  ) {
     this.cache = cache;
+    this.bodyCache = bodyCache;
+    this.metadataCache = metadataCache;
   }
 
   protected <T> T find(String key) {
@@ -73,8 +83,91 @@ public abstract class FeedCache {
     return null;
   }
 
+  protected FeedBody findBody(String key) {
+    try {
+      return bodyCache.getAsync(key).get(5, TimeUnit.SECONDS);
+    } catch (ExecutionException | TimeoutException e) {
+      logger.warn("Unable to fetch feed body from cache within 5 second", e);
+    } catch (InterruptedException e) {
+      logger.warn("Interrupted while fetching feed body from cache", e);
+      Thread.currentThread().interrupt();
+    }
+    return null;
+  }
+
+  protected FeedMetadata findMetadata(String key) {
+    try {
+      return metadataCache.getAsync(key).get(5, TimeUnit.SECONDS);
+    } catch (ExecutionException | TimeoutException e) {
+      logger.warn("Unable to fetch feed metadata from cache within 5 second", e);
+    } catch (InterruptedException e) {
+      logger.warn("Interrupted while fetching feed metadata from cache", e);
+      Thread.currentThread().interrupt();
+    }
+    return null;
+  }
+
+  /**
+   * Store the body before its metadata, so that the metadata never describes a body
+   * which is not stored yet
+   */
+  protected void updateBody(String key, FeedBody body, int ttl, TimeUnit timeUnit) {
+    try {
+      bodyCache.fastPutAsync(key, body, ttl, timeUnit).get(5, TimeUnit.SECONDS);
+      metadataCache
+        .fastPutAsync(key, body.getMetadata(), ttl, timeUnit)
+        .get(5, TimeUnit.SECONDS);
+    } catch (ExecutionException | TimeoutException e) {
+      logger.warn("Unable to update feed body cache within 5 second", e);
+    } catch (InterruptedException e) {
+      logger.warn("Interrupted while updating feed body cache", e);
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Remove the metadata before the body, so that the metadata never describes a body
+   * which is no longer stored
+   */
+  protected void removeBody(String key) {
+    try {
+      metadataCache.fastRemoveAsync(key).get(5, TimeUnit.SECONDS);
+      bodyCache.fastRemoveAsync(key).get(5, TimeUnit.SECONDS);
+    } catch (ExecutionException | TimeoutException e) {
+      logger.warn("Unable to remove feed body from cache within 5 seconds", e);
+    } catch (InterruptedException e) {
+      logger.warn("Interrupted while removing feed body from cache", e);
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Extend the expiration of a stored feed, its body and its metadata, without
+   * rewriting them
+   */
+  protected void updateExpiration(String key, int ttl, TimeUnit timeUnit) {
+    try {
+      bodyCache
+        .updateEntryExpirationAsync(key, ttl, timeUnit, 0, timeUnit)
+        .get(5, TimeUnit.SECONDS);
+      metadataCache
+        .updateEntryExpirationAsync(key, ttl, timeUnit, 0, timeUnit)
+        .get(5, TimeUnit.SECONDS);
+      cache
+        .updateEntryExpirationAsync(key, ttl, timeUnit, 0, timeUnit)
+        .get(5, TimeUnit.SECONDS);
+    } catch (ExecutionException | TimeoutException e) {
+      logger.warn("Unable to update feed cache expiration within 5 seconds", e);
+    } catch (InterruptedException e) {
+      logger.warn("Interrupted while updating feed cache expiration", e);
+      Thread.currentThread().interrupt();
+    }
+  }
+
   protected void remove(String key) {
     try {
+      metadataCache.fastRemoveAsync(key);
+      bodyCache.fastRemoveAsync(key);
       cache.removeAsync(key).get(5, TimeUnit.SECONDS);
     } catch (ExecutionException | TimeoutException e) {
       logger.warn("Unable to remove feed from cache within 5 seconds", e);
@@ -19,6 +19,8 @@
 package org.entur.lamassu.cache.impl;
 
 import java.util.concurrent.TimeUnit;
+import org.entur.lamassu.cache.FeedBody;
+import org.entur.lamassu.cache.FeedMetadata;
 import org.entur.lamassu.cache.GBFSV2FeedCache;
 import org.entur.lamassu.model.provider.FeedProvider;
 import org.mobilitydata.gbfs.v2_3.gbfs.GBFSFeedName;
@@ -30,8 +32,12 @@ import org.springframework.stereotype.Component;
 public class GBFSV2FeedCacheImpl extends FeedCache implements GBFSV2FeedCache {
 
   @Autowired
-  public GBFSV2FeedCacheImpl(RMapCache<String, Object> feedCache) {
-    super(feedCache);
+  public GBFSV2FeedCacheImpl(
+    RMapCache<String, Object> feedCache,
+    RMapCache<String, FeedBody> feedBodyCache,
+    RMapCache<String, FeedMetadata> feedMetadataCache
+  ) {
+    super(feedCache, feedBodyCache, feedMetadataCache);
   }
 
   @Override
@@ -70,6 +76,47 @@ public class GBFSV2FeedCacheImpl extends FeedCache implements GBFSV2FeedCache {
     remove(key);
   }
 
+  @Override
+  public FeedBody findBody(GBFSFeedName feedName, FeedProvider feedProvider) {
+    String key = getKey(feedName, feedProvider.getSystemId());
+    return findBody(key);
+  }
+
+  @Override
+  public FeedMetadata findMetadata(GBFSFeedName feedName, FeedProvider feedProvider) {
+    String key = getKey(feedName, feedProvider.getSystemId());
+    return findMetadata(key);
+  }
+
+  @Override
+  public void updateBody(
+    GBFSFeedName feedName,
+    FeedProvider feedProvider,
+    FeedBody body,
+    int ttl,
+    TimeUnit timeUnit
+  ) {
+    String key = getKey(feedName, feedProvider.getSystemId());
+    updateBody(key, body, ttl, timeUnit);
+  }
+
+  @Override
+  public void removeBody(GBFSFeedName feedName, FeedProvider feedProvider) {
+    String key = getKey(feedName, feedProvider.getSystemId());
+    removeBody(key);
+  }
+
+  @Override
+  public void updateExpiration(
+    GBFSFeedName feedName,
+    FeedProvider feedProvider,
+    int ttl,
+    TimeUnit timeUnit
+  ) {
+    String key = getKey(feedName, feedProvider.getSystemId());
+    updateExpiration(key, ttl, timeUnit);
+  }
+
   private String getKey(GBFSFeedName feedName, String systemId) {
     return mergeStrings(feedName.value(), systemId);
   }
@@ -19,6 +19,8 @@
 package org.entur.lamassu.cache.impl;
 
 import java.util.concurrent.TimeUnit;
+import org.entur.lamassu.cache.FeedBody;
+import org.entur.lamassu.cache.FeedMetadata;
 import org.entur.lamassu.cache.GBFSV3FeedCache;
 import org.entur.lamassu.model.provider.FeedProvider;
 import org.mobilitydata.gbfs.v3_0.gbfs.GBFSFeed;
@@ -30,8 +32,12 @@ import org.springframework.stereotype.Component;
 public class GBFSV3FeedCacheImpl extends FeedCache implements GBFSV3FeedCache {
 
   @Autowired
-  public GBFSV3FeedCacheImpl(RMapCache<String, Object> v3FeedCache) {
-    super(v3FeedCache);
+  public GBFSV3FeedCacheImpl(
+    RMapCache<String, Object> v3FeedCache,
+    RMapCache<String, FeedBody> v3FeedBodyCache,
+    RMapCache<String, FeedMetadata> v3FeedMetadataCache
+  ) {
+    super(v3FeedCache, v3FeedBodyCache, v3FeedMetadataCache);
   }
 
   @Override
@@ -70,6 +76,47 @@ public class GBFSV3FeedCacheImpl extends FeedCache implements GBFSV3FeedCache {
     remove(key);
   }
 
+  @Override
+  public FeedBody findBody(GBFSFeed.Name feedName, FeedProvider feedProvider) {
+    String key = getKey(feedName, feedProvider.getSystemId());
+    return findBody(key);
+  }
+
+  @Override
+  public FeedMetadata findMetadata(GBFSFeed.Name feedName, FeedProvider feedProvider) {
+    String key = getKey(feedName, feedProvider.getSystemId());
+    return findMetadata(key);
+  }
+
+  @Override
+  public void updateBody(
+    GBFSFeed.Name feedName,
+    FeedProvider feedProvider,
+    FeedBody body,
+    int ttl,
+    TimeUnit timeUnit
+  ) {
+    String key = getKey(feedName, feedProvider.getSystemId());
+    updateBody(key, body, ttl, timeUnit);
+  }
+
+  @Override
+  public void removeBody(GBFSFeed.Name feedName, FeedProvider feedProvider) {
+    String key = getKey(feedName, feedProvider.getSystemId());
+    removeBody(key);
+  }
+
+  @Override
+  public void updateExpiration(
+    GBFSFeed.Name feedName,
+    FeedProvider feedProvider,
+    int ttl,
+    TimeUnit timeUnit
+  ) {
+    String key = getKey(feedName, feedProvider.getSystemId());
+    updateExpiration(key, ttl, timeUnit);
+  }
+
   private String getKey(GBFSFeed.Name feedName, String systemId) {
     return mergeStrings(feedName.value(), systemId);
   }
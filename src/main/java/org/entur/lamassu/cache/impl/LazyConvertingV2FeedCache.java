@@ -0,0 +1,341 @@
+package org.entur.lamassu.cache.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.entur.gbfs.loader.v3.GbfsV3Delivery;
+import org.entur.lamassu.cache.FeedBody;
+import org.entur.lamassu.cache.FeedMetadata;
+import org.entur.lamassu.cache.GBFSV2FeedCache;
+import org.entur.lamassu.cache.GBFSV3FeedCache;
+import org.entur.lamassu.leader.feedcachesupdater.FeedBodySerializer;
+import org.entur.lamassu.mapper.feedmapper.GbfsFeedVersionMappers;
+import org.entur.lamassu.mapper.feedmapper.v2.GbfsV2DeliveryMapper;
+import org.entur.lamassu.model.provider.FeedProvider;
+import org.mobilitydata.gbfs.v2_3.gbfs.GBFSFeedName;
+import org.mobilitydata.gbfs.v3_0.gbfs.GBFSFeed;
+import org.mobilitydata.gbfs.v3_0.gbfs.GBFSGbfs;
+import org.mobilitydata.gbfs.v3_0.geofencing_zones.GBFSGeofencingZones;
+import org.mobilitydata.gbfs.v3_0.station_information.GBFSStationInformation;
+import org.mobilitydata.gbfs.v3_0.station_status.GBFSStationStatus;
+import org.mobilitydata.gbfs.v3_0.system_alerts.GBFSSystemAlerts;
+import org.mobilitydata.gbfs.v3_0.system_information.GBFSSystemInformation;
+import org.mobilitydata.gbfs.v3_0.system_pricing_plans.GBFSSystemPricingPlans;
+import org.mobilitydata.gbfs.v3_0.system_regions.GBFSSystemRegions;
+import org.mobilitydata.gbfs.v3_0.vehicle_status.GBFSVehicleStatus;
+import org.mobilitydata.gbfs.v3_0.vehicle_types.GBFSVehicleTypes;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+/**
+ * A GBFSV2FeedCache for when the leader only stores the feeds of each system in the
+ * version it publishes. The v2 feeds of systems publishing v3 are converted from the
+ * stored v3 feeds on first request, and kept in a bounded, process-wide map until the
+ * v3 feed they were converted from has a new last_updated. The station_status is also
+ * converted again when the vehicle_types it takes capacities from has a new
+ * last_updated.
+ *
+ * <p>The feeds of systems publishing v2 are read from the v2 feed cache as before.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(
+  name = "org.entur.lamassu.lazy-version-conversion.enabled",
+  havingValue = "true"
+)
+public class LazyConvertingV2FeedCache implements GBFSV2FeedCache {
+
+  public static final String CONVERSION_REQUESTS = "app.lamassu.gbfs.conversion.requests";
+  public static final String CONVERSION_SIZE = "app.lamassu.gbfs.conversion.size";
+  public static final String LABEL_RESULT = "result";
+
+  private record Key(String systemId, GBFSFeedName feedName) {}
+
+  /**
+   * A converted feed, and the last_updated of the v3 feeds it was converted from. The
+   * vehicle types last_updated is only kept for station_status, and is null if there
+   * were no vehicle types.
+   */
+  private record Conversion(
+    long lastUpdated,
+    Long vehicleTypesLastUpdated,
+    Object feed,
+    FeedBody body
+  ) {}
+
+  private final GBFSV2FeedCache delegate;
+  private final GBFSV3FeedCache v3FeedCache;
+  private final GbfsV2DeliveryMapper deliveryMapper;
+  private final FeedBodySerializer feedBodySerializer;
+  private final Map<Key, Conversion> conversions;
+  private final Counter hits;
+  private final Counter misses;
+
+  public LazyConvertingV2FeedCache(
+    GBFSV2FeedCacheImpl delegate,
+    GBFSV3FeedCache v3FeedCache,
+    GbfsV2DeliveryMapper deliveryMapper,
+    FeedBodySerializer feedBodySerializer,
+    @Value(
+      "${org.entur.lamassu.lazy-version-conversion.maximum-size:1000}"
+    ) int maximumSize,
+    MeterRegistry meterRegistry
+  ) {
+    this.delegate = delegate;
+    this.v3FeedCache = v3FeedCache;
+    this.deliveryMapper = deliveryMapper;
+    this.feedBodySerializer = feedBodySerializer;
+    this.conversions =
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Conversion> eldest) {
+          return size() > maximumSize;
+        }
+      };
+
+    hits =
+      Counter
+        .builder(CONVERSION_REQUESTS)
+        .tag(LABEL_RESULT, "hit")
+        .register(meterRegistry);
+    misses =
+      Counter
+        .builder(CONVERSION_REQUESTS)
+        .tag(LABEL_RESULT, "miss")
+        .register(meterRegistry);
+    Gauge
+      .builder(CONVERSION_SIZE, this, LazyConvertingV2FeedCache::size)
+      .register(meterRegistry);
+  }
+
+  @Override
+  public <T> T find(GBFSFeedName feedName, FeedProvider feedProvider) {
+    if (!isConverted(feedProvider)) {
+      return delegate.find(feedName, feedProvider);
+    }
+    var conversion = getConversion(feedName, feedProvider);
+    @SuppressWarnings("unchecked")
+    T feed = conversion != null ? (T) conversion.feed() : null;
+    return feed;
+  }
+
+  @Override
+  public FeedBody findBody(GBFSFeedName feedName, FeedProvider feedProvider) {
+    if (!isConverted(feedProvider)) {
+      return delegate.findBody(feedName, feedProvider);
+    }
+    var conversion = getConversion(feedName, feedProvider);
+    return conversion != null ? conversion.body() : null;
+  }
+
+  @Override
+  public FeedMetadata findMetadata(GBFSFeedName feedName, FeedProvider feedProvider) {
+    if (!isConverted(feedProvider)) {
+      return delegate.findMetadata(feedName, feedProvider);
+    }
+    var conversion = getConversion(feedName, feedProvider);
+    return conversion != null && conversion.body() != null
+      ? conversion.body().getMetadata()
+      : null;
+  }
+
+  @Override
+  public <T> void update(
+    GBFSFeedName feedName,
+    FeedProvider feedProvider,
+    T feed,
+    int ttl,
+    TimeUnit timeUnit
+  ) {
+    delegate.update(feedName, feedProvider, feed, ttl, timeUnit);
+  }
+
+  @Override
+  public <T> T getAndUpdate(
+    GBFSFeedName feedName,
+    FeedProvider feedProvider,
+    T feed,
+    int ttl,
+    TimeUnit timeUnit
+  ) {
+    return delegate.getAndUpdate(feedName, feedProvider, feed, ttl, timeUnit);
+  }
+
+  @Override
+  public void remove(GBFSFeedName feedName, FeedProvider feedProvider) {
+    synchronized (conversions) {
+      conversions.remove(new Key(feedProvider.getSystemId(), feedName));
+    }
+    delegate.remove(feedName, feedProvider);
+  }
+
+  @Override
+  public void updateBody(
+    GBFSFeedName feedName,
+    FeedProvider feedProvider,
+    FeedBody body,
+    int ttl,
+    TimeUnit timeUnit
+  ) {
+    delegate.updateBody(feedName, feedProvider, body, ttl, timeUnit);
+  }
+
+  @Override
+  public void removeBody(GBFSFeedName feedName, FeedProvider feedProvider) {
+    delegate.removeBody(feedName, feedProvider);
+  }
+
+  @Override
+  public void updateExpiration(
+    GBFSFeedName feedName,
+    FeedProvider feedProvider,
+    int ttl,
+    TimeUnit timeUnit
+  ) {
+    delegate.updateExpiration(feedName, feedProvider, ttl, timeUnit);
+  }
+
+  int size() {
+    synchronized (conversions) {
+      return conversions.size();
+    }
+  }
+
+  /**
+   * Whether the v2 feeds of the system are converted from its v3 feeds, rather than
+   * stored by the leader
+   */
+  private static boolean isConverted(FeedProvider feedProvider) {
+    return (
+      feedProvider.getVersion() != null && feedProvider.getVersion().startsWith("3")
+    );
+  }
+
+  /**
+   * Get the conversion of the current v3 feed, converting it if it has not been
+   * converted since its last update, or null if there is no v3 feed to convert
+   */
+  private Conversion getConversion(GBFSFeedName feedName, FeedProvider feedProvider) {
+    var v3FeedName = toV3FeedName(feedName);
+    if (v3FeedName == null) {
+      return null;
+    }
+    var metadata = v3FeedCache.findMetadata(v3FeedName, feedProvider);
+    if (metadata == null) {
+      return null;
+    }
+    var vehicleTypesLastUpdated = feedName == GBFSFeedName.StationStatus
+      ? getLastUpdated(GBFSFeed.Name.VEHICLE_TYPES, feedProvider)
+      : null;
+
+    var key = new Key(feedProvider.getSystemId(), feedName);
+    synchronized (conversions) {
+      var conversion = conversions.get(key);
+      if (
+        conversion != null &&
+        conversion.lastUpdated() == metadata.getLastUpdated() &&
+        Objects.equals(conversion.vehicleTypesLastUpdated(), vehicleTypesLastUpdated)
+      ) {
+        hits.increment();
+        return conversion;
+      }
+    }
+    misses.increment();
+
+    var conversion = convert(
+      feedName,
+      v3FeedName,
+      feedProvider,
+      metadata,
+      vehicleTypesLastUpdated
+    );
+    if (conversion != null) {
+      synchronized (conversions) {
+        conversions.put(key, conversion);
+      }
+    }
+    return conversion;
+  }
+
+  private Conversion convert(
+    GBFSFeedName feedName,
+    GBFSFeed.Name v3FeedName,
+    FeedProvider feedProvider,
+    FeedMetadata metadata,
+    Long vehicleTypesLastUpdated
+  ) {
+    Object v3Feed = v3FeedCache.find(v3FeedName, feedProvider);
+    if (v3Feed == null) {
+      return null;
+    }
+    // Stations without vehicle type availability get it from the vehicle types
+    GBFSVehicleTypes v3VehicleTypes = feedName == GBFSFeedName.StationStatus
+      ? v3FeedCache.find(GBFSFeed.Name.VEHICLE_TYPES, feedProvider)
+      : null;
+
+    var v2Delivery = GbfsFeedVersionMappers.map(
+      toDelivery(v3Feed, v3VehicleTypes),
+      feedProvider.getLanguage()
+    );
+    var feed = deliveryMapper.mapFeed(feedName, v2Delivery, feedProvider);
+    if (feed == null) {
+      return null;
+    }
+    return new Conversion(
+      metadata.getLastUpdated(),
+      vehicleTypesLastUpdated,
+      feed,
+      feedBodySerializer.serialize(feed)
+    );
+  }
+
+  private Long getLastUpdated(GBFSFeed.Name feedName, FeedProvider feedProvider) {
+    var metadata = v3FeedCache.findMetadata(feedName, feedProvider);
+    return metadata != null ? metadata.getLastUpdated() : null;
+  }
+
+  private static GBFSFeed.Name toV3FeedName(GBFSFeedName feedName) {
+    return switch (feedName) {
+      case GBFS -> GBFSFeed.Name.GBFS;
+      case SystemInformation -> GBFSFeed.Name.SYSTEM_INFORMATION;
+      case VehicleTypes -> GBFSFeed.Name.VEHICLE_TYPES;
+      case StationInformation -> GBFSFeed.Name.STATION_INFORMATION;
+      case StationStatus -> GBFSFeed.Name.STATION_STATUS;
+      case FreeBikeStatus -> GBFSFeed.Name.VEHICLE_STATUS;
+      case SystemRegions -> GBFSFeed.Name.SYSTEM_REGIONS;
+      case SystemPricingPlans -> GBFSFeed.Name.SYSTEM_PRICING_PLANS;
+      case SystemAlerts -> GBFSFeed.Name.SYSTEM_ALERTS;
+      case GeofencingZones -> GBFSFeed.Name.GEOFENCING_ZONES;
+      // Not produced from v3 feeds
+      default -> null;
+    };
+  }
+
+  /**
+   * A delivery holding only the given v3 feed, and the vehicle types if given
+   */
+  private static GbfsV3Delivery toDelivery(Object feed, GBFSVehicleTypes vehicleTypes) {
+    return new GbfsV3Delivery(
+      feed instanceof GBFSGbfs discovery ? discovery : null,
+      null,
+      feed instanceof GBFSSystemInformation systemInformation ? systemInformation : null,
+      feed instanceof GBFSVehicleTypes feedVehicleTypes ? feedVehicleTypes : vehicleTypes,
+      feed instanceof GBFSStationInformation stationInformation
+        ? stationInformation
+        : null,
+      feed instanceof GBFSStationStatus stationStatus ? stationStatus : null,
+      feed instanceof GBFSVehicleStatus vehicleStatus ? vehicleStatus : null,
+      feed instanceof GBFSSystemRegions systemRegions ? systemRegions : null,
+      feed instanceof GBFSSystemPricingPlans pricingPlans ? pricingPlans : null,
+      feed instanceof GBFSSystemAlerts systemAlerts ? systemAlerts : null,
+      feed instanceof GBFSGeofencingZones geofencingZones ? geofencingZones : null,
+      null
+    );
+  }
+}
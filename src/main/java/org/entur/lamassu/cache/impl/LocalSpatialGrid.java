@@ -0,0 +1,335 @@
+package org.entur.lamassu.cache.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import org.entur.lamassu.util.GeoUtils;
+import org.redisson.api.geo.GeoOrder;
+
+/**
+ * In-memory uniform grid over entity positions. Each grid cell stores its members in
+ * packed primitive lat/lon arrays, so range lookups only touch the cells overlapping the
+ * query area and never allocate per candidate.
+ *
+ * <p>Thread-safe: lookups take a shared read lock, mutations an exclusive write lock.
+ *
+ * @param <S> the member type stored alongside each position
+ */
+public class LocalSpatialGrid<S> {
+
+  private static final double METERS_PER_DEGREE_LATITUDE = 111_320.0;
+
+  // Roughly 1.1 x 0.6 km cells at Scandinavian latitudes
+  public static final double DEFAULT_CELL_SIZE_DEGREES = 0.01;
+
+  private final double cellSizeDegrees;
+  private final Map<Long, Cell<S>> cells = new HashMap<>();
+  private final Map<String, Long> cellKeyByEntityId = new HashMap<>();
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  public LocalSpatialGrid() {
+    this(DEFAULT_CELL_SIZE_DEGREES);
+  }
+
+  public LocalSpatialGrid(double cellSizeDegrees) {
+    this.cellSizeDegrees = cellSizeDegrees;
+  }
+
+  /**
+   * Adds or moves the entity with the given id.
+   */
+  public void put(String entityId, double lat, double lon, S member) {
+    lock.writeLock().lock();
+    try {
+      removeInternal(entityId);
+      long cellKey = cellKey(lat, lon);
+      cells.computeIfAbsent(cellKey, k -> new Cell<>()).add(entityId, lat, lon, member);
+      cellKeyByEntityId.put(entityId, cellKey);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Adds the entity only if it is not already present.
+   *
+   * @return true if the entity was added
+   */
+  public boolean putIfAbsent(String entityId, double lat, double lon, S member) {
+    lock.writeLock().lock();
+    try {
+      if (cellKeyByEntityId.containsKey(entityId)) {
+        return false;
+      }
+      long cellKey = cellKey(lat, lon);
+      cells.computeIfAbsent(cellKey, k -> new Cell<>()).add(entityId, lat, lon, member);
+      cellKeyByEntityId.put(entityId, cellKey);
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void remove(String entityId) {
+    lock.writeLock().lock();
+    try {
+      removeInternal(entityId);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      cells.clear();
+      cellKeyByEntityId.clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void removeInternal(String entityId) {
+    Long cellKey = cellKeyByEntityId.remove(entityId);
+    if (cellKey != null) {
+      var cell = cells.get(cellKey);
+      if (cell != null && cell.remove(entityId) && cell.size == 0) {
+        cells.remove(cellKey);
+      }
+    }
+  }
+
+  /**
+   * Find all members within radiusMeters of the given point.
+   *
+   * @param order sort order by distance from the center, or null for no ordering
+   */
+  public List<S> radius(double lat, double lon, double radiusMeters, GeoOrder order) {
+    double latDelta = radiusMeters / METERS_PER_DEGREE_LATITUDE;
+    double lonDelta =
+      radiusMeters /
+      (METERS_PER_DEGREE_LATITUDE * Math.max(Math.cos(Math.toRadians(lat)), 0.01));
+
+    List<Hit<S>> hits = new ArrayList<>();
+
+    lock.readLock().lock();
+    try {
+      forEachCell(
+        lat - latDelta,
+        lon - lonDelta,
+        lat + latDelta,
+        lon + lonDelta,
+        cell -> {
+          for (int i = 0; i < cell.size; i++) {
+            double distance = GeoUtils.calculateDistance(
+              lat,
+              lon,
+              cell.lats[i],
+              cell.lons[i]
+            );
+            if (distance <= radiusMeters) {
+              hits.add(new Hit<>(cell.members[i], distance));
+            }
+          }
+        }
+      );
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    return sorted(hits, order);
+  }
+
+  private List<S> sorted(List<Hit<S>> hits, GeoOrder order) {
+    if (order == GeoOrder.ASC) {
+      hits.sort(Comparator.comparingDouble(Hit::distance));
+    } else if (order == GeoOrder.DESC) {
+      hits.sort(Comparator.comparingDouble(Hit<S>::distance).reversed());
+    }
+
+    return hits.stream().map(Hit::member).toList();
+  }
+
+  /**
+   * Find all members inside the given bounding box (inclusive).
+   *
+   * @param order sort order by distance from the center of the box, or null for no
+   *              ordering
+   */
+  public List<S> boundingBox(
+    double minimumLatitude,
+    double minimumLongitude,
+    double maximumLatitude,
+    double maximumLongitude,
+    GeoOrder order
+  ) {
+    double centerLatitude = (minimumLatitude + maximumLatitude) / 2.0;
+    double centerLongitude = (minimumLongitude + maximumLongitude) / 2.0;
+    boolean ordered = order == GeoOrder.ASC || order == GeoOrder.DESC;
+
+    List<Hit<S>> hits = new ArrayList<>();
+
+    lock.readLock().lock();
+    try {
+      forEachCell(
+        minimumLatitude,
+        minimumLongitude,
+        maximumLatitude,
+        maximumLongitude,
+        cell -> {
+          for (int i = 0; i < cell.size; i++) {
+            double lat = cell.lats[i];
+            double lon = cell.lons[i];
+            if (
+              lat >= minimumLatitude &&
+              lat <= maximumLatitude &&
+              lon >= minimumLongitude &&
+              lon <= maximumLongitude
+            ) {
+              double distance = ordered
+                ? GeoUtils.calculateDistance(centerLatitude, centerLongitude, lat, lon)
+                : 0;
+              hits.add(new Hit<>(cell.members[i], distance));
+            }
+          }
+        }
+      );
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    return sorted(hits, order);
+  }
+
+  public List<S> getAll() {
+    lock.readLock().lock();
+    try {
+      List<S> result = new ArrayList<>(cellKeyByEntityId.size());
+      for (Cell<S> cell : cells.values()) {
+        result.addAll(Arrays.asList(cell.members).subList(0, cell.size));
+      }
+      return result;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return cellKeyByEntityId.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void forEachCell(
+    double minLat,
+    double minLon,
+    double maxLat,
+    double maxLon,
+    Consumer<Cell<S>> consumer
+  ) {
+    long minLatIndex = latIndex(Math.max(minLat, -90.0));
+    long maxLatIndex = latIndex(Math.min(maxLat, 90.0));
+    long minLonIndex = lonIndex(Math.max(minLon, -180.0));
+    long maxLonIndex = lonIndex(Math.min(maxLon, 180.0));
+
+    // When the query spans more cells than are populated, scanning the populated
+    // cells is cheaper than probing every cell in the query area
+    long queryCells = (maxLatIndex - minLatIndex + 1) * (maxLonIndex - minLonIndex + 1);
+    if (queryCells > cells.size()) {
+      for (Map.Entry<Long, Cell<S>> entry : cells.entrySet()) {
+        long latIndex = entry.getKey() >> 32;
+        long lonIndex = entry.getKey() & 0xffffffffL;
+        if (
+          latIndex >= minLatIndex &&
+          latIndex <= maxLatIndex &&
+          lonIndex >= minLonIndex &&
+          lonIndex <= maxLonIndex
+        ) {
+          consumer.accept(entry.getValue());
+        }
+      }
+      return;
+    }
+
+    for (long latIndex = minLatIndex; latIndex <= maxLatIndex; latIndex++) {
+      for (long lonIndex = minLonIndex; lonIndex <= maxLonIndex; lonIndex++) {
+        var cell = cells.get((latIndex << 32) | lonIndex);
+        if (cell != null) {
+          consumer.accept(cell);
+        }
+      }
+    }
+  }
+
+  private long cellKey(double lat, double lon) {
+    return (latIndex(lat) << 32) | lonIndex(lon);
+  }
+
+  private long latIndex(double lat) {
+    return (long) Math.floor((lat + 90.0) / cellSizeDegrees);
+  }
+
+  private long lonIndex(double lon) {
+    return (long) Math.floor((lon + 180.0) / cellSizeDegrees);
+  }
+
+  private record Hit<S>(S member, double distance) {}
+
+  private static final class Cell<S> {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    String[] entityIds = new String[INITIAL_CAPACITY];
+    double[] lats = new double[INITIAL_CAPACITY];
+    double[] lons = new double[INITIAL_CAPACITY];
+    S[] members = newArray(INITIAL_CAPACITY);
+    int size;
+
+    void add(String entityId, double lat, double lon, S member) {
+      if (size == entityIds.length) {
+        int capacity = size * 2;
+        entityIds = Arrays.copyOf(entityIds, capacity);
+        lats = Arrays.copyOf(lats, capacity);
+        lons = Arrays.copyOf(lons, capacity);
+        members = Arrays.copyOf(members, capacity);
+      }
+      entityIds[size] = entityId;
+      lats[size] = lat;
+      lons[size] = lon;
+      members[size] = member;
+      size++;
+    }
+
+    boolean remove(String entityId) {
+      for (int i = 0; i < size; i++) {
+        if (entityIds[i].equals(entityId)) {
+          int last = size - 1;
+          // Swap the last slot into the removed one to keep the arrays packed
+          entityIds[i] = entityIds[last];
+          lats[i] = lats[last];
+          lons[i] = lons[last];
+          members[i] = members[last];
+          entityIds[last] = null;
+          members[last] = null;
+          size = last;
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S> S[] newArray(int capacity) {
+      return (S[]) new Object[capacity];
+    }
+  }
+}
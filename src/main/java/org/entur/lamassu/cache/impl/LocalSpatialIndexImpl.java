@@ -0,0 +1,321 @@
+package org.entur.lamassu.cache.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.entur.lamassu.cache.EntityCache;
+import org.entur.lamassu.cache.EntityListener;
+import org.entur.lamassu.cache.PackedSpatialIndexId;
+import org.entur.lamassu.cache.SpatialIndex;
+import org.entur.lamassu.cache.SpatialIndexId;
+import org.entur.lamassu.cache.SpatialIndexIdCodec;
+import org.entur.lamassu.cache.SpatialIndexIdMatcher;
+import org.entur.lamassu.cache.SpatialIndexSearchResult;
+import org.entur.lamassu.model.entities.LocationEntity;
+import org.entur.lamassu.model.provider.FeedProvider;
+import org.entur.lamassu.service.FeedProviderService;
+import org.redisson.api.geo.GeoOrder;
+import org.redisson.api.geo.GeoUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+
+/**
+ * Spatial index which answers reads from an in-process grid instead of querying Redis.
+ *
+ * <p>Writes are passed through to the Redis backed index, so the leader keeps Redis as
+ * the source of truth. The local grid is kept up to date from entity cache events,
+ * which are delivered to every instance, and is bootstrapped from the Redis index on
+ * startup. Until the bootstrap is complete, reads fall back to Redis.
+ */
+public abstract class LocalSpatialIndexImpl<
+  S extends SpatialIndexId, T extends LocationEntity
+>
+  implements SpatialIndex<S, T>, EntityListener<T> {
+
+  private static final int BOOTSTRAP_BATCH_SIZE = 1000;
+
+  private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+  private final SpatialIndexImpl<S, T> delegate;
+  private final FeedProviderService feedProviderService;
+  private final SpatialIndexIdCodec<S> codec;
+  // Holds packed members, which are only decoded when returned
+  private final LocalSpatialGrid<String> grid = new LocalSpatialGrid<>();
+
+  // Ids deleted while bootstrapping, which must not be resurrected from the snapshot
+  private final Set<String> deletedDuringBootstrap = ConcurrentHashMap.newKeySet();
+  private volatile boolean bootstrapping = false;
+  private volatile boolean ready = false;
+
+  protected LocalSpatialIndexImpl(
+    SpatialIndexImpl<S, T> delegate,
+    EntityCache<T> entityCache,
+    FeedProviderService feedProviderService
+  ) {
+    this.delegate = delegate;
+    this.codec = delegate.getCodec();
+    this.feedProviderService = feedProviderService;
+    entityCache.addListener(this);
+  }
+
+  /**
+   * Create the spatial index id of an entity, or null if it can't be indexed.
+   */
+  protected abstract S createIndexId(T entity, FeedProvider feedProvider);
+
+  protected abstract String getSystemId(T entity);
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void bootstrap() {
+    bootstrapping = true;
+    deletedDuringBootstrap.clear();
+
+    List<String> members = new ArrayList<>(delegate.getAllPacked());
+    logger.info("Bootstrapping local spatial index from {} entries", members.size());
+
+    for (int i = 0; i < members.size(); i += BOOTSTRAP_BATCH_SIZE) {
+      var batch = members.subList(
+        i,
+        Math.min(i + BOOTSTRAP_BATCH_SIZE, members.size())
+      );
+      delegate
+        .positions(batch)
+        .forEach((member, position) -> {
+          String id = PackedSpatialIndexId.id(member);
+          if (!deletedDuringBootstrap.contains(id)) {
+            grid.putIfAbsent(
+              id,
+              position.getLatitude(),
+              position.getLongitude(),
+              member
+            );
+          }
+        });
+    }
+
+    bootstrapping = false;
+    deletedDuringBootstrap.clear();
+    ready = true;
+    logger.info("Local spatial index ready with {} entries", grid.size());
+  }
+
+  public boolean isReady() {
+    return ready;
+  }
+
+  @Override
+  public void onEntityCreated(String id, T entity) {
+    put(id, entity);
+  }
+
+  @Override
+  public void onEntityUpdated(String id, T entity) {
+    put(id, entity);
+  }
+
+  @Override
+  public void onEntityDeleted(String id, T entity) {
+    if (bootstrapping) {
+      deletedDuringBootstrap.add(id);
+    }
+    grid.remove(id);
+  }
+
+  private void put(String id, T entity) {
+    if (entity == null || entity.getLat() == null || entity.getLon() == null) {
+      grid.remove(id);
+      return;
+    }
+
+    S indexId = toIndexId(entity);
+    if (indexId == null) {
+      grid.remove(id);
+      return;
+    }
+
+    grid.put(id, entity.getLat(), entity.getLon(), codec.encode(indexId));
+  }
+
+  private S toIndexId(T entity) {
+    String systemId = getSystemId(entity);
+    FeedProvider feedProvider = systemId != null
+      ? feedProviderService.getFeedProviderBySystemId(systemId)
+      : null;
+
+    if (feedProvider == null) {
+      logger.debug("No feed provider found for entity {}", entity.getId());
+      return null;
+    }
+
+    try {
+      return createIndexId(entity, feedProvider);
+    } catch (IllegalStateException e) {
+      logger.debug("Unable to create spatial index id for {}", entity.getId(), e);
+      return null;
+    }
+  }
+
+  @Override
+  public void addAll(Map<S, T> spatialIndexUpdateMap) {
+    delegate.addAll(spatialIndexUpdateMap);
+  }
+
+  @Override
+  public void removeAll(Set<S> ids) {
+    delegate.removeAll(ids);
+  }
+
+  @Override
+  public List<S> radius(
+    Double longitude,
+    Double latitude,
+    Double radius,
+    GeoUnit geoUnit,
+    GeoOrder geoOrder
+  ) {
+    if (!ready) {
+      return delegate.radius(longitude, latitude, radius, geoUnit, geoOrder);
+    }
+    return decode(
+      grid.radius(latitude, longitude, toMeters(radius, geoUnit), geoOrder)
+    );
+  }
+
+  @Override
+  public SpatialIndexSearchResult<S> radius(
+    Double longitude,
+    Double latitude,
+    Double radius,
+    GeoUnit geoUnit,
+    GeoOrder geoOrder,
+    int limit,
+    SpatialIndexIdMatcher matcher
+  ) {
+    if (!ready) {
+      return delegate.radius(
+        longitude,
+        latitude,
+        radius,
+        geoUnit,
+        geoOrder,
+        limit,
+        matcher
+      );
+    }
+    return search(
+      grid.radius(latitude, longitude, toMeters(radius, geoUnit), geoOrder),
+      limit,
+      matcher
+    );
+  }
+
+  @Override
+  public List<S> boundingBox(
+    Double minimumLongitude,
+    Double minimumLatitude,
+    Double maximumLongitude,
+    Double maximumLatitude,
+    GeoOrder geoOrder
+  ) {
+    if (!ready) {
+      return delegate.boundingBox(
+        minimumLongitude,
+        minimumLatitude,
+        maximumLongitude,
+        maximumLatitude,
+        geoOrder
+      );
+    }
+    return decode(
+      grid.boundingBox(
+        minimumLatitude,
+        minimumLongitude,
+        maximumLatitude,
+        maximumLongitude,
+        geoOrder
+      )
+    );
+  }
+
+  @Override
+  public SpatialIndexSearchResult<S> boundingBox(
+    Double minimumLongitude,
+    Double minimumLatitude,
+    Double maximumLongitude,
+    Double maximumLatitude,
+    GeoOrder geoOrder,
+    int limit,
+    SpatialIndexIdMatcher matcher
+  ) {
+    if (!ready) {
+      return delegate.boundingBox(
+        minimumLongitude,
+        minimumLatitude,
+        maximumLongitude,
+        maximumLatitude,
+        geoOrder,
+        limit,
+        matcher
+      );
+    }
+    return search(
+      grid.boundingBox(
+        minimumLatitude,
+        minimumLongitude,
+        maximumLatitude,
+        maximumLongitude,
+        geoOrder
+      ),
+      limit,
+      matcher
+    );
+  }
+
+  private SpatialIndexSearchResult<S> search(
+    List<String> members,
+    int limit,
+    SpatialIndexIdMatcher matcher
+  ) {
+    var searched = members.size() > limit ? members.subList(0, limit) : members;
+    return new SpatialIndexSearchResult<>(
+      searched.stream().filter(matcher::matches).map(codec::decode).toList(),
+      members.size() <= limit
+    );
+  }
+
+  private List<S> decode(List<String> members) {
+    return members.stream().map(codec::decode).toList();
+  }
+
+  /**
+   * Returns the members of the Redis index, which is authoritative, e.g. for orphan
+   * detection.
+   */
+  @Override
+  public Collection<S> getAll() {
+    return delegate.getAll();
+  }
+
+  @Override
+  public int count() {
+    return delegate.count();
+  }
+
+  SpatialIndexImpl<S, T> getDelegate() {
+    return delegate;
+  }
+
+  static double toMeters(double distance, GeoUnit geoUnit) {
+    return switch (geoUnit) {
+      case METERS -> distance;
+      case KILOMETERS -> distance * 1000.0;
+      case MILES -> distance * 1609.344;
+      case FEET -> distance * 0.3048;
+    };
+  }
+}
@@ -0,0 +1,48 @@
+package org.entur.lamassu.cache.impl;
+
+import org.entur.lamassu.cache.EntityCache;
+import org.entur.lamassu.cache.StationSpatialIndex;
+import org.entur.lamassu.cache.StationSpatialIndexId;
+import org.entur.lamassu.model.entities.Station;
+import org.entur.lamassu.model.provider.FeedProvider;
+import org.entur.lamassu.service.FeedProviderService;
+import org.entur.lamassu.service.SpatialIndexIdGeneratorService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+@Component
+@Primary
+@ConditionalOnProperty(
+  name = "org.entur.lamassu.local-spatial-index.enabled",
+  havingValue = "true"
+)
+public class LocalStationSpatialIndexImpl
+  extends LocalSpatialIndexImpl<StationSpatialIndexId, Station>
+  implements StationSpatialIndex {
+
+  private final SpatialIndexIdGeneratorService spatialIndexIdGeneratorService;
+
+  public LocalStationSpatialIndexImpl(
+    StationSpatialIndexImpl stationSpatialIndexImpl,
+    EntityCache<Station> stationCache,
+    FeedProviderService feedProviderService,
+    SpatialIndexIdGeneratorService spatialIndexIdGeneratorService
+  ) {
+    super(stationSpatialIndexImpl, stationCache, feedProviderService);
+    this.spatialIndexIdGeneratorService = spatialIndexIdGeneratorService;
+  }
+
+  @Override
+  protected StationSpatialIndexId createIndexId(
+    Station station,
+    FeedProvider feedProvider
+  ) {
+    return spatialIndexIdGeneratorService.createStationIndexId(station, feedProvider);
+  }
+
+  @Override
+  protected String getSystemId(Station station) {
+    return station.getSystemId();
+  }
+}
@@ -0,0 +1,48 @@
+package org.entur.lamassu.cache.impl;
+
+import org.entur.lamassu.cache.EntityCache;
+import org.entur.lamassu.cache.VehicleSpatialIndex;
+import org.entur.lamassu.cache.VehicleSpatialIndexId;
+import org.entur.lamassu.model.entities.Vehicle;
+import org.entur.lamassu.model.provider.FeedProvider;
+import org.entur.lamassu.service.FeedProviderService;
+import org.entur.lamassu.service.SpatialIndexIdGeneratorService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+@Component
+@Primary
+@ConditionalOnProperty(
+  name = "org.entur.lamassu.local-spatial-index.enabled",
+  havingValue = "true"
+)
+public class LocalVehicleSpatialIndexImpl
+  extends LocalSpatialIndexImpl<VehicleSpatialIndexId, Vehicle>
+  implements VehicleSpatialIndex {
+
+  private final SpatialIndexIdGeneratorService spatialIndexIdGeneratorService;
+
+  public LocalVehicleSpatialIndexImpl(
+    VehicleSpatialIndexImpl vehicleSpatialIndexImpl,
+    EntityCache<Vehicle> vehicleCache,
+    FeedProviderService feedProviderService,
+    SpatialIndexIdGeneratorService spatialIndexIdGeneratorService
+  ) {
+    super(vehicleSpatialIndexImpl, vehicleCache, feedProviderService);
+    this.spatialIndexIdGeneratorService = spatialIndexIdGeneratorService;
+  }
+
+  @Override
+  protected VehicleSpatialIndexId createIndexId(
+    Vehicle vehicle,
+    FeedProvider feedProvider
+  ) {
+    return spatialIndexIdGeneratorService.createVehicleIndexId(vehicle, feedProvider);
+  }
+
+  @Override
+  protected String getSystemId(Vehicle vehicle) {
+    return vehicle.getSystemId();
+  }
+}
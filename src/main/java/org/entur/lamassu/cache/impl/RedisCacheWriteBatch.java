@@ -0,0 +1,112 @@
+package org.entur.lamassu.cache.impl;
+
+import java.util.Map;
+import java.util.Set;
+import org.entur.lamassu.cache.CacheWriteBatch;
+import org.entur.lamassu.cache.EntityCache;
+import org.entur.lamassu.cache.SpatialIndex;
+import org.entur.lamassu.cache.SpatialIndexId;
+import org.entur.lamassu.model.entities.Entity;
+import org.entur.lamassu.model.entities.LocationEntity;
+import org.redisson.api.RBatch;
+import org.redisson.client.RedisException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Queues writes to Redis-backed caches and indexes in a Redisson batch, sending them
+ * in a single pipeline when executed. Writes to other implementations are applied
+ * immediately.
+ */
+class RedisCacheWriteBatch implements CacheWriteBatch {
+
+  private final RBatch batch;
+  private final CacheWriteBatch direct = new DirectCacheWriteBatch();
+
+  private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+  RedisCacheWriteBatch(RBatch batch) {
+    this.batch = batch;
+  }
+
+  @Override
+  public <T extends Entity> void updateAll(
+    EntityCache<T> cache,
+    Map<String, T> entities
+  ) {
+    if (cache instanceof EntityCacheImpl<T> redisCache) {
+      redisCache.updateAll(batch, entities);
+    } else {
+      direct.updateAll(cache, entities);
+    }
+  }
+
+  @Override
+  public <T extends Entity> void updateAllStatus(
+    EntityCache<T> cache,
+    Map<String, T> entities
+  ) {
+    if (cache instanceof EntityCacheImpl<T> redisCache) {
+      redisCache.updateAllStatus(batch, entities);
+    } else {
+      direct.updateAllStatus(cache, entities);
+    }
+  }
+
+  @Override
+  public <T extends Entity> void removeAll(EntityCache<T> cache, Set<String> keys) {
+    if (cache instanceof EntityCacheImpl<T> redisCache) {
+      redisCache.removeAll(batch, keys);
+    } else {
+      direct.removeAll(cache, keys);
+    }
+  }
+
+  @Override
+  public <S extends SpatialIndexId, T extends LocationEntity> void addAll(
+    SpatialIndex<S, T> spatialIndex,
+    Map<S, T> spatialIndexUpdateMap
+  ) {
+    var redisIndex = getRedisIndex(spatialIndex);
+    if (redisIndex != null) {
+      redisIndex.addAll(batch, spatialIndexUpdateMap);
+    } else {
+      direct.addAll(spatialIndex, spatialIndexUpdateMap);
+    }
+  }
+
+  @Override
+  public <S extends SpatialIndexId, T extends LocationEntity> void removeAll(
+    SpatialIndex<S, T> spatialIndex,
+    Set<S> ids
+  ) {
+    var redisIndex = getRedisIndex(spatialIndex);
+    if (redisIndex != null) {
+      redisIndex.removeAll(batch, ids);
+    } else {
+      direct.removeAll(spatialIndex, ids);
+    }
+  }
+
+  @Override
+  public void execute() {
+    try {
+      batch.execute();
+    } catch (RedisException e) {
+      logger.warn("Caught exception while executing cache write batch", e);
+    }
+  }
+
+  private static <S extends SpatialIndexId, T extends LocationEntity> SpatialIndexImpl<S, T> getRedisIndex(
+    SpatialIndex<S, T> spatialIndex
+  ) {
+    if (spatialIndex instanceof SpatialIndexImpl<S, T> redisIndex) {
+      return redisIndex;
+    }
+    if (spatialIndex instanceof LocalSpatialIndexImpl<S, T> localIndex) {
+      // Writes to the local index go to Redis, and reach the grid as entity events
+      return localIndex.getDelegate();
+    }
+    return null;
+  }
+}
@@ -0,0 +1,62 @@
+package org.entur.lamassu.cache.impl;
+
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+import org.entur.lamassu.cache.EntityEvent;
+import org.entur.lamassu.cache.EntityEventShards;
+import org.entur.lamassu.model.entities.Entity;
+import org.redisson.api.RedissonClient;
+
+/**
+ * Redis-backed implementation of EntityEventShards, with one pub/sub channel per shard.
+ * Subscribing to every shard uses a pattern subscription, so it receives the shards
+ * published after it subscribed.
+ */
+public class RedisEntityEventShards<T extends Entity> implements EntityEventShards<T> {
+
+  private final RedissonClient redissonClient;
+  private final String channelPrefix;
+
+  public RedisEntityEventShards(RedissonClient redissonClient, String channelPrefix) {
+    this.redissonClient = redissonClient;
+    this.channelPrefix = channelPrefix;
+  }
+
+  @Override
+  public void publish(String shard, EntityEvent<T> event) {
+    redissonClient.getTopic(getChannel(shard)).publishAsync(event);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public int subscribe(String shard, Consumer<EntityEvent<T>> consumer) {
+    return redissonClient
+      .getTopic(getChannel(shard))
+      .addListener(EntityEvent.class, (channel, event) -> consumer.accept(event));
+  }
+
+  @Override
+  public void unsubscribe(String shard, int subscriptionId) {
+    redissonClient.getTopic(getChannel(shard)).removeListener(subscriptionId);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public CompletionStage<Integer> subscribeAll(Consumer<EntityEvent<T>> consumer) {
+    return redissonClient
+      .getPatternTopic(getChannel("*"))
+      .addListenerAsync(
+        EntityEvent.class,
+        (pattern, channel, event) -> consumer.accept(event)
+      );
+  }
+
+  @Override
+  public void unsubscribeAll(int subscriptionId) {
+    redissonClient.getPatternTopic(getChannel("*")).removeListener(subscriptionId);
+  }
+
+  private String getChannel(String shard) {
+    return channelPrefix + "_" + shard;
+  }
+}
@@ -0,0 +1,161 @@
+package org.entur.lamassu.cache.impl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.entur.lamassu.cache.EntityEvent;
+import org.entur.lamassu.cache.EntityEventStream;
+import org.entur.lamassu.model.entities.Entity;
+import org.redisson.api.RStream;
+import org.redisson.api.StreamMessageId;
+import org.redisson.api.stream.StreamAddArgs;
+import org.redisson.api.stream.StreamReadArgs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Redis-backed implementation of EntityEventStream, using a Redis Stream trimmed to
+ * about the given length. Positions are the ids of the stream entries.
+ */
+public class RedisEntityEventStream<T extends Entity>
+  implements EntityEventStream<T>, DisposableBean {
+
+  private static final String EVENT_FIELD = "event";
+  private static final int LISTEN_BATCH_SIZE = 1000;
+  private static final Duration LISTEN_TIMEOUT = Duration.ofSeconds(5);
+  private static final Comparator<StreamMessageId> ORDER = Comparator
+    .comparingLong(StreamMessageId::getId0)
+    .thenComparingLong(StreamMessageId::getId1);
+
+  private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+  private final RStream<String, EntityEvent<T>> stream;
+  private final int maxLength;
+  private volatile boolean closed = false;
+
+  public RedisEntityEventStream(RStream<String, EntityEvent<T>> stream, int maxLength) {
+    this.stream = stream;
+    this.maxLength = maxLength;
+  }
+
+  @Override
+  public void append(EntityEvent<T> event) {
+    stream.addAsync(
+      StreamAddArgs.entry(EVENT_FIELD, event).trimNonStrict().maxLen(maxLength).noLimit()
+    );
+  }
+
+  @Override
+  public List<EntityEvent<T>> readAfter(String position, int count) {
+    return toEvents(
+      stream.read(StreamReadArgs.greaterThan(parse(position)).count(count))
+    );
+  }
+
+  @Override
+  public String getFirstPosition() {
+    return first(stream.range(1, StreamMessageId.MIN, StreamMessageId.MAX));
+  }
+
+  @Override
+  public String getLastPosition() {
+    return first(stream.rangeReversed(1, StreamMessageId.MAX, StreamMessageId.MIN));
+  }
+
+  @Override
+  public void listen(Consumer<EntityEvent<T>> consumer) {
+    String lastPosition = getLastPosition();
+    poll(
+      lastPosition == null ? new StreamMessageId(0, 0) : parse(lastPosition),
+      consumer
+    );
+  }
+
+  @Override
+  public int compare(String position, String otherPosition) {
+    return ORDER.compare(parse(position), parse(otherPosition));
+  }
+
+  @Override
+  public void destroy() {
+    closed = true;
+  }
+
+  /**
+   * Read the events after the position, blocking until there are any, and poll again
+   * after the last of them
+   */
+  private void poll(StreamMessageId after, Consumer<EntityEvent<T>> consumer) {
+    if (closed) {
+      return;
+    }
+    stream
+      .readAsync(
+        StreamReadArgs.greaterThan(after).count(LISTEN_BATCH_SIZE).timeout(LISTEN_TIMEOUT)
+      )
+      .whenComplete((entries, error) -> {
+        if (error != null) {
+          logger.warn("Unable to read entity event stream {}", stream.getName(), error);
+          CompletableFuture
+            .delayedExecutor(1, TimeUnit.SECONDS)
+            .execute(() -> poll(after, consumer));
+          return;
+        }
+
+        StreamMessageId last = after;
+        for (EntityEvent<T> event : toEvents(entries)) {
+          try {
+            consumer.accept(event);
+          } catch (RuntimeException e) {
+            logger.warn("Unable to handle entity event {}", event.getId(), e);
+          }
+          last = parse(event.getPosition());
+        }
+        poll(last, consumer);
+      });
+  }
+
+  private List<EntityEvent<T>> toEvents(
+    Map<StreamMessageId, Map<String, EntityEvent<T>>> entries
+  ) {
+    if (entries == null || entries.isEmpty()) {
+      return List.of();
+    }
+    List<EntityEvent<T>> events = new ArrayList<>(entries.size());
+    entries
+      .entrySet()
+      .stream()
+      .sorted(Map.Entry.comparingByKey(ORDER))
+      .forEach(entry -> {
+        EntityEvent<T> event = entry.getValue().get(EVENT_FIELD);
+        if (event != null) {
+          events.add(event.withPosition(entry.getKey().toString()));
+        }
+      });
+    return events;
+  }
+
+  private static String first(Map<StreamMessageId, ?> entries) {
+    if (entries == null || entries.isEmpty()) {
+      return null;
+    }
+    return entries.keySet().iterator().next().toString();
+  }
+
+  private static StreamMessageId parse(String position) {
+    int separator = position.indexOf('-');
+    if (separator < 0) {
+      throw new IllegalArgumentException("Invalid stream position " + position);
+    }
+    return new StreamMessageId(
+      Long.parseLong(position.substring(0, separator)),
+      Long.parseLong(position.substring(separator + 1))
+    );
+  }
+}
@@ -0,0 +1,48 @@
+package org.entur.lamassu.cache.impl;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.entur.lamassu.cache.FeedFreshness;
+import org.entur.lamassu.cache.FeedFreshnessCache;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RedissonClient;
+
+/**
+ * Redis-backed implementation of FeedFreshnessCache, with one hash per system, whose
+ * entries expire individually like the cached feeds.
+ */
+public class RedisFeedFreshnessCache implements FeedFreshnessCache {
+
+  private final RedissonClient redissonClient;
+  private final String keyPrefix;
+
+  public RedisFeedFreshnessCache(RedissonClient redissonClient, String keyPrefix) {
+    this.redissonClient = redissonClient;
+    this.keyPrefix = keyPrefix;
+  }
+
+  @Override
+  public Map<String, FeedFreshness> findAll(String systemId) {
+    return getCache(systemId).readAllMap();
+  }
+
+  @Override
+  public FeedFreshness find(String systemId, String feedName) {
+    return getCache(systemId).get(feedName);
+  }
+
+  @Override
+  public void update(
+    String systemId,
+    String feedName,
+    FeedFreshness freshness,
+    int ttl,
+    TimeUnit timeUnit
+  ) {
+    getCache(systemId).fastPut(feedName, freshness, ttl, timeUnit);
+  }
+
+  private RMapCache<String, FeedFreshness> getCache(String systemId) {
+    return redissonClient.getMapCache(keyPrefix + "_" + systemId);
+  }
+}
@@ -0,0 +1,84 @@
+package org.entur.lamassu.cache.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.entur.lamassu.cache.SpatialIndexDictionary;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RMap;
+
+/**
+ * Redis-backed implementation of SpatialIndexDictionary using Redisson. Codes are
+ * assigned from a shared sequence, and cached locally since they never change.
+ */
+public class RedisSpatialIndexDictionary implements SpatialIndexDictionary {
+
+  private final RMap<String, Integer> codes;
+  private final RAtomicLong sequence;
+
+  private final Map<String, Integer> localCodes = new ConcurrentHashMap<>();
+  private final Map<Integer, String> localValues = new ConcurrentHashMap<>();
+
+  public RedisSpatialIndexDictionary(RMap<String, Integer> codes, RAtomicLong sequence) {
+    this.codes = codes;
+    this.sequence = sequence;
+  }
+
+  @Override
+  public int code(String value) {
+    if (value == null) {
+      return NULL_CODE;
+    }
+
+    Integer code = localCodes.get(value);
+    if (code != null) {
+      return code;
+    }
+
+    code = codes.get(value);
+    if (code == null) {
+      int candidate = (int) sequence.incrementAndGet();
+      Integer existing = codes.putIfAbsent(value, candidate);
+      code = existing != null ? existing : candidate;
+    }
+
+    remember(value, code);
+    return code;
+  }
+
+  @Override
+  public int findCode(String value) {
+    if (value == null) {
+      return NULL_CODE;
+    }
+
+    Integer code = localCodes.get(value);
+    if (code == null) {
+      code = codes.get(value);
+      if (code == null) {
+        return -1;
+      }
+      remember(value, code);
+    }
+    return code;
+  }
+
+  @Override
+  public String value(int code) {
+    if (code == NULL_CODE) {
+      return null;
+    }
+
+    String value = localValues.get(code);
+    if (value == null) {
+      // Codes are assigned rarely, so reload them all on a miss
+      codes.readAllMap().forEach(this::remember);
+      value = localValues.get(code);
+    }
+    return value;
+  }
+
+  private void remember(String value, Integer code) {
+    localCodes.put(value, code);
+    localValues.put(code, value);
+  }
+}
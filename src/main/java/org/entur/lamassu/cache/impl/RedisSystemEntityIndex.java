@@ -0,0 +1,127 @@
+package org.entur.lamassu.cache.impl;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.entur.lamassu.model.entities.SystemEntity;
+import org.redisson.api.RBatch;
+import org.redisson.api.RMap;
+import org.redisson.api.RSetMultimap;
+
+/**
+ * Secondary index from system id to the ids of the entities belonging to the system,
+ * so that a system's entities can be found without reading every entity. The system
+ * of each entity is kept as well, to find the system set to remove an id from.
+ */
+public class RedisSystemEntityIndex {
+
+  private final RSetMultimap<String, String> entityIdsBySystem;
+  private final RMap<String, String> systemIdsByEntity;
+
+  public RedisSystemEntityIndex(
+    RSetMultimap<String, String> entityIdsBySystem,
+    RMap<String, String> systemIdsByEntity
+  ) {
+    this.entityIdsBySystem = entityIdsBySystem;
+    this.systemIdsByEntity = systemIdsByEntity;
+  }
+
+  /**
+   * Get the ids of all entities of the given system
+   */
+  public Set<String> getEntityIds(String systemId) {
+    return entityIdsBySystem.getAll(systemId);
+  }
+
+  /**
+   * Count the entities of the given system
+   */
+  public int count(String systemId) {
+    return entityIdsBySystem.get(systemId).size();
+  }
+
+  void addAll(Map<String, ? extends SystemEntity> entities) {
+    groupBySystem(entities).forEach(entityIdsBySystem::putAll);
+    systemIdsByEntity.putAll(systemIds(entities));
+  }
+
+  void addAll(RBatch batch, Map<String, ? extends SystemEntity> entities) {
+    var batchEntityIdsBySystem = batch.<String, String>getSetMultimap(
+      entityIdsBySystem.getName(),
+      entityIdsBySystem.getCodec()
+    );
+    groupBySystem(entities).forEach(batchEntityIdsBySystem::putAllAsync);
+    batch
+      .<String, String>getMap(systemIdsByEntity.getName(), systemIdsByEntity.getCodec())
+      .putAllAsync(systemIds(entities));
+  }
+
+  /**
+   * Remove the given ids, with one removal from the set of each of their systems
+   */
+  void removeAll(Set<String> entityIds) {
+    Map<String, Set<String>> removedIdsBySystem = new HashMap<>();
+    systemIdsByEntity
+      .getAll(entityIds)
+      .forEach((entityId, systemId) ->
+        removedIdsBySystem
+          .computeIfAbsent(systemId, key -> new HashSet<>())
+          .add(entityId)
+      );
+    var removals = removedIdsBySystem
+      .entrySet()
+      .stream()
+      .map(entry ->
+        entityIdsBySystem.get(entry.getKey()).removeAllAsync(entry.getValue())
+      )
+      .toList();
+    systemIdsByEntity.fastRemove(entityIds.toArray(String[]::new));
+    removals.forEach(removal -> removal.toCompletableFuture().join());
+  }
+
+  /**
+   * Queue removal of the given ids in the batch. The systems of the ids are read
+   * right away, as the batch can not use results of its own commands.
+   */
+  void removeAll(RBatch batch, Set<String> entityIds) {
+    var batchEntityIdsBySystem = batch.<String, String>getSetMultimap(
+      entityIdsBySystem.getName(),
+      entityIdsBySystem.getCodec()
+    );
+    systemIdsByEntity
+      .getAll(entityIds)
+      .forEach((entityId, systemId) ->
+        batchEntityIdsBySystem.removeAsync(systemId, entityId)
+      );
+    batch
+      .<String, String>getMap(systemIdsByEntity.getName(), systemIdsByEntity.getCodec())
+      .fastRemoveAsync(entityIds.toArray(String[]::new));
+  }
+
+  private static Map<String, Set<String>> groupBySystem(
+    Map<String, ? extends SystemEntity> entities
+  ) {
+    Map<String, Set<String>> entityIdsBySystem = new HashMap<>();
+    entities.forEach((entityId, entity) -> {
+      if (entity.getSystemId() != null) {
+        entityIdsBySystem
+          .computeIfAbsent(entity.getSystemId(), systemId -> new HashSet<>())
+          .add(entityId);
+      }
+    });
+    return entityIdsBySystem;
+  }
+
+  private static Map<String, String> systemIds(
+    Map<String, ? extends SystemEntity> entities
+  ) {
+    Map<String, String> systemIds = new HashMap<>();
+    entities.forEach((entityId, entity) -> {
+      if (entity.getSystemId() != null) {
+        systemIds.put(entityId, entity.getSystemId());
+      }
+    });
+    return systemIds;
+  }
+}
@@ -24,42 +24,52 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.entur.lamassu.cache.SpatialIndex;
 import org.entur.lamassu.cache.SpatialIndexId;
+import org.entur.lamassu.cache.SpatialIndexIdCodec;
+import org.entur.lamassu.cache.SpatialIndexIdMatcher;
+import org.entur.lamassu.cache.SpatialIndexSearchResult;
 import org.entur.lamassu.model.entities.LocationEntity;
+import org.entur.lamassu.util.GeoUtils;
+import org.redisson.api.RBatch;
 import org.redisson.api.RGeo;
+import org.redisson.api.RGeoAsync;
 import org.redisson.api.geo.GeoEntry;
 import org.redisson.api.geo.GeoOrder;
+import org.redisson.api.geo.GeoPosition;
 import org.redisson.api.geo.GeoSearchArgs;
 import org.redisson.api.geo.GeoUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Spatial index backed by a Redis geo set. Members are stored in their packed form, see
+ * {@link org.entur.lamassu.cache.PackedSpatialIndexId}.
+ */
 public abstract class SpatialIndexImpl<S extends SpatialIndexId, T extends LocationEntity>
   implements SpatialIndex<S, T> {
 
-  private final RGeo<S> spatialIndex;
+  // Covers the precision of the 52 bit geohash scores, and Redis using a slightly
+  // larger earth radius than GeoUtils
+  private static final double BOX_MARGIN_METERS = 1.0;
+  private static final double BOX_SCALE = 1.001;
+
+  private final RGeo<String> spatialIndex;
+  private final SpatialIndexIdCodec<S> codec;
 
   private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
-  protected SpatialIndexImpl(RGeo<S> spatialIndex) {
+  protected SpatialIndexImpl(RGeo<String> spatialIndex, SpatialIndexIdCodec<S> codec) {
     this.spatialIndex = spatialIndex;
+    this.codec = codec;
   }
 
   @Override
   public void addAll(Map<S, T> spatialIndexUpdateMap) {
     try {
-      Long added = spatialIndex
-        .addAsync(
-          spatialIndexUpdateMap
-            .entrySet()
-            .stream()
-            .filter(e -> e.getValue() != null)
-            .filter(e -> e.getValue().getLat() != null && e.getValue().getLon() != null)
-            .map(this::map)
-            .toArray(GeoEntry[]::new)
-        )
-        .get();
+      Long added = spatialIndex.addAsync(entries(spatialIndexUpdateMap)).get();
       logger.debug("Added {} stations", added);
     } catch (RedisException | ExecutionException e) {
       logger.warn("Caught exception while adding entries to spatialIndex", e);
@@ -69,15 +79,37 @@ public abstract class SpatialIndexImpl<S extends SpatialIndexId, T extends Locat
     }
   }
 
+  void addAll(RBatch batch, Map<S, T> spatialIndexUpdateMap) {
+    getBatchIndex(batch).addAsync(entries(spatialIndexUpdateMap));
+  }
+
+  private GeoEntry[] entries(Map<S, T> spatialIndexUpdateMap) {
+    return spatialIndexUpdateMap
+      .entrySet()
+      .stream()
+      .filter(e -> e.getValue() != null)
+      .filter(e -> e.getValue().getLat() != null && e.getValue().getLon() != null)
+      .map(this::map)
+      .toArray(GeoEntry[]::new);
+  }
+
   private GeoEntry map(Map.Entry<S, T> entry) {
     var key = entry.getKey();
     var entity = entry.getValue();
-    return new GeoEntry(entity.getLon(), entity.getLat(), key);
+    return new GeoEntry(entity.getLon(), entity.getLat(), codec.encode(key));
   }
 
   @Override
   public void removeAll(Set<S> ids) {
-    spatialIndex.removeAllAsync(ids);
+    spatialIndex.removeAllAsync(ids.stream().map(codec::encode).toList());
+  }
+
+  void removeAll(RBatch batch, Set<S> ids) {
+    getBatchIndex(batch).removeAllAsync(ids.stream().map(codec::encode).toList());
+  }
+
+  private RGeoAsync<String> getBatchIndex(RBatch batch) {
+    return batch.getGeo(spatialIndex.getName(), spatialIndex.getCodec());
   }
 
   @Override
@@ -88,17 +120,218 @@ public abstract class SpatialIndexImpl<S extends SpatialIndexId, T extends Locat
     GeoUnit geoUnit,
     GeoOrder geoOrder
   ) {
-    return spatialIndex.search(
-      GeoSearchArgs.from(longitude, latitude).radius(radius, geoUnit).order(geoOrder)
+    return decode(
+      spatialIndex.search(
+        GeoSearchArgs.from(longitude, latitude).radius(radius, geoUnit).order(geoOrder)
+      )
+    );
+  }
+
+  @Override
+  public SpatialIndexSearchResult<S> radius(
+    Double longitude,
+    Double latitude,
+    Double radius,
+    GeoUnit geoUnit,
+    GeoOrder geoOrder,
+    int limit,
+    SpatialIndexIdMatcher matcher
+  ) {
+    List<String> members = spatialIndex.search(
+      GeoSearchArgs
+        .from(longitude, latitude)
+        .radius(radius, geoUnit)
+        .order(geoOrder)
+        .count(limit)
+    );
+    return new SpatialIndexSearchResult<>(
+      decodeMatching(members, matcher),
+      members.size() < limit
+    );
+  }
+
+  @Override
+  public List<S> boundingBox(
+    Double minimumLongitude,
+    Double minimumLatitude,
+    Double maximumLongitude,
+    Double maximumLatitude,
+    GeoOrder geoOrder
+  ) {
+    var members = searchBoundingBox(
+      minimumLongitude,
+      minimumLatitude,
+      maximumLongitude,
+      maximumLatitude,
+      geoOrder,
+      null
+    );
+    return decode(
+      withinEnvelope(
+        members,
+        minimumLongitude,
+        minimumLatitude,
+        maximumLongitude,
+        maximumLatitude
+      )
     );
   }
 
+  @Override
+  public SpatialIndexSearchResult<S> boundingBox(
+    Double minimumLongitude,
+    Double minimumLatitude,
+    Double maximumLongitude,
+    Double maximumLatitude,
+    GeoOrder geoOrder,
+    int limit,
+    SpatialIndexIdMatcher matcher
+  ) {
+    // The count is applied by Redis before members outside the envelope are removed,
+    // so keep asking for more until the limit is reached or the box is exhausted
+    int requested = limit;
+    while (true) {
+      var members = searchBoundingBox(
+        minimumLongitude,
+        minimumLatitude,
+        maximumLongitude,
+        maximumLatitude,
+        geoOrder,
+        requested
+      );
+      var inside = withinEnvelope(
+        members,
+        minimumLongitude,
+        minimumLatitude,
+        maximumLongitude,
+        maximumLatitude
+      );
+      if (inside.size() >= limit) {
+        return new SpatialIndexSearchResult<>(
+          decodeMatching(inside.subList(0, limit), matcher),
+          false
+        );
+      }
+      if (members.size() < requested || requested > Integer.MAX_VALUE / 2) {
+        return new SpatialIndexSearchResult<>(decodeMatching(inside, matcher), true);
+      }
+      requested *= 2;
+    }
+  }
+
+  private Map<String, GeoPosition> searchBoundingBox(
+    Double minimumLongitude,
+    Double minimumLatitude,
+    Double maximumLongitude,
+    Double maximumLatitude,
+    GeoOrder geoOrder,
+    Integer limit
+  ) {
+    double centerLongitude = (minimumLongitude + maximumLongitude) / 2.0;
+    double centerLatitude = (minimumLatitude + maximumLatitude) / 2.0;
+
+    // Redis measures the box width along each member's own parallel, so the width is
+    // taken where the box is widest (closest to the equator) to never miss a member.
+    // Members outside the actual envelope are removed using their returned positions.
+    double widestLatitude = minimumLatitude <= 0 && maximumLatitude >= 0
+      ? 0
+      : Math.min(Math.abs(minimumLatitude), Math.abs(maximumLatitude));
+    double width = GeoUtils.calculateDistance(
+      widestLatitude,
+      minimumLongitude,
+      widestLatitude,
+      maximumLongitude
+    );
+    double height = GeoUtils.calculateDistance(
+      minimumLatitude,
+      centerLongitude,
+      maximumLatitude,
+      centerLongitude
+    );
+
+    var searchArgs = GeoSearchArgs
+      .from(centerLongitude, centerLatitude)
+      .box(
+        width * BOX_SCALE + BOX_MARGIN_METERS,
+        height * BOX_SCALE + BOX_MARGIN_METERS,
+        GeoUnit.METERS
+      )
+      .order(geoOrder);
+
+    return spatialIndex.searchWithPosition(
+      limit != null ? searchArgs.count(limit) : searchArgs
+    );
+  }
+
+  private List<String> withinEnvelope(
+    Map<String, GeoPosition> members,
+    Double minimumLongitude,
+    Double minimumLatitude,
+    Double maximumLongitude,
+    Double maximumLatitude
+  ) {
+    return members
+      .entrySet()
+      .stream()
+      .filter(entry -> {
+        var position = entry.getValue();
+        return (
+          position.getLatitude() >= minimumLatitude &&
+          position.getLatitude() <= maximumLatitude &&
+          position.getLongitude() >= minimumLongitude &&
+          position.getLongitude() <= maximumLongitude
+        );
+      })
+      .map(Map.Entry::getKey)
+      .toList();
+  }
+
   @Override
   public Collection<S> getAll() {
+    return decode(spatialIndex.readAll());
+  }
+
+  /**
+   * Get all members in their packed form.
+   */
+  public Collection<String> getAllPacked() {
     return spatialIndex.readAll();
   }
 
+  /**
+   * Look up the stored positions of the given packed members. Members not present in
+   * the index are left out of the result.
+   */
+  public Map<String, GeoPosition> positions(Collection<String> packedMembers) {
+    if (packedMembers.isEmpty()) {
+      return Map.of();
+    }
+    try {
+      return spatialIndex
+        .posAsync(packedMembers.toArray(String[]::new))
+        .get(5, TimeUnit.SECONDS);
+    } catch (ExecutionException | TimeoutException e) {
+      logger.warn("Unable to fetch positions from spatialIndex within 5 seconds", e);
+    } catch (InterruptedException e) {
+      logger.warn("Interrupted while fetching positions from spatialIndex", e);
+      Thread.currentThread().interrupt();
+    }
+    return Map.of();
+  }
+
+  public SpatialIndexIdCodec<S> getCodec() {
+    return codec;
+  }
+
   public int count() {
     return spatialIndex.size();
   }
+
+  private List<S> decode(Collection<String> members) {
+    return members.stream().map(codec::decode).toList();
+  }
+
+  private List<S> decodeMatching(List<String> members, SpatialIndexIdMatcher matcher) {
+    return members.stream().filter(matcher::matches).map(codec::decode).toList();
+  }
 }
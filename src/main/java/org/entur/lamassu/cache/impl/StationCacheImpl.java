@@ -18,14 +18,240 @@
 
 package org.entur.lamassu.cache.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import org.entur.lamassu.cache.EntityListener;
 import org.entur.lamassu.model.entities.Station;
+import org.entur.lamassu.model.entities.StationStatus;
+import org.redisson.api.RBatch;
+import org.redisson.api.RFuture;
 import org.redisson.api.RMapCache;
+import org.redisson.api.RMapCacheAsync;
+import org.redisson.api.map.event.EntryCreatedListener;
+import org.redisson.api.map.event.EntryRemovedListener;
+import org.redisson.api.map.event.EntryUpdatedListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
+/**
+ * Station cache storing the status part of each station apart from the rest of it, so
+ * that status updates only write the status, and the rest of each station is stored
+ * without its status. Stations are merged with their status when read.
+ */
 @Component
-public class StationCacheImpl extends EntityCacheImpl<Station> {
+public class StationCacheImpl extends SystemEntityCacheImpl<Station> {
+
+  private final RMapCache<String, StationStatus> statusCache;
+
+  private final Logger logger = LoggerFactory.getLogger(this.getClass());
+  private final List<Integer> statusListenerIds = new ArrayList<>();
+
+  protected StationCacheImpl(
+    RMapCache<String, Station> cache,
+    RMapCache<String, StationStatus> statusCache,
+    @Qualifier("stationSystemIndex") RedisSystemEntityIndex systemIndex
+  ) {
+    super(cache, systemIndex);
+    this.statusCache = statusCache;
+  }
+
+  @Override
+  public List<Station> getAll() {
+    var statuses = statusCache.readAllMapAsync();
+    var stations = super.getAll();
+    merge(stations, await(statuses, Map.of()));
+    return stations;
+  }
+
+  @Override
+  public Map<String, Station> getAllAsMap(Set<String> keys) {
+    var statuses = statusCache.getAllAsync(keys);
+    var stations = super.getAllAsMap(keys);
+    merge(stations.values(), await(statuses, Map.of()));
+    return stations;
+  }
+
+  @Override
+  public Station get(String key) {
+    var status = statusCache.getAsync(key);
+    var station = super.get(key);
+    if (station != null) {
+      merge(station, await(status, null));
+    }
+    return station;
+  }
+
+  @Override
+  public void updateAll(Map<String, Station> entities) {
+    super.updateAll(withoutStatus(entities));
+    statusCache.putAll(statuses(entities));
+  }
+
+  @Override
+  public void updateAll(Map<String, Station> entities, int ttl, TimeUnit timeUnit) {
+    super.updateAll(withoutStatus(entities), ttl, timeUnit);
+    statusCache.putAll(statuses(entities), ttl, timeUnit);
+  }
+
+  @Override
+  public void updateAllStatus(Map<String, Station> entities) {
+    statusCache.putAll(statuses(entities));
+  }
+
+  @Override
+  public void removeAll(Set<String> keys) {
+    super.removeAll(keys);
+    statusCache.fastRemoveAsync(keys.toArray(String[]::new));
+  }
+
+  @Override
+  void updateAll(RBatch batch, Map<String, Station> entities) {
+    super.updateAll(batch, withoutStatus(entities));
+    getBatchStatusCache(batch).putAllAsync(statuses(entities));
+  }
+
+  @Override
+  void updateAllStatus(RBatch batch, Map<String, Station> entities) {
+    getBatchStatusCache(batch).putAllAsync(statuses(entities));
+  }
+
+  @Override
+  void removeAll(RBatch batch, Set<String> keys) {
+    super.removeAll(batch, keys);
+    getBatchStatusCache(batch).fastRemoveAsync(keys.toArray(String[]::new));
+  }
+
+  private RMapCacheAsync<String, StationStatus> getBatchStatusCache(RBatch batch) {
+    return batch.getMapCache(statusCache.getName(), statusCache.getCodec());
+  }
+
+  /**
+   * Every write of a station writes its status, so creations and updates are taken
+   * from the status events, merged with the rest of the station. Removals are taken
+   * from the station events.
+   */
+  @Override
+  public void addListener(EntityListener<Station> listener) {
+    synchronized (statusListenerIds) {
+      statusListenerIds.add(
+        statusCache.addListener(
+          (EntryCreatedListener<String, StationStatus>) event ->
+            withStation(
+              event.getKey(),
+              event.getValue(),
+              station -> listener.onEntityCreated(event.getKey(), station)
+            )
+        )
+      );
+
+      statusListenerIds.add(
+        statusCache.addListener(
+          (EntryUpdatedListener<String, StationStatus>) event ->
+            withStation(
+              event.getKey(),
+              event.getValue(),
+              station -> listener.onEntityUpdated(event.getKey(), station)
+            )
+        )
+      );
+    }
+
+    addCacheListener(
+      (EntryRemovedListener<String, Station>) event ->
+        listener.onEntityDeleted(event.getKey(), event.getValue())
+    );
+  }
+
+  /**
+   * Merge the status of an event with the rest of the station, which is read when the
+   * event is received so it is never older than the status
+   */
+  private void withStation(String key, StationStatus status, Consumer<Station> action) {
+    cache
+      .getAsync(key)
+      .thenAccept(station -> {
+        if (station != null) {
+          status.applyTo(station);
+          action.accept(station);
+        }
+      });
+  }
+
+  @Override
+  public void destroy() {
+    synchronized (statusListenerIds) {
+      for (Integer redissonId : statusListenerIds) {
+        try {
+          statusCache.removeListener(redissonId);
+        } catch (Exception e) {
+          logger.warn(
+            "Error removing Redisson listener {}: {}",
+            redissonId,
+            e.getMessage()
+          );
+        }
+      }
+      statusListenerIds.clear();
+    }
+
+    super.destroy();
+  }
+
+  private static Map<String, StationStatus> statuses(Map<String, Station> entities) {
+    Map<String, StationStatus> statuses = HashMap.newHashMap(entities.size());
+    entities.forEach((key, station) -> statuses.put(key, StationStatus.of(station)));
+    return statuses;
+  }
+
+  /**
+   * The stations without their status, which is only stored in the status cache
+   */
+  private static Map<String, Station> withoutStatus(Map<String, Station> entities) {
+    Map<String, Station> stations = HashMap.newHashMap(entities.size());
+    var noStatus = new StationStatus();
+    entities.forEach((key, station) -> {
+      var information = station.copy();
+      noStatus.applyTo(information);
+      stations.put(key, information);
+    });
+    return stations;
+  }
+
+  private static void merge(
+    Collection<Station> stations,
+    Map<String, StationStatus> statuses
+  ) {
+    for (Station station : stations) {
+      merge(station, statuses.get(station.getId()));
+    }
+  }
+
+  // Stations written before their status was stored apart still hold their status
+  private static void merge(Station station, StationStatus status) {
+    if (status != null) {
+      status.applyTo(station);
+    }
+  }
 
-  protected StationCacheImpl(RMapCache<String, Station> cache) {
-    super(cache);
+  private <V> V await(RFuture<V> future, V defaultValue) {
+    try {
+      return future.get(5, TimeUnit.SECONDS);
+    } catch (ExecutionException | TimeoutException e) {
+      logger.warn("Unable to fetch station status from cache within 5 seconds", e);
+    } catch (InterruptedException e) {
+      logger.warn("Interrupted while fetching station status from cache", e);
+      Thread.currentThread().interrupt();
+    }
+    return defaultValue;
   }
 }
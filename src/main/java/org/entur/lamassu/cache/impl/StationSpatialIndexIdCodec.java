@@ -0,0 +1,49 @@
+package org.entur.lamassu.cache.impl;
+
+import org.entur.lamassu.cache.PackedSpatialIndexId;
+import org.entur.lamassu.cache.SpatialIndexDictionary;
+import org.entur.lamassu.cache.SpatialIndexIdCodec;
+import org.entur.lamassu.cache.StationSpatialIndexId;
+import org.springframework.stereotype.Component;
+
+@Component
+public class StationSpatialIndexIdCodec
+  implements SpatialIndexIdCodec<StationSpatialIndexId> {
+
+  private final SpatialIndexDictionary dictionary;
+
+  public StationSpatialIndexIdCodec(SpatialIndexDictionary dictionary) {
+    this.dictionary = dictionary;
+  }
+
+  @Override
+  public String encode(StationSpatialIndexId id) {
+    long attributes =
+      PackedSpatialIndexId.formFactors(id.getAvailableFormFactors()) |
+      PackedSpatialIndexId.propulsionTypes(id.getAvailablePropulsionTypes());
+
+    return PackedSpatialIndexId.pack(
+      attributes,
+      dictionary.code(id.getCodespace()),
+      dictionary.code(id.getSystemId()),
+      dictionary.code(id.getOperatorId()),
+      id.getId()
+    );
+  }
+
+  @Override
+  public StationSpatialIndexId decode(String packedMember) {
+    long attributes = PackedSpatialIndexId.attributes(packedMember);
+
+    var id = new StationSpatialIndexId();
+    id.setId(PackedSpatialIndexId.id(packedMember));
+    id.setCodespace(dictionary.value(PackedSpatialIndexId.codespace(packedMember)));
+    id.setSystemId(dictionary.value(PackedSpatialIndexId.system(packedMember)));
+    id.setOperatorId(dictionary.value(PackedSpatialIndexId.operator(packedMember)));
+    id.setAvailableFormFactors(PackedSpatialIndexId.decodeFormFactors(attributes));
+    id.setAvailablePropulsionTypes(
+      PackedSpatialIndexId.decodePropulsionTypes(attributes)
+    );
+    return id;
+  }
+}
@@ -23,6 +23,7 @@ import org.entur.lamassu.cache.StationSpatialIndexId;
 import org.entur.lamassu.model.entities.Station;
 import org.redisson.api.RGeo;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -31,7 +32,10 @@ public class StationSpatialIndexImpl
   implements StationSpatialIndex {
 
   @Autowired
-  public StationSpatialIndexImpl(RGeo<StationSpatialIndexId> stationSpatialIndex) {
-    super(stationSpatialIndex);
+  public StationSpatialIndexImpl(
+    @Qualifier("stationSpatialIndex") RGeo<String> stationSpatialIndex,
+    StationSpatialIndexIdCodec codec
+  ) {
+    super(stationSpatialIndex, codec);
   }
 }
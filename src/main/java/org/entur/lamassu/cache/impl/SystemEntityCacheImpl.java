@@ -0,0 +1,67 @@
+package org.entur.lamassu.cache.impl;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.entur.lamassu.model.entities.Entity;
+import org.entur.lamassu.model.entities.SystemEntity;
+import org.redisson.api.RBatch;
+import org.redisson.api.RMapCache;
+
+/**
+ * Entity cache keeping a secondary index of the entities of each system, updated
+ * along with the cache.
+ */
+abstract class SystemEntityCacheImpl<T extends Entity & SystemEntity>
+  extends EntityCacheImpl<T> {
+
+  private final RedisSystemEntityIndex systemIndex;
+
+  protected SystemEntityCacheImpl(
+    RMapCache<String, T> cache,
+    RedisSystemEntityIndex systemIndex
+  ) {
+    super(cache);
+    this.systemIndex = systemIndex;
+  }
+
+  @Override
+  public Set<String> getKeysBySystem(String systemId) {
+    return systemIndex.getEntityIds(systemId);
+  }
+
+  @Override
+  public int countBySystem(String systemId) {
+    return systemIndex.count(systemId);
+  }
+
+  @Override
+  public void updateAll(Map<String, T> entities) {
+    super.updateAll(entities);
+    systemIndex.addAll(entities);
+  }
+
+  @Override
+  public void updateAll(Map<String, T> entities, int ttl, TimeUnit timeUnit) {
+    super.updateAll(entities, ttl, timeUnit);
+    systemIndex.addAll(entities);
+  }
+
+  @Override
+  public void removeAll(Set<String> keys) {
+    super.removeAll(keys);
+    systemIndex.removeAll(keys);
+  }
+
+  @Override
+  void updateAll(RBatch batch, Map<String, T> entities) {
+    super.updateAll(batch, entities);
+    systemIndex.addAll(batch, entities);
+  }
+
+  @Override
+  void removeAll(RBatch batch, Set<String> keys) {
+    super.removeAll(batch, keys);
+    systemIndex.removeAll(batch, keys);
+  }
+}
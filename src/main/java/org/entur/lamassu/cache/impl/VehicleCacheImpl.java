@@ -3,12 +3,16 @@ package org.entur.lamassu.cache.impl;
 import org.entur.lamassu.model.entities.Vehicle;
 import org.redisson.api.RMapCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 @Component
-public class VehicleCacheImpl extends EntityCacheImpl<Vehicle> {
+public class VehicleCacheImpl extends SystemEntityCacheImpl<Vehicle> {
 
-  protected VehicleCacheImpl(@Autowired RMapCache<String, Vehicle> cache) {
-    super(cache);
+  protected VehicleCacheImpl(
+    @Autowired RMapCache<String, Vehicle> cache,
+    @Qualifier("vehicleSystemIndex") RedisSystemEntityIndex systemIndex
+  ) {
+    super(cache, systemIndex);
   }
 }
@@ -0,0 +1,62 @@
+package org.entur.lamassu.cache.impl;
+
+import static org.entur.lamassu.cache.PackedSpatialIndexId.DISABLED;
+import static org.entur.lamassu.cache.PackedSpatialIndexId.RESERVED;
+
+import org.entur.lamassu.cache.PackedSpatialIndexId;
+import org.entur.lamassu.cache.SpatialIndexDictionary;
+import org.entur.lamassu.cache.SpatialIndexIdCodec;
+import org.entur.lamassu.cache.VehicleSpatialIndexId;
+import org.springframework.stereotype.Component;
+
+@Component
+public class VehicleSpatialIndexIdCodec
+  implements SpatialIndexIdCodec<VehicleSpatialIndexId> {
+
+  private final SpatialIndexDictionary dictionary;
+
+  public VehicleSpatialIndexIdCodec(SpatialIndexDictionary dictionary) {
+    this.dictionary = dictionary;
+  }
+
+  @Override
+  public String encode(VehicleSpatialIndexId id) {
+    long attributes =
+      PackedSpatialIndexId.formFactor(id.getFormFactor()) |
+      PackedSpatialIndexId.propulsionType(id.getPropulsionType()) |
+      (id.getReserved() ? RESERVED : 0) |
+      (id.getDisabled() ? DISABLED : 0);
+
+    return PackedSpatialIndexId.pack(
+      attributes,
+      dictionary.code(id.getCodespace()),
+      dictionary.code(id.getSystemId()),
+      dictionary.code(id.getOperatorId()),
+      id.getId()
+    );
+  }
+
+  @Override
+  public VehicleSpatialIndexId decode(String packedMember) {
+    long attributes = PackedSpatialIndexId.attributes(packedMember);
+
+    var id = new VehicleSpatialIndexId();
+    id.setId(PackedSpatialIndexId.id(packedMember));
+    id.setCodespace(dictionary.value(PackedSpatialIndexId.codespace(packedMember)));
+    id.setSystemId(dictionary.value(PackedSpatialIndexId.system(packedMember)));
+    id.setOperatorId(dictionary.value(PackedSpatialIndexId.operator(packedMember)));
+    id.setFormFactor(
+      PackedSpatialIndexId.decodeFormFactors(attributes).stream().findFirst().orElse(null)
+    );
+    id.setPropulsionType(
+      PackedSpatialIndexId
+        .decodePropulsionTypes(attributes)
+        .stream()
+        .findFirst()
+        .orElse(null)
+    );
+    id.setReserved((attributes & RESERVED) != 0);
+    id.setDisabled((attributes & DISABLED) != 0);
+    return id;
+  }
+}
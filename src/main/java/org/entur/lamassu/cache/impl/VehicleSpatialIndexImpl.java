@@ -5,6 +5,7 @@ import org.entur.lamassu.cache.VehicleSpatialIndexId;
 import org.entur.lamassu.model.entities.Vehicle;
 import org.redisson.api.RGeo;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -13,7 +14,10 @@ public class VehicleSpatialIndexImpl
   implements VehicleSpatialIndex {
 
   @Autowired
-  public VehicleSpatialIndexImpl(RGeo<VehicleSpatialIndexId> vehicleSpatialIndex) {
-    super(vehicleSpatialIndex);
+  public VehicleSpatialIndexImpl(
+    @Qualifier("vehicleSpatialIndex") RGeo<String> vehicleSpatialIndex,
+    VehicleSpatialIndexIdCodec codec
+  ) {
+    super(vehicleSpatialIndex, codec);
   }
 }
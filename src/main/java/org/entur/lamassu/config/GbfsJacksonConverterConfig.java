@@ -73,8 +73,11 @@ public class GbfsJacksonConverterConfig implements WebMvcConfigurer {
    * {@link JacksonConfig} which applies the equivalent setting to the Jackson 3 mapper used by the
    * rest of the application. GBFS v2 timestamps are plain integer epoch-second fields and are
    * unaffected by these settings.
+   *
+   * <p>Also used to pre-serialize the stored GBFS feed bodies, which must match the
+   * responses rendered by the converter.
    */
-  private static ObjectMapper gbfsObjectMapper() {
+  public static ObjectMapper gbfsObjectMapper() {
     return Jackson2ObjectMapperBuilder
       .json()
       .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
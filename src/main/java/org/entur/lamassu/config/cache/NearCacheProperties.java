@@ -0,0 +1,98 @@
+package org.entur.lamassu.config.cache;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration of the process-wide near caches for reference data entities. Size and
+ * time to live can be set for each entity type, keyed by the name of the reader, e.g.
+ * {@code org.entur.lamassu.near-cache.entities.vehicleType.maximum-size=5000}.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "org.entur.lamassu.near-cache")
+public class NearCacheProperties {
+
+  private boolean enabled = true;
+  private int maximumSize = 10_000;
+  private Duration ttl = Duration.ofMinutes(5);
+  private Map<String, EntityNearCache> entities = new HashMap<>();
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public int getMaximumSize() {
+    return maximumSize;
+  }
+
+  public void setMaximumSize(int maximumSize) {
+    this.maximumSize = maximumSize;
+  }
+
+  public Duration getTtl() {
+    return ttl;
+  }
+
+  public void setTtl(Duration ttl) {
+    this.ttl = ttl;
+  }
+
+  public Map<String, EntityNearCache> getEntities() {
+    return entities;
+  }
+
+  public void setEntities(Map<String, EntityNearCache> entities) {
+    this.entities = entities;
+  }
+
+  /**
+   * Get the maximum size for the given entity type, falling back to the default.
+   */
+  public int getMaximumSize(String entity) {
+    var entityNearCache = entities.get(entity);
+    if (entityNearCache == null || entityNearCache.getMaximumSize() == null) {
+      return maximumSize;
+    }
+    return entityNearCache.getMaximumSize();
+  }
+
+  /**
+   * Get the time to live for the given entity type, falling back to the default.
+   */
+  public Duration getTtl(String entity) {
+    var entityNearCache = entities.get(entity);
+    if (entityNearCache == null || entityNearCache.getTtl() == null) {
+      return ttl;
+    }
+    return entityNearCache.getTtl();
+  }
+
+  public static class EntityNearCache {
+
+    private Integer maximumSize;
+    private Duration ttl;
+
+    public Integer getMaximumSize() {
+      return maximumSize;
+    }
+
+    public void setMaximumSize(Integer maximumSize) {
+      this.maximumSize = maximumSize;
+    }
+
+    public Duration getTtl() {
+      return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+      this.ttl = ttl;
+    }
+  }
+}
@@ -1,9 +1,18 @@
 package org.entur.lamassu.config.cache;
 
 import java.util.Set;
-import org.entur.lamassu.cache.StationSpatialIndexId;
+import org.entur.lamassu.cache.EntityEventShards;
+import org.entur.lamassu.cache.EntityEventStream;
+import org.entur.lamassu.cache.FeedBody;
+import org.entur.lamassu.cache.FeedFreshnessCache;
+import org.entur.lamassu.cache.FeedMetadata;
+import org.entur.lamassu.cache.SpatialIndexDictionary;
 import org.entur.lamassu.cache.UpdateContinuityCache;
-import org.entur.lamassu.cache.VehicleSpatialIndexId;
+import org.entur.lamassu.cache.impl.RedisEntityEventShards;
+import org.entur.lamassu.cache.impl.RedisEntityEventStream;
+import org.entur.lamassu.cache.impl.RedisFeedFreshnessCache;
+import org.entur.lamassu.cache.impl.RedisSpatialIndexDictionary;
+import org.entur.lamassu.cache.impl.RedisSystemEntityIndex;
 import org.entur.lamassu.cache.impl.RedisUpdateContinuityCache;
 import org.entur.lamassu.config.project.LamassuProjectInfoConfiguration;
 import org.entur.lamassu.leader.SubscriptionStatus;
@@ -11,6 +20,7 @@ import org.entur.lamassu.model.entities.GeofencingZones;
 import org.entur.lamassu.model.entities.PricingPlan;
 import org.entur.lamassu.model.entities.Region;
 import org.entur.lamassu.model.entities.Station;
+import org.entur.lamassu.model.entities.StationStatus;
 import org.entur.lamassu.model.entities.System;
 import org.entur.lamassu.model.entities.Vehicle;
 import org.entur.lamassu.model.entities.VehicleType;
@@ -22,6 +32,7 @@ import org.redisson.api.RListMultimap;
 import org.redisson.api.RMap;
 import org.redisson.api.RMapCache;
 import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
 import org.redisson.codec.Kryo5Codec;
 import org.redisson.config.BaseConfig;
 import org.redisson.config.Config;
@@ -29,6 +40,7 @@ import org.redisson.config.MasterSlaveServersConfig;
 import org.redisson.config.SingleServerConfig;
 import org.redisson.spring.data.connection.RedissonConnectionFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
@@ -38,20 +50,38 @@ public class RedissonCacheConfig {
 
   public static final String GBFS_FEED_CACHE_KEY = "gbfsFeedCache";
   public static final String GBFS_V3_FEED_CACHE_KEY = "gbfsV3FeedCache";
+  public static final String GBFS_FEED_BODY_CACHE_KEY = "gbfsFeedBodyCache";
+  public static final String GBFS_V3_FEED_BODY_CACHE_KEY = "gbfsV3FeedBodyCache";
+  public static final String GBFS_FEED_METADATA_CACHE_KEY = "gbfsFeedMetadataCache";
+  public static final String GBFS_V3_FEED_METADATA_CACHE_KEY =
+    "gbfsV3FeedMetadataCache";
+  public static final String FEED_FRESHNESS_CACHE_KEY = "feedFreshnessCache";
   public static final String SYSTEM_CACHE_KEY = "systemCache";
   public static final String VEHICLE_TYPE_CACHE_KEY = "vehicleTypeCache";
   public static final String PRICING_PLAN_CACHE_KEY = "pricingPlanCache";
   public static final String VEHICLE_CACHE_KEY = "vehicleCache";
   public static final String STATION_CACHE_KEY = "stationCache";
+  public static final String STATION_STATUS_CACHE_KEY = "stationStatusCache";
+  public static final String VEHICLE_SYSTEM_INDEX_KEY = "vehicleSystemIndex";
+  public static final String VEHICLE_SYSTEM_IDS_KEY = "vehicleSystemIds";
+  public static final String STATION_SYSTEM_INDEX_KEY = "stationSystemIndex";
+  public static final String STATION_SYSTEM_IDS_KEY = "stationSystemIds";
   public static final String REGION_CACHE_KEY = "regionCache";
   public static final String GEOFENCING_ZONES_CACHE_KEY = "geofencingZonesCache";
   public static final String VEHICLE_SPATIAL_INDEX_KEY = "vehicleSpatialIndex";
   public static final String STATION_SPATIAL_INDEX_KEY = "stationSpatialIndex";
+  public static final String SPATIAL_INDEX_DICTIONARY_KEY = "spatialIndexDictionary";
+  public static final String SPATIAL_INDEX_DICTIONARY_SEQUENCE_KEY =
+    "spatialIndexDictionarySequence";
   public static final String VALIDATION_REPORTS_CACHE_KEY = "validationReportsCache";
   public static final String CACHE_READY_KEY = "cacheReady";
   public static final String VEHICLE_STATUS_BASES_KEY = "vehicleStatusBases";
   public static final String STATION_STATUS_BASES_KEY = "stationStatusBases";
   public static final String SUBSCRIPTION_STATUS_CACHE_KEY = "subscriptionStatusCache";
+  public static final String VEHICLE_EVENT_SHARDS_KEY = "vehicleEventShards";
+  public static final String STATION_EVENT_SHARDS_KEY = "stationEventShards";
+  public static final String VEHICLE_EVENT_STREAM_KEY = "vehicleEventStream";
+  public static final String STATION_EVENT_STREAM_KEY = "stationEventStream";
 
   private final String serializationVersion;
   private final Config redissonConfig;
@@ -129,6 +159,42 @@ public class RedissonCacheConfig {
     );
   }
 
+  @Bean
+  RMapCache<String, FeedBody> feedBodyCache(RedissonClient redissonClient) {
+    return redissonClient.getMapCache(
+      GBFS_FEED_BODY_CACHE_KEY + "_" + serializationVersion
+    );
+  }
+
+  @Bean
+  RMapCache<String, FeedBody> v3FeedBodyCache(RedissonClient redissonClient) {
+    return redissonClient.getMapCache(
+      GBFS_V3_FEED_BODY_CACHE_KEY + "_" + serializationVersion
+    );
+  }
+
+  @Bean
+  RMapCache<String, FeedMetadata> feedMetadataCache(RedissonClient redissonClient) {
+    return redissonClient.getMapCache(
+      GBFS_FEED_METADATA_CACHE_KEY + "_" + serializationVersion
+    );
+  }
+
+  @Bean
+  RMapCache<String, FeedMetadata> v3FeedMetadataCache(RedissonClient redissonClient) {
+    return redissonClient.getMapCache(
+      GBFS_V3_FEED_METADATA_CACHE_KEY + "_" + serializationVersion
+    );
+  }
+
+  @Bean
+  public FeedFreshnessCache feedFreshnessCache(RedissonClient redissonClient) {
+    return new RedisFeedFreshnessCache(
+      redissonClient,
+      FEED_FRESHNESS_CACHE_KEY + "_" + serializationVersion
+    );
+  }
+
   @Bean
   public RMapCache<String, System> systemCache(RedissonClient redissonClient) {
     return redissonClient.getMapCache(SYSTEM_CACHE_KEY + "_" + serializationVersion);
@@ -158,6 +224,97 @@ public class RedissonCacheConfig {
     return redissonClient.getMapCache(STATION_CACHE_KEY + "_" + serializationVersion);
   }
 
+  @Bean
+  public RMapCache<String, StationStatus> stationStatusCache(
+    RedissonClient redissonClient
+  ) {
+    return redissonClient.getMapCache(
+      STATION_STATUS_CACHE_KEY + "_" + serializationVersion
+    );
+  }
+
+  @Bean
+  @ConditionalOnProperty(
+    name = "org.entur.lamassu.sharded-entity-events.enabled",
+    havingValue = "true"
+  )
+  public EntityEventShards<Vehicle> vehicleEventShards(RedissonClient redissonClient) {
+    return new RedisEntityEventShards<>(
+      redissonClient,
+      VEHICLE_EVENT_SHARDS_KEY + "_" + serializationVersion
+    );
+  }
+
+  @Bean
+  @ConditionalOnProperty(
+    name = "org.entur.lamassu.sharded-entity-events.enabled",
+    havingValue = "true"
+  )
+  public EntityEventShards<Station> stationEventShards(RedissonClient redissonClient) {
+    return new RedisEntityEventShards<>(
+      redissonClient,
+      STATION_EVENT_SHARDS_KEY + "_" + serializationVersion
+    );
+  }
+
+  @Bean
+  @ConditionalOnProperty(
+    name = "org.entur.lamassu.resumable-subscriptions.enabled",
+    havingValue = "true"
+  )
+  public EntityEventStream<Vehicle> vehicleEventStream(
+    RedissonClient redissonClient,
+    @Value("${org.entur.lamassu.resumable-subscriptions.stream-length:100000}") int length
+  ) {
+    return new RedisEntityEventStream<>(
+      redissonClient.getStream(VEHICLE_EVENT_STREAM_KEY + "_" + serializationVersion),
+      length
+    );
+  }
+
+  @Bean
+  @ConditionalOnProperty(
+    name = "org.entur.lamassu.resumable-subscriptions.enabled",
+    havingValue = "true"
+  )
+  public EntityEventStream<Station> stationEventStream(
+    RedissonClient redissonClient,
+    @Value("${org.entur.lamassu.resumable-subscriptions.stream-length:100000}") int length
+  ) {
+    return new RedisEntityEventStream<>(
+      redissonClient.getStream(STATION_EVENT_STREAM_KEY + "_" + serializationVersion),
+      length
+    );
+  }
+
+  @Bean
+  public RedisSystemEntityIndex vehicleSystemIndex(RedissonClient redissonClient) {
+    return new RedisSystemEntityIndex(
+      redissonClient.getSetMultimap(
+        VEHICLE_SYSTEM_INDEX_KEY + "_" + serializationVersion,
+        StringCodec.INSTANCE
+      ),
+      redissonClient.getMap(
+        VEHICLE_SYSTEM_IDS_KEY + "_" + serializationVersion,
+        StringCodec.INSTANCE
+      )
+    );
+  }
+
+  @Bean
+  public RedisSystemEntityIndex stationSystemIndex(RedissonClient redissonClient) {
+    return new RedisSystemEntityIndex(
+      redissonClient.getSetMultimap(
+        STATION_SYSTEM_INDEX_KEY + "_" + serializationVersion,
+        StringCodec.INSTANCE
+      ),
+      redissonClient.getMap(
+        STATION_SYSTEM_IDS_KEY + "_" + serializationVersion,
+        StringCodec.INSTANCE
+      )
+    );
+  }
+
   @Bean
   public RMapCache<String, Region> regionCache(RedissonClient redissonClient) {
     return redissonClient.getMapCache(REGION_CACHE_KEY + "_" + serializationVersion);
@@ -173,13 +330,29 @@ public class RedissonCacheConfig {
   }
 
   @Bean
-  public RGeo<VehicleSpatialIndexId> vehicleSpatialIndex(RedissonClient redissonClient) {
-    return redissonClient.getGeo(VEHICLE_SPATIAL_INDEX_KEY + "_" + serializationVersion);
+  public RGeo<String> vehicleSpatialIndex(RedissonClient redissonClient) {
+    return redissonClient.getGeo(
+      VEHICLE_SPATIAL_INDEX_KEY + "_" + serializationVersion,
+      StringCodec.INSTANCE
+    );
   }
 
   @Bean
-  public RGeo<StationSpatialIndexId> stationSpatialIndex(RedissonClient redissonClient) {
-    return redissonClient.getGeo(STATION_SPATIAL_INDEX_KEY + "_" + serializationVersion);
+  public RGeo<String> stationSpatialIndex(RedissonClient redissonClient) {
+    return redissonClient.getGeo(
+      STATION_SPATIAL_INDEX_KEY + "_" + serializationVersion,
+      StringCodec.INSTANCE
+    );
+  }
+
+  @Bean
+  public SpatialIndexDictionary spatialIndexDictionary(RedissonClient redissonClient) {
+    return new RedisSpatialIndexDictionary(
+      redissonClient.getMap(SPATIAL_INDEX_DICTIONARY_KEY + "_" + serializationVersion),
+      redissonClient.getAtomicLong(
+        SPATIAL_INDEX_DICTIONARY_SEQUENCE_KEY + "_" + serializationVersion
+      )
+    );
   }
 
   @Bean
@@ -1,5 +1,6 @@
 package org.entur.lamassu.config.cache;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.entur.lamassu.cache.*;
 import org.entur.lamassu.model.entities.*;
 import org.entur.lamassu.model.entities.System;
@@ -11,13 +12,28 @@ import org.springframework.context.annotation.Primary;
 @Configuration
 public class RequestScopedCacheConfig {
 
+  private final NearCacheProperties nearCacheProperties;
+  private final MeterRegistry meterRegistry;
+
+  public RequestScopedCacheConfig(
+    NearCacheProperties nearCacheProperties,
+    MeterRegistry meterRegistry
+  ) {
+    this.nearCacheProperties = nearCacheProperties;
+    this.meterRegistry = meterRegistry;
+  }
+
   @Bean
   @Primary
   public EntityReader<System> requestScopedSystemReader(
     @Qualifier("systemCacheImpl") EntityCache<System> systemCache,
     RequestScopedCache requestCache
   ) {
-    return new RequestScopedEntityReader<>(systemCache, requestCache, "system");
+    return new RequestScopedEntityReader<>(
+      nearCached(systemCache, "system"),
+      requestCache,
+      "system"
+    );
   }
 
   @Bean
@@ -26,7 +42,11 @@ public class RequestScopedCacheConfig {
     @Qualifier("vehicleTypeCacheImpl") EntityCache<VehicleType> vehicleTypeCache,
     RequestScopedCache requestCache
   ) {
-    return new RequestScopedEntityReader<>(vehicleTypeCache, requestCache, "vehicleType");
+    return new RequestScopedEntityReader<>(
+      nearCached(vehicleTypeCache, "vehicleType"),
+      requestCache,
+      "vehicleType"
+    );
   }
 
   @Bean
@@ -35,7 +55,11 @@ public class RequestScopedCacheConfig {
     @Qualifier("pricingPlanCacheImpl") EntityCache<PricingPlan> pricingPlanCache,
     RequestScopedCache requestCache
   ) {
-    return new RequestScopedEntityReader<>(pricingPlanCache, requestCache, "pricingPlan");
+    return new RequestScopedEntityReader<>(
+      nearCached(pricingPlanCache, "pricingPlan"),
+      requestCache,
+      "pricingPlan"
+    );
   }
 
   @Bean
@@ -44,6 +68,26 @@ public class RequestScopedCacheConfig {
     @Qualifier("regionCacheImpl") EntityCache<Region> regionCache,
     RequestScopedCache requestCache
   ) {
-    return new RequestScopedEntityReader<>(regionCache, requestCache, "region");
+    return new RequestScopedEntityReader<>(
+      nearCached(regionCache, "region"),
+      requestCache,
+      "region"
+    );
+  }
+
+  private <T extends Entity> EntityReader<T> nearCached(
+    EntityCache<T> cache,
+    String name
+  ) {
+    if (!nearCacheProperties.isEnabled()) {
+      return cache;
+    }
+    return new NearCacheEntityReader<>(
+      cache,
+      name,
+      nearCacheProperties.getMaximumSize(name),
+      nearCacheProperties.getTtl(name),
+      meterRegistry
+    );
   }
 }
@@ -0,0 +1,89 @@
+package org.entur.lamassu.controller;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.entur.lamassu.cache.FeedBody;
+import org.entur.lamassu.cache.FeedMetadata;
+import org.entur.lamassu.util.CacheUtil;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Builds feed responses from stored feed bodies, which are written as they are,
+ * compressed if the client accepts gzip. The caching headers are set from the metadata
+ * of the body, so conditional requests are answered without fetching the body.
+ */
+final class FeedBodyResponses {
+
+  private static final String GZIP = "gzip";
+
+  private FeedBodyResponses() {}
+
+  static boolean isNotModified(FeedMetadata metadata, String ifNoneMatch) {
+    return ifNoneMatch != null && ifNoneMatch.equals(metadata.getETag());
+  }
+
+  static ResponseEntity<Object> notModified(FeedMetadata metadata, int minimumTtl) {
+    return ResponseEntity
+      .status(HttpStatus.NOT_MODIFIED)
+      .cacheControl(cacheControl(metadata, minimumTtl))
+      .eTag(metadata.getETag())
+      .build();
+  }
+
+  static ResponseEntity.BodyBuilder ok(FeedMetadata metadata, int minimumTtl) {
+    return ResponseEntity
+      .ok()
+      .cacheControl(cacheControl(metadata, minimumTtl))
+      .lastModified(metadata.getLastUpdated() * 1000L)
+      .eTag(metadata.getETag());
+  }
+
+  static ResponseEntity<Object> create(
+    FeedBody body,
+    String acceptEncoding,
+    int minimumTtl
+  ) {
+    var response = ok(body.getMetadata(), minimumTtl)
+      .contentType(MediaType.APPLICATION_JSON)
+      .varyBy(HttpHeaders.ACCEPT_ENCODING);
+
+    if (body.getGzip() != null && acceptsGzip(acceptEncoding)) {
+      return response
+        .header(HttpHeaders.CONTENT_ENCODING, GZIP)
+        .contentLength(body.getGzip().length)
+        .body(body.getGzip());
+    }
+    return response.contentLength(body.getJson().length).body(body.getJson());
+  }
+
+  static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.trim().split(";");
+      if (parts[0].trim().equalsIgnoreCase(GZIP)) {
+        return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+      }
+    }
+    return false;
+  }
+
+  private static CacheControl cacheControl(FeedMetadata metadata, int minimumTtl) {
+    return CacheControl
+      .maxAge(
+        CacheUtil.getTtl(
+          (int) Instant.now().getEpochSecond(),
+          (int) metadata.getLastUpdated(),
+          metadata.getTtl(),
+          minimumTtl
+        ),
+        TimeUnit.SECONDS
+      )
+      .cachePublic();
+  }
+}
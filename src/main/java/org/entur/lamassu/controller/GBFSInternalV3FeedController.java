@@ -23,6 +23,7 @@ import java.time.Instant;
 import java.util.NoSuchElementException;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import org.entur.lamassu.cache.FeedMetadata;
 import org.entur.lamassu.cache.GBFSV3FeedCache;
 import org.entur.lamassu.model.provider.FeedProvider;
 import org.entur.lamassu.service.FeedProviderService;
@@ -103,11 +104,21 @@ public class GBFSInternalV3FeedController {
   ) {
     try {
       var feedName = GBFSFeed.Name.fromValue(feed);
+      var feedProvider = feedProviderService.getFeedProviderBySystemId(systemId);
+      var metadata = findFeedMetadata(feedName, feedProvider);
+      if (metadata != null && FeedBodyResponses.isNotModified(metadata, ifNoneMatch)) {
+        return FeedBodyResponses.notModified(metadata, cacheControlMinimumTtl);
+      }
+
       Object data = getFeed(systemId, feed);
       if (feedName.equals(GBFSFeed.Name.GBFS)) {
         data = modifyDiscoveryUrls((GBFSGbfs) data);
       }
 
+      if (metadata != null) {
+        return FeedBodyResponses.ok(metadata, cacheControlMinimumTtl).body(data);
+      }
+
       String etag = CacheUtil.generateETag(data, systemId, feed);
 
       if (ifNoneMatch != null && ifNoneMatch.equals(etag)) {
@@ -249,6 +260,20 @@ public class GBFSInternalV3FeedController {
     return gbfs;
   }
 
+  /**
+   * Get the metadata of the stored feed body, which sets the caching headers of the
+   * feed, or null if the system is not enabled or no body is stored
+   */
+  private FeedMetadata findFeedMetadata(
+    GBFSFeed.Name feedName,
+    FeedProvider feedProvider
+  ) {
+    if (feedProvider == null || !feedProvider.getEnabled()) {
+      return null;
+    }
+    return feedCache.findMetadata(feedName, feedProvider);
+  }
+
   @NotNull
   protected Object getFeed(String systemId, String feed) {
     var feedName = GBFSFeed.Name.fromValue(feed);
@@ -81,10 +81,24 @@ public class GBFSV2FeedController {
   public ResponseEntity<Object> getGbfsFeedForProvider(
     @PathVariable String systemId,
     @PathVariable String feed,
-    @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch
+    @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch,
+    @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding
   ) {
     try {
       var feedName = GBFSFeedName.fromValue(feed);
+
+      var feedProvider = getFeedProvider(systemId);
+      var metadata = feedCache.findMetadata(feedName, feedProvider);
+      if (metadata != null) {
+        if (FeedBodyResponses.isNotModified(metadata, ifNoneMatch)) {
+          return FeedBodyResponses.notModified(metadata, cacheControlMinimumTtl);
+        }
+        var body = feedCache.findBody(feedName, feedProvider);
+        if (body != null) {
+          return FeedBodyResponses.create(body, acceptEncoding, cacheControlMinimumTtl);
+        }
+      }
+
       Object data = getFeed(systemId, feed);
       String etag = CacheUtil.generateETag(data, systemId, feed);
 
@@ -139,6 +153,20 @@ public class GBFSV2FeedController {
     }
   }
 
+  /**
+   * Get the provider of an enabled system, whose stored feed bodies are served if
+   * present, otherwise the feeds are serialized on request
+   */
+  protected FeedProvider getFeedProvider(String systemId) {
+    var feedProvider = feedProviderService.getFeedProviderBySystemId(systemId);
+
+    if (feedProvider == null || !feedProvider.getEnabled()) {
+      throw new NoSuchElementException();
+    }
+
+    return feedProvider;
+  }
+
   @NotNull
   protected Object getFeed(String systemId, String feed) {
     var feedName = GBFSFeedName.fromValue(feed);
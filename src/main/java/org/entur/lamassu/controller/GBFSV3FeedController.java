@@ -78,11 +78,24 @@ public class GBFSV3FeedController {
   public ResponseEntity<Object> getV3Feed(
     @PathVariable String systemId,
     @PathVariable String feed,
-    @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch
+    @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch,
+    @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding
   ) {
     try {
       var feedName = GBFSFeed.Name.fromValue(feed);
 
+      var feedProvider = getFeedProvider(systemId);
+      var metadata = v3FeedCache.findMetadata(feedName, feedProvider);
+      if (metadata != null) {
+        if (FeedBodyResponses.isNotModified(metadata, ifNoneMatch)) {
+          return FeedBodyResponses.notModified(metadata, cacheControlMinimumTtl);
+        }
+        var body = v3FeedCache.findBody(feedName, feedProvider);
+        if (body != null) {
+          return FeedBodyResponses.create(body, acceptEncoding, cacheControlMinimumTtl);
+        }
+      }
+
       var data = getFeed(systemId, feed);
       String etag = CacheUtil.generateETag(data, systemId, feed);
 
@@ -144,6 +157,20 @@ public class GBFSV3FeedController {
     }
   }
 
+  /**
+   * Get the provider of an enabled system, whose stored feed bodies are served if
+   * present, otherwise the feeds are serialized on request
+   */
+  protected FeedProvider getFeedProvider(String systemId) {
+    var feedProvider = feedProviderService.getFeedProviderBySystemId(systemId);
+
+    if (feedProvider == null || !feedProvider.getEnabled()) {
+      throw new NoSuchElementException();
+    }
+
+    return feedProvider;
+  }
+
   @NotNull
   protected Object getFeed(String systemId, String feed) {
     var feedName = GBFSFeed.Name.fromValue(feed);
@@ -18,14 +18,12 @@
 
 package org.entur.lamassu.delta;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.Arrays;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Set;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
@@ -38,12 +36,6 @@ public abstract class BaseGBFSFileDeltaCalculator<S, T>
     BaseGBFSFileDeltaCalculator.class
   );
 
-  private static final List<String> EXCLUDE_METHODS = List.of(
-    "toString",
-    "hashCode",
-    "equals"
-  );
-
   @Override
   public final GBFSFileDelta<T> calculateDelta(@Nullable S base, @NotNull S compare) {
     List<GBFSEntityDelta<T>> entityDeltas = getEntityDeltas(base, compare);
@@ -66,25 +58,21 @@ public abstract class BaseGBFSFileDeltaCalculator<S, T>
   private @NotNull List<GBFSEntityDelta<T>> getEntityDeltas(S base, @NotNull S compare) {
     List<T> baseEntities = getBaseEntities(base);
     Map<String, T> baseEntityMap = getBaseEntityMap(baseEntities);
-    List<String> baseEntityIds = getEntityIds(baseEntityMap);
     List<T> compareEntities = getEntities(compare);
-    List<String> compareEntityIds = getEntityIds(compareEntities);
-
-    return Stream
-      .of(
-        getDeletedEntityDeltas(baseEntities, compareEntityIds),
-        getKeptEntityDeltas(compareEntities, baseEntityMap, baseEntityIds)
-      )
-      .flatMap(Collection::stream)
-      .toList();
-  }
+    Set<String> compareEntityIds = getEntityIds(compareEntities);
 
-  private @NotNull List<String> getEntityIds(Map<String, ?> entityMap) {
-    return entityMap.keySet().stream().toList();
+    List<GBFSEntityDelta<T>> entityDeltas = new ArrayList<>();
+    addDeletedEntityDeltas(entityDeltas, baseEntities, compareEntityIds);
+    addKeptEntityDeltas(entityDeltas, compareEntities, baseEntityMap);
+    return entityDeltas;
   }
 
-  private @NotNull List<String> getEntityIds(List<T> entities) {
-    return entities.stream().map(this::getEntityId).toList();
+  private @NotNull Set<String> getEntityIds(List<T> entities) {
+    Set<String> entityIds = HashSet.newHashSet(entities.size());
+    for (T entity : entities) {
+      entityIds.add(getEntityId(entity));
+    }
+    return entityIds;
   }
 
   private @NotNull List<T> getBaseEntities(S base) {
@@ -92,105 +80,68 @@ public abstract class BaseGBFSFileDeltaCalculator<S, T>
   }
 
   private @NotNull Map<String, T> getBaseEntityMap(List<T> baseEntities) {
-    return baseEntities
-      .stream()
-      .collect(
-        Collectors.toMap(
-          this::getEntityId,
-          v -> v,
-          (existing, duplicate) -> {
-            log.warn(
-              "Duplicate entity found with ID: {}. Keeping first occurrence.",
-              this.getEntityId(existing)
-            );
-            return existing;
-          }
-        )
-      );
+    Map<String, T> baseEntityMap = HashMap.newHashMap(baseEntities.size());
+    for (T entity : baseEntities) {
+      var existing = baseEntityMap.putIfAbsent(getEntityId(entity), entity);
+      if (existing != null) {
+        log.warn(
+          "Duplicate entity found with ID: {}. Keeping first occurrence.",
+          this.getEntityId(existing)
+        );
+      }
+    }
+    return baseEntityMap;
   }
 
-  private @NotNull List<GBFSEntityDelta<T>> getDeletedEntityDeltas(
+  private void addDeletedEntityDeltas(
+    List<GBFSEntityDelta<T>> entityDeltas,
     List<T> baseEntities,
-    List<String> compareEntityIds
+    Set<String> compareEntityIds
   ) {
-    return baseEntities
-      .stream()
-      .map(this::getEntityId)
-      .filter(id -> !compareEntityIds.contains(id))
-      .map(id -> new GBFSEntityDelta<T>(id, DeltaType.DELETE, null))
-      .toList();
+    for (T entity : baseEntities) {
+      var id = getEntityId(entity);
+      if (!compareEntityIds.contains(id)) {
+        entityDeltas.add(new GBFSEntityDelta<>(id, DeltaType.DELETE, null));
+      }
+    }
   }
 
-  private @NotNull List<GBFSEntityDelta<T>> getKeptEntityDeltas(
+  private void addKeptEntityDeltas(
+    List<GBFSEntityDelta<T>> entityDeltas,
     List<T> compareEntities,
-    Map<String, T> baseEntityMap,
-    List<String> baseEntityIds
+    Map<String, T> baseEntityMap
   ) {
-    return compareEntities
-      .stream()
+    for (T entity : compareEntities) {
+      var entityId = getEntityId(entity);
+      var baseEntity = baseEntityMap.get(entityId);
       // We do not need to return a delta for entities that haven't changed. We trust the implementation
       // of equals from the gbfs model here.
-      .filter(entity -> !entity.equals(baseEntityMap.get(getEntityId(entity))))
-      .map(entity -> {
-        var entityId = getEntityId(entity);
-        // If the entity exists in the base, then this delta is an update, and we can compute
-        // the entity delta
-        if (baseEntityIds.contains(entityId)) {
-          return new GBFSEntityDelta<>(
+      if (entity.equals(baseEntity)) {
+        continue;
+      }
+      // If the entity exists in the base, then this delta is an update, and we can compute
+      // the entity delta
+      if (baseEntity != null) {
+        entityDeltas.add(
+          new GBFSEntityDelta<>(
             entityId,
             DeltaType.UPDATE,
-            getEntityDelta(baseEntityMap.get(entityId), entity)
-          );
-          // Otherwise, this is a new entity, and the "delta" contains the entire entity
-        } else {
-          return new GBFSEntityDelta<>(entityId, DeltaType.CREATE, entity);
-        }
-      })
-      .toList();
+            getEntityDelta(baseEntity, entity)
+          )
+        );
+        // Otherwise, this is a new entity, and the "delta" contains the entire entity
+      } else {
+        entityDeltas.add(new GBFSEntityDelta<>(entityId, DeltaType.CREATE, entity));
+      }
+    }
   }
 
   private T getEntityDelta(T base, T compare) {
     T delta = createEntity();
-    Method[] methods = base.getClass().getDeclaredMethods();
-    for (Method method : methods) {
-      if (isMethodEligibleForDelta(method)) {
-        Method setter = getSetter(methods, method.getName());
-        if (setter != null) {
-          copyValueToDelta(method, setter, compare, delta);
-        }
-      }
-    }
+    EntityPropertyCopier.forClass(base.getClass()).copy(compare, delta);
     return delta;
   }
 
-  private boolean isMethodEligibleForDelta(Method method) {
-    return !EXCLUDE_METHODS.contains(method.getName()) && isGetter(method);
-  }
-
-  private boolean isGetter(Method method) {
-    return method.getParameterCount() == 0;
-  }
-
-  private void copyValueToDelta(Method getter, Method setter, T source, T target) {
-    try {
-      setter.invoke(target, getter.invoke(source));
-    } catch (IllegalAccessException | InvocationTargetException e) {
-      throw new GBFSDeltaException(
-        "Failed to set value for field " + getter.getName(),
-        e
-      );
-    }
-  }
-
-  private @Nullable Method getSetter(Method[] methods, String getterName) {
-    String setterName = getterName.replace("get", "set");
-    return Arrays
-      .stream(methods)
-      .filter(method1 -> method1.getName().equals(setterName))
-      .findFirst()
-      .orElse(null);
-  }
-
   private Long getNullableLastUpdated(S instance) {
     if (instance == null) {
       return null;
@@ -0,0 +1,119 @@
+package org.entur.lamassu.delta;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies the values of all getter / setter pairs declared by a GBFS entity class from
+ * one instance to another.
+ *
+ * <p>The pairs are looked up once per class and kept as method handles, instead of
+ * being resolved with reflection for every copied entity.
+ */
+final class EntityPropertyCopier {
+
+  private static final MethodType GETTER_TYPE = MethodType.methodType(
+    Object.class,
+    Object.class
+  );
+  private static final MethodType SETTER_TYPE = MethodType.methodType(
+    void.class,
+    Object.class,
+    Object.class
+  );
+
+  private static final ClassValue<EntityPropertyCopier> COPIERS = new ClassValue<>() {
+    @Override
+    protected EntityPropertyCopier computeValue(Class<?> type) {
+      return new EntityPropertyCopier(type);
+    }
+  };
+
+  private record Property(String name, MethodHandle getter, MethodHandle setter) {}
+
+  private final List<Property> properties;
+
+  private EntityPropertyCopier(Class<?> type) {
+    Method[] methods = type.getDeclaredMethods();
+    Map<String, Method> setters = new HashMap<>();
+    for (Method method : methods) {
+      if (method.getParameterCount() == 1 && isInstanceMethod(method)) {
+        setters.putIfAbsent(method.getName(), method);
+      }
+    }
+
+    var lookup = MethodHandles.lookup();
+    properties = new ArrayList<>();
+    for (Method method : methods) {
+      if (isGetter(method)) {
+        Method setter = setters.get(getSetterName(method.getName()));
+        if (setter != null) {
+          properties.add(
+            new Property(
+              method.getName(),
+              unreflect(lookup, method).asType(GETTER_TYPE),
+              unreflect(lookup, setter).asType(SETTER_TYPE)
+            )
+          );
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the copier for the given entity class
+   */
+  static EntityPropertyCopier forClass(Class<?> type) {
+    return COPIERS.get(type);
+  }
+
+  /**
+   * Copy the value of every property from the source to the target
+   */
+  void copy(Object source, Object target) {
+    for (Property property : properties) {
+      try {
+        property.setter().invokeExact(target, property.getter().invokeExact(source));
+      } catch (RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable e) {
+        throw new GBFSDeltaException(
+          "Failed to set value for field " + property.name(),
+          e
+        );
+      }
+    }
+  }
+
+  private static boolean isGetter(Method method) {
+    return (
+      method.getName().startsWith("get") &&
+      method.getParameterCount() == 0 &&
+      method.getReturnType() != void.class &&
+      isInstanceMethod(method)
+    );
+  }
+
+  private static boolean isInstanceMethod(Method method) {
+    return !Modifier.isStatic(method.getModifiers()) && !method.isSynthetic();
+  }
+
+  private static String getSetterName(String getterName) {
+    return "set" + getterName.substring(3);
+  }
+
+  private static MethodHandle unreflect(MethodHandles.Lookup lookup, Method method) {
+    try {
+      return lookup.unreflect(method);
+    } catch (IllegalAccessException e) {
+      throw new GBFSDeltaException("Failed to access method " + method.getName(), e);
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package org.entur.lamassu.graphql.query;
+
+import graphql.schema.DataFetchingEnvironment;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Opaque cursors used to page through the results of geo queries. The cursor for the
+ * next page of a query is returned in the "cursors" extension of the response, keyed by
+ * the path of the query field.
+ */
+public final class QueryCursor {
+
+  static final String CURSORS_CONTEXT_KEY = QueryCursor.class.getName() + ".cursors";
+
+  private static final String OFFSET_PREFIX = "offset:";
+
+  private QueryCursor() {}
+
+  /**
+   * Decode a cursor into the number of results to skip. A null cursor means the first
+   * page. The cursor must have been validated by QueryParameterValidator.
+   */
+  public static int decode(String cursor) {
+    if (cursor == null) {
+      return 0;
+    }
+    int offset = parse(cursor);
+    if (offset < 0) {
+      throw new IllegalArgumentException("Invalid cursor");
+    }
+    return offset;
+  }
+
+  /**
+   * Check that a cursor is null or was encoded by this class
+   */
+  public static boolean isValid(String cursor) {
+    return cursor == null || parse(cursor) >= 0;
+  }
+
+  private static int parse(String cursor) {
+    try {
+      var decoded = new String(
+        Base64.getUrlDecoder().decode(cursor),
+        StandardCharsets.UTF_8
+      );
+      if (decoded.startsWith(OFFSET_PREFIX)) {
+        return Integer.parseInt(decoded.substring(OFFSET_PREFIX.length()));
+      }
+    } catch (IllegalArgumentException e) {
+      // Not a cursor, handled below
+    }
+    return -1;
+  }
+
+  public static String encode(int offset) {
+    return Base64
+      .getUrlEncoder()
+      .withoutPadding()
+      .encodeToString((OFFSET_PREFIX + offset).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Expose the cursor of the next page of the field currently being fetched.
+   */
+  public static void publishNextCursor(DataFetchingEnvironment environment, int offset) {
+    Map<String, String> cursors = environment.getGraphQlContext().get(CURSORS_CONTEXT_KEY);
+    if (cursors != null) {
+      cursors.put(
+        environment.getExecutionStepInfo().getPath().toString(),
+        encode(offset)
+      );
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package org.entur.lamassu.graphql.query;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.graphql.server.WebGraphQlInterceptor;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Adds the next page cursors published by paged queries to the "cursors" extension of
+ * the response.
+ */
+@Component
+public class QueryCursorInterceptor implements WebGraphQlInterceptor {
+
+  static final String CURSORS_EXTENSION = "cursors";
+
+  @Override
+  public Mono<WebGraphQlResponse> intercept(WebGraphQlRequest request, Chain chain) {
+    Map<String, String> cursors = new ConcurrentHashMap<>();
+    request.configureExecutionInput((input, builder) ->
+      builder.graphQLContext(Map.of(QueryCursor.CURSORS_CONTEXT_KEY, cursors)).build()
+    );
+
+    return chain
+      .next(request)
+      .map(response -> {
+        if (cursors.isEmpty()) {
+          return response;
+        }
+
+        Map<Object, Object> extensions = new LinkedHashMap<>();
+        if (response.getExecutionResult().getExtensions() != null) {
+          extensions.putAll(response.getExecutionResult().getExtensions());
+        }
+        extensions.put(CURSORS_EXTENSION, new TreeMap<>(cursors));
+        return response.transform(builder -> builder.extensions(extensions));
+      });
+  }
+}
@@ -1,5 +1,6 @@
 package org.entur.lamassu.graphql.query;
 
+import graphql.schema.DataFetchingEnvironment;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -49,11 +50,13 @@ public class StationQueryController {
     @Argument Double maximumLatitude,
     @Argument Double maximumLongitude,
     @Argument Integer count,
+    @Argument String cursor,
     @Argument List<String> codespaces,
     @Argument List<String> systems,
     @Argument List<String> operators,
     @Argument List<FormFactor> availableFormFactors,
-    @Argument List<PropulsionType> availablePropulsionTypes
+    @Argument List<PropulsionType> availablePropulsionTypes,
+    DataFetchingEnvironment environment
   ) {
     if (ids != null && !ids.isEmpty()) {
       return stationReader.getAll(Set.copyOf(ids));
@@ -62,6 +65,7 @@ public class StationQueryController {
     validationService.validateCount(count);
     validationService.validateCodespaces(codespaces);
     validationService.validateSystems(systems);
+    validationService.validateCursor(cursor);
 
     var filterParams = new StationFilterParameters(
       codespaces,
@@ -72,6 +76,8 @@ public class StationQueryController {
       availablePropulsionTypes
     );
 
+    filterParams.setOffset(QueryCursor.decode(cursor));
+
     Collection<Station> stations;
 
     validationService.validateQueryParameters(
@@ -97,8 +103,9 @@ public class StationQueryController {
       stations = geoSearchService.getStationsInBoundingBox(queryParams, filterParams);
     }
 
-    if (count != null) {
-      return stations.stream().limit(count).toList();
+    // A full page suggests more results, so expose where the next page starts
+    if (count != null && stations.size() >= count) {
+      QueryCursor.publishNextCursor(environment, filterParams.getOffset() + count);
     }
 
     return stations;
@@ -1,5 +1,6 @@
 package org.entur.lamassu.graphql.query;
 
+import graphql.schema.DataFetchingEnvironment;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -49,13 +50,15 @@ public class VehicleQueryController {
     @Argument Double maximumLatitude,
     @Argument Double maximumLongitude,
     @Argument Integer count,
+    @Argument String cursor,
     @Argument List<String> codespaces,
     @Argument List<String> systems,
     @Argument List<String> operators,
     @Argument List<FormFactor> formFactors,
     @Argument List<PropulsionType> propulsionTypes,
     @Argument Boolean includeReserved,
-    @Argument Boolean includeDisabled
+    @Argument Boolean includeDisabled,
+    DataFetchingEnvironment environment
   ) {
     if (ids != null && !ids.isEmpty()) {
       return vehicleReader.getAll(new HashSet<>(ids));
@@ -64,6 +67,7 @@ public class VehicleQueryController {
     validationService.validateCount(count);
     validationService.validateCodespaces(codespaces);
     validationService.validateSystems(systems);
+    validationService.validateCursor(cursor);
 
     var filterParams = new VehicleFilterParameters(
       codespaces,
@@ -76,6 +80,8 @@ public class VehicleQueryController {
       includeDisabled
     );
 
+    filterParams.setOffset(QueryCursor.decode(cursor));
+
     Collection<Vehicle> vehicles;
 
     validationService.validateQueryParameters(
@@ -101,8 +107,9 @@ public class VehicleQueryController {
       vehicles = geoSearchService.getVehiclesInBoundingBox(queryParams, filterParams);
     }
 
-    if (count != null) {
-      return vehicles.stream().limit(count).toList();
+    // A full page suggests more results, so expose where the next page starts
+    if (count != null && vehicles.size() >= count) {
+      QueryCursor.publishNextCursor(environment, filterParams.getOffset() + count);
     }
 
     return vehicles;
@@ -0,0 +1,94 @@
+package org.entur.lamassu.graphql.resolver;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.entur.lamassu.cache.EntityReader;
+import org.entur.lamassu.model.entities.Entity;
+
+/**
+ * Resolves the entities referenced by a batch of parent objects, reading all of the
+ * distinct referenced entities with one call to the entity reader, for use in batch
+ * mappings.
+ */
+public final class EntityReferences {
+
+  private EntityReferences() {}
+
+  /**
+   * Resolve the entity referenced by each of the parents, in the order of the parents.
+   * Parents without a reference, or referring to a missing entity, resolve to null.
+   */
+  public static <P, T extends Entity> List<T> resolve(
+    List<P> parents,
+    Function<P, String> getId,
+    EntityReader<T> reader
+  ) {
+    Map<String, T> entities = getAll(parents.stream().map(getId), reader);
+    return parents
+      .stream()
+      .map(parent -> {
+        String id = getId.apply(parent);
+        return id == null ? null : entities.get(id);
+      })
+      .toList();
+  }
+
+  /**
+   * Resolve the entities referenced by each of the parents, in the order of the parents.
+   * Parents without references resolve to null, and missing entities are left out.
+   */
+  public static <P, T extends Entity> List<List<T>> resolveAll(
+    List<P> parents,
+    Function<P, Collection<String>> getIds,
+    EntityReader<T> reader
+  ) {
+    Map<String, T> entities = getAll(
+      parents.stream().map(getIds).filter(Objects::nonNull).flatMap(Collection::stream),
+      reader
+    );
+    return parents
+      .stream()
+      .map(parent -> {
+        Collection<String> ids = getIds.apply(parent);
+        return ids == null ? null : get(ids, entities);
+      })
+      .toList();
+  }
+
+  /**
+   * Read the entities with the given ids, ignoring duplicates and null ids
+   */
+  public static <T extends Entity> Map<String, T> getAll(
+    Stream<String> ids,
+    EntityReader<T> reader
+  ) {
+    Set<String> distinctIds = ids.filter(Objects::nonNull).collect(Collectors.toSet());
+    if (distinctIds.isEmpty()) {
+      return Map.of();
+    }
+    return reader.getAllAsMap(distinctIds);
+  }
+
+  /**
+   * Get the entities with the given ids from a map of entities read with getAll, ignoring
+   * duplicates, null ids and missing entities
+   */
+  public static <T extends Entity> List<T> get(
+    Collection<String> ids,
+    Map<String, T> entities
+  ) {
+    return ids
+      .stream()
+      .filter(Objects::nonNull)
+      .distinct()
+      .map(entities::get)
+      .filter(Objects::nonNull)
+      .toList();
+  }
+}
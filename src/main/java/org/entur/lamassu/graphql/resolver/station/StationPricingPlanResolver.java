@@ -3,11 +3,13 @@ package org.entur.lamassu.graphql.resolver.station;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.entur.lamassu.cache.EntityReader;
+import org.entur.lamassu.graphql.resolver.EntityReferences;
 import org.entur.lamassu.model.entities.PricingPlan;
 import org.entur.lamassu.model.entities.Station;
 import org.entur.lamassu.model.entities.VehicleDocksAvailability;
@@ -16,7 +18,7 @@ import org.entur.lamassu.model.entities.VehicleType;
 import org.entur.lamassu.model.entities.VehicleTypeAvailability;
 import org.entur.lamassu.model.entities.VehicleTypeCapacity;
 import org.entur.lamassu.model.entities.VehicleTypesCapacity;
-import org.springframework.graphql.data.method.annotation.SchemaMapping;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
 import org.springframework.stereotype.Controller;
 
 @Controller
@@ -37,11 +39,39 @@ public class StationPricingPlanResolver {
    * GBFS does not have pricing plans directly on station. They should be resolved
    * via vehicle types instead. This is a workaround for not having to resolve
    * all of a system's pricing plans, by collecting only the pricing plan's referred
-   * to by a stations various references to vehicle types
+   * to by a stations various references to vehicle types. The vehicle types and pricing
+   * plans of all the stations in the response are read at once.
    */
-  @SchemaMapping(typeName = "Station", field = "pricingPlans")
-  public List<PricingPlan> resolve(Station station) {
-    Set<String> vehicleTypeIds = Stream
+  @BatchMapping(typeName = "Station", field = "pricingPlans")
+  public List<List<PricingPlan>> resolve(List<Station> stations) {
+    List<Set<String>> vehicleTypeIdsByStation = stations
+      .stream()
+      .map(this::getVehicleTypeIds)
+      .toList();
+    Map<String, VehicleType> vehicleTypes = EntityReferences.getAll(
+      vehicleTypeIdsByStation.stream().flatMap(Set::stream),
+      vehicleTypeReader
+    );
+
+    List<Set<String>> pricingPlanIdsByStation = vehicleTypeIdsByStation
+      .stream()
+      .map(vehicleTypeIds ->
+        getPricingPlanIds(EntityReferences.get(vehicleTypeIds, vehicleTypes))
+      )
+      .toList();
+    Map<String, PricingPlan> pricingPlans = EntityReferences.getAll(
+      pricingPlanIdsByStation.stream().flatMap(Set::stream),
+      pricingPlanReader
+    );
+
+    return pricingPlanIdsByStation
+      .stream()
+      .map(pricingPlanIds -> EntityReferences.get(pricingPlanIds, pricingPlans))
+      .toList();
+  }
+
+  private Set<String> getVehicleTypeIds(Station station) {
+    return Stream
       .of(
         Optional
           .ofNullable(station.getVehicleCapacity())
@@ -79,9 +109,9 @@ public class StationPricingPlanResolver {
       )
       .flatMap(i -> i)
       .collect(Collectors.toSet());
+  }
 
-    List<VehicleType> vehicleTypes = vehicleTypeReader.getAll(vehicleTypeIds);
-
+  private Set<String> getPricingPlanIds(List<VehicleType> vehicleTypes) {
     Set<String> pricingPlanIds = new HashSet<>();
 
     vehicleTypes.forEach(vehicleType -> {
@@ -93,6 +123,6 @@ public class StationPricingPlanResolver {
       }
     });
 
-    return pricingPlanReader.getAll(pricingPlanIds);
+    return pricingPlanIds;
   }
 }
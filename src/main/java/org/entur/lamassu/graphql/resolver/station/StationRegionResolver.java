@@ -1,9 +1,11 @@
 package org.entur.lamassu.graphql.resolver.station;
 
+import java.util.List;
 import org.entur.lamassu.cache.EntityReader;
+import org.entur.lamassu.graphql.resolver.EntityReferences;
 import org.entur.lamassu.model.entities.Region;
 import org.entur.lamassu.model.entities.Station;
-import org.springframework.graphql.data.method.annotation.SchemaMapping;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
 import org.springframework.stereotype.Controller;
 
 @Controller
@@ -15,11 +17,8 @@ public class StationRegionResolver {
     this.regionReader = regionReader;
   }
 
-  @SchemaMapping(typeName = "Station", field = "region")
-  public Region resolve(Station station) {
-    if (station.getRegionId() == null) {
-      return null;
-    }
-    return regionReader.get(station.getRegionId());
+  @BatchMapping(typeName = "Station", field = "region")
+  public List<Region> resolve(List<Station> stations) {
+    return EntityReferences.resolve(stations, Station::getRegionId, regionReader);
   }
 }
@@ -1,9 +1,11 @@
 package org.entur.lamassu.graphql.resolver.station;
 
+import java.util.List;
 import org.entur.lamassu.cache.EntityReader;
+import org.entur.lamassu.graphql.resolver.EntityReferences;
 import org.entur.lamassu.model.entities.Station;
 import org.entur.lamassu.model.entities.System;
-import org.springframework.graphql.data.method.annotation.SchemaMapping;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
 import org.springframework.stereotype.Controller;
 
 @Controller
@@ -15,8 +17,8 @@ public class StationSystemResolver {
     this.systemReader = systemReader;
   }
 
-  @SchemaMapping(typeName = "Station", field = "system")
-  public System resolve(Station station) {
-    return systemReader.get(station.getSystemId());
+  @BatchMapping(typeName = "Station", field = "system")
+  public List<System> resolve(List<Station> stations) {
+    return EntityReferences.resolve(stations, Station::getSystemId, systemReader);
   }
 }
@@ -1,15 +1,15 @@
 package org.entur.lamassu.graphql.resolver.station;
 
-import java.util.HashSet;
 import java.util.List;
 import org.entur.lamassu.cache.EntityReader;
+import org.entur.lamassu.graphql.resolver.EntityReferences;
 import org.entur.lamassu.model.entities.VehicleDocksAvailability;
 import org.entur.lamassu.model.entities.VehicleDocksCapacity;
 import org.entur.lamassu.model.entities.VehicleType;
 import org.entur.lamassu.model.entities.VehicleTypeAvailability;
 import org.entur.lamassu.model.entities.VehicleTypeCapacity;
 import org.entur.lamassu.model.entities.VehicleTypesCapacity;
-import org.springframework.graphql.data.method.annotation.SchemaMapping;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
 import org.springframework.stereotype.Controller;
 
 @Controller
@@ -21,42 +21,58 @@ public class StationVehicleTypeResolver {
     this.vehicleTypeReader = vehicleTypeReader;
   }
 
-  @SchemaMapping(typeName = "VehicleTypeAvailability", field = "vehicleType")
-  public VehicleType resolveVehicleTypeAvailability(
-    VehicleTypeAvailability vehicleTypeAvailability
+  @BatchMapping(typeName = "VehicleTypeAvailability", field = "vehicleType")
+  public List<VehicleType> resolveVehicleTypeAvailability(
+    List<VehicleTypeAvailability> vehicleTypeAvailabilities
   ) {
-    return vehicleTypeReader.get(vehicleTypeAvailability.getVehicleTypeId());
+    return EntityReferences.resolve(
+      vehicleTypeAvailabilities,
+      VehicleTypeAvailability::getVehicleTypeId,
+      vehicleTypeReader
+    );
   }
 
-  @SchemaMapping(typeName = "VehicleDocksAvailability", field = "vehicleTypes")
-  public List<VehicleType> resolveVehicleDocksAvailability(
-    VehicleDocksAvailability vehicleDocksAvailability
+  @BatchMapping(typeName = "VehicleDocksAvailability", field = "vehicleTypes")
+  public List<List<VehicleType>> resolveVehicleDocksAvailability(
+    List<VehicleDocksAvailability> vehicleDocksAvailabilities
   ) {
-    return vehicleTypeReader.getAll(
-      new HashSet<>(vehicleDocksAvailability.getVehicleTypeIds())
+    return EntityReferences.resolveAll(
+      vehicleDocksAvailabilities,
+      VehicleDocksAvailability::getVehicleTypeIds,
+      vehicleTypeReader
     );
   }
 
-  @SchemaMapping(typeName = "VehicleTypeCapacity", field = "vehicleType")
-  public VehicleType resolveVehicleTypeCapacity(VehicleTypeCapacity vehicleTypeCapacity) {
-    return vehicleTypeReader.get(vehicleTypeCapacity.getVehicleTypeId());
+  @BatchMapping(typeName = "VehicleTypeCapacity", field = "vehicleType")
+  public List<VehicleType> resolveVehicleTypeCapacity(
+    List<VehicleTypeCapacity> vehicleTypeCapacities
+  ) {
+    return EntityReferences.resolve(
+      vehicleTypeCapacities,
+      VehicleTypeCapacity::getVehicleTypeId,
+      vehicleTypeReader
+    );
   }
 
-  @SchemaMapping(typeName = "VehicleTypesCapacity", field = "vehicleTypes")
-  public List<VehicleType> resolveVehicleTypesCapacity(
-    VehicleTypesCapacity vehicleTypesCapacity
+  @BatchMapping(typeName = "VehicleTypesCapacity", field = "vehicleTypes")
+  public List<List<VehicleType>> resolveVehicleTypesCapacity(
+    List<VehicleTypesCapacity> vehicleTypesCapacities
   ) {
-    return vehicleTypeReader.getAll(
-      new HashSet<>(vehicleTypesCapacity.getVehicleTypeIds())
+    return EntityReferences.resolveAll(
+      vehicleTypesCapacities,
+      VehicleTypesCapacity::getVehicleTypeIds,
+      vehicleTypeReader
     );
   }
 
-  @SchemaMapping(typeName = "VehicleDocksCapacity", field = "vehicleTypes")
-  public List<VehicleType> resolveVehicleDocksCapacity(
-    VehicleDocksCapacity vehicleDocksCapacity
+  @BatchMapping(typeName = "VehicleDocksCapacity", field = "vehicleTypes")
+  public List<List<VehicleType>> resolveVehicleDocksCapacity(
+    List<VehicleDocksCapacity> vehicleDocksCapacities
   ) {
-    return vehicleTypeReader.getAll(
-      new HashSet<>(vehicleDocksCapacity.getVehicleTypeIds())
+    return EntityReferences.resolveAll(
+      vehicleDocksCapacities,
+      VehicleDocksCapacity::getVehicleTypeIds,
+      vehicleTypeReader
     );
   }
 }
@@ -1,10 +1,13 @@
 package org.entur.lamassu.graphql.resolver.vehicle;
 
+import java.util.List;
+import java.util.Map;
 import org.entur.lamassu.cache.EntityReader;
+import org.entur.lamassu.graphql.resolver.EntityReferences;
 import org.entur.lamassu.model.entities.PricingPlan;
 import org.entur.lamassu.model.entities.Vehicle;
 import org.entur.lamassu.model.entities.VehicleType;
-import org.springframework.graphql.data.method.annotation.SchemaMapping;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
 import org.springframework.stereotype.Controller;
 
 @Controller
@@ -21,14 +24,34 @@ public class VehiclePricingPlanResolver {
     this.vehicleTypeReader = vehicleTypeReader;
   }
 
-  @SchemaMapping(typeName = "Vehicle", field = "pricingPlan")
-  public PricingPlan resolve(Vehicle vehicle) {
+  @BatchMapping(typeName = "Vehicle", field = "pricingPlan")
+  public List<PricingPlan> resolve(List<Vehicle> vehicles) {
     // pricingPlanId is optional for vehicles and defaults to it's vehicleType's default pricing plan
-    if (vehicle.getPricingPlanId() == null) {
-      return pricingPlanReader.get(
-        vehicleTypeReader.get(vehicle.getVehicleTypeId()).getDefaultPricingPlanId()
-      );
+    Map<String, VehicleType> vehicleTypes = EntityReferences.getAll(
+      vehicles
+        .stream()
+        .filter(vehicle -> vehicle.getPricingPlanId() == null)
+        .map(Vehicle::getVehicleTypeId),
+      vehicleTypeReader
+    );
+    return EntityReferences.resolve(
+      vehicles,
+      vehicle -> getPricingPlanId(vehicle, vehicleTypes),
+      pricingPlanReader
+    );
+  }
+
+  private String getPricingPlanId(
+    Vehicle vehicle,
+    Map<String, VehicleType> vehicleTypes
+  ) {
+    if (vehicle.getPricingPlanId() != null) {
+      return vehicle.getPricingPlanId();
+    }
+    if (vehicle.getVehicleTypeId() == null) {
+      return null;
     }
-    return pricingPlanReader.get(vehicle.getPricingPlanId());
+    VehicleType vehicleType = vehicleTypes.get(vehicle.getVehicleTypeId());
+    return vehicleType == null ? null : vehicleType.getDefaultPricingPlanId();
   }
 }
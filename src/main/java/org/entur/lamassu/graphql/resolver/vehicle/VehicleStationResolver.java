@@ -1,10 +1,11 @@
 package org.entur.lamassu.graphql.resolver.vehicle;
 
+import java.util.List;
 import org.entur.lamassu.cache.EntityReader;
+import org.entur.lamassu.graphql.resolver.EntityReferences;
 import org.entur.lamassu.model.entities.Station;
 import org.entur.lamassu.model.entities.Vehicle;
-import org.entur.lamassu.model.entities.VehicleType;
-import org.springframework.graphql.data.method.annotation.SchemaMapping;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
 import org.springframework.stereotype.Controller;
 
 @Controller
@@ -16,11 +17,8 @@ public class VehicleStationResolver {
     this.stationReader = stationReader;
   }
 
-  @SchemaMapping(typeName = "Vehicle", field = "station")
-  public Station resolve(Vehicle vehicle) {
-    if (vehicle.getStationId() == null) {
-      return null;
-    }
-    return stationReader.get(vehicle.getStationId());
+  @BatchMapping(typeName = "Vehicle", field = "station")
+  public List<Station> resolve(List<Vehicle> vehicles) {
+    return EntityReferences.resolve(vehicles, Vehicle::getStationId, stationReader);
   }
 }
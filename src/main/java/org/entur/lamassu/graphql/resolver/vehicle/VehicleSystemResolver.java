@@ -1,9 +1,11 @@
 package org.entur.lamassu.graphql.resolver.vehicle;
 
+import java.util.List;
 import org.entur.lamassu.cache.EntityReader;
+import org.entur.lamassu.graphql.resolver.EntityReferences;
 import org.entur.lamassu.model.entities.System;
 import org.entur.lamassu.model.entities.Vehicle;
-import org.springframework.graphql.data.method.annotation.SchemaMapping;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
 import org.springframework.stereotype.Controller;
 
 @Controller
@@ -15,8 +17,8 @@ public class VehicleSystemResolver {
     this.systemReader = systemReader;
   }
 
-  @SchemaMapping(typeName = "Vehicle", field = "system")
-  public System resolve(Vehicle vehicle) {
-    return systemReader.get(vehicle.getSystemId());
+  @BatchMapping(typeName = "Vehicle", field = "system")
+  public List<System> resolve(List<Vehicle> vehicles) {
+    return EntityReferences.resolve(vehicles, Vehicle::getSystemId, systemReader);
   }
 }
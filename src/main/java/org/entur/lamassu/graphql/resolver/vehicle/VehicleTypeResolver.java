@@ -1,9 +1,11 @@
 package org.entur.lamassu.graphql.resolver.vehicle;
 
+import java.util.List;
 import org.entur.lamassu.cache.EntityReader;
+import org.entur.lamassu.graphql.resolver.EntityReferences;
 import org.entur.lamassu.model.entities.Vehicle;
 import org.entur.lamassu.model.entities.VehicleType;
-import org.springframework.graphql.data.method.annotation.SchemaMapping;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
 import org.springframework.stereotype.Controller;
 
 @Controller
@@ -15,8 +17,12 @@ public class VehicleTypeResolver {
     this.vehicleTypeReader = vehicleTypeReader;
   }
 
-  @SchemaMapping(typeName = "Vehicle", field = "vehicleType")
-  public VehicleType resolve(Vehicle vehicle) {
-    return vehicleTypeReader.get(vehicle.getVehicleTypeId());
+  @BatchMapping(typeName = "Vehicle", field = "vehicleType")
+  public List<VehicleType> resolve(List<Vehicle> vehicles) {
+    return EntityReferences.resolve(
+      vehicles,
+      Vehicle::getVehicleTypeId,
+      vehicleTypeReader
+    );
   }
 }
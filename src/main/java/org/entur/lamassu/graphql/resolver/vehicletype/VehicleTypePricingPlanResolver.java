@@ -1,11 +1,11 @@
 package org.entur.lamassu.graphql.resolver.vehicletype;
 
 import java.util.List;
-import java.util.stream.Collectors;
 import org.entur.lamassu.cache.EntityReader;
+import org.entur.lamassu.graphql.resolver.EntityReferences;
 import org.entur.lamassu.model.entities.PricingPlan;
 import org.entur.lamassu.model.entities.VehicleType;
-import org.springframework.graphql.data.method.annotation.SchemaMapping;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
 import org.springframework.stereotype.Controller;
 
 @Controller
@@ -17,19 +17,21 @@ public class VehicleTypePricingPlanResolver {
     this.pricingPlanReader = pricingPlanReader;
   }
 
-  @SchemaMapping(typeName = "VehicleType", field = "defaultPricingPlan")
-  public PricingPlan resolve(VehicleType vehicleType) {
-    if (vehicleType.getDefaultPricingPlanId() == null) {
-      return null;
-    }
-    return pricingPlanReader.get(vehicleType.getDefaultPricingPlanId());
+  @BatchMapping(typeName = "VehicleType", field = "defaultPricingPlan")
+  public List<PricingPlan> resolve(List<VehicleType> vehicleTypes) {
+    return EntityReferences.resolve(
+      vehicleTypes,
+      VehicleType::getDefaultPricingPlanId,
+      pricingPlanReader
+    );
   }
 
-  @SchemaMapping(typeName = "VehicleType", field = "pricingPlans")
-  public List<PricingPlan> pricingPlans(VehicleType vehicleType) {
-    if (vehicleType.getPricingPlanIds() == null) {
-      return null;
-    }
-    return vehicleType.getPricingPlanIds().stream().map(pricingPlanReader::get).toList();
+  @BatchMapping(typeName = "VehicleType", field = "pricingPlans")
+  public List<List<PricingPlan>> pricingPlans(List<VehicleType> vehicleTypes) {
+    return EntityReferences.resolveAll(
+      vehicleTypes,
+      VehicleType::getPricingPlanIds,
+      pricingPlanReader
+    );
   }
 }
@@ -59,6 +59,9 @@ public class StationSubscriptionController {
    * @param operators List of operators to filter by
    * @param availableFormFactors List of available form factors to filter by
    * @param availablePropulsionTypes List of available propulsion types to filter by
+   * @param conflate Whether to only deliver the latest update of each station per batch
+   * @param resumeToken The resume token of the last update received, to only receive
+   *                    the updates missed since
    * @return A publisher that will emit station updates
    */
   @SubscriptionMapping
@@ -74,7 +77,9 @@ public class StationSubscriptionController {
     @Argument List<String> systems,
     @Argument List<String> operators,
     @Argument List<FormFactor> availableFormFactors,
-    @Argument List<PropulsionType> availablePropulsionTypes
+    @Argument List<PropulsionType> availablePropulsionTypes,
+    @Argument Boolean conflate,
+    @Argument String resumeToken
   ) {
     // Validate parameters
     validationService.validateCodespaces(codespaces);
@@ -134,6 +139,10 @@ public class StationSubscriptionController {
         );
     }
 
-    return stationSubscriptionHandler.getPublisher(stationUpdateFilter);
+    return stationSubscriptionHandler.getPublisher(
+      stationUpdateFilter,
+      conflate != null && conflate,
+      resumeToken
+    );
   }
 }
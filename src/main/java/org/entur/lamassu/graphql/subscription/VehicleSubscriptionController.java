@@ -55,6 +55,9 @@ public class VehicleSubscriptionController {
    * @param propulsionTypes List of propulsion types to filter by
    * @param includeReserved Whether to include reserved vehicles
    * @param includeDisabled Whether to include disabled vehicles
+   * @param conflate Whether to only deliver the latest update of each vehicle per batch
+   * @param resumeToken The resume token of the last update received, to only receive
+   *                    the updates missed since
    * @return A publisher that will emit vehicle updates
    */
   @SubscriptionMapping
@@ -72,7 +75,9 @@ public class VehicleSubscriptionController {
     @Argument List<FormFactor> formFactors,
     @Argument List<PropulsionType> propulsionTypes,
     @Argument Boolean includeReserved,
-    @Argument Boolean includeDisabled
+    @Argument Boolean includeDisabled,
+    @Argument Boolean conflate,
+    @Argument String resumeToken
   ) {
     // Validate parameters
     validationService.validateCodespaces(codespaces);
@@ -133,6 +138,10 @@ public class VehicleSubscriptionController {
     }
 
     // Return publisher and ensure listener is removed when subscription ends
-    return vehicleSubscriptionHandler.getPublisher(filter);
+    return vehicleSubscriptionHandler.getPublisher(
+      filter,
+      conflate != null && conflate,
+      resumeToken
+    );
   }
 }
@@ -18,22 +18,40 @@
 
 package org.entur.lamassu.graphql.subscription.handler;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 import org.entur.lamassu.cache.EntityCache;
+import org.entur.lamassu.cache.EntityEvent;
+import org.entur.lamassu.cache.EntityEventShards;
+import org.entur.lamassu.cache.EntityEventStream;
 import org.entur.lamassu.cache.EntityListener;
 import org.entur.lamassu.graphql.subscription.model.UpdateType;
 import org.entur.lamassu.model.entities.Entity;
+import org.entur.lamassu.model.entities.LocationEntity;
+import org.entur.lamassu.model.entities.SystemEntity;
 import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Sinks;
 
 /**
  * Base class for entity subscription handlers.
- * Implements the EntityListener interface to receive cache updates and publishes them to subscribers.
+ * Implements the EntityListener interface to receive cache updates and routes them to
+ * the subscribers whose route and filter match them. Updates are received from every
+ * event of the entity cache, or, when entity event shards are given, only from the
+ * shards covered by the active subscriptions.
+ *
+ * <p>When an entity event stream is given, updates are received from the stream
+ * instead, and carry a resume token. A subscription started with the token of the last
+ * update it received replays the updates it missed from the stream, rather than
+ * starting from a snapshot.
  *
  * @param <T> The entity type
  * @param <U> The update type
@@ -45,30 +63,300 @@ public abstract class EntitySubscriptionHandler<T extends Entity, U>
     EntitySubscriptionHandler.class
   );
 
-  // Using onBackpressureBuffer for better handling of large initial datasets
-  protected final Sinks.Many<U> sink = Sinks.many().multicast().onBackpressureBuffer();
+  private static final int BUFFER_SIZE = 100;
+  private static final Duration BUFFER_TIMEOUT = Duration.ofMillis(50);
+  static final int SNAPSHOT_CHUNK_SIZE = 500;
+  static final int MAX_REPLAY_EVENTS = 10_000;
+  private static final int REPLAY_PAGE_SIZE = 1000;
+
+  protected final SubscriptionRouter<U> router;
+
+  private final Counter mergedCounter;
+  private final Counter cancelledCounter;
+  private final ShardSubscriptions<T> shardSubscriptions;
+  private final EntityEventStream<T> eventStream;
+  private final Counter replayedCounter;
+  private final Counter snapshotCounter;
 
-  protected EntitySubscriptionHandler(EntityCache<T> entityCache) {
-    entityCache.addListener(this);
+  protected EntitySubscriptionHandler(
+    EntityCache<T> entityCache,
+    String entity,
+    MeterRegistry meterRegistry
+  ) {
+    this(entityCache, null, null, entity, meterRegistry);
   }
 
   /**
-   * Gets the publisher for this subscription handler.
+   * @param entityCache The entity cache, whose events are received when not sharded
+   * @param eventShards The entity event shards to receive events from, or null to
+   *                    receive every event of the entity cache
+   * @param eventStream The entity event stream to receive events from, and replay the
+   *                    events missed by resumed subscriptions from, or null
+   * @param entity The entity name used to tag metrics
+   * @param meterRegistry The registry of the subscription metrics
+   */
+  protected EntitySubscriptionHandler(
+    EntityCache<T> entityCache,
+    EntityEventShards<T> eventShards,
+    EntityEventStream<T> eventStream,
+    String entity,
+    MeterRegistry meterRegistry
+  ) {
+    this.router = new SubscriptionRouter<>(entity, meterRegistry);
+    this.mergedCounter = conflatedCounter(meterRegistry, entity, "merged");
+    this.cancelledCounter = conflatedCounter(meterRegistry, entity, "cancelled");
+    this.eventStream = eventStream;
+    this.replayedCounter = resumedCounter(meterRegistry, entity, "replayed");
+    this.snapshotCounter = resumedCounter(meterRegistry, entity, "snapshot");
+    if (eventStream != null) {
+      // The positions of the updates are only known from the stream, so every update
+      // is received from it
+      this.shardSubscriptions = null;
+      eventStream.listen(this::onStreamEvent);
+    } else if (eventShards == null) {
+      this.shardSubscriptions = null;
+      entityCache.addListener(this);
+    } else {
+      this.shardSubscriptions = new ShardSubscriptions<>(eventShards, this);
+      Gauge
+        .builder(
+          "app.lamassu.subscription.shards",
+          shardSubscriptions,
+          ShardSubscriptions::getSubscriptionCount
+        )
+        .description("Number of entity event shard subscriptions of this instance")
+        .tag("entity", entity)
+        .register(meterRegistry);
+    }
+  }
+
+  /**
+   * Gets the publisher for this subscription handler, receiving every update matching
+   * the filter.
    *
    * @return The publisher with initial data
    */
   protected Publisher<List<U>> getPublisher(List<U> initialUpdates, Predicate<U> filter) {
+    return getPublisher(initialUpdates, filter, SubscriptionRoute.EVERYWHERE);
+  }
+
+  /**
+   * Gets the publisher for this subscription handler, receiving the updates routed to
+   * the given route and matching the filter.
+   *
+   * @return The publisher with initial data
+   */
+  protected Publisher<List<U>> getPublisher(
+    List<U> initialUpdates,
+    Predicate<U> filter,
+    SubscriptionRoute route
+  ) {
+    return getPublisher(initialUpdates, filter, route, false);
+  }
+
+  /**
+   * Gets the publisher for this subscription handler, receiving the updates routed to
+   * the given route and matching the filter.
+   *
+   * <p>A conflating publisher only delivers the latest update of each entity since the
+   * previous batch, and keeps updating the pending updates while the subscriber is not
+   * ready for the next batch, instead of buffering every update.
+   *
+   * @param conflate Whether to conflate the updates of each entity
+   * @return The publisher with initial data
+   */
+  protected Publisher<List<U>> getPublisher(
+    List<U> initialUpdates,
+    Predicate<U> filter,
+    SubscriptionRoute route,
+    boolean conflate
+  ) {
     logger.trace("Preparing to send {} initial updates", initialUpdates.size());
+    return getPublisher(Flux.fromIterable(initialUpdates), filter, route, conflate);
+  }
 
-    return sink
-      .asFlux()
-      .startWith(initialUpdates)
-      .filter(filter)
-      .bufferTimeout(100, Duration.ofMillis(50))
+  /**
+   * Gets the publisher for this subscription handler, receiving the initial updates as
+   * they are emitted, followed by the updates routed to the given route and matching
+   * the filter.
+   *
+   * <p>The subscription is registered before the initial updates are requested, and
+   * the updates routed to it meanwhile are delivered after the last initial update, so
+   * no update is lost, and no initial update replaces a later update.
+   *
+   * @param initialUpdates The initial updates, requested when the publisher is
+   *                       subscribed to
+   * @param conflate Whether to conflate the updates of each entity
+   * @return The publisher with initial data
+   */
+  protected Publisher<List<U>> getPublisher(
+    Flux<U> initialUpdates,
+    Predicate<U> filter,
+    SubscriptionRoute route,
+    boolean conflate
+  ) {
+    if (conflate) {
+      return getConflatingPublisher(initialUpdates, filter, route)
+        .mergeWith(Flux.never()); // This ensures the stream never completes
+    }
+
+    return Flux
+      .defer(() -> {
+        var subscription = register(route, filter);
+        return subscription
+          .asFlux()
+          .startWith(initialUpdates.filter(filter))
+          .doFinally(signal -> unregister(subscription, route));
+      })
+      .bufferTimeout(BUFFER_SIZE, BUFFER_TIMEOUT)
       .onBackpressureBuffer(10000) // Buffer up to 10000 items before applying backpressure
       .mergeWith(Flux.never()); // This ensures the stream never completes
   }
 
+  private Flux<List<U>> getConflatingPublisher(
+    Flux<U> initialUpdates,
+    Predicate<U> filter,
+    SubscriptionRoute route
+  ) {
+    return Flux.defer(() -> {
+      var conflater = new UpdateConflater<U>(
+        this::getEntityId,
+        this::getUpdateType,
+        (update, updateType) ->
+          withResumeToken(
+            createUpdate(getEntityId(update), getEntity(update), updateType),
+            getResumeToken(update)
+          ),
+        mergedCounter,
+        cancelledCounter
+      );
+
+      var subscription = register(route, filter);
+      var updates = subscription
+        .asFlux()
+        .startWith(initialUpdates.filter(filter))
+        .doOnNext(conflater::add)
+        .thenMany(Flux.<List<U>>empty());
+
+      // Ticks arriving while a batch is being delivered are dropped, so the pending
+      // updates keep being conflated until the subscriber is ready
+      var batches = Flux
+        .interval(BUFFER_TIMEOUT)
+        .onBackpressureDrop()
+        .concatMap(tick -> Flux.fromIterable(conflater.drain()).buffer(BUFFER_SIZE), 1);
+
+      return Flux
+        .merge(updates, batches)
+        .doFinally(signal -> unregister(subscription, route));
+    });
+  }
+
+  /**
+   * Gets the initial updates of a subscription. A subscription resumed with a valid
+   * resume token gets the updates it missed since the token, if they are all still in
+   * the entity event stream. Otherwise, it gets the snapshot, tagged with the resume
+   * token of the latest event before it.
+   *
+   * @param resumeToken The resume token of the last update received, or null
+   * @param snapshot The updates of the current entities
+   * @return The initial updates, found when subscribed to
+   */
+  protected Flux<U> getInitialUpdates(String resumeToken, Flux<U> snapshot) {
+    if (eventStream == null) {
+      return snapshot;
+    }
+
+    return Flux.defer(() -> {
+      List<U> missedUpdates = getMissedUpdates(resumeToken);
+      if (missedUpdates != null) {
+        replayedCounter.increment();
+        return Flux.fromIterable(missedUpdates);
+      }
+
+      if (resumeToken != null) {
+        snapshotCounter.increment();
+      }
+      // Read before the snapshot, so the token never skips an event it does not include
+      String token = ResumeToken.encode(eventStream.getLastPosition());
+      return snapshot.map(update -> withResumeToken(update, token));
+    });
+  }
+
+  /**
+   * Gets the creation updates of the entities of a snapshot, read a chunk of entities
+   * at a time as the updates are requested, so the first updates are emitted before
+   * the rest of the entities are read.
+   *
+   * @param chunks Supplies the entities of the snapshot in chunks of at most
+   *               SNAPSHOT_CHUNK_SIZE entities, reading each chunk when it is consumed
+   * @return The updates, read when subscribed to
+   */
+  protected Flux<U> getSnapshot(Supplier<Stream<List<T>>> chunks) {
+    return Flux
+      .fromStream(chunks)
+      .concatMapIterable(entities -> entities, 1)
+      .map(entity -> createUpdate(entity.getId(), entity, UpdateType.CREATE));
+  }
+
+  /**
+   * The updates after the position of the resume token, or null if the token is not
+   * valid, some of the events after it are no longer in the stream, or there are more
+   * than can be replayed
+   */
+  private List<U> getMissedUpdates(String resumeToken) {
+    String position = ResumeToken.decode(resumeToken);
+    if (position == null) {
+      return null;
+    }
+
+    try {
+      String firstPosition = eventStream.getFirstPosition();
+      if (firstPosition == null || eventStream.compare(position, firstPosition) < 0) {
+        // The event of the position was trimmed, and maybe some of the events after it
+        return null;
+      }
+
+      List<U> updates = new ArrayList<>();
+      while (true) {
+        var events = eventStream.readAfter(position, REPLAY_PAGE_SIZE);
+        for (EntityEvent<T> event : events) {
+          updates.add(toUpdate(event));
+        }
+        if (updates.size() > MAX_REPLAY_EVENTS) {
+          return null;
+        }
+        if (events.size() < REPLAY_PAGE_SIZE) {
+          return updates;
+        }
+        position = events.get(events.size() - 1).getPosition();
+      }
+    } catch (IllegalArgumentException e) {
+      logger.debug("Unable to resume from position {}", position, e);
+      return null;
+    }
+  }
+
+  private SubscriptionRouter.Subscription<U> register(
+    SubscriptionRoute route,
+    Predicate<U> filter
+  ) {
+    var subscription = router.register(route, filter);
+    if (shardSubscriptions != null) {
+      shardSubscriptions.add(route);
+    }
+    return subscription;
+  }
+
+  private void unregister(
+    SubscriptionRouter.Subscription<U> subscription,
+    SubscriptionRoute route
+  ) {
+    router.unregister(subscription);
+    if (shardSubscriptions != null) {
+      shardSubscriptions.remove(route);
+    }
+  }
+
   /**
    * Creates an update object for the given entity and update type.
    *
@@ -79,18 +367,105 @@ public abstract class EntitySubscriptionHandler<T extends Entity, U>
    */
   protected abstract U createUpdate(String id, T entity, UpdateType updateType);
 
+  /**
+   * Gets the ID of the entity of the given update.
+   */
+  protected abstract String getEntityId(U update);
+
+  /**
+   * Gets the update type of the given update.
+   */
+  protected abstract UpdateType getUpdateType(U update);
+
+  /**
+   * Gets the entity of the given update.
+   */
+  protected abstract T getEntity(U update);
+
+  /**
+   * Copies the given update with a resume token. Updates without a resume token are
+   * returned as they are by default.
+   */
+  protected U withResumeToken(U update, String resumeToken) {
+    return update;
+  }
+
+  /**
+   * Gets the resume token of the given update, or null if it has none.
+   */
+  protected String getResumeToken(U update) {
+    return null;
+  }
+
   @Override
   public void onEntityCreated(String id, T entity) {
-    sink.tryEmitNext(createUpdate(id, entity, UpdateType.CREATE));
+    route(createUpdate(id, entity, UpdateType.CREATE), entity);
   }
 
   @Override
   public void onEntityUpdated(String id, T entity) {
-    sink.tryEmitNext(createUpdate(id, entity, UpdateType.UPDATE));
+    route(createUpdate(id, entity, UpdateType.UPDATE), entity);
   }
 
   @Override
   public void onEntityDeleted(String id, T entity) {
-    sink.tryEmitNext(createUpdate(id, entity, UpdateType.DELETE));
+    route(createUpdate(id, entity, UpdateType.DELETE), entity);
+  }
+
+  private void onStreamEvent(EntityEvent<T> event) {
+    route(toUpdate(event), event.getEntity());
+  }
+
+  private U toUpdate(EntityEvent<T> event) {
+    UpdateType updateType =
+      switch (event.getType()) {
+        case CREATED -> UpdateType.CREATE;
+        case UPDATED -> UpdateType.UPDATE;
+        case DELETED -> UpdateType.DELETE;
+      };
+    return withResumeToken(
+      createUpdate(event.getId(), event.getEntity(), updateType),
+      ResumeToken.encode(event.getPosition())
+    );
+  }
+
+  private void route(U update, T entity) {
+    Double lat = null;
+    Double lon = null;
+    String systemId = null;
+    if (entity instanceof LocationEntity locationEntity) {
+      lat = locationEntity.getLat();
+      lon = locationEntity.getLon();
+    }
+    if (entity instanceof SystemEntity systemEntity) {
+      systemId = systemEntity.getSystemId();
+    }
+    router.route(update, lat, lon, systemId);
+  }
+
+  private static Counter resumedCounter(
+    MeterRegistry meterRegistry,
+    String entity,
+    String outcome
+  ) {
+    return Counter
+      .builder("app.lamassu.subscription.resumed")
+      .description("Number of subscriptions started with a resume token")
+      .tag("entity", entity)
+      .tag("outcome", outcome)
+      .register(meterRegistry);
+  }
+
+  private static Counter conflatedCounter(
+    MeterRegistry meterRegistry,
+    String entity,
+    String outcome
+  ) {
+    return Counter
+      .builder("app.lamassu.subscription.conflated")
+      .description("Number of updates not delivered to conflating subscriptions")
+      .tag("entity", entity)
+      .tag("outcome", outcome)
+      .register(meterRegistry);
   }
 }
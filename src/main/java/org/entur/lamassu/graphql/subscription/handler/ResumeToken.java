@@ -0,0 +1,51 @@
+package org.entur.lamassu.graphql.subscription.handler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque tokens used to resume subscriptions. The token of an update holds the position
+ * of its event in the entity event stream, and a subscription started with the token
+ * replays the events after it.
+ */
+final class ResumeToken {
+
+  private static final String POSITION_PREFIX = "position:";
+
+  private ResumeToken() {}
+
+  /**
+   * Decode a token into a position of the entity event stream, or null if the token is
+   * not valid, in which case the subscription starts from a snapshot.
+   */
+  static String decode(String token) {
+    if (token == null) {
+      return null;
+    }
+    try {
+      var decoded = new String(
+        Base64.getUrlDecoder().decode(token),
+        StandardCharsets.UTF_8
+      );
+      if (
+        decoded.startsWith(POSITION_PREFIX) &&
+        decoded.length() > POSITION_PREFIX.length()
+      ) {
+        return decoded.substring(POSITION_PREFIX.length());
+      }
+    } catch (IllegalArgumentException e) {
+      // Fall through, handled below
+    }
+    return null;
+  }
+
+  static String encode(String position) {
+    if (position == null) {
+      return null;
+    }
+    return Base64
+      .getUrlEncoder()
+      .withoutPadding()
+      .encodeToString((POSITION_PREFIX + position).getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,146 @@
+package org.entur.lamassu.graphql.subscription.handler;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import org.entur.lamassu.cache.EntityEvent;
+import org.entur.lamassu.cache.EntityEventShards;
+import org.entur.lamassu.cache.EntityListener;
+import org.entur.lamassu.model.entities.Entity;
+
+/**
+ * Keeps this instance subscribed to the entity event shards covered by its active
+ * subscriptions, and passes their events to the listener.
+ *
+ * <p>Each shard is subscribed while at least one subscription covers it. While any
+ * subscription needs every shard, all shards are received through one subscription,
+ * and the events of the single shard subscriptions are ignored, so no event is passed
+ * on twice. The single shards are received until the subscription of every shard is
+ * confirmed, so no event of a covered shard is missed in between.
+ *
+ * @param <T> The entity type
+ */
+final class ShardSubscriptions<T extends Entity> {
+
+  static final int MAX_SHARDS_PER_SUBSCRIPTION = 16;
+
+  private final EntityEventShards<T> shards;
+  private final EntityListener<T> listener;
+
+  private final Map<String, Integer> shardCounts = new HashMap<>();
+  private final Map<String, Integer> shardSubscriptionIds = new HashMap<>();
+  private int allShardsCount = 0;
+  private CompletionStage<Integer> allShardsSubscription = null;
+  private volatile boolean receivingAllShards = false;
+
+  ShardSubscriptions(EntityEventShards<T> shards, EntityListener<T> listener) {
+    this.shards = shards;
+    this.listener = listener;
+  }
+
+  /**
+   * Subscribe to the shards covered by a route, until they are removed again
+   */
+  synchronized void add(SubscriptionRoute route) {
+    Set<String> routeShards = getShards(route);
+    if (routeShards == null) {
+      if (allShardsCount++ == 0) {
+        var subscription = shards.subscribeAll(this::onAllShardsEvent);
+        allShardsSubscription = subscription;
+        subscription.thenRun(() -> onAllShardsSubscribed(subscription));
+      }
+      return;
+    }
+
+    for (String shard : routeShards) {
+      if (shardCounts.merge(shard, 1, Integer::sum) == 1) {
+        shardSubscriptionIds.put(shard, shards.subscribe(shard, this::onShardEvent));
+      }
+    }
+  }
+
+  synchronized void remove(SubscriptionRoute route) {
+    Set<String> routeShards = getShards(route);
+    if (routeShards == null) {
+      if (--allShardsCount == 0) {
+        receivingAllShards = false;
+        allShardsSubscription.thenAccept(shards::unsubscribeAll);
+        allShardsSubscription = null;
+      }
+      return;
+    }
+
+    for (String shard : routeShards) {
+      Integer count = shardCounts.computeIfPresent(
+        shard,
+        (key, value) -> value == 1 ? null : value - 1
+      );
+      if (count == null) {
+        Integer subscriptionId = shardSubscriptionIds.remove(shard);
+        if (subscriptionId != null) {
+          shards.unsubscribe(shard, subscriptionId);
+        }
+      }
+    }
+  }
+
+  /**
+   * The number of shard subscriptions, counting the subscription of every shard as one
+   */
+  synchronized int getSubscriptionCount() {
+    return shardSubscriptionIds.size() + (allShardsSubscription != null ? 1 : 0);
+  }
+
+  private synchronized void onAllShardsSubscribed(
+    CompletionStage<Integer> subscription
+  ) {
+    // Unless every shard was unsubscribed again while the subscription was pending
+    if (allShardsSubscription == subscription) {
+      receivingAllShards = true;
+    }
+  }
+
+  private void onShardEvent(EntityEvent<T> event) {
+    if (!receivingAllShards) {
+      event.dispatch(listener);
+    }
+  }
+
+  private void onAllShardsEvent(EntityEvent<T> event) {
+    if (receivingAllShards) {
+      event.dispatch(listener);
+    }
+  }
+
+  /**
+   * The shards covered by the area of the route, or null if the route needs every
+   * shard. Updates without a location are routed to every subscription, so their shard
+   * is always included.
+   */
+  static Set<String> getShards(SubscriptionRoute route) {
+    if (!route.hasArea()) {
+      return null;
+    }
+    int minimumLatitudeIndex = EntityEventShards.index(route.minimumLatitude());
+    int maximumLatitudeIndex = EntityEventShards.index(route.maximumLatitude());
+    int minimumLongitudeIndex = EntityEventShards.index(route.minimumLongitude());
+    int maximumLongitudeIndex = EntityEventShards.index(route.maximumLongitude());
+    long shardCount =
+      (long) (maximumLatitudeIndex - minimumLatitudeIndex + 1) *
+      (maximumLongitudeIndex - minimumLongitudeIndex + 1);
+    if (shardCount <= 0 || shardCount > MAX_SHARDS_PER_SUBSCRIPTION) {
+      return null;
+    }
+
+    Set<String> routeShards = new HashSet<>();
+    routeShards.add(EntityEventShards.NO_LOCATION_SHARD);
+    for (int lat = minimumLatitudeIndex; lat <= maximumLatitudeIndex; lat++) {
+      for (int lon = minimumLongitudeIndex; lon <= maximumLongitudeIndex; lon++) {
+        routeShards.add(EntityEventShards.shard(lat, lon));
+      }
+    }
+    return routeShards;
+  }
+}
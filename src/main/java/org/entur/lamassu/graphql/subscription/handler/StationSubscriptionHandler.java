@@ -18,20 +18,21 @@
 
 package org.entur.lamassu.graphql.subscription.handler;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.List;
+import java.util.Optional;
 import org.entur.lamassu.cache.EntityCache;
+import org.entur.lamassu.cache.EntityEventShards;
+import org.entur.lamassu.cache.EntityEventStream;
 import org.entur.lamassu.graphql.subscription.filter.StationUpdateFilter;
 import org.entur.lamassu.graphql.subscription.model.StationUpdate;
 import org.entur.lamassu.graphql.subscription.model.UpdateType;
+import org.entur.lamassu.metrics.MetricsService;
 import org.entur.lamassu.model.entities.Station;
-import org.entur.lamassu.service.BoundingBoxQueryParameters;
 import org.entur.lamassu.service.GeoSearchService;
-import org.entur.lamassu.service.RangeQueryParameters;
-import org.entur.lamassu.service.StationFilterParameters;
 import org.reactivestreams.Publisher;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 
 /**
  * Subscription handler for station updates.
@@ -41,22 +42,30 @@ import org.springframework.stereotype.Component;
 public class StationSubscriptionHandler
   extends EntitySubscriptionHandler<Station, StationUpdate> {
 
-  private static Logger logger = LoggerFactory.getLogger(
-    StationSubscriptionHandler.class
-  );
-
   private final GeoSearchService geoSearchService;
 
   /**
    * Creates a new StationSubscriptionHandler with bounding box parameters.
    *
    * @param geoSearchService The geo search service
+   * @param stationEventShards The station event shards, if station events are sharded
+   * @param stationEventStream The station event stream, if subscriptions are resumable
+   * @param meterRegistry The registry of the subscription routing metrics
    */
   public StationSubscriptionHandler(
     GeoSearchService geoSearchService,
-    EntityCache<Station> stationCache
+    EntityCache<Station> stationCache,
+    Optional<EntityEventShards<Station>> stationEventShards,
+    Optional<EntityEventStream<Station>> stationEventStream,
+    MeterRegistry meterRegistry
   ) {
-    super(stationCache);
+    super(
+      stationCache,
+      stationEventShards.orElse(null),
+      stationEventStream.orElse(null),
+      MetricsService.ENTITY_STATION,
+      meterRegistry
+    );
     this.geoSearchService = geoSearchService;
   }
 
@@ -69,49 +78,92 @@ public class StationSubscriptionHandler
     return new StationUpdate(id, updateType, station);
   }
 
-  public Publisher<List<StationUpdate>> getPublisher(StationUpdateFilter filter) {
-    var initialUpdates = getInitialUpdates(filter);
-    return super.getPublisher(initialUpdates, filter);
+  @Override
+  protected String getEntityId(StationUpdate update) {
+    return update.getStationId();
   }
 
-  private List<StationUpdate> getInitialUpdates(StationUpdateFilter filter) {
-    List<Station> initialStations;
-
-    if (filter.getBoundingBoxParameters() != null) {
-      initialStations =
-        getInitialUpdates(
-          filter.getFilterParameters(),
-          filter.getBoundingBoxParameters()
-        );
-    } else {
-      initialStations =
-        getInitialUpdates(filter.getFilterParameters(), filter.getRangeQueryParameters());
-    }
+  @Override
+  protected UpdateType getUpdateType(StationUpdate update) {
+    return update.getUpdateType();
+  }
 
-    logger.trace("Found {} stations for subscription", initialStations.size());
+  @Override
+  protected Station getEntity(StationUpdate update) {
+    return update.getStation();
+  }
 
-    // Convert to list of updates
-    List<StationUpdate> initialUpdates = initialStations
-      .stream()
-      .map(station -> createUpdate(station.getId(), station, UpdateType.CREATE))
-      .toList();
+  @Override
+  protected StationUpdate withResumeToken(StationUpdate update, String resumeToken) {
+    return new StationUpdate(
+      update.getStationId(),
+      update.getUpdateType(),
+      update.getStation(),
+      resumeToken
+    );
+  }
 
-    logger.trace("Mapped to {} matching stations", initialUpdates.size());
+  @Override
+  protected String getResumeToken(StationUpdate update) {
+    return update.getResumeToken();
+  }
 
-    return initialUpdates;
+  public Publisher<List<StationUpdate>> getPublisher(StationUpdateFilter filter) {
+    return getPublisher(filter, false);
   }
 
-  private List<Station> getInitialUpdates(
-    StationFilterParameters filterParams,
-    RangeQueryParameters queryParams
+  public Publisher<List<StationUpdate>> getPublisher(
+    StationUpdateFilter filter,
+    boolean conflate
   ) {
-    return geoSearchService.getStationsWithinRange(queryParams, filterParams);
+    return getPublisher(filter, conflate, null);
   }
 
-  private List<Station> getInitialUpdates(
-    StationFilterParameters filterParams,
-    BoundingBoxQueryParameters queryParams
+  /**
+   * Gets the publisher of the updates matching the filter.
+   *
+   * @param filter The filter of the subscription
+   * @param conflate Whether to only deliver the latest update of each station per batch
+   * @param resumeToken The resume token of the last update received before, to only
+   *                    get the updates missed since, or null
+   * @return The publisher with initial data
+   */
+  public Publisher<List<StationUpdate>> getPublisher(
+    StationUpdateFilter filter,
+    boolean conflate,
+    String resumeToken
   ) {
-    return geoSearchService.getStationsInBoundingBox(queryParams, filterParams);
+    var initialUpdates = getInitialUpdates(resumeToken, getSnapshot(filter));
+    return super.getPublisher(
+      initialUpdates,
+      filter,
+      SubscriptionRoute.of(
+        filter.getBoundingBoxParameters(),
+        filter.getRangeQueryParameters(),
+        filter.getFilterParameters() != null
+          ? filter.getFilterParameters().getSystems()
+          : null
+      ),
+      conflate
+    );
+  }
+
+  private Flux<StationUpdate> getSnapshot(StationUpdateFilter filter) {
+    if (filter.getBoundingBoxParameters() != null) {
+      return getSnapshot(() ->
+        geoSearchService.getStationChunksInBoundingBox(
+          filter.getBoundingBoxParameters(),
+          filter.getFilterParameters(),
+          SNAPSHOT_CHUNK_SIZE
+        )
+      );
+    }
+    return getSnapshot(() ->
+      geoSearchService.getStationChunksWithinRange(
+        filter.getRangeQueryParameters(),
+        filter.getFilterParameters(),
+        SNAPSHOT_CHUNK_SIZE
+      )
+    );
   }
 }
@@ -0,0 +1,102 @@
+package org.entur.lamassu.graphql.subscription.handler;
+
+import java.util.List;
+import java.util.Set;
+import org.entur.lamassu.service.BoundingBoxQueryParameters;
+import org.entur.lamassu.service.RangeQueryParameters;
+
+/**
+ * The area and systems a subscription can match, used to route updates only to the
+ * subscriptions that can possibly match them. Subscriptions still apply their own
+ * filter to the routed updates, so a route may be wider than the subscription.
+ *
+ * @param minimumLatitude Minimum latitude of the area, or null if not limited by area
+ * @param minimumLongitude Minimum longitude of the area
+ * @param maximumLatitude Maximum latitude of the area
+ * @param maximumLongitude Maximum longitude of the area
+ * @param systems The systems the subscription is limited to, or null for all systems
+ */
+public record SubscriptionRoute(
+  Double minimumLatitude,
+  Double minimumLongitude,
+  Double maximumLatitude,
+  Double maximumLongitude,
+  Set<String> systems
+) {
+  /**
+   * Route to every subscription, for updates of subscriptions without known limits
+   */
+  public static final SubscriptionRoute EVERYWHERE = new SubscriptionRoute(
+    null,
+    null,
+    null,
+    null,
+    null
+  );
+
+  private static final double METERS_PER_DEGREE_LATITUDE = 111_320;
+
+  public static SubscriptionRoute of(
+    BoundingBoxQueryParameters boundingBoxParameters,
+    RangeQueryParameters rangeQueryParameters,
+    List<String> systems
+  ) {
+    Set<String> systemSet = systems == null || systems.isEmpty()
+      ? null
+      : Set.copyOf(systems);
+
+    if (
+      boundingBoxParameters != null &&
+      boundingBoxParameters.getMinimumLatitude() != null &&
+      boundingBoxParameters.getMinimumLongitude() != null &&
+      boundingBoxParameters.getMaximumLatitude() != null &&
+      boundingBoxParameters.getMaximumLongitude() != null
+    ) {
+      return new SubscriptionRoute(
+        boundingBoxParameters.getMinimumLatitude(),
+        boundingBoxParameters.getMinimumLongitude(),
+        boundingBoxParameters.getMaximumLatitude(),
+        boundingBoxParameters.getMaximumLongitude(),
+        systemSet
+      );
+    }
+
+    if (
+      rangeQueryParameters != null &&
+      rangeQueryParameters.getLat() != null &&
+      rangeQueryParameters.getLon() != null &&
+      rangeQueryParameters.getRange() != null
+    ) {
+      // The bounding box of the range, which is wider than the range itself
+      double lat = rangeQueryParameters.getLat();
+      double lon = rangeQueryParameters.getLon();
+      double latitudeDelta =
+        rangeQueryParameters.getRange() / METERS_PER_DEGREE_LATITUDE;
+      double longitudeDelta =
+        latitudeDelta /
+        Math.max(Math.cos(Math.toRadians(Math.abs(lat) + latitudeDelta)), 0.01);
+      return new SubscriptionRoute(
+        lat - latitudeDelta,
+        lon - longitudeDelta,
+        lat + latitudeDelta,
+        lon + longitudeDelta,
+        systemSet
+      );
+    }
+
+    return new SubscriptionRoute(null, null, null, null, systemSet);
+  }
+
+  public boolean hasArea() {
+    return (
+      minimumLatitude != null &&
+      minimumLongitude != null &&
+      maximumLatitude != null &&
+      maximumLongitude != null
+    );
+  }
+
+  public boolean matchesSystem(String systemId) {
+    return systems == null || systemId == null || systems.contains(systemId);
+  }
+}
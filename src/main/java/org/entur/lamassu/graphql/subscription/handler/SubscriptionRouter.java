@@ -0,0 +1,222 @@
+package org.entur.lamassu.graphql.subscription.handler;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Routes entity updates to the subscriptions whose route can match them.
+ *
+ * <p>Subscriptions limited to an area are indexed by the grid cells covering the area,
+ * so an update is only tested against the subscriptions of the cell it is in, and
+ * those without an area. Subscriptions whose area covers too many cells are kept with
+ * those without an area. Subscriptions limited to systems are skipped for updates
+ * of other systems before their filter is applied.
+ *
+ * @param <U> The update type
+ */
+public class SubscriptionRouter<U> {
+
+  static final double CELL_SIZE_DEGREES = 0.05;
+  static final int MAX_CELLS_PER_SUBSCRIPTION = 400;
+
+  private static final String LABEL_ENTITY = "entity";
+
+  private final Map<Long, Set<Subscription<U>>> subscriptionsByCell =
+    new ConcurrentHashMap<>();
+  private final Set<Subscription<U>> unroutedSubscriptions =
+    ConcurrentHashMap.newKeySet();
+  private final Set<Subscription<U>> subscriptions = ConcurrentHashMap.newKeySet();
+
+  private final Timer routingTimer;
+  private final DistributionSummary candidatesSummary;
+  private final DistributionSummary fanOutSummary;
+
+  public SubscriptionRouter(String entity, MeterRegistry meterRegistry) {
+    routingTimer =
+      Timer
+        .builder("app.lamassu.subscription.routing")
+        .description("Time spent routing an update to its subscriptions")
+        .tag(LABEL_ENTITY, entity)
+        .register(meterRegistry);
+    candidatesSummary =
+      DistributionSummary
+        .builder("app.lamassu.subscription.candidates")
+        .description("Number of subscriptions whose filter is applied to an update")
+        .tag(LABEL_ENTITY, entity)
+        .register(meterRegistry);
+    fanOutSummary =
+      DistributionSummary
+        .builder("app.lamassu.subscription.fanout")
+        .description("Number of subscriptions an update is delivered to")
+        .tag(LABEL_ENTITY, entity)
+        .register(meterRegistry);
+    Gauge
+      .builder("app.lamassu.subscription.active", subscriptions, Set::size)
+      .tag(LABEL_ENTITY, entity)
+      .register(meterRegistry);
+  }
+
+  /**
+   * Register a subscription, which receives the routed updates matching its filter
+   * until it is unregistered
+   */
+  public Subscription<U> register(SubscriptionRoute route, Predicate<U> filter) {
+    var subscription = new Subscription<>(route, filter, getCells(route));
+    subscriptions.add(subscription);
+    if (subscription.cells == null) {
+      unroutedSubscriptions.add(subscription);
+    } else {
+      for (long cell : subscription.cells) {
+        subscriptionsByCell.compute(
+          cell,
+          (key, cellSubscriptions) -> {
+            var result = cellSubscriptions == null
+              ? ConcurrentHashMap.<Subscription<U>>newKeySet()
+              : cellSubscriptions;
+            result.add(subscription);
+            return result;
+          }
+        );
+      }
+    }
+    return subscription;
+  }
+
+  public void unregister(Subscription<U> subscription) {
+    subscriptions.remove(subscription);
+    if (subscription.cells == null) {
+      unroutedSubscriptions.remove(subscription);
+    } else {
+      for (long cell : subscription.cells) {
+        subscriptionsByCell.computeIfPresent(
+          cell,
+          (key, cellSubscriptions) -> {
+            cellSubscriptions.remove(subscription);
+            return cellSubscriptions.isEmpty() ? null : cellSubscriptions;
+          }
+        );
+      }
+    }
+    subscription.sink.tryEmitComplete();
+  }
+
+  /**
+   * Deliver an update to the subscriptions matching it
+   *
+   * @param update The update
+   * @param lat The latitude of the updated entity, or null if it has no location
+   * @param lon The longitude of the updated entity, or null if it has no location
+   * @param systemId The system of the updated entity, or null if it has no system
+   */
+  public void route(U update, Double lat, Double lon, String systemId) {
+    long start = System.nanoTime();
+    int candidates = 0;
+    int deliveries = 0;
+
+    if (lat == null || lon == null) {
+      // Updates without a location can't be routed by area
+      for (Subscription<U> subscription : subscriptions) {
+        candidates++;
+        deliveries += subscription.deliver(update, systemId) ? 1 : 0;
+      }
+    } else {
+      var cellSubscriptions = subscriptionsByCell.get(cell(lat, lon));
+      if (cellSubscriptions != null) {
+        for (Subscription<U> subscription : cellSubscriptions) {
+          candidates++;
+          deliveries += subscription.deliver(update, systemId) ? 1 : 0;
+        }
+      }
+      for (Subscription<U> subscription : unroutedSubscriptions) {
+        candidates++;
+        deliveries += subscription.deliver(update, systemId) ? 1 : 0;
+      }
+    }
+
+    candidatesSummary.record(candidates);
+    fanOutSummary.record(deliveries);
+    routingTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+  }
+
+  int getSubscriptionCount() {
+    return subscriptions.size();
+  }
+
+  /**
+   * The cells covering the area of the route, or null if the route is not limited to
+   * an area, or covers too many cells to be indexed
+   */
+  private static long[] getCells(SubscriptionRoute route) {
+    if (!route.hasArea()) {
+      return null;
+    }
+    int minimumLatitudeIndex = index(route.minimumLatitude());
+    int maximumLatitudeIndex = index(route.maximumLatitude());
+    int minimumLongitudeIndex = index(route.minimumLongitude());
+    int maximumLongitudeIndex = index(route.maximumLongitude());
+    long cellCount =
+      (long) (maximumLatitudeIndex - minimumLatitudeIndex + 1) *
+      (maximumLongitudeIndex - minimumLongitudeIndex + 1);
+    if (cellCount <= 0 || cellCount > MAX_CELLS_PER_SUBSCRIPTION) {
+      return null;
+    }
+
+    long[] cells = new long[(int) cellCount];
+    int i = 0;
+    for (int lat = minimumLatitudeIndex; lat <= maximumLatitudeIndex; lat++) {
+      for (int lon = minimumLongitudeIndex; lon <= maximumLongitudeIndex; lon++) {
+        cells[i++] = cell(lat, lon);
+      }
+    }
+    return cells;
+  }
+
+  static long cell(double lat, double lon) {
+    return cell(index(lat), index(lon));
+  }
+
+  private static long cell(int latitudeIndex, int longitudeIndex) {
+    return ((long) latitudeIndex << 32) | (longitudeIndex & 0xffffffffL);
+  }
+
+  private static int index(double degrees) {
+    return (int) Math.floor(degrees / CELL_SIZE_DEGREES);
+  }
+
+  /**
+   * A registered subscription, with its own sink of matching updates
+   */
+  public static final class Subscription<U> {
+
+    private final SubscriptionRoute route;
+    private final Predicate<U> filter;
+    private final long[] cells;
+    private final Sinks.Many<U> sink = Sinks.many().unicast().onBackpressureBuffer();
+
+    private Subscription(SubscriptionRoute route, Predicate<U> filter, long[] cells) {
+      this.route = route;
+      this.filter = filter;
+      this.cells = cells;
+    }
+
+    public Flux<U> asFlux() {
+      return sink.asFlux();
+    }
+
+    private boolean deliver(U update, String systemId) {
+      if (!route.matchesSystem(systemId) || !filter.test(update)) {
+        return false;
+      }
+      return sink.tryEmitNext(update).isSuccess();
+    }
+  }
+}
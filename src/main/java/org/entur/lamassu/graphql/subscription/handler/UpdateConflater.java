@@ -0,0 +1,104 @@
+package org.entur.lamassu.graphql.subscription.handler;
+
+import io.micrometer.core.instrument.Counter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import org.entur.lamassu.graphql.subscription.model.UpdateType;
+
+/**
+ * Keeps the latest pending update of each entity of one subscription until they are
+ * drained for delivery, so the pending updates of a subscription are bounded by the
+ * number of entities it matches rather than by the number of updates.
+ *
+ * <p>An update replacing a pending update of the same entity keeps the update type
+ * describing both: an update of a created entity is still a creation, a creation of a
+ * deleted entity is an update, and a deletion of a created entity cancels both.
+ *
+ * @param <U> The update type
+ */
+final class UpdateConflater<U> {
+
+  private final Map<String, U> pending = new LinkedHashMap<>();
+  private final Function<U, String> idFunction;
+  private final Function<U, UpdateType> updateTypeFunction;
+  private final BiFunction<U, UpdateType, U> withUpdateTypeFunction;
+  private final Counter mergedCounter;
+  private final Counter cancelledCounter;
+
+  /**
+   * @param idFunction Gets the id of the entity of an update
+   * @param updateTypeFunction Gets the type of an update
+   * @param withUpdateTypeFunction Copies an update with another update type
+   * @param mergedCounter Counts the updates replaced by a later update
+   * @param cancelledCounter Counts the creations and deletions cancelling each other
+   */
+  UpdateConflater(
+    Function<U, String> idFunction,
+    Function<U, UpdateType> updateTypeFunction,
+    BiFunction<U, UpdateType, U> withUpdateTypeFunction,
+    Counter mergedCounter,
+    Counter cancelledCounter
+  ) {
+    this.idFunction = idFunction;
+    this.updateTypeFunction = updateTypeFunction;
+    this.withUpdateTypeFunction = withUpdateTypeFunction;
+    this.mergedCounter = mergedCounter;
+    this.cancelledCounter = cancelledCounter;
+  }
+
+  synchronized void add(U update) {
+    String id = idFunction.apply(update);
+    U previous = pending.get(id);
+    if (previous == null) {
+      pending.put(id, update);
+      return;
+    }
+
+    U merged = merge(previous, update);
+    if (merged == null) {
+      pending.remove(id);
+      cancelledCounter.increment(2);
+    } else {
+      pending.put(id, merged);
+      mergedCounter.increment();
+    }
+  }
+
+  /**
+   * Remove and return the pending updates, in the order their entities were first
+   * updated
+   */
+  synchronized List<U> drain() {
+    if (pending.isEmpty()) {
+      return List.of();
+    }
+    List<U> updates = new ArrayList<>(pending.values());
+    pending.clear();
+    return updates;
+  }
+
+  synchronized int size() {
+    return pending.size();
+  }
+
+  private U merge(U previous, U next) {
+    UpdateType previousType = updateTypeFunction.apply(previous);
+    UpdateType nextType = updateTypeFunction.apply(next);
+
+    if (previousType == UpdateType.CREATE) {
+      // The subscriber has not seen the entity, so it is still a creation, or nothing
+      return nextType == UpdateType.DELETE
+        ? null
+        : withUpdateTypeFunction.apply(next, UpdateType.CREATE);
+    }
+    if (nextType == UpdateType.CREATE) {
+      // The subscriber has seen the entity, which was deleted and created again
+      return withUpdateTypeFunction.apply(next, UpdateType.UPDATE);
+    }
+    return next;
+  }
+}
@@ -18,20 +18,21 @@
 
 package org.entur.lamassu.graphql.subscription.handler;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.List;
+import java.util.Optional;
 import org.entur.lamassu.cache.EntityCache;
+import org.entur.lamassu.cache.EntityEventShards;
+import org.entur.lamassu.cache.EntityEventStream;
 import org.entur.lamassu.graphql.subscription.filter.VehicleUpdateFilter;
 import org.entur.lamassu.graphql.subscription.model.UpdateType;
 import org.entur.lamassu.graphql.subscription.model.VehicleUpdate;
+import org.entur.lamassu.metrics.MetricsService;
 import org.entur.lamassu.model.entities.Vehicle;
-import org.entur.lamassu.service.BoundingBoxQueryParameters;
 import org.entur.lamassu.service.GeoSearchService;
-import org.entur.lamassu.service.RangeQueryParameters;
-import org.entur.lamassu.service.VehicleFilterParameters;
 import org.reactivestreams.Publisher;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 
 /**
  * Subscription handler for vehicle updates.
@@ -41,22 +42,30 @@ import org.springframework.stereotype.Component;
 public class VehicleSubscriptionHandler
   extends EntitySubscriptionHandler<Vehicle, VehicleUpdate> {
 
-  private static Logger logger = LoggerFactory.getLogger(
-    VehicleSubscriptionHandler.class
-  );
-
   private final GeoSearchService geoSearchService;
 
   /**
    * Creates a new VehicleSubscriptionHandler with bounding box parameters.
    *
    * @param geoSearchService The geo search service
+   * @param vehicleEventShards The vehicle event shards, if vehicle events are sharded
+   * @param vehicleEventStream The vehicle event stream, if subscriptions are resumable
+   * @param meterRegistry The registry of the subscription routing metrics
    */
   public VehicleSubscriptionHandler(
     GeoSearchService geoSearchService,
-    EntityCache<Vehicle> vehicleCache
+    EntityCache<Vehicle> vehicleCache,
+    Optional<EntityEventShards<Vehicle>> vehicleEventShards,
+    Optional<EntityEventStream<Vehicle>> vehicleEventStream,
+    MeterRegistry meterRegistry
   ) {
-    super(vehicleCache);
+    super(
+      vehicleCache,
+      vehicleEventShards.orElse(null),
+      vehicleEventStream.orElse(null),
+      MetricsService.ENTITY_VEHICLE,
+      meterRegistry
+    );
     this.geoSearchService = geoSearchService;
   }
 
@@ -69,50 +78,95 @@ public class VehicleSubscriptionHandler
     return new VehicleUpdate(id, updateType, vehicle);
   }
 
-  public Publisher<List<VehicleUpdate>> getPublisher(VehicleUpdateFilter filter) {
-    List<VehicleUpdate> initialUpdates = getInitialUpdates(filter);
-    logger.trace("Preparing to send {} initial updates", initialUpdates.size());
-    return super.getPublisher(initialUpdates, filter);
+  @Override
+  protected String getEntityId(VehicleUpdate update) {
+    return update.getVehicleId();
   }
 
-  private List<VehicleUpdate> getInitialUpdates(VehicleUpdateFilter filter) {
-    List<Vehicle> initialStations;
-
-    if (filter.getBoundingBoxParameters() != null) {
-      initialStations =
-        getInitialUpdates(
-          filter.getFilterParameters(),
-          filter.getBoundingBoxParameters()
-        );
-    } else {
-      initialStations =
-        getInitialUpdates(filter.getFilterParameters(), filter.getRangeQueryParameters());
-    }
+  @Override
+  protected UpdateType getUpdateType(VehicleUpdate update) {
+    return update.getUpdateType();
+  }
 
-    logger.trace("Found {} stations for subscription", initialStations.size());
+  @Override
+  protected Vehicle getEntity(VehicleUpdate update) {
+    return update.getVehicle();
+  }
 
-    // Convert to list of updates
-    List<VehicleUpdate> initialUpdates = initialStations
-      .stream()
-      .map(vehicle -> createUpdate(vehicle.getId(), vehicle, UpdateType.CREATE))
-      .toList();
+  @Override
+  protected VehicleUpdate withResumeToken(VehicleUpdate update, String resumeToken) {
+    return new VehicleUpdate(
+      update.getVehicleId(),
+      update.getUpdateType(),
+      update.getVehicle(),
+      resumeToken
+    );
+  }
 
-    logger.trace("Mapped to {} matching stations", initialUpdates.size());
+  @Override
+  protected String getResumeToken(VehicleUpdate update) {
+    return update.getResumeToken();
+  }
 
-    return initialUpdates;
+  public Publisher<List<VehicleUpdate>> getPublisher(VehicleUpdateFilter filter) {
+    return getPublisher(filter, false);
   }
 
-  private List<Vehicle> getInitialUpdates(
-    VehicleFilterParameters filterParams,
-    RangeQueryParameters queryParams
+  public Publisher<List<VehicleUpdate>> getPublisher(
+    VehicleUpdateFilter filter,
+    boolean conflate
   ) {
-    return geoSearchService.getVehiclesWithinRange(queryParams, filterParams);
+    return getPublisher(filter, conflate, null);
   }
 
-  private List<Vehicle> getInitialUpdates(
-    VehicleFilterParameters filterParams,
-    BoundingBoxQueryParameters queryParams
+  /**
+   * Gets the publisher of the updates matching the filter.
+   *
+   * @param filter The filter of the subscription
+   * @param conflate Whether to only deliver the latest update of each vehicle per batch
+   * @param resumeToken The resume token of the last update received before, to only
+   *                    get the updates missed since, or null
+   * @return The publisher with initial data
+   */
+  public Publisher<List<VehicleUpdate>> getPublisher(
+    VehicleUpdateFilter filter,
+    boolean conflate,
+    String resumeToken
   ) {
-    return geoSearchService.getVehiclesInBoundingBox(queryParams, filterParams);
+    Flux<VehicleUpdate> initialUpdates = getInitialUpdates(
+      resumeToken,
+      getSnapshot(filter)
+    );
+    return super.getPublisher(
+      initialUpdates,
+      filter,
+      SubscriptionRoute.of(
+        filter.getBoundingBoxParameters(),
+        filter.getRangeQueryParameters(),
+        filter.getFilterParameters() != null
+          ? filter.getFilterParameters().getSystems()
+          : null
+      ),
+      conflate
+    );
+  }
+
+  private Flux<VehicleUpdate> getSnapshot(VehicleUpdateFilter filter) {
+    if (filter.getBoundingBoxParameters() != null) {
+      return getSnapshot(() ->
+        geoSearchService.getVehicleChunksInBoundingBox(
+          filter.getBoundingBoxParameters(),
+          filter.getFilterParameters(),
+          SNAPSHOT_CHUNK_SIZE
+        )
+      );
+    }
+    return getSnapshot(() ->
+      geoSearchService.getVehicleChunksWithinRange(
+        filter.getRangeQueryParameters(),
+        filter.getFilterParameters(),
+        SNAPSHOT_CHUNK_SIZE
+      )
+    );
   }
 }
@@ -29,6 +29,7 @@ public class StationUpdate {
   private final String stationId;
   private final UpdateType updateType;
   private final Station station;
+  private final String resumeToken;
 
   /**
    * Creates a new StationUpdate.
@@ -38,9 +39,27 @@ public class StationUpdate {
    * @param station The station entity (null for DELETE updates)
    */
   public StationUpdate(String stationId, UpdateType updateType, Station station) {
+    this(stationId, updateType, station, null);
+  }
+
+  /**
+   * Creates a new StationUpdate with a resume token.
+   *
+   * @param stationId The ID of the station that was updated
+   * @param updateType The type of update (CREATE, UPDATE, DELETE)
+   * @param station The station entity (null for DELETE updates)
+   * @param resumeToken The token to resume the subscription after this update
+   */
+  public StationUpdate(
+    String stationId,
+    UpdateType updateType,
+    Station station,
+    String resumeToken
+  ) {
     this.stationId = stationId;
     this.updateType = updateType;
     this.station = station;
+    this.resumeToken = resumeToken;
   }
 
   /**
@@ -70,4 +89,14 @@ public class StationUpdate {
   public Station getStation() {
     return station;
   }
+
+  /**
+   * Gets the token to resume the subscription after this update.
+   * Will be null unless subscriptions are resumable.
+   *
+   * @return The resume token, or null
+   */
+  public String getResumeToken() {
+    return resumeToken;
+  }
 }
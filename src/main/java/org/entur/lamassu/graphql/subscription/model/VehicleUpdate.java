@@ -29,6 +29,7 @@ public class VehicleUpdate {
   private final String vehicleId;
   private final UpdateType updateType;
   private final Vehicle vehicle;
+  private final String resumeToken;
 
   /**
    * Creates a new VehicleUpdate.
@@ -38,9 +39,27 @@ public class VehicleUpdate {
    * @param vehicle The vehicle entity (null for DELETE updates)
    */
   public VehicleUpdate(String vehicleId, UpdateType updateType, Vehicle vehicle) {
+    this(vehicleId, updateType, vehicle, null);
+  }
+
+  /**
+   * Creates a new VehicleUpdate with a resume token.
+   *
+   * @param vehicleId The ID of the vehicle that was updated
+   * @param updateType The type of update (CREATE, UPDATE, DELETE)
+   * @param vehicle The vehicle entity (null for DELETE updates)
+   * @param resumeToken The token to resume the subscription after this update
+   */
+  public VehicleUpdate(
+    String vehicleId,
+    UpdateType updateType,
+    Vehicle vehicle,
+    String resumeToken
+  ) {
     this.vehicleId = vehicleId;
     this.updateType = updateType;
     this.vehicle = vehicle;
+    this.resumeToken = resumeToken;
   }
 
   /**
@@ -70,4 +89,14 @@ public class VehicleUpdate {
   public Vehicle getVehicle() {
     return vehicle;
   }
+
+  /**
+   * Gets the token to resume the subscription after this update.
+   * Will be null unless subscriptions are resumable.
+   *
+   * @return The resume token, or null
+   */
+  public String getResumeToken() {
+    return resumeToken;
+  }
 }
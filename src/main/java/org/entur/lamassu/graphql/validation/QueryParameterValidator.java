@@ -3,6 +3,7 @@ package org.entur.lamassu.graphql.validation;
 import graphql.GraphqlErrorException;
 import java.util.List;
 import java.util.function.Predicate;
+import org.entur.lamassu.graphql.query.QueryCursor;
 import org.entur.lamassu.service.FeedProviderService;
 import org.springframework.stereotype.Service;
 
@@ -25,6 +26,10 @@ public class QueryParameterValidator {
     validate(p -> p > -1, range, "Range must be non-negative");
   }
 
+  public void validateCursor(String cursor) {
+    validate(QueryCursor::isValid, cursor, "Invalid cursor");
+  }
+
   public void validateCodespaces(List<String> codespaces) {
     if (codespaces != null) {
       var validCodespaces = feedProviderService.getCodespaces();
@@ -0,0 +1,305 @@
+package org.entur.lamassu.leader;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.entur.gbfs.loader.v2.GbfsV2Delivery;
+import org.entur.gbfs.loader.v3.GbfsV3Delivery;
+import org.entur.lamassu.config.GbfsJacksonConverterConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Keeps a fingerprint of each file of the last processed delivery of each system, made
+ * of its last_updated and the md5 digest of its content serialized as JSON, as in the
+ * metadata of stored feed bodies, to tell which files of a new delivery hold anything
+ * which has not already been mapped and written to the caches.
+ *
+ * <p>The last_updated of the files are compared first. A file is only digested when its
+ * last_updated is unchanged, so a file is always processed the first time its
+ * last_updated repeats, and files which are updated on every poll are never digested.
+ *
+ * <p>Files are only considered unchanged until the maximum age has passed since they
+ * were last processed, so entities cached with a ttl are eventually rewritten even if
+ * their feeds never change.
+ */
+final class DeliveryFingerprints {
+
+  /**
+   * Files which may be skipped on their own when unchanged, since no other file is
+   * mapped from them
+   */
+  static final Set<String> INDEPENDENT_FILES = Set.of(
+    "system_information",
+    "system_hours",
+    "system_calendar",
+    "system_regions",
+    "system_pricing_plans",
+    "system_alerts",
+    "geofencing_zones"
+  );
+
+  private static final Logger logger = LoggerFactory.getLogger(
+    DeliveryFingerprints.class
+  );
+  private static final ObjectMapper objectMapper =
+    GbfsJacksonConverterConfig.gbfsObjectMapper();
+
+  private final Duration maximumAge;
+  private final Map<String, Map<String, Processed>> processedBySystemId =
+    new ConcurrentHashMap<>();
+
+  /**
+   * @param maximumAge The longest time a file may be skipped for being unchanged since
+   *                   it was last processed
+   */
+  DeliveryFingerprints(Duration maximumAge) {
+    this.maximumAge = maximumAge;
+  }
+
+  /**
+   * Compare the files of a delivery with those of the last processed delivery of the
+   * system
+   */
+  Comparison compare(String systemId, Map<String, DeliveryFile> files, Instant now) {
+    var processed = processedBySystemId.getOrDefault(systemId, Map.of());
+
+    Map<String, Fingerprint> fingerprints = new HashMap<>();
+    Set<String> unchangedFiles = new HashSet<>();
+    for (var entry : files.entrySet()) {
+      var file = entry.getValue();
+      var previous = processed.get(entry.getKey());
+      var fingerprint = previous != null &&
+        file.lastUpdated() != null &&
+        file.lastUpdated().equals(previous.fingerprint().lastUpdated())
+        ? new Fingerprint(file.lastUpdated(), contentHash(file.content()))
+        : new Fingerprint(file.lastUpdated(), null);
+      fingerprints.put(entry.getKey(), fingerprint);
+      if (
+        fingerprint.contentHash() != null &&
+        fingerprint.equals(previous.fingerprint()) &&
+        now.isBefore(previous.processedAt().plus(maximumAge))
+      ) {
+        unchangedFiles.add(entry.getKey());
+      }
+    }
+    var unchanged =
+      !files.isEmpty() &&
+      unchangedFiles.size() == files.size() &&
+      unchangedFiles.size() == processed.size();
+    return new Comparison(fingerprints, unchangedFiles, unchanged);
+  }
+
+  /**
+   * Keep the fingerprints of a delivery which has been processed, except for the files
+   * which were skipped for being unchanged, which keep the time they were last processed
+   */
+  void processed(String systemId, Comparison comparison, Instant now) {
+    var previous = processedBySystemId.getOrDefault(systemId, Map.of());
+    var skippedFiles = comparison.skippedFiles();
+    Map<String, Processed> processed = new HashMap<>();
+    comparison
+      .fingerprints()
+      .forEach((fileName, fingerprint) ->
+        processed.put(
+          fileName,
+          skippedFiles.contains(fileName)
+            ? new Processed(fingerprint, previous.get(fileName).processedAt())
+            : new Processed(fingerprint, now)
+        )
+      );
+    processedBySystemId.put(systemId, processed);
+  }
+
+  void remove(String systemId) {
+    processedBySystemId.remove(systemId);
+  }
+
+  static Map<String, DeliveryFile> of(GbfsV2Delivery delivery) {
+    Map<String, DeliveryFile> files = new HashMap<>();
+    add(files, "gbfs", delivery.discovery(), f -> f.getLastUpdated());
+    add(
+      files,
+      "system_information",
+      delivery.systemInformation(),
+      f -> f.getLastUpdated()
+    );
+    add(files, "vehicle_types", delivery.vehicleTypes(), f -> f.getLastUpdated());
+    add(
+      files,
+      "station_information",
+      delivery.stationInformation(),
+      f -> f.getLastUpdated()
+    );
+    add(
+      files,
+      "station_status",
+      delivery.stationStatus(),
+      f -> f.getLastUpdated()
+    );
+    add(
+      files,
+      "free_bike_status",
+      delivery.freeBikeStatus(),
+      f -> f.getLastUpdated()
+    );
+    add(files, "system_hours", delivery.systemHours(), f -> f.getLastUpdated());
+    add(
+      files,
+      "system_calendar",
+      delivery.systemCalendar(),
+      f -> f.getLastUpdated()
+    );
+    add(
+      files,
+      "system_regions",
+      delivery.systemRegions(),
+      f -> f.getLastUpdated()
+    );
+    add(
+      files,
+      "system_pricing_plans",
+      delivery.systemPricingPlans(),
+      f -> f.getLastUpdated()
+    );
+    add(files, "system_alerts", delivery.systemAlerts(), f -> f.getLastUpdated());
+    add(
+      files,
+      "geofencing_zones",
+      delivery.geofencingZones(),
+      f -> f.getLastUpdated()
+    );
+    return files;
+  }
+
+  static Map<String, DeliveryFile> of(GbfsV3Delivery delivery) {
+    Map<String, DeliveryFile> files = new HashMap<>();
+    add(files, "gbfs", delivery.discovery(), f -> f.getLastUpdated());
+    add(
+      files,
+      "system_information",
+      delivery.systemInformation(),
+      f -> f.getLastUpdated()
+    );
+    add(files, "vehicle_types", delivery.vehicleTypes(), f -> f.getLastUpdated());
+    add(
+      files,
+      "station_information",
+      delivery.stationInformation(),
+      f -> f.getLastUpdated()
+    );
+    add(
+      files,
+      "station_status",
+      delivery.stationStatus(),
+      f -> f.getLastUpdated()
+    );
+    add(
+      files,
+      "vehicle_status",
+      delivery.vehicleStatus(),
+      f -> f.getLastUpdated()
+    );
+    add(
+      files,
+      "system_regions",
+      delivery.systemRegions(),
+      f -> f.getLastUpdated()
+    );
+    add(
+      files,
+      "system_pricing_plans",
+      delivery.systemPricingPlans(),
+      f -> f.getLastUpdated()
+    );
+    add(files, "system_alerts", delivery.systemAlerts(), f -> f.getLastUpdated());
+    add(
+      files,
+      "geofencing_zones",
+      delivery.geofencingZones(),
+      f -> f.getLastUpdated()
+    );
+    return files;
+  }
+
+  private static <T> void add(
+    Map<String, DeliveryFile> files,
+    String fileName,
+    T file,
+    Function<T, Object> lastUpdated
+  ) {
+    if (file != null) {
+      files.put(
+        fileName,
+        new DeliveryFile(toEpochSeconds(lastUpdated.apply(file)), file)
+      );
+    }
+  }
+
+  /**
+   * The md5 digest of the file serialized as JSON, or null if it can't be serialized,
+   * in which case the file is never unchanged
+   */
+  private static String contentHash(Object file) {
+    try {
+      return DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(file));
+    } catch (JsonProcessingException e) {
+      logger.warn("Unable to serialize file {} for fingerprint", file.getClass(), e);
+      return null;
+    }
+  }
+
+  private static Long toEpochSeconds(Object lastUpdated) {
+    if (lastUpdated instanceof Date date) {
+      return date.getTime() / 1000;
+    }
+    if (lastUpdated instanceof Number number) {
+      return number.longValue();
+    }
+    return null;
+  }
+
+  /**
+   * A file of a delivery and its last_updated, in epoch seconds
+   */
+  record DeliveryFile(Long lastUpdated, Object content) {}
+
+  /**
+   * The last_updated of a file, in epoch seconds, and the digest of its content, or null
+   * if it was not digested
+   */
+  record Fingerprint(Long lastUpdated, String contentHash) {}
+
+  /**
+   * The fingerprints of the files of a delivery, which of them are unchanged since they
+   * were last processed, and whether the whole delivery may be skipped
+   */
+  record Comparison(
+    Map<String, Fingerprint> fingerprints,
+    Set<String> unchangedFiles,
+    boolean unchanged
+  ) {
+    /**
+     * The unchanged files which may be skipped while the rest of the delivery is
+     * processed
+     */
+    Set<String> skippedFiles() {
+      return unchangedFiles
+        .stream()
+        .filter(INDEPENDENT_FILES::contains)
+        .collect(Collectors.toSet());
+    }
+  }
+
+  private record Processed(Fingerprint fingerprint, Instant processedAt) {}
+}
@@ -0,0 +1,76 @@
+package org.entur.lamassu.leader;
+
+import org.entur.lamassu.cache.EntityCache;
+import org.entur.lamassu.cache.EntityEvent;
+import org.entur.lamassu.cache.EntityEventShards;
+import org.entur.lamassu.cache.EntityListener;
+import org.entur.lamassu.model.entities.LocationEntity;
+import org.entur.lamassu.model.entities.Station;
+import org.entur.lamassu.model.entities.Vehicle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Republishes the events of the vehicle and station caches to the entity event shard
+ * of the location of each entity. Only the leader receives every entity event, and the
+ * other instances subscribe to the shards their subscriptions cover.
+ */
+@Component
+@Profile("leader")
+@ConditionalOnProperty(
+  name = "org.entur.lamassu.sharded-entity-events.enabled",
+  havingValue = "true"
+)
+public class EntityEventShardPublisher {
+
+  private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+  public EntityEventShardPublisher(
+    EntityCache<Vehicle> vehicleCache,
+    EntityCache<Station> stationCache,
+    EntityEventShards<Vehicle> vehicleEventShards,
+    EntityEventShards<Station> stationEventShards
+  ) {
+    vehicleCache.addListener(new ShardPublisher<>(vehicleEventShards));
+    stationCache.addListener(new ShardPublisher<>(stationEventShards));
+    logger.info("Publishing vehicle and station events to entity event shards");
+  }
+
+  private static class ShardPublisher<T extends LocationEntity>
+    implements EntityListener<T> {
+
+    private final EntityEventShards<T> shards;
+
+    private ShardPublisher(EntityEventShards<T> shards) {
+      this.shards = shards;
+    }
+
+    @Override
+    public void onEntityCreated(String id, T entity) {
+      publish(new EntityEvent<>(EntityEvent.Type.CREATED, id, entity));
+    }
+
+    @Override
+    public void onEntityUpdated(String id, T entity) {
+      publish(new EntityEvent<>(EntityEvent.Type.UPDATED, id, entity));
+    }
+
+    @Override
+    public void onEntityDeleted(String id, T entity) {
+      publish(new EntityEvent<>(EntityEvent.Type.DELETED, id, entity));
+    }
+
+    private void publish(EntityEvent<T> event) {
+      T entity = event.getEntity();
+      shards.publish(
+        entity == null
+          ? EntityEventShards.NO_LOCATION_SHARD
+          : EntityEventShards.shard(entity.getLat(), entity.getLon()),
+        event
+      );
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package org.entur.lamassu.leader;
+
+import org.entur.lamassu.cache.EntityCache;
+import org.entur.lamassu.cache.EntityEvent;
+import org.entur.lamassu.cache.EntityEventStream;
+import org.entur.lamassu.cache.EntityListener;
+import org.entur.lamassu.model.entities.Entity;
+import org.entur.lamassu.model.entities.Station;
+import org.entur.lamassu.model.entities.Vehicle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Appends the events of the vehicle and station caches to the entity event streams,
+ * from which the instances deliver them to resumable subscriptions. Only the leader
+ * receives every entity event, so the streams get each event once.
+ */
+@Component
+@Profile("leader")
+@ConditionalOnProperty(
+  name = "org.entur.lamassu.resumable-subscriptions.enabled",
+  havingValue = "true"
+)
+public class EntityEventStreamPublisher {
+
+  private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+  public EntityEventStreamPublisher(
+    EntityCache<Vehicle> vehicleCache,
+    EntityCache<Station> stationCache,
+    EntityEventStream<Vehicle> vehicleEventStream,
+    EntityEventStream<Station> stationEventStream
+  ) {
+    vehicleCache.addListener(new StreamPublisher<>(vehicleEventStream));
+    stationCache.addListener(new StreamPublisher<>(stationEventStream));
+    logger.info("Appending vehicle and station events to entity event streams");
+  }
+
+  private static class StreamPublisher<T extends Entity> implements EntityListener<T> {
+
+    private final EntityEventStream<T> stream;
+
+    private StreamPublisher(EntityEventStream<T> stream) {
+      this.stream = stream;
+    }
+
+    @Override
+    public void onEntityCreated(String id, T entity) {
+      stream.append(new EntityEvent<>(EntityEvent.Type.CREATED, id, entity));
+    }
+
+    @Override
+    public void onEntityUpdated(String id, T entity) {
+      stream.append(new EntityEvent<>(EntityEvent.Type.UPDATED, id, entity));
+    }
+
+    @Override
+    public void onEntityDeleted(String id, T entity) {
+      stream.append(new EntityEvent<>(EntityEvent.Type.DELETED, id, entity));
+    }
+  }
+}
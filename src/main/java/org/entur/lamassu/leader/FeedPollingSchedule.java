@@ -0,0 +1,137 @@
+package org.entur.lamassu.leader;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.random.RandomGenerator;
+import org.entur.lamassu.model.provider.FeedProvider;
+
+/**
+ * Keeps the time each feed is next due to be polled, from the time its last delivery
+ * expires according to its ttl, so feeds are polled as often as they are updated,
+ * within bounds, instead of all at once on a fixed interval.
+ *
+ * <p>A jitter of up to the given fraction of the interval is added to each due time,
+ * spreading out feeds with the same ttl. A polled feed is due again after the default
+ * interval unless its delivery is received before, so failing feeds are retried as
+ * before.
+ */
+final class FeedPollingSchedule {
+
+  private final Duration minimumInterval;
+  private final Duration maximumInterval;
+  private final Duration defaultInterval;
+  private final double jitter;
+  private final RandomGenerator random;
+
+  private final Map<String, Due> dueBySystemId = new ConcurrentHashMap<>();
+
+  /**
+   * @param minimumInterval The shortest interval between two polls of a feed
+   * @param maximumInterval The longest interval between two polls of a feed
+   * @param defaultInterval The interval for feeds without a known expiry, and the
+   *                        retry interval of feeds whose poll did not deliver
+   * @param jitter The largest fraction of an interval added to it at random
+   * @param random The source of the jitter
+   */
+  FeedPollingSchedule(
+    Duration minimumInterval,
+    Duration maximumInterval,
+    Duration defaultInterval,
+    double jitter,
+    RandomGenerator random
+  ) {
+    this.minimumInterval = minimumInterval;
+    this.maximumInterval = maximumInterval;
+    this.defaultInterval = defaultInterval;
+    this.jitter = jitter;
+    this.random = random;
+  }
+
+  /**
+   * Schedule a feed which has just been polled, so it is due after the default interval
+   * unless its delivery is received before
+   */
+  void add(FeedProvider feedProvider, Instant now) {
+    dueBySystemId.put(
+      feedProvider.getSystemId(),
+      new Due(feedProvider, now.plus(defaultInterval))
+    );
+  }
+
+  void remove(String systemId) {
+    dueBySystemId.remove(systemId);
+  }
+
+  /**
+   * Reschedule a feed from the time its delivery expires, so feeds with a ttl of 0 are
+   * polled after the minimum interval. A feed is polled after the default interval if
+   * its expiry is not known, or if it expired more than the default interval ago, as
+   * it does when the feed is stale upstream.
+   *
+   * @param expiry The time the delivered data is expected to be replaced, or null
+   */
+  void delivered(String systemId, Instant expiry, Instant now) {
+    Duration interval = expiry == null || isStale(expiry, now)
+      ? defaultInterval
+      : clamp(Duration.between(now, expiry));
+    reschedule(systemId, now.plus(withJitter(interval)));
+  }
+
+  /**
+   * Remove and return the feeds due at the given time, rescheduling each of them after
+   * the default interval until its delivery is received
+   */
+  List<Due> poll(Instant now) {
+    List<Due> due = new ArrayList<>();
+    for (Due next : dueBySystemId.values()) {
+      if (!next.dueAt().isAfter(now)) {
+        due.add(next);
+        reschedule(next.feedProvider().getSystemId(), now.plus(defaultInterval));
+      }
+    }
+    return due;
+  }
+
+  int size() {
+    return dueBySystemId.size();
+  }
+
+  private void reschedule(String systemId, Instant dueAt) {
+    dueBySystemId.computeIfPresent(
+      systemId,
+      (key, due) -> new Due(due.feedProvider(), dueAt)
+    );
+  }
+
+  private boolean isStale(Instant expiry, Instant now) {
+    return expiry.plus(defaultInterval).isBefore(now);
+  }
+
+  private Duration clamp(Duration interval) {
+    if (interval.compareTo(minimumInterval) < 0) {
+      return minimumInterval;
+    }
+    if (interval.compareTo(maximumInterval) > 0) {
+      return maximumInterval;
+    }
+    return interval;
+  }
+
+  private Duration withJitter(Duration interval) {
+    if (jitter <= 0) {
+      return interval;
+    }
+    return interval.plusMillis(
+      (long) (interval.toMillis() * jitter * random.nextDouble())
+    );
+  }
+
+  /**
+   * The time a feed is next due to be polled
+   */
+  record Due(FeedProvider feedProvider, Instant dueAt) {}
+}
@@ -19,7 +19,14 @@
 package org.entur.lamassu.leader;
 
 import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import org.entur.gbfs.GbfsSubscriptionManager;
@@ -75,6 +82,35 @@ public class FeedUpdater {
   @Value("${org.entur.lamassu.maxValidationResultsPerSystem:10}")
   private Integer maxValidationResultsPerSystem;
 
+  @Value("${org.entur.lamassu.adaptive-feed-polling.enabled:false}")
+  private boolean adaptivePolling;
+
+  @Value("${org.entur.lamassu.adaptive-feed-polling.minimum-interval:5s}")
+  private Duration minimumPollingInterval;
+
+  @Value("${org.entur.lamassu.adaptive-feed-polling.maximum-interval:5m}")
+  private Duration maximumPollingInterval;
+
+  @Value("${org.entur.lamassu.adaptive-feed-polling.jitter:0.1}")
+  private double pollingJitter;
+
+  @Value("${org.entur.lamassu.feedupdateinterval:30000}")
+  private long feedUpdateInterval;
+
+  private FeedPollingSchedule pollingSchedule;
+  private final Set<String> updatingSystemIds = ConcurrentHashMap.newKeySet();
+
+  @Value("${org.entur.lamassu.skip-unchanged-deliveries.enabled:false}")
+  private boolean skipUnchangedDeliveries;
+
+  @Value("${org.entur.lamassu.skip-unchanged-deliveries.maximum-age:30m}")
+  private Duration unchangedDeliveryMaximumAge;
+
+  private DeliveryFingerprints deliveryFingerprints;
+
+  @Value("${org.entur.lamassu.lazy-version-conversion.enabled:false}")
+  private boolean lazyVersionConversion;
+
   private MetricsService metricsService;
 
   @Autowired
@@ -117,6 +153,19 @@ public class FeedUpdater {
         true
       );
     subscriptionManager = new GbfsSubscriptionManager(updaterThreadPool);
+    if (adaptivePolling) {
+      pollingSchedule =
+        new FeedPollingSchedule(
+          minimumPollingInterval,
+          maximumPollingInterval,
+          Duration.ofMillis(feedUpdateInterval),
+          pollingJitter,
+          new Random()
+        );
+    }
+    if (skipUnchangedDeliveries) {
+      deliveryFingerprints = new DeliveryFingerprints(unchangedDeliveryMaximumAge);
+    }
     updaterThreadPool.execute(this::createSubscriptions);
   }
 
@@ -124,8 +173,51 @@ public class FeedUpdater {
     subscriptionManager.update();
   }
 
+  /**
+   * Whether feeds are polled when their last delivery expires, by updateDue, rather than
+   * all at once on a fixed interval, by update
+   */
+  public boolean isAdaptivePolling() {
+    return adaptivePolling;
+  }
+
+  /**
+   * Poll each feed whose last delivery has expired on the updater thread pool, recording
+   * how late it is polled. A feed whose previous poll is still running is skipped, and
+   * due again after the default interval.
+   */
+  public void updateDue() {
+    if (pollingSchedule == null) {
+      return;
+    }
+    var now = Instant.now();
+    for (var due : pollingSchedule.poll(now)) {
+      var systemId = due.feedProvider().getSystemId();
+      var subscriptionId = subscriptionRegistry.getSubscriptionIdBySystemId(systemId);
+      if (subscriptionId == null) {
+        pollingSchedule.remove(systemId);
+        continue;
+      }
+      if (!updatingSystemIds.add(systemId)) {
+        continue;
+      }
+      metricsService.registerPollingLag(
+        due.feedProvider(),
+        Duration.between(due.dueAt(), now)
+      );
+      updaterThreadPool.execute(() -> {
+        try {
+          subscriptionManager.update(subscriptionId);
+        } finally {
+          updatingSystemIds.remove(systemId);
+        }
+      });
+    }
+  }
+
   public void stop() {
     subscriptionRegistry.clearInMemory();
+    updatingSystemIds.clear();
     updaterThreadPool.shutdown();
   }
 
@@ -192,17 +284,32 @@ public class FeedUpdater {
 
     String id;
 
-    if (feedProvider.getVersion() != null && feedProvider.getVersion().startsWith("3")) {
+    if (isV3(feedProvider)) {
       id =
         subscriptionManager.subscribeV3(
           options,
           gbfsV3Delivery -> {
             registerV3Validation(feedProvider, gbfsV3Delivery);
-            receiveV2Update(
+            var comparison = compareDelivery(
               feedProvider,
-              GbfsFeedVersionMappers.map(gbfsV3Delivery, feedProvider.getLanguage())
+              deliveryFingerprints != null
+                ? DeliveryFingerprints.of(gbfsV3Delivery)
+                : null
             );
-            receiveV3Update(feedProvider, gbfsV3Delivery);
+            if (comparison == null || !comparison.unchanged()) {
+              var skippedFiles = getSkippedFiles(comparison);
+              // With lazy version conversion, the v2 feeds are converted on request
+              if (!lazyVersionConversion) {
+                receiveV2Update(
+                  feedProvider,
+                  GbfsFeedVersionMappers.map(gbfsV3Delivery, feedProvider.getLanguage()),
+                  skippedFiles
+                );
+              }
+              receiveV3Update(feedProvider, gbfsV3Delivery, skippedFiles);
+              registerProcessedDelivery(feedProvider, comparison);
+            }
+            scheduleNextPoll(feedProvider, getExpiry(gbfsV3Delivery));
             cacheReady.set(true);
           },
           interceptor
@@ -213,11 +320,23 @@ public class FeedUpdater {
           options,
           gbfsV2Delivery -> {
             registerV2Validation(feedProvider, gbfsV2Delivery);
-            receiveV2Update(feedProvider, gbfsV2Delivery);
-            receiveV3Update(
+            var comparison = compareDelivery(
               feedProvider,
-              GbfsFeedVersionMappers.map(gbfsV2Delivery, feedProvider.getLanguage())
+              deliveryFingerprints != null
+                ? DeliveryFingerprints.of(gbfsV2Delivery)
+                : null
             );
+            if (comparison == null || !comparison.unchanged()) {
+              var skippedFiles = getSkippedFiles(comparison);
+              receiveV2Update(feedProvider, gbfsV2Delivery, skippedFiles);
+              receiveV3Update(
+                feedProvider,
+                GbfsFeedVersionMappers.map(gbfsV2Delivery, feedProvider.getLanguage()),
+                skippedFiles
+              );
+              registerProcessedDelivery(feedProvider, comparison);
+            }
+            scheduleNextPoll(feedProvider, getExpiry(gbfsV2Delivery));
             cacheReady.set(true);
           },
           interceptor
@@ -244,11 +363,18 @@ public class FeedUpdater {
       metricsService.registerSubscriptionSetup(feedProvider, true);
       // Register the subscription in the registry
       subscriptionRegistry.registerSubscription(feedProvider.getSystemId(), id);
+      if (pollingSchedule != null) {
+        pollingSchedule.add(feedProvider, Instant.now());
+      }
       // after registration, immediately update the feed
       subscriptionManager.update(id);
     }
   }
 
+  private static boolean isV3(FeedProvider feedProvider) {
+    return feedProvider.getVersion() != null && feedProvider.getVersion().startsWith("3");
+  }
+
   private void registerV2Validation(
     FeedProvider feedProvider,
     GbfsV2Delivery gbfsV2Delivery
@@ -312,23 +438,183 @@ public class FeedUpdater {
     }
   }
 
-  private void receiveV2Update(FeedProvider feedProvider, GbfsV2Delivery gbfsV2Delivery) {
+  private void receiveV2Update(
+    FeedProvider feedProvider,
+    GbfsV2Delivery gbfsV2Delivery,
+    Set<String> skippedFiles
+  ) {
     var mappedDelivery = gbfsV2DeliveryMapper.mapGbfsDelivery(
       gbfsV2Delivery,
       feedProvider
     );
-    v2FeedCachesUpdater.updateFeedCaches(feedProvider, mappedDelivery);
+    v2FeedCachesUpdater.updateFeedCaches(feedProvider, mappedDelivery, skippedFiles);
   }
 
-  private void receiveV3Update(FeedProvider feedProvider, GbfsV3Delivery gbfsV3Delivery) {
+  private void receiveV3Update(
+    FeedProvider feedProvider,
+    GbfsV3Delivery gbfsV3Delivery,
+    Set<String> skippedFiles
+  ) {
     var mappedDelivery = gbfsV3DeliveryMapper.mapGbfsDelivery(
       gbfsV3Delivery,
       feedProvider
     );
-    var oldDelivery = v3FeedCachesUpdater.updateFeedCaches(feedProvider, mappedDelivery);
+    var oldDelivery = v3FeedCachesUpdater.updateFeedCaches(
+      feedProvider,
+      mappedDelivery,
+      skippedFiles
+    );
     if (Boolean.TRUE.equals(feedProvider.getAggregate())) {
-      entityCachesUpdater.updateEntityCaches(feedProvider, mappedDelivery, oldDelivery);
+      entityCachesUpdater.updateEntityCaches(
+        feedProvider,
+        mappedDelivery,
+        oldDelivery,
+        skippedFiles
+      );
+    }
+  }
+
+  /**
+   * Compare a delivery with the last processed delivery of the system. A delivery whose
+   * files are all unchanged is skipped, only extending the expiration of its cached
+   * feeds, and otherwise its unchanged independent files are skipped.
+   *
+   * @param files The files of the delivery, or null if unchanged deliveries are not
+   *              skipped
+   * @return The comparison, or null if unchanged deliveries are not skipped
+   */
+  private DeliveryFingerprints.Comparison compareDelivery(
+    FeedProvider feedProvider,
+    Map<String, DeliveryFingerprints.DeliveryFile> files
+  ) {
+    if (files == null) {
+      return null;
     }
+    var comparison = deliveryFingerprints.compare(
+      feedProvider.getSystemId(),
+      files,
+      Instant.now()
+    );
+    metricsService.registerDeliveryComparison(
+      feedProvider,
+      comparison.fingerprints().size(),
+      comparison.unchangedFiles().size(),
+      comparison.unchanged()
+    );
+    if (comparison.unchanged()) {
+      logger.debug(
+        "Skipping unchanged delivery for system {}",
+        feedProvider.getSystemId()
+      );
+      if (!lazyVersionConversion || !isV3(feedProvider)) {
+        v2FeedCachesUpdater.refreshFeedCaches(feedProvider);
+      }
+      v3FeedCachesUpdater.refreshFeedCaches(feedProvider);
+    }
+    return comparison;
+  }
+
+  private static Set<String> getSkippedFiles(DeliveryFingerprints.Comparison comparison) {
+    return comparison != null ? comparison.skippedFiles() : Set.of();
+  }
+
+  private void registerProcessedDelivery(
+    FeedProvider feedProvider,
+    DeliveryFingerprints.Comparison comparison
+  ) {
+    if (comparison != null) {
+      deliveryFingerprints.processed(
+        feedProvider.getSystemId(),
+        comparison,
+        Instant.now()
+      );
+    }
+  }
+
+  private void scheduleNextPoll(FeedProvider feedProvider, Instant expiry) {
+    if (pollingSchedule != null) {
+      pollingSchedule.delivered(feedProvider.getSystemId(), expiry, Instant.now());
+    }
+  }
+
+  /**
+   * The time the first of the status feeds of the delivery expires, or the time the
+   * system information expires if there are no status feeds, or null if neither is
+   * known
+   */
+  static Instant getExpiry(GbfsV3Delivery delivery) {
+    Instant expiry = null;
+    if (delivery.vehicleStatus() != null) {
+      expiry =
+        earliest(
+          expiry,
+          delivery.vehicleStatus().getLastUpdated(),
+          delivery.vehicleStatus().getTtl()
+        );
+    }
+    if (delivery.stationStatus() != null) {
+      expiry =
+        earliest(
+          expiry,
+          delivery.stationStatus().getLastUpdated(),
+          delivery.stationStatus().getTtl()
+        );
+    }
+    if (expiry == null && delivery.systemInformation() != null) {
+      expiry =
+        earliest(
+          null,
+          delivery.systemInformation().getLastUpdated(),
+          delivery.systemInformation().getTtl()
+        );
+    }
+    return expiry;
+  }
+
+  /**
+   * The time the first of the status feeds of the delivery expires, or the time the
+   * system information expires if there are no status feeds, or null if neither is
+   * known
+   */
+  static Instant getExpiry(GbfsV2Delivery delivery) {
+    Instant expiry = null;
+    if (delivery.freeBikeStatus() != null) {
+      expiry =
+        earliest(
+          expiry,
+          toDate(delivery.freeBikeStatus().getLastUpdated()),
+          delivery.freeBikeStatus().getTtl()
+        );
+    }
+    if (delivery.stationStatus() != null) {
+      expiry =
+        earliest(
+          expiry,
+          toDate(delivery.stationStatus().getLastUpdated()),
+          delivery.stationStatus().getTtl()
+        );
+    }
+    if (expiry == null && delivery.systemInformation() != null) {
+      expiry =
+        earliest(
+          null,
+          toDate(delivery.systemInformation().getLastUpdated()),
+          delivery.systemInformation().getTtl()
+        );
+    }
+    return expiry;
+  }
+
+  private static Date toDate(Integer lastUpdated) {
+    return lastUpdated != null ? new Date(lastUpdated * 1000L) : null;
+  }
+
+  private static Instant earliest(Instant expiry, Date lastUpdated, Integer ttl) {
+    if (lastUpdated == null || ttl == null) {
+      return expiry;
+    }
+    var feedExpiry = lastUpdated.toInstant().plusSeconds(ttl);
+    return expiry == null || feedExpiry.isBefore(expiry) ? feedExpiry : expiry;
   }
 
   /**
@@ -364,6 +650,12 @@ public class FeedUpdater {
 
       // Remove from registry
       subscriptionRegistry.removeSubscription(feedProvider.getSystemId());
+      if (pollingSchedule != null) {
+        pollingSchedule.remove(feedProvider.getSystemId());
+      }
+      if (deliveryFingerprints != null) {
+        deliveryFingerprints.remove(feedProvider.getSystemId());
+      }
 
       // Clean up any cached data
       cacheCleanupService.clearCacheForSystem(feedProvider.getSystemId());
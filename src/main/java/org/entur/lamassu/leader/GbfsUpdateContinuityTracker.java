@@ -36,6 +36,7 @@
 
 package org.entur.lamassu.leader;
 
+import java.util.Date;
 import org.entur.gbfs.loader.v3.GbfsV3Delivery;
 import org.entur.lamassu.cache.UpdateContinuityCache;
 import org.slf4j.Logger;
@@ -98,6 +99,15 @@ public class GbfsUpdateContinuityTracker {
     vehicleStatusBases.setLastUpdateTime(systemId, null);
   }
 
+  /**
+   * Check if the vehicle status last updated at the given time is the base of the next
+   * vehicle update, without logging if it is not
+   */
+  public boolean isVehicleUpdateBase(String systemId, Date lastUpdated) {
+    var previousBase = vehicleStatusBases.getLastUpdateTime(systemId);
+    return previousBase != null && previousBase.equals(lastUpdated);
+  }
+
   /**
    * Check if there is continuity in station status updates by comparing timestamps.
    * Returns false if updates have been missed, indicating we need to start delta calculations from scratch.
@@ -133,4 +143,13 @@ public class GbfsUpdateContinuityTracker {
   public void clearStationUpdateContinuity(String systemId) {
     stationStatusBases.setLastUpdateTime(systemId, null);
   }
+
+  /**
+   * Check if the station status last updated at the given time is the base of the next
+   * station update, without logging if it is not
+   */
+  public boolean isStationUpdateBase(String systemId, Date lastUpdated) {
+    var previousBase = stationStatusBases.getLastUpdateTime(systemId);
+    return previousBase != null && previousBase.equals(lastUpdated);
+  }
 }
@@ -47,7 +47,18 @@ public class LeaderSingletonService {
 
   @Scheduled(fixedRateString = "${org.entur.lamassu.feedupdateinterval:30000}")
   public void update() {
-    feedUpdater.update();
+    if (!feedUpdater.isAdaptivePolling()) {
+      feedUpdater.update();
+    }
+  }
+
+  @Scheduled(
+    fixedRateString = "${org.entur.lamassu.adaptive-feed-polling.tick-interval:1000}"
+  )
+  public void updateDueFeeds() {
+    if (feedUpdater.isAdaptivePolling()) {
+      feedUpdater.updateDue();
+    }
   }
 
   @Scheduled(fixedRate = 60000)
@@ -18,6 +18,7 @@
 
 package org.entur.lamassu.leader.entityupdater;
 
+import java.util.Set;
 import org.entur.gbfs.loader.v3.GbfsV3Delivery;
 import org.entur.lamassu.delta.GBFSFileDelta;
 import org.entur.lamassu.delta.GBFSStationStatusDeltaCalculator;
@@ -78,7 +79,25 @@ public class EntityCachesUpdater {
     GbfsV3Delivery delivery,
     GbfsV3Delivery oldDelivery
   ) {
-    if (canUpdateSystem(delivery, feedProvider)) {
+    updateEntityCaches(feedProvider, delivery, oldDelivery, Set.of());
+  }
+
+  /**
+   * Update the entity caches from a delivery, except from the files which are unchanged
+   * since their entities were written
+   *
+   * @param skippedFiles The names of the files which are unchanged
+   */
+  public void updateEntityCaches(
+    FeedProvider feedProvider,
+    GbfsV3Delivery delivery,
+    GbfsV3Delivery oldDelivery,
+    Set<String> skippedFiles
+  ) {
+    if (
+      canUpdateSystem(delivery, feedProvider) &&
+      !skippedFiles.contains(GBFSFeedName.SystemInformation.value())
+    ) {
       systemUpdater.update(delivery.systemInformation(), feedProvider);
     }
 
@@ -86,11 +105,17 @@ public class EntityCachesUpdater {
       vehicleTypesUpdater.update(delivery.vehicleTypes(), feedProvider);
     }
 
-    if (canUpdatePricingPlans(delivery, feedProvider)) {
+    if (
+      canUpdatePricingPlans(delivery, feedProvider) &&
+      !skippedFiles.contains(GBFSFeedName.SystemPricingPlans.value())
+    ) {
       pricingPlansUpdater.update(delivery.systemPricingPlans());
     }
 
-    if (canUpdateRegions(delivery, feedProvider)) {
+    if (
+      canUpdateRegions(delivery, feedProvider) &&
+      !skippedFiles.contains(GBFSFeedName.SystemRegions.value())
+    ) {
       regionsUpdater.update(delivery.systemRegions(), feedProvider.getLanguage());
     }
 
@@ -161,7 +186,10 @@ public class EntityCachesUpdater {
       );
     }
 
-    if (canUpdateGeofencingZones(delivery, feedProvider)) {
+    if (
+      canUpdateGeofencingZones(delivery, feedProvider) &&
+      !skippedFiles.contains(GBFSFeedName.GeofencingZones.value())
+    ) {
       geofencingZonesUpdater.update(feedProvider, delivery.geofencingZones());
     }
   }
@@ -18,6 +18,7 @@
 
 package org.entur.lamassu.leader.entityupdater;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -25,7 +26,10 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
+import org.entur.lamassu.cache.CacheWriteBatchFactory;
 import org.entur.lamassu.cache.EntityCache;
+import org.entur.lamassu.cache.EntityReader;
+import org.entur.lamassu.cache.PrefetchedEntityReader;
 import org.entur.lamassu.cache.StationSpatialIndex;
 import org.entur.lamassu.cache.StationSpatialIndexId;
 import org.entur.lamassu.delta.DeltaType;
@@ -34,6 +38,8 @@ import org.entur.lamassu.delta.GBFSFileDelta;
 import org.entur.lamassu.mapper.entitymapper.StationMapper;
 import org.entur.lamassu.metrics.MetricsService;
 import org.entur.lamassu.model.entities.Station;
+import org.entur.lamassu.model.entities.VehicleType;
+import org.entur.lamassu.model.entities.VehicleTypeAvailability;
 import org.entur.lamassu.model.provider.FeedProvider;
 import org.entur.lamassu.service.SpatialIndexIdGeneratorService;
 import org.jetbrains.annotations.NotNull;
@@ -52,9 +58,14 @@ public class StationsUpdater {
 
     final FeedProvider feedProvider;
     final Map<String, org.mobilitydata.gbfs.v3_0.station_information.GBFSStation> stationInfo;
+    final EntityReader<Station> stations;
+    final EntityReader<VehicleType> vehicleTypes;
 
     final Set<String> stationIdsToRemove = new HashSet<>();
-    final Map<String, Station> addedAndUpdatedStations = new HashMap<>();
+    final Map<String, Station> addedStations = new HashMap<>();
+    // Stations whose information is unchanged, so only their status needs writing.
+    // A change to station_information forces a full rebuild, see EntityCachesUpdater
+    final Map<String, Station> updatedStations = new HashMap<>();
     final Set<StationSpatialIndexId> spatialIndexIdsToRemove = new HashSet<>();
     final Map<StationSpatialIndexId, Station> spatialIndexUpdateMap = new HashMap<>();
 
@@ -65,18 +76,24 @@ public class StationsUpdater {
 
     public UpdateContext(
       FeedProvider feedProvider,
-      Map<String, org.mobilitydata.gbfs.v3_0.station_information.GBFSStation> stationInfo
+      Map<String, org.mobilitydata.gbfs.v3_0.station_information.GBFSStation> stationInfo,
+      EntityReader<Station> stations,
+      EntityReader<VehicleType> vehicleTypes
     ) {
       this.feedProvider = feedProvider;
       this.stationInfo = stationInfo;
+      this.stations = stations;
+      this.vehicleTypes = vehicleTypes;
     }
   }
 
   private final EntityCache<Station> stationCache;
+  private final EntityCache<VehicleType> vehicleTypeCache;
   private final StationSpatialIndex spatialIndex;
   private final StationMapper stationMapper;
   private final MetricsService metricsService;
   private final SpatialIndexIdGeneratorService spatialIndexService;
+  private final CacheWriteBatchFactory cacheWriteBatchFactory;
 
   private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
@@ -86,13 +103,17 @@ public class StationsUpdater {
     StationSpatialIndex spatialIndex,
     StationMapper stationMapper,
     MetricsService metricsService,
-    SpatialIndexIdGeneratorService spatialIndexService
+    SpatialIndexIdGeneratorService spatialIndexService,
+    EntityCache<VehicleType> vehicleTypeCache,
+    CacheWriteBatchFactory cacheWriteBatchFactory
   ) {
     this.stationCache = stationCache;
+    this.vehicleTypeCache = vehicleTypeCache;
     this.spatialIndex = spatialIndex;
     this.stationMapper = stationMapper;
     this.metricsService = metricsService;
     this.spatialIndexService = spatialIndexService;
+    this.cacheWriteBatchFactory = cacheWriteBatchFactory;
   }
 
   /**
@@ -113,17 +134,23 @@ public class StationsUpdater {
     }
 
     var stationInfo = extractStationInfo(stationInformationFeed);
-    UpdateContext context = new UpdateContext(feedProvider, stationInfo);
+    UpdateContext context = createContext(feedProvider, delta, stationInfo);
 
     for (GBFSEntityDelta<GBFSStation> entityDelta : delta.entityDelta()) {
-      Station currentStation = stationCache.get(entityDelta.entityId());
-
       if (entityDelta.type() == DeltaType.DELETE) {
-        processDeltaDelete(context, entityDelta, currentStation);
+        processDeltaDelete(
+          context,
+          entityDelta,
+          context.stations.get(entityDelta.entityId())
+        );
       } else if (entityDelta.type() == DeltaType.CREATE) {
         processDeltaCreate(context, entityDelta);
       } else if (entityDelta.type() == DeltaType.UPDATE) {
-        processDeltaUpdate(context, entityDelta, currentStation);
+        processDeltaUpdate(
+          context,
+          entityDelta,
+          context.stations.get(entityDelta.entityId())
+        );
       }
     }
 
@@ -149,28 +176,77 @@ public class StationsUpdater {
       );
   }
 
+  /**
+   * Create the update context, prefetching the current stations and every vehicle type
+   * referred to by them or the delta in one bulk read each, instead of reading them one
+   * by one while the delta is applied.
+   */
+  private UpdateContext createContext(
+    FeedProvider feedProvider,
+    GBFSFileDelta<GBFSStation> delta,
+    Map<String, org.mobilitydata.gbfs.v3_0.station_information.GBFSStation> stationInfo
+  ) {
+    Set<String> stationIds = new HashSet<>();
+    Set<String> vehicleTypeIds = new HashSet<>();
+
+    for (GBFSEntityDelta<GBFSStation> entityDelta : delta.entityDelta()) {
+      if (entityDelta.type() != DeltaType.CREATE) {
+        stationIds.add(entityDelta.entityId());
+      }
+      var station = entityDelta.entity();
+      if (
+        entityDelta.type() != DeltaType.DELETE &&
+        station != null &&
+        station.getVehicleTypesAvailable() != null
+      ) {
+        station
+          .getVehicleTypesAvailable()
+          .forEach(available -> vehicleTypeIds.add(available.getVehicleTypeId()));
+      }
+    }
+
+    var stations = new PrefetchedEntityReader<>(stationCache, stationIds);
+
+    // The vehicle types of the current stations are needed to find their index ids
+    stations
+      .getAll(stationIds)
+      .stream()
+      .filter(station -> station.getVehicleTypesAvailable() != null)
+      .flatMap(station -> station.getVehicleTypesAvailable().stream())
+      .forEach(available -> vehicleTypeIds.add(available.getVehicleTypeId()));
+
+    return new UpdateContext(
+      feedProvider,
+      stationInfo,
+      stations,
+      new PrefetchedEntityReader<>(vehicleTypeCache, vehicleTypeIds)
+    );
+  }
+
   public void clearExistingEntities(FeedProvider feedProvider) {
     var systemId = feedProvider.getSystemId();
-    var existingStations = stationCache.getAll();
-    var stationsToRemove = existingStations
-      .stream()
-      .filter(s -> systemId.equals(s.getSystemId()))
-      .toList();
+    var idsToRemove = stationCache.getKeysBySystem(systemId);
 
-    if (!stationsToRemove.isEmpty()) {
+    if (!idsToRemove.isEmpty()) {
+      var stationsToRemove = stationCache.getAll(idsToRemove);
       logger.debug(
         "Removing {} existing stations for system {} due to null base",
         stationsToRemove.size(),
         systemId
       );
 
-      var idsToRemove = stationsToRemove
-        .stream()
-        .map(Station::getId)
-        .collect(Collectors.toSet());
+      var vehicleTypes = new PrefetchedEntityReader<>(
+        vehicleTypeCache,
+        stationsToRemove
+          .stream()
+          .filter(s -> s.getVehicleTypesAvailable() != null)
+          .flatMap(s -> s.getVehicleTypesAvailable().stream())
+          .map(VehicleTypeAvailability::getVehicleTypeId)
+          .collect(Collectors.toSet())
+      );
       var spatialIdsToRemove = stationsToRemove
         .stream()
-        .map(s -> spatialIndexService.createStationIndexId(s, feedProvider))
+        .map(s -> spatialIndexService.createStationIndexId(s, feedProvider, vehicleTypes))
         .collect(Collectors.toSet());
 
       stationCache.removeAll(idsToRemove);
@@ -187,7 +263,8 @@ public class StationsUpdater {
     if (currentStation != null) {
       var spatialIndexId = spatialIndexService.createStationIndexId(
         currentStation,
-        context.feedProvider
+        context.feedProvider,
+        context.vehicleTypes
       );
       context.spatialIndexIdsToRemove.add(spatialIndexId);
     } else {
@@ -223,12 +300,13 @@ public class StationsUpdater {
 
     var spatialIndexId = spatialIndexService.createStationIndexId(
       mappedStation,
-      context.feedProvider
+      context.feedProvider,
+      context.vehicleTypes
     );
 
     context.spatialIndexUpdateMap.put(spatialIndexId, mappedStation);
 
-    context.addedAndUpdatedStations.put(mappedStation.getId(), mappedStation);
+    context.addedStations.put(mappedStation.getId(), mappedStation);
   }
 
   private void processDeltaUpdate(
@@ -259,7 +337,11 @@ public class StationsUpdater {
     }
 
     context.spatialIndexIdsToRemove.add(
-      spatialIndexService.createStationIndexId(currentStation, context.feedProvider)
+      spatialIndexService.createStationIndexId(
+        currentStation,
+        context.feedProvider,
+        context.vehicleTypes
+      )
     );
 
     Station mappedStation = stationMapper.mapStation(
@@ -269,21 +351,28 @@ public class StationsUpdater {
       context.feedProvider.getLanguage()
     );
 
-    context.addedAndUpdatedStations.put(mappedStation.getId(), mappedStation);
+    context.updatedStations.put(mappedStation.getId(), mappedStation);
 
     context.spatialIndexUpdateMap.put(
-      spatialIndexService.createStationIndexId(mappedStation, context.feedProvider),
+      spatialIndexService.createStationIndexId(
+        mappedStation,
+        context.feedProvider,
+        context.vehicleTypes
+      ),
       mappedStation
     );
   }
 
   private void updateCaches(UpdateContext context) {
+    long start = System.nanoTime();
+    var batch = cacheWriteBatchFactory.create();
+
     if (!context.spatialIndexIdsToRemove.isEmpty()) {
       logger.debug(
         "Removing {} stale entries in spatial index",
         context.spatialIndexIdsToRemove.size()
       );
-      spatialIndex.removeAll(context.spatialIndexIdsToRemove);
+      batch.removeAll(spatialIndex, context.spatialIndexIdsToRemove);
     }
 
     if (!context.stationIdsToRemove.isEmpty()) {
@@ -291,15 +380,23 @@ public class StationsUpdater {
         "Removing {} stations from station cache",
         context.stationIdsToRemove.size()
       );
-      stationCache.removeAll(context.stationIdsToRemove);
+      batch.removeAll(stationCache, context.stationIdsToRemove);
     }
 
-    if (!context.addedAndUpdatedStations.isEmpty()) {
+    if (!context.addedStations.isEmpty()) {
       logger.debug(
-        "Adding/updating {} stations in station cache",
-        context.addedAndUpdatedStations.size()
+        "Adding {} stations to station cache",
+        context.addedStations.size()
       );
-      stationCache.updateAll(context.addedAndUpdatedStations);
+      batch.updateAll(stationCache, context.addedStations);
+    }
+
+    if (!context.updatedStations.isEmpty()) {
+      logger.debug(
+        "Updating status of {} stations in station cache",
+        context.updatedStations.size()
+      );
+      batch.updateAllStatus(stationCache, context.updatedStations);
     }
 
     if (!context.spatialIndexUpdateMap.isEmpty()) {
@@ -307,12 +404,24 @@ public class StationsUpdater {
         "Updating {} entries in spatial index",
         context.spatialIndexUpdateMap.size()
       );
-      spatialIndex.addAll(context.spatialIndexUpdateMap);
+      batch.addAll(spatialIndex, context.spatialIndexUpdateMap);
     }
 
+    batch.execute();
+    metricsService.registerCacheCommit(
+      MetricsService.ENTITY_STATION,
+      context.feedProvider,
+      Duration.ofNanos(System.nanoTime() - start)
+    );
+
     metricsService.registerEntityCount(
       MetricsService.ENTITY_STATION,
       stationCache.count()
     );
+    metricsService.registerSystemEntityCount(
+      MetricsService.ENTITY_STATION,
+      context.feedProvider,
+      stationCache.countBySystem(context.feedProvider.getSystemId())
+    );
   }
 }
@@ -20,6 +20,7 @@ package org.entur.lamassu.leader.entityupdater;
 
 import java.util.function.Predicate;
 import org.entur.lamassu.cache.EntityCache;
+import org.entur.lamassu.cache.EntityReader;
 import org.entur.lamassu.model.entities.PricingPlan;
 import org.entur.lamassu.model.entities.Station;
 import org.entur.lamassu.model.entities.VehicleType;
@@ -55,8 +56,21 @@ public class VehicleFilter implements Predicate<GBFSVehicle> {
 
   @Override
   public boolean test(GBFSVehicle vehicle) {
+    return test(vehicle, stationCache, pricingPlanCache, vehicleTypeCache);
+  }
+
+  /**
+   * Test the vehicle, reading the stations, pricing plans and vehicle types it refers
+   * to from the given readers, e.g. readers prefetched for a whole delta.
+   */
+  public boolean test(
+    GBFSVehicle vehicle,
+    EntityReader<Station> stations,
+    EntityReader<PricingPlan> pricingPlans,
+    EntityReader<VehicleType> vehicleTypes
+  ) {
     if (vehicle.getStationId() != null) {
-      var station = stationCache.get(vehicle.getStationId());
+      var station = stations.get(vehicle.getStationId());
       if (
         station != null &&
         // is_virtual_station may be unset, which we treat as implicitly being false
@@ -75,7 +89,7 @@ public class VehicleFilter implements Predicate<GBFSVehicle> {
 
     if (
       vehicle.getPricingPlanId() != null &&
-      !pricingPlanCache.hasKey(vehicle.getPricingPlanId())
+      !pricingPlans.hasKey(vehicle.getPricingPlanId())
     ) {
       logger.info(
         "Skipping vehicle with unknown pricing plan id {} (vehicle {})",
@@ -85,7 +99,8 @@ public class VehicleFilter implements Predicate<GBFSVehicle> {
       return false;
     }
 
-    if (!vehicleTypeCache.hasKey(vehicle.getVehicleTypeId())) {
+    var vehicleType = vehicleTypes.get(vehicle.getVehicleTypeId());
+    if (vehicleType == null) {
       logger.info(
         "Skipping vehicle with unknown vehicle type id {} (vehicle {})",
         vehicle.getVehicleTypeId(),
@@ -95,8 +110,7 @@ public class VehicleFilter implements Predicate<GBFSVehicle> {
     }
 
     if (
-      vehicle.getPricingPlanId() == null &&
-      vehicleTypeCache.get(vehicle.getVehicleTypeId()).getDefaultPricingPlanId() == null
+      vehicle.getPricingPlanId() == null && vehicleType.getDefaultPricingPlanId() == null
     ) {
       logger.info(
         "Skipping vehicle without pricing plan id and vehicle type {} without default pricing plan (vehicle {})",
@@ -18,12 +18,16 @@
 
 package org.entur.lamassu.leader.entityupdater;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import org.entur.lamassu.cache.CacheWriteBatchFactory;
 import org.entur.lamassu.cache.EntityCache;
+import org.entur.lamassu.cache.EntityReader;
+import org.entur.lamassu.cache.PrefetchedEntityReader;
 import org.entur.lamassu.cache.VehicleSpatialIndex;
 import org.entur.lamassu.cache.VehicleSpatialIndexId;
 import org.entur.lamassu.delta.DeltaType;
@@ -31,8 +35,10 @@ import org.entur.lamassu.delta.GBFSEntityDelta;
 import org.entur.lamassu.delta.GBFSFileDelta;
 import org.entur.lamassu.mapper.entitymapper.VehicleMapper;
 import org.entur.lamassu.metrics.MetricsService;
+import org.entur.lamassu.model.entities.PricingPlan;
 import org.entur.lamassu.model.entities.Station;
 import org.entur.lamassu.model.entities.Vehicle;
+import org.entur.lamassu.model.entities.VehicleType;
 import org.entur.lamassu.model.provider.FeedProvider;
 import org.entur.lamassu.service.SpatialIndexIdGeneratorService;
 import org.mobilitydata.gbfs.v3_0.vehicle_status.GBFSVehicle;
@@ -47,25 +53,42 @@ public class VehiclesUpdater {
   private static final class UpdateContext {
 
     final FeedProvider feedProvider;
+    final EntityReader<Vehicle> vehicles;
+    final EntityReader<Station> stations;
+    final EntityReader<PricingPlan> pricingPlans;
+    final EntityReader<VehicleType> vehicleTypes;
 
     final Set<String> vehicleIdsToRemove = new HashSet<>();
     final Map<String, Vehicle> addedAndUpdatedVehicles = new HashMap<>();
     final Set<VehicleSpatialIndexId> spatialIndexIdsToRemove = new HashSet<>();
     final Map<VehicleSpatialIndexId, Vehicle> spatialIndexUpdateMap = new HashMap<>();
 
-    public UpdateContext(FeedProvider feedProvider) {
+    public UpdateContext(
+      FeedProvider feedProvider,
+      EntityReader<Vehicle> vehicles,
+      EntityReader<Station> stations,
+      EntityReader<PricingPlan> pricingPlans,
+      EntityReader<VehicleType> vehicleTypes
+    ) {
       this.feedProvider = feedProvider;
+      this.vehicles = vehicles;
+      this.stations = stations;
+      this.pricingPlans = pricingPlans;
+      this.vehicleTypes = vehicleTypes;
     }
   }
 
   private final EntityCache<Vehicle> vehicleCache;
   private final VehicleSpatialIndex spatialIndex;
   private final EntityCache<Station> stationCache;
+  private final EntityCache<VehicleType> vehicleTypeCache;
+  private final EntityCache<PricingPlan> pricingPlanCache;
   private final VehicleMapper vehicleMapper;
   private final Logger logger = LoggerFactory.getLogger(this.getClass());
   private final MetricsService metricsService;
   private final SpatialIndexIdGeneratorService spatialIndexService;
   private final VehicleFilter vehicleFilter;
+  private final CacheWriteBatchFactory cacheWriteBatchFactory;
 
   @Autowired
   public VehiclesUpdater(
@@ -75,7 +98,10 @@ public class VehiclesUpdater {
     MetricsService metricsService,
     SpatialIndexIdGeneratorService spatialIndexService,
     VehicleFilter vehicleFilter,
-    EntityCache<Station> stationCache
+    EntityCache<Station> stationCache,
+    EntityCache<VehicleType> vehicleTypeCache,
+    EntityCache<PricingPlan> pricingPlanCache,
+    CacheWriteBatchFactory cacheWriteBatchFactory
   ) {
     this.vehicleCache = vehicleCache;
     this.spatialIndex = spatialIndex;
@@ -84,6 +110,9 @@ public class VehiclesUpdater {
     this.spatialIndexService = spatialIndexService;
     this.vehicleFilter = vehicleFilter;
     this.stationCache = stationCache;
+    this.vehicleTypeCache = vehicleTypeCache;
+    this.pricingPlanCache = pricingPlanCache;
+    this.cacheWriteBatchFactory = cacheWriteBatchFactory;
   }
 
   public void update(FeedProvider feedProvider, GBFSFileDelta<GBFSVehicle> delta) {
@@ -91,7 +120,7 @@ public class VehiclesUpdater {
       clearExistingEntities(feedProvider);
     }
 
-    UpdateContext context = new UpdateContext(feedProvider);
+    UpdateContext context = createContext(feedProvider, delta);
 
     for (GBFSEntityDelta<GBFSVehicle> entityDelta : delta.entityDelta()) {
       if (entityDelta.type() == DeltaType.DELETE) {
@@ -106,28 +135,70 @@ public class VehiclesUpdater {
     updateCaches(context);
   }
 
+  /**
+   * Create the update context, prefetching the current vehicles and every station,
+   * pricing plan and vehicle type referred to by the delta in one bulk read each,
+   * instead of reading them one by one while the delta is applied.
+   */
+  private UpdateContext createContext(
+    FeedProvider feedProvider,
+    GBFSFileDelta<GBFSVehicle> delta
+  ) {
+    Set<String> vehicleIds = new HashSet<>();
+    Set<String> stationIds = new HashSet<>();
+    Set<String> pricingPlanIds = new HashSet<>();
+    Set<String> vehicleTypeIds = new HashSet<>();
+
+    for (GBFSEntityDelta<GBFSVehicle> entityDelta : delta.entityDelta()) {
+      if (entityDelta.type() != DeltaType.CREATE) {
+        vehicleIds.add(entityDelta.entityId());
+      }
+      var vehicle = entityDelta.entity();
+      if (entityDelta.type() != DeltaType.DELETE && vehicle != null) {
+        stationIds.add(vehicle.getStationId());
+        pricingPlanIds.add(vehicle.getPricingPlanId());
+        vehicleTypeIds.add(vehicle.getVehicleTypeId());
+      }
+    }
+
+    var vehicles = new PrefetchedEntityReader<>(vehicleCache, vehicleIds);
+
+    // The vehicle types of the current vehicles are needed to find their index ids
+    vehicles
+      .getAll(vehicleIds)
+      .forEach(vehicle -> vehicleTypeIds.add(vehicle.getVehicleTypeId()));
+
+    return new UpdateContext(
+      feedProvider,
+      vehicles,
+      new PrefetchedEntityReader<>(stationCache, stationIds),
+      new PrefetchedEntityReader<>(pricingPlanCache, pricingPlanIds),
+      new PrefetchedEntityReader<>(vehicleTypeCache, vehicleTypeIds)
+    );
+  }
+
   public void clearExistingEntities(FeedProvider feedProvider) {
     var systemId = feedProvider.getSystemId();
-    var existingVehicles = vehicleCache.getAll();
-    var vehiclesToRemove = existingVehicles
-      .stream()
-      .filter(v -> systemId.equals(v.getSystemId()))
-      .toList();
+    var idsToRemove = vehicleCache.getKeysBySystem(systemId);
 
-    if (!vehiclesToRemove.isEmpty()) {
+    if (!idsToRemove.isEmpty()) {
+      var vehiclesToRemove = vehicleCache.getAll(idsToRemove);
       logger.debug(
         "Removing {} existing vehicles for system {} due to null base",
         vehiclesToRemove.size(),
         systemId
       );
 
-      var idsToRemove = vehiclesToRemove
-        .stream()
-        .map(Vehicle::getId)
-        .collect(Collectors.toSet());
+      var vehicleTypes = new PrefetchedEntityReader<>(
+        vehicleTypeCache,
+        vehiclesToRemove
+          .stream()
+          .map(Vehicle::getVehicleTypeId)
+          .collect(Collectors.toSet())
+      );
       var spatialIdsToRemove = vehiclesToRemove
         .stream()
-        .map(v -> spatialIndexService.createVehicleIndexId(v, feedProvider))
+        .map(v -> spatialIndexService.createVehicleIndexId(v, feedProvider, vehicleTypes))
         .collect(Collectors.toSet());
 
       vehicleCache.removeAll(idsToRemove);
@@ -139,12 +210,13 @@ public class VehiclesUpdater {
     UpdateContext context,
     GBFSEntityDelta<GBFSVehicle> entityDelta
   ) {
-    Vehicle currentVehicle = vehicleCache.get(entityDelta.entityId());
+    Vehicle currentVehicle = context.vehicles.get(entityDelta.entityId());
     context.vehicleIdsToRemove.add(entityDelta.entityId());
     if (currentVehicle != null) {
       var spatialIndexId = spatialIndexService.createVehicleIndexId(
         currentVehicle,
-        context.feedProvider
+        context.feedProvider,
+        context.vehicleTypes
       );
       context.spatialIndexIdsToRemove.add(spatialIndexId);
     } else {
@@ -160,18 +232,26 @@ public class VehiclesUpdater {
     GBFSEntityDelta<GBFSVehicle> entityDelta
   ) {
     final GBFSVehicle deltaVehicle = entityDelta.entity();
-    if (vehicleFilter.test(deltaVehicle)) {
+    if (
+      vehicleFilter.test(
+        deltaVehicle,
+        context.stations,
+        context.pricingPlans,
+        context.vehicleTypes
+      )
+    ) {
       Vehicle mappedVehicle = vehicleMapper.mapVehicle(
         deltaVehicle,
         deltaVehicle.getStationId() != null
-          ? stationCache.get(deltaVehicle.getStationId())
+          ? context.stations.get(deltaVehicle.getStationId())
           : null,
         context.feedProvider.getSystemId()
       );
       context.addedAndUpdatedVehicles.put(mappedVehicle.getId(), mappedVehicle);
       var spatialIndexId = spatialIndexService.createVehicleIndexId(
         mappedVehicle,
-        context.feedProvider
+        context.feedProvider,
+        context.vehicleTypes
       );
       context.spatialIndexUpdateMap.put(spatialIndexId, mappedVehicle);
     }
@@ -181,18 +261,22 @@ public class VehiclesUpdater {
     UpdateContext context,
     GBFSEntityDelta<GBFSVehicle> entityDelta
   ) {
-    Vehicle currentVehicle = vehicleCache.get(entityDelta.entityId());
+    Vehicle currentVehicle = context.vehicles.get(entityDelta.entityId());
 
     if (currentVehicle != null) {
       context.spatialIndexIdsToRemove.add(
-        spatialIndexService.createVehicleIndexId(currentVehicle, context.feedProvider)
+        spatialIndexService.createVehicleIndexId(
+          currentVehicle,
+          context.feedProvider,
+          context.vehicleTypes
+        )
       );
 
       final GBFSVehicle deltaVehicle = entityDelta.entity();
       Vehicle mappedVehicle = vehicleMapper.mapVehicle(
         deltaVehicle,
         deltaVehicle.getStationId() != null
-          ? stationCache.get(deltaVehicle.getStationId())
+          ? context.stations.get(deltaVehicle.getStationId())
           : null,
         context.feedProvider.getSystemId()
       );
@@ -200,7 +284,11 @@ public class VehiclesUpdater {
       context.addedAndUpdatedVehicles.put(mappedVehicle.getId(), mappedVehicle);
 
       context.spatialIndexUpdateMap.put(
-        spatialIndexService.createVehicleIndexId(mappedVehicle, context.feedProvider),
+        spatialIndexService.createVehicleIndexId(
+          mappedVehicle,
+          context.feedProvider,
+          context.vehicleTypes
+        ),
         mappedVehicle
       );
     } else {
@@ -220,12 +308,15 @@ public class VehiclesUpdater {
   }
 
   private void updateCaches(UpdateContext context) {
+    long start = System.nanoTime();
+    var batch = cacheWriteBatchFactory.create();
+
     if (!context.spatialIndexIdsToRemove.isEmpty()) {
       logger.debug(
         "Removing {} stale entries in spatial index",
         context.spatialIndexIdsToRemove.size()
       );
-      spatialIndex.removeAll(context.spatialIndexIdsToRemove);
+      batch.removeAll(spatialIndex, context.spatialIndexIdsToRemove);
     }
 
     if (!context.vehicleIdsToRemove.isEmpty()) {
@@ -233,7 +324,7 @@ public class VehiclesUpdater {
         "Removing {} vehicles from vehicle cache",
         context.vehicleIdsToRemove.size()
       );
-      vehicleCache.removeAll(new HashSet<>(context.vehicleIdsToRemove));
+      batch.removeAll(vehicleCache, new HashSet<>(context.vehicleIdsToRemove));
     }
 
     if (!context.addedAndUpdatedVehicles.isEmpty()) {
@@ -241,7 +332,7 @@ public class VehiclesUpdater {
         "Adding/updating {} vehicles in vehicle cache",
         context.addedAndUpdatedVehicles.size()
       );
-      vehicleCache.updateAll(context.addedAndUpdatedVehicles);
+      batch.updateAll(vehicleCache, context.addedAndUpdatedVehicles);
     }
 
     if (!context.spatialIndexUpdateMap.isEmpty()) {
@@ -249,12 +340,24 @@ public class VehiclesUpdater {
         "Updating {} entries in spatial index",
         context.spatialIndexUpdateMap.size()
       );
-      spatialIndex.addAll(context.spatialIndexUpdateMap);
+      batch.addAll(spatialIndex, context.spatialIndexUpdateMap);
     }
 
+    batch.execute();
+    metricsService.registerCacheCommit(
+      MetricsService.ENTITY_VEHICLE,
+      context.feedProvider,
+      Duration.ofNanos(System.nanoTime() - start)
+    );
+
     metricsService.registerEntityCount(
       MetricsService.ENTITY_VEHICLE,
       vehicleCache.count()
     );
+    metricsService.registerSystemEntityCount(
+      MetricsService.ENTITY_VEHICLE,
+      context.feedProvider,
+      vehicleCache.countBySystem(context.feedProvider.getSystemId())
+    );
   }
 }
@@ -0,0 +1,66 @@
+package org.entur.lamassu.leader.feedcachesupdater;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.mobilitydata.gbfs.v3_0.gbfs.GBFSFeed;
+
+/**
+ * Keeps the last feeds written by the leader, so the base of the next entity update does
+ * not have to be read back from the feed cache. The feeds are bounded by the total
+ * length of their JSON bodies, least recently updated feeds evicted first. A feed takes
+ * a few times the length of its JSON body in memory.
+ */
+final class DeltaBases {
+
+  private record Key(String systemId, GBFSFeed.Name feedName) {}
+
+  /**
+   * A feed as written to the feed cache, and the length of its JSON body, which
+   * approximates the number of bytes a read from the feed cache would transfer
+   */
+  record Base(Object feed, int length) {}
+
+  private final Map<Key, Base> bases = new LinkedHashMap<>(16, 0.75f, true);
+  private final long maximumLength;
+  private long length = 0;
+
+  /**
+   * @param maximumLength The maximum total length of the JSON bodies of the feeds kept
+   */
+  DeltaBases(long maximumLength) {
+    this.maximumLength = maximumLength;
+  }
+
+  Base get(String systemId, GBFSFeed.Name feedName) {
+    synchronized (bases) {
+      return bases.get(new Key(systemId, feedName));
+    }
+  }
+
+  void put(String systemId, GBFSFeed.Name feedName, Object feed, int length) {
+    synchronized (bases) {
+      var previous = bases.put(new Key(systemId, feedName), new Base(feed, length));
+      this.length += length - (previous != null ? previous.length() : 0);
+      var eldest = bases.values().iterator();
+      while (this.length > maximumLength && eldest.hasNext()) {
+        this.length -= eldest.next().length();
+        eldest.remove();
+      }
+    }
+  }
+
+  void remove(String systemId, GBFSFeed.Name feedName) {
+    synchronized (bases) {
+      var previous = bases.remove(new Key(systemId, feedName));
+      if (previous != null) {
+        length -= previous.length();
+      }
+    }
+  }
+
+  int size() {
+    synchronized (bases) {
+      return bases.size();
+    }
+  }
+}
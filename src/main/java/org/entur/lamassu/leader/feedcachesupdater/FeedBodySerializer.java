@@ -0,0 +1,92 @@
+package org.entur.lamassu.leader.feedcachesupdater;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.zip.GZIPOutputStream;
+import org.entur.lamassu.cache.FeedBody;
+import org.entur.lamassu.cache.FeedMetadata;
+import org.entur.lamassu.config.GbfsJacksonConverterConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Serializes GBFS feeds to the JSON bodies served by the feed controllers, using the
+ * same object mapper as the GBFS message converter, so that stored bodies are
+ * identical to the responses otherwise rendered on each request.
+ */
+@Component
+public class FeedBodySerializer {
+
+  private static final String LAST_UPDATED = "last_updated";
+  private static final String TTL = "ttl";
+
+  private final Logger logger = LoggerFactory.getLogger(this.getClass());
+  private final ObjectMapper objectMapper = GbfsJacksonConverterConfig.gbfsObjectMapper();
+
+  /**
+   * Serialize the feed, or return null if it can't be serialized
+   */
+  public FeedBody serialize(Object feed) {
+    try {
+      byte[] json = objectMapper.writeValueAsBytes(feed);
+      return new FeedBody(json, gzip(json), readMetadata(json));
+    } catch (IOException | DateTimeParseException e) {
+      logger.warn("Unable to serialize feed body for feed {}", feed.getClass(), e);
+      return null;
+    }
+  }
+
+  private static byte[] gzip(byte[] json) throws IOException {
+    var out = new ByteArrayOutputStream(json.length / 4 + 64);
+    try (var gzip = new GZIPOutputStream(out)) {
+      gzip.write(json);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Read last_updated and ttl from the top level fields of the serialized feed, which
+   * come before its data, so only the start of the body is parsed
+   */
+  private FeedMetadata readMetadata(byte[] json) throws IOException {
+    long lastUpdated = -1;
+    int ttl = -1;
+    try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Feed is not serialized as a JSON object");
+      }
+      while (
+        (lastUpdated < 0 || ttl < 0) && parser.nextToken() == JsonToken.FIELD_NAME
+      ) {
+        String field = parser.currentName();
+        JsonToken value = parser.nextToken();
+        if (LAST_UPDATED.equals(field)) {
+          lastUpdated =
+            value == JsonToken.VALUE_STRING
+              ? OffsetDateTime.parse(parser.getText()).toEpochSecond()
+              : parser.getLongValue();
+        } else if (TTL.equals(field)) {
+          ttl = parser.getIntValue();
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+    if (lastUpdated < 0 || ttl < 0) {
+      throw new IOException("Feed has no last_updated or ttl");
+    }
+    return new FeedMetadata(
+      lastUpdated,
+      ttl,
+      DigestUtils.md5DigestAsHex(json),
+      json.length
+    );
+  }
+}
@@ -18,10 +18,12 @@
 
 package org.entur.lamassu.leader.feedcachesupdater;
 
-import java.lang.reflect.InvocationTargetException;
 import java.time.Instant;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import org.entur.gbfs.loader.v2.GbfsV2Delivery;
+import org.entur.lamassu.cache.FeedBody;
+import org.entur.lamassu.cache.FeedMetadata;
 import org.entur.lamassu.cache.GBFSV2FeedCache;
 import org.entur.lamassu.model.provider.FeedProvider;
 import org.entur.lamassu.util.CacheUtil;
@@ -39,6 +41,7 @@ import org.springframework.stereotype.Component;
 public class V2FeedCachesUpdater {
 
   private final GBFSV2FeedCache feedCache;
+  private final FeedBodySerializer feedBodySerializer;
   private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
   @Value("${org.entur.lamassu.feedCacheTtlPadding:3600}")
@@ -48,39 +51,86 @@ public class V2FeedCachesUpdater {
   private Integer feedCacheMinimumTtl;
 
   @Autowired
-  public V2FeedCachesUpdater(GBFSV2FeedCache feedCache) {
+  public V2FeedCachesUpdater(
+    GBFSV2FeedCache feedCache,
+    FeedBodySerializer feedBodySerializer
+  ) {
     this.feedCache = feedCache;
+    this.feedBodySerializer = feedBodySerializer;
   }
 
   public GbfsV2Delivery updateFeedCaches(
     FeedProvider feedProvider,
     GbfsV2Delivery delivery
   ) {
-    updateFeedCache(feedProvider, GBFSFeedName.GBFS, delivery.discovery());
+    return updateFeedCaches(feedProvider, delivery, Set.of());
+  }
+
+  /**
+   * Update the cached feeds of a provider, only extending the expiration of the feeds
+   * which are unchanged since they were written
+   *
+   * @param skippedFiles The names of the feeds which are unchanged
+   */
+  public GbfsV2Delivery updateFeedCaches(
+    FeedProvider feedProvider,
+    GbfsV2Delivery delivery,
+    Set<String> skippedFiles
+  ) {
+    updateFeedCache(feedProvider, GBFSFeedName.GBFS, delivery.discovery(), skippedFiles);
     updateFeedCache(
       feedProvider,
       GBFSFeedName.SystemInformation,
-      delivery.systemInformation()
+      delivery.systemInformation(),
+      skippedFiles
+    );
+    updateFeedCache(
+      feedProvider,
+      GBFSFeedName.SystemAlerts,
+      delivery.systemAlerts(),
+      skippedFiles
+    );
+    updateFeedCache(
+      feedProvider,
+      GBFSFeedName.SystemCalendar,
+      delivery.systemCalendar(),
+      skippedFiles
+    );
+    updateFeedCache(
+      feedProvider,
+      GBFSFeedName.SystemRegions,
+      delivery.systemRegions(),
+      skippedFiles
     );
-    updateFeedCache(feedProvider, GBFSFeedName.SystemAlerts, delivery.systemAlerts());
-    updateFeedCache(feedProvider, GBFSFeedName.SystemCalendar, delivery.systemCalendar());
-    updateFeedCache(feedProvider, GBFSFeedName.SystemRegions, delivery.systemRegions());
     updateFeedCache(
       feedProvider,
       GBFSFeedName.SystemPricingPlans,
-      delivery.systemPricingPlans()
+      delivery.systemPricingPlans(),
+      skippedFiles
+    );
+    updateFeedCache(
+      feedProvider,
+      GBFSFeedName.SystemHours,
+      delivery.systemHours(),
+      skippedFiles
+    );
+    updateFeedCache(
+      feedProvider,
+      GBFSFeedName.VehicleTypes,
+      delivery.vehicleTypes(),
+      skippedFiles
     );
-    updateFeedCache(feedProvider, GBFSFeedName.SystemHours, delivery.systemHours());
-    updateFeedCache(feedProvider, GBFSFeedName.VehicleTypes, delivery.vehicleTypes());
     updateFeedCache(
       feedProvider,
       GBFSFeedName.GeofencingZones,
-      delivery.geofencingZones()
+      delivery.geofencingZones(),
+      skippedFiles
     );
     updateFeedCache(
       feedProvider,
       GBFSFeedName.StationInformation,
-      delivery.stationInformation()
+      delivery.stationInformation(),
+      skippedFiles
     );
     var oldStationStatus = getAndUpdateFeedCache(
       feedProvider,
@@ -110,12 +160,38 @@ public class V2FeedCachesUpdater {
     );
   }
 
+  /**
+   * Extend the expiration of the cached feeds of a provider when its delivery is
+   * unchanged since they were written, instead of writing them again
+   */
+  public void refreshFeedCaches(FeedProvider feedProvider) {
+    for (GBFSFeedName feedName : GBFSFeedName.values()) {
+      refreshFeedCache(feedProvider, feedName);
+    }
+  }
+
+  private void refreshFeedCache(FeedProvider feedProvider, GBFSFeedName feedName) {
+    var metadata = feedCache.findMetadata(feedName, feedProvider);
+    if (metadata != null) {
+      var ttl = getTtl(metadata, feedCacheMinimumTtl) + feedCacheTtlPadding;
+      feedCache.updateExpiration(feedName, feedProvider, ttl, TimeUnit.SECONDS);
+    }
+  }
+
   private <T> void updateFeedCache(
     FeedProvider feedProvider,
     GBFSFeedName feedName,
-    T feed
+    T feed,
+    Set<String> skippedFiles
   ) {
-    if (shouldIncludeFeed(feedProvider, feedName, feed)) {
+    if (skippedFiles.contains(feedName.value())) {
+      logger.debug(
+        "refreshing unchanged feed {} for provider {}",
+        feedName,
+        feedProvider.getSystemId()
+      );
+      refreshFeedCache(feedProvider, feedName);
+    } else if (shouldIncludeFeed(feedProvider, feedName, feed)) {
       logger.debug(
         "updating feed {} for provider {}",
         feedName,
@@ -127,7 +203,8 @@ public class V2FeedCachesUpdater {
         feedProvider.getSystemId(),
         feed
       );
-      var ttl = getTtl(feedName.implementingClass(), feed, feedCacheMinimumTtl);
+      var body = feedBodySerializer.serialize(feed);
+      var ttl = getTtl(body, feedCacheMinimumTtl);
       feedCache.update(
         feedName,
         feedProvider,
@@ -135,6 +212,7 @@ public class V2FeedCachesUpdater {
         ttl + feedCacheTtlPadding,
         TimeUnit.SECONDS
       );
+      updateFeedBody(feedProvider, feedName, body, ttl + feedCacheTtlPadding);
     } else {
       logger.debug(
         "no feed {} found for provider {}",
@@ -161,7 +239,9 @@ public class V2FeedCachesUpdater {
         feedProvider.getSystemId(),
         feed
       );
-      var ttl = getTtl(feedName.implementingClass(), feed, feedCacheMinimumTtl);
+      var body = feedBodySerializer.serialize(feed);
+      var ttl = getTtl(body, feedCacheMinimumTtl);
+      updateFeedBody(feedProvider, feedName, body, ttl + feedCacheTtlPadding);
       return feedCache.getAndUpdate(
         feedName,
         feedProvider,
@@ -179,24 +259,42 @@ public class V2FeedCachesUpdater {
     }
   }
 
-  private <T> int getTtl(Class<?> implementingClass, T feed, int minimumTtl) {
-    try {
-      Integer lastUpdated = (Integer) implementingClass
-        .getMethod("getLastUpdated")
-        .invoke(feed);
-      Integer ttl = (Integer) implementingClass.getMethod("getTtl").invoke(feed);
-      return CacheUtil.getTtl(
-        (int) Instant.now().getEpochSecond(),
-        lastUpdated,
-        ttl,
-        minimumTtl
-      );
-    } catch (
-      NoSuchMethodException | InvocationTargetException | IllegalAccessException e
-    ) {
-      logger.warn("Unable to determine ttl for feed, using default - {}", feed);
+  /**
+   * Store the serialized body of the feed, which is served as is by the feed controller,
+   * or remove the body of the previous feed if the feed could not be serialized, so the
+   * feed controller renders the feed instead of serving outdated bytes
+   */
+  private void updateFeedBody(
+    FeedProvider feedProvider,
+    GBFSFeedName feedName,
+    FeedBody body,
+    int ttl
+  ) {
+    if (body != null) {
+      feedCache.updateBody(feedName, feedProvider, body, ttl, TimeUnit.SECONDS);
+    } else {
+      feedCache.removeBody(feedName, feedProvider);
+    }
+  }
+
+  /**
+   * Get the ttl of the feed from the metadata of its serialized body, or the minimum
+   * ttl if the feed could not be serialized
+   */
+  private int getTtl(FeedBody body, int minimumTtl) {
+    if (body == null) {
       return minimumTtl;
     }
+    return getTtl(body.getMetadata(), minimumTtl);
+  }
+
+  private int getTtl(FeedMetadata metadata, int minimumTtl) {
+    return CacheUtil.getTtl(
+      (int) Instant.now().getEpochSecond(),
+      (int) metadata.getLastUpdated(),
+      metadata.getTtl(),
+      minimumTtl
+    );
   }
 
   private <T> boolean shouldIncludeFeed(
@@ -18,18 +18,24 @@
 
 package org.entur.lamassu.leader.feedcachesupdater;
 
-import java.lang.reflect.InvocationTargetException;
 import java.time.Instant;
-import java.util.Date;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import org.entur.gbfs.loader.v3.GbfsV3Delivery;
 import org.entur.gbfs.mapper.GBFSFeedNameMapper;
+import org.entur.lamassu.cache.FeedBody;
+import org.entur.lamassu.cache.FeedFreshness;
+import org.entur.lamassu.cache.FeedFreshnessCache;
+import org.entur.lamassu.cache.FeedMetadata;
 import org.entur.lamassu.cache.GBFSV3FeedCache;
+import org.entur.lamassu.leader.GbfsUpdateContinuityTracker;
+import org.entur.lamassu.metrics.MetricsService;
 import org.entur.lamassu.model.provider.FeedProvider;
 import org.entur.lamassu.util.CacheUtil;
 import org.mobilitydata.gbfs.v3_0.gbfs.GBFSFeed;
 import org.mobilitydata.gbfs.v3_0.gbfs.GBFSFeed.Name;
-import org.mobilitydata.gbfs.v3_0.gbfs.GBFSFeedName;
+import org.mobilitydata.gbfs.v3_0.station_status.GBFSStationStatus;
+import org.mobilitydata.gbfs.v3_0.vehicle_status.GBFSVehicleStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -43,6 +49,11 @@ import org.springframework.stereotype.Component;
 public class V3FeedCachesUpdater {
 
   private final GBFSV3FeedCache feedCache;
+  private final FeedBodySerializer feedBodySerializer;
+  private final FeedFreshnessCache feedFreshnessCache;
+  private final GbfsUpdateContinuityTracker updateContinuityTracker;
+  private final MetricsService metricsService;
+  private final DeltaBases deltaBases;
   private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
   @Value("${org.entur.lamassu.feedCacheTtlPadding:3600}")
@@ -52,48 +63,120 @@ public class V3FeedCachesUpdater {
   private Integer feedCacheMinimumTtl;
 
   @Autowired
-  public V3FeedCachesUpdater(GBFSV3FeedCache feedCache) {
+  public V3FeedCachesUpdater(
+    GBFSV3FeedCache feedCache,
+    FeedBodySerializer feedBodySerializer,
+    FeedFreshnessCache feedFreshnessCache,
+    GbfsUpdateContinuityTracker updateContinuityTracker,
+    MetricsService metricsService,
+    @Value("${org.entur.lamassu.local-delta-base.enabled:false}") boolean localDeltaBase,
+    @Value(
+      "${org.entur.lamassu.local-delta-base.maximum-bytes:268435456}"
+    ) long maximumBytes
+  ) {
     this.feedCache = feedCache;
+    this.feedBodySerializer = feedBodySerializer;
+    this.feedFreshnessCache = feedFreshnessCache;
+    this.updateContinuityTracker = updateContinuityTracker;
+    this.metricsService = metricsService;
+    this.deltaBases = localDeltaBase ? new DeltaBases(maximumBytes) : null;
   }
 
   public GbfsV3Delivery updateFeedCaches(
     FeedProvider feedProvider,
     GbfsV3Delivery delivery
   ) {
-    updateFeedCache(feedProvider, GBFSFeed.Name.GBFS, delivery.discovery());
-    updateFeedCache(feedProvider, Name.SYSTEM_INFORMATION, delivery.systemInformation());
-    updateFeedCache(feedProvider, Name.SYSTEM_ALERTS, delivery.systemAlerts());
-    updateFeedCache(feedProvider, Name.SYSTEM_REGIONS, delivery.systemRegions());
+    return updateFeedCaches(feedProvider, delivery, Set.of());
+  }
+
+  /**
+   * Update the cached feeds of a provider, only extending the expiration of the feeds
+   * which are unchanged since they were written
+   *
+   * @param skippedFiles The names of the feeds which are unchanged
+   */
+  public GbfsV3Delivery updateFeedCaches(
+    FeedProvider feedProvider,
+    GbfsV3Delivery delivery,
+    Set<String> skippedFiles
+  ) {
+    updateFeedCache(feedProvider, GBFSFeed.Name.GBFS, delivery.discovery(), skippedFiles);
+    updateFeedCache(
+      feedProvider,
+      Name.SYSTEM_INFORMATION,
+      delivery.systemInformation(),
+      skippedFiles
+    );
+    updateFeedCache(
+      feedProvider,
+      Name.SYSTEM_ALERTS,
+      delivery.systemAlerts(),
+      skippedFiles
+    );
+    updateFeedCache(
+      feedProvider,
+      Name.SYSTEM_REGIONS,
+      delivery.systemRegions(),
+      skippedFiles
+    );
     updateFeedCache(
       feedProvider,
       Name.SYSTEM_PRICING_PLANS,
-      delivery.systemPricingPlans()
+      delivery.systemPricingPlans(),
+      skippedFiles
     );
-    updateFeedCache(feedProvider, Name.VEHICLE_TYPES, delivery.vehicleTypes());
-    updateFeedCache(feedProvider, Name.GEOFENCING_ZONES, delivery.geofencingZones());
+    updateFeedCache(
+      feedProvider,
+      Name.VEHICLE_TYPES,
+      delivery.vehicleTypes(),
+      skippedFiles
+    );
+    updateFeedCache(
+      feedProvider,
+      Name.GEOFENCING_ZONES,
+      delivery.geofencingZones(),
+      skippedFiles
+    );
+
+    // The old feeds are the bases of the entity updates. The leader's own copies are
+    // used instead of reading them back from the feed cache, as long as they are the
+    // bases the continuity tracker expects, which they are not after a failover
+    var useLocalStationBase = isLocalStationBase(feedProvider);
+    var useLocalVehicleBase = isLocalVehicleBase(feedProvider);
     var oldStationInformation = getAndUpdateFeedCache(
       feedProvider,
       Name.STATION_INFORMATION,
-      delivery.stationInformation()
+      delivery.stationInformation(),
+      useLocalStationBase
     );
     var oldStationStatus = getAndUpdateFeedCache(
       feedProvider,
       Name.STATION_STATUS,
-      delivery.stationStatus()
+      delivery.stationStatus(),
+      useLocalStationBase
     );
     var oldVehicleStatus = getAndUpdateFeedCache(
       feedProvider,
       Name.VEHICLE_STATUS,
-      delivery.vehicleStatus()
+      delivery.vehicleStatus(),
+      useLocalVehicleBase
     );
+    if (deltaBases != null && Boolean.TRUE.equals(feedProvider.getAggregate())) {
+      metricsService.registerDeltaBaseBytesSaved(
+        feedProvider,
+        oldStationInformation.bytesSaved() +
+        oldStationStatus.bytesSaved() +
+        oldVehicleStatus.bytesSaved()
+      );
+    }
     return new GbfsV3Delivery(
       null,
       null,
       null,
       null,
-      oldStationInformation,
-      oldStationStatus,
-      oldVehicleStatus,
+      oldStationInformation.feed(),
+      oldStationStatus.feed(),
+      oldVehicleStatus.feed(),
       null,
       null,
       null,
@@ -102,12 +185,49 @@ public class V3FeedCachesUpdater {
     );
   }
 
+  /**
+   * Extend the expiration of the cached feeds of a provider, and their freshness, when
+   * its delivery is unchanged since they were written, instead of writing them again
+   */
+  public void refreshFeedCaches(FeedProvider feedProvider) {
+    for (GBFSFeed.Name feedName : GBFSFeed.Name.values()) {
+      refreshFeedCache(feedProvider, feedName);
+    }
+  }
+
+  private void refreshFeedCache(FeedProvider feedProvider, GBFSFeed.Name feedName) {
+    var metadata = feedCache.findMetadata(feedName, feedProvider);
+    if (metadata != null) {
+      var ttl = getTtl(metadata, feedCacheMinimumTtl) + feedCacheTtlPadding;
+      feedCache.updateExpiration(feedName, feedProvider, ttl, TimeUnit.SECONDS);
+      feedFreshnessCache.update(
+        feedProvider.getSystemId(),
+        feedName.value(),
+        new FeedFreshness(
+          metadata.getLastUpdated(),
+          metadata.getTtl(),
+          Instant.now().getEpochSecond()
+        ),
+        ttl,
+        TimeUnit.SECONDS
+      );
+    }
+  }
+
   private <T> void updateFeedCache(
     FeedProvider feedProvider,
     GBFSFeed.Name feedName,
-    T feed
+    T feed,
+    Set<String> skippedFiles
   ) {
-    if (shouldIncludeFeed(feedProvider, feedName, feed)) {
+    if (skippedFiles.contains(feedName.value())) {
+      logger.debug(
+        "refreshing unchanged feed {} for provider {}",
+        feedName,
+        feedProvider.getSystemId()
+      );
+      refreshFeedCache(feedProvider, feedName);
+    } else if (shouldIncludeFeed(feedProvider, feedName, feed)) {
       logger.debug(
         "updating feed {} for provider {}",
         feedName,
@@ -120,11 +240,8 @@ public class V3FeedCachesUpdater {
         feed
       );
 
-      var ttl = getTtl(
-        GBFSFeedName.implementingClass(feedName),
-        feed,
-        feedCacheMinimumTtl
-      );
+      var body = feedBodySerializer.serialize(feed);
+      var ttl = getTtl(body, feedCacheMinimumTtl);
       feedCache.update(
         feedName,
         feedProvider,
@@ -132,6 +249,7 @@ public class V3FeedCachesUpdater {
         ttl + feedCacheTtlPadding,
         TimeUnit.SECONDS
       );
+      updateFeedBody(feedProvider, feedName, body, ttl + feedCacheTtlPadding);
     } else {
       logger.debug(
         "no feed {} found for provider {}",
@@ -141,10 +259,11 @@ public class V3FeedCachesUpdater {
     }
   }
 
-  private <T> T getAndUpdateFeedCache(
+  private <T> Previous<T> getAndUpdateFeedCache(
     FeedProvider feedProvider,
     GBFSFeed.Name feedName,
-    T feed
+    T feed,
+    boolean useLocalBase
   ) {
     if (shouldIncludeFeed(feedProvider, feedName, feed)) {
       logger.debug(
@@ -158,17 +277,28 @@ public class V3FeedCachesUpdater {
         feedProvider.getSystemId(),
         feed
       );
-      var ttl = getTtl(
-        GBFSFeedName.implementingClass(feedName),
-        feed,
-        feedCacheMinimumTtl
-      );
-      return feedCache.getAndUpdate(
-        feedName,
+      var body = feedBodySerializer.serialize(feed);
+      var ttl = getTtl(body, feedCacheMinimumTtl);
+      updateFeedBody(feedProvider, feedName, body, ttl + feedCacheTtlPadding);
+      if (deltaBases == null) {
+        return new Previous<>(
+          feedCache.getAndUpdate(
+            feedName,
+            feedProvider,
+            feed,
+            ttl + feedCacheTtlPadding,
+            TimeUnit.SECONDS
+          ),
+          0
+        );
+      }
+      return getAndUpdateWithLocalBase(
         feedProvider,
+        feedName,
         feed,
+        body,
         ttl + feedCacheTtlPadding,
-        TimeUnit.SECONDS
+        useLocalBase
       );
     } else {
       logger.debug(
@@ -176,30 +306,147 @@ public class V3FeedCachesUpdater {
         feedName,
         feedProvider.getSystemId()
       );
-      return null;
+      return new Previous<>(null, 0);
     }
   }
 
-  private <T> int getTtl(Class<?> implementingClass, T feed, int minimumTtl) {
-    try {
-      Date lastUpdated = (Date) implementingClass
-        .getMethod("getLastUpdated")
-        .invoke(feed);
-      Integer ttl = (Integer) implementingClass.getMethod("getTtl").invoke(feed);
-      return CacheUtil.getTtl(
-        (int) Instant.now().getEpochSecond(),
-        (int) (lastUpdated.getTime() / 1000),
-        ttl,
-        minimumTtl
+  /**
+   * Update the feed, getting the previous feed from the leader's own copy if it may be
+   * used, or else from the feed cache. The previous feed is only needed by systems whose
+   * entities are aggregated.
+   */
+  private <T> Previous<T> getAndUpdateWithLocalBase(
+    FeedProvider feedProvider,
+    GBFSFeed.Name feedName,
+    T feed,
+    FeedBody body,
+    int ttl,
+    boolean useLocalBase
+  ) {
+    if (!Boolean.TRUE.equals(feedProvider.getAggregate())) {
+      feedCache.update(feedName, feedProvider, feed, ttl, TimeUnit.SECONDS);
+      return new Previous<>(null, 0);
+    }
+
+    var base = useLocalBase ? deltaBases.get(feedProvider.getSystemId(), feedName) : null;
+    Previous<T> previous;
+    if (base != null) {
+      feedCache.update(feedName, feedProvider, feed, ttl, TimeUnit.SECONDS);
+      @SuppressWarnings("unchecked")
+      T baseFeed = (T) base.feed();
+      previous = new Previous<>(baseFeed, base.length());
+      metricsService.registerDeltaBaseRead(feedProvider, true);
+    } else {
+      previous =
+        new Previous<>(
+          feedCache.getAndUpdate(feedName, feedProvider, feed, ttl, TimeUnit.SECONDS),
+          0
+        );
+      metricsService.registerDeltaBaseRead(feedProvider, false);
+    }
+    // A feed without a body can't be weighed, and is not kept
+    if (body != null) {
+      deltaBases.put(
+        feedProvider.getSystemId(),
+        feedName,
+        feed,
+        body.getMetadata().getLength()
       );
-    } catch (
-      NoSuchMethodException | InvocationTargetException | IllegalAccessException e
-    ) {
-      logger.warn("Unable to determine ttl for feed, using default - {}", feed);
+    } else {
+      deltaBases.remove(feedProvider.getSystemId(), feedName);
+    }
+    return previous;
+  }
+
+  private boolean isLocalStationBase(FeedProvider feedProvider) {
+    if (deltaBases == null) {
+      return false;
+    }
+    var systemId = feedProvider.getSystemId();
+    var stationStatus = deltaBases.get(systemId, Name.STATION_STATUS);
+    return (
+      stationStatus != null &&
+      updateContinuityTracker.isStationUpdateBase(
+        systemId,
+        ((GBFSStationStatus) stationStatus.feed()).getLastUpdated()
+      )
+    );
+  }
+
+  private boolean isLocalVehicleBase(FeedProvider feedProvider) {
+    if (deltaBases == null) {
+      return false;
+    }
+    var systemId = feedProvider.getSystemId();
+    var vehicleStatus = deltaBases.get(systemId, Name.VEHICLE_STATUS);
+    return (
+      vehicleStatus != null &&
+      updateContinuityTracker.isVehicleUpdateBase(
+        systemId,
+        ((GBFSVehicleStatus) vehicleStatus.feed()).getLastUpdated()
+      )
+    );
+  }
+
+  /**
+   * Store the serialized body of the feed, which is served as is by the feed controller,
+   * and the freshness of the feed, which is checked without loading the feed. The body
+   * of the previous feed is removed if the feed could not be serialized, so the feed
+   * controller renders the feed instead of serving outdated bytes.
+   */
+  private void updateFeedBody(
+    FeedProvider feedProvider,
+    GBFSFeed.Name feedName,
+    FeedBody body,
+    int ttl
+  ) {
+    var now = Instant.now().getEpochSecond();
+    FeedFreshness freshness;
+    if (body != null) {
+      feedCache.updateBody(feedName, feedProvider, body, ttl, TimeUnit.SECONDS);
+      var metadata = body.getMetadata();
+      freshness = new FeedFreshness(metadata.getLastUpdated(), metadata.getTtl(), now);
+    } else {
+      feedCache.removeBody(feedName, feedProvider);
+      // Feeds can't be serialized without a last_updated or ttl, so the feed is taken
+      // as updated when it was received, and due again right away
+      freshness = new FeedFreshness(now, 0, now);
+    }
+    feedFreshnessCache.update(
+      feedProvider.getSystemId(),
+      feedName.value(),
+      freshness,
+      ttl,
+      TimeUnit.SECONDS
+    );
+  }
+
+  /**
+   * Get the ttl of the feed from the metadata of its serialized body, or the minimum
+   * ttl if the feed could not be serialized
+   */
+  private int getTtl(FeedBody body, int minimumTtl) {
+    if (body == null) {
       return minimumTtl;
     }
+    return getTtl(body.getMetadata(), minimumTtl);
   }
 
+  private int getTtl(FeedMetadata metadata, int minimumTtl) {
+    return CacheUtil.getTtl(
+      (int) Instant.now().getEpochSecond(),
+      (int) metadata.getLastUpdated(),
+      metadata.getTtl(),
+      minimumTtl
+    );
+  }
+
+  /**
+   * The feed which was replaced by an update, and the bytes not read from the feed cache
+   * to get it
+   */
+  private record Previous<T>(T feed, long bytesSaved) {}
+
   private <T> boolean shouldIncludeFeed(
     FeedProvider feedProvider,
     GBFSFeed.Name feedName,
@@ -0,0 +1,167 @@
+/*
+ *
+ *
+ *  * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ *  * the European Commission - subsequent versions of the EUPL (the "Licence");
+ *  * You may not use this work except in compliance with the Licence.
+ *  * You may obtain a copy of the Licence at:
+ *  *
+ *  *   https://joinup.ec.europa.eu/software/page/eupl
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the Licence is distributed on an "AS IS" basis,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the Licence for the specific language governing permissions and
+ *  * limitations under the Licence.
+ *
+ */
+
+package org.entur.lamassu.mapper.feedmapper;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.entur.lamassu.metrics.MetricsService;
+import org.entur.lamassu.model.provider.FeedProvider;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the feed mappers of a delivery, timing each of them. When parallel feed mapping
+ * is enabled, the feeds are mapped concurrently on a bounded number of virtual threads,
+ * otherwise one after another on the calling thread.
+ *
+ * <p>The mappings of a delivery are forked in a scope, which is closed once the mapped
+ * feeds have been collected, and waits for any mapping still running if one of them
+ * failed.
+ */
+@Component
+public class FeedMappingStage implements DisposableBean {
+
+  private final MetricsService metricsService;
+  private final ExecutorService executor;
+
+  public FeedMappingStage(
+    MetricsService metricsService,
+    @Value("${org.entur.lamassu.parallel-feed-mapping.enabled:false}") boolean parallel,
+    @Value("${org.entur.lamassu.parallel-feed-mapping.parallelism:8}") int parallelism
+  ) {
+    this.metricsService = metricsService;
+    this.executor =
+      parallel
+        ? Executors.newFixedThreadPool(
+          parallelism,
+          Thread.ofVirtual().name("feed-mapper-", 0).factory()
+        )
+        : null;
+  }
+
+  public Scope open(FeedProvider feedProvider) {
+    return new Scope(feedProvider);
+  }
+
+  @Override
+  public void destroy() {
+    if (executor != null) {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * The mappings of one delivery
+   */
+  public class Scope implements AutoCloseable {
+
+    private final FeedProvider feedProvider;
+    private final List<CompletableFuture<?>> forked = new ArrayList<>();
+
+    private Scope(FeedProvider feedProvider) {
+      this.feedProvider = feedProvider;
+    }
+
+    /**
+     * Map a feed
+     */
+    public <T> Mapping<T> fork(String feedName, Supplier<T> mapping) {
+      var future = executor != null
+        ? CompletableFuture.supplyAsync(() -> timed(feedName, mapping), executor)
+        : CompletableFuture.completedFuture(timed(feedName, mapping));
+      forked.add(future);
+      return new Mapping<>(future);
+    }
+
+    /**
+     * Map a feed which depends on another mapped feed, once that feed has been mapped
+     */
+    public <T, U> Mapping<T> fork(
+      String feedName,
+      Mapping<U> dependency,
+      Function<U, T> mapping
+    ) {
+      var future = executor != null
+        ? dependency.future.thenApplyAsync(
+          mapped -> timed(feedName, () -> mapping.apply(mapped)),
+          executor
+        )
+        : CompletableFuture.completedFuture(
+          timed(feedName, () -> mapping.apply(dependency.get()))
+        );
+      forked.add(future);
+      return new Mapping<>(future);
+    }
+
+    private <T> T timed(String feedName, Supplier<T> mapping) {
+      var start = System.nanoTime();
+      try {
+        return mapping.get();
+      } finally {
+        metricsService.registerFeedMapping(
+          feedProvider,
+          feedName,
+          Duration.ofNanos(System.nanoTime() - start)
+        );
+      }
+    }
+
+    @Override
+    public void close() {
+      CompletableFuture
+        .allOf(forked.toArray(CompletableFuture[]::new))
+        .exceptionally(e -> null)
+        .join();
+    }
+  }
+
+  /**
+   * A forked feed mapping
+   */
+  public static class Mapping<T> {
+
+    private final CompletableFuture<T> future;
+
+    private Mapping(CompletableFuture<T> future) {
+      this.future = future;
+    }
+
+    /**
+     * Wait for the mapped feed, rethrowing the exception of the mapper if it failed
+     */
+    public T get() {
+      try {
+        return future.join();
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof RuntimeException cause) {
+          throw cause;
+        }
+        throw e;
+      }
+    }
+  }
+}
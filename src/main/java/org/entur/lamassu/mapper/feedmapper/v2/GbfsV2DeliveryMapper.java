@@ -20,9 +20,11 @@ package org.entur.lamassu.mapper.feedmapper.v2;
 
 import org.entur.gbfs.loader.v2.GbfsV2Delivery;
 import org.entur.lamassu.mapper.feedmapper.FeedMapper;
+import org.entur.lamassu.mapper.feedmapper.FeedMappingStage;
 import org.entur.lamassu.model.provider.FeedProvider;
 import org.mobilitydata.gbfs.v2_3.free_bike_status.GBFSFreeBikeStatus;
 import org.mobilitydata.gbfs.v2_3.gbfs.GBFS;
+import org.mobilitydata.gbfs.v2_3.gbfs.GBFSFeedName;
 import org.mobilitydata.gbfs.v2_3.geofencing_zones.GBFSGeofencingZones;
 import org.mobilitydata.gbfs.v2_3.station_information.GBFSStationInformation;
 import org.mobilitydata.gbfs.v2_3.station_status.GBFSStationStatus;
@@ -58,6 +60,7 @@ public class GbfsV2DeliveryMapper {
   private final FeedMapper<GBFSStationInformation> stationInformationFeedMapper;
   private final FeedMapper<GBFSStationStatus> stationStatusFeedMapper;
   private final FeedMapper<GBFSFreeBikeStatus> freeBikeStatusFeedMapper;
+  private final FeedMappingStage feedMappingStage;
 
   @Autowired
   public GbfsV2DeliveryMapper(
@@ -72,7 +75,8 @@ public class GbfsV2DeliveryMapper {
     FeedMapper<GBFSGeofencingZones> geofencingZonesFeedMapper,
     FeedMapper<GBFSStationInformation> stationInformationFeedMapper,
     FeedMapper<GBFSStationStatus> stationStatusFeedMapper,
-    FeedMapper<GBFSFreeBikeStatus> freeBikeStatusFeedMapper
+    FeedMapper<GBFSFreeBikeStatus> freeBikeStatusFeedMapper,
+    FeedMappingStage feedMappingStage
   ) {
     this.discoveryFeedMapper = discoveryFeedMapper;
     this.systemInformationFeedMapper = systemInformationFeedMapper;
@@ -86,39 +90,156 @@ public class GbfsV2DeliveryMapper {
     this.stationInformationFeedMapper = stationInformationFeedMapper;
     this.stationStatusFeedMapper = stationStatusFeedMapper;
     this.freeBikeStatusFeedMapper = freeBikeStatusFeedMapper;
+    this.feedMappingStage = feedMappingStage;
   }
 
   public GbfsV2Delivery mapGbfsDelivery(
     GbfsV2Delivery delivery,
     FeedProvider feedProvider
   ) {
-    var mappedVehicleTypes = vehicleTypesFeedMapper.map(
-      delivery.vehicleTypes(),
-      feedProvider
-    );
-    return new GbfsV2Delivery(
-      discoveryFeedMapper.map(delivery.discovery(), feedProvider),
-      // Lamassu currently only support producing a single version of GBFS, therefore
-      // mapping of the versions file, if it exists, is intentionally skipped.
-      // TODO since we now produce v2.x and v3.x we can generate the versions feed
-      null,
-      systemInformationFeedMapper.map(delivery.systemInformation(), feedProvider),
-      mappedVehicleTypes,
-      stationInformationFeedMapper.map(delivery.stationInformation(), feedProvider),
-      stationStatusFeedMapper.map(
-        delivery.stationStatus(),
-        feedProvider,
-        stationStatus ->
-          VehicleTypeCapacityProducer.addToStations(stationStatus, mappedVehicleTypes)
-      ),
-      freeBikeStatusFeedMapper.map(delivery.freeBikeStatus(), feedProvider),
-      systemHoursFeedMapper.map(delivery.systemHours(), feedProvider),
-      systemCalendarFeedMapper.map(delivery.systemCalendar(), feedProvider),
-      systemRegionsFeedMapper.map(delivery.systemRegions(), feedProvider),
-      systemPricingPlansFeedMapper.map(delivery.systemPricingPlans(), feedProvider),
-      systemAlertsFeedMapper.map(delivery.systemAlerts(), feedProvider),
-      geofencingZonesFeedMapper.map(delivery.geofencingZones(), feedProvider),
-      null
-    );
+    try (var scope = feedMappingStage.open(feedProvider)) {
+      var mappedVehicleTypes = scope.fork(
+        "vehicle_types",
+        () -> vehicleTypesFeedMapper.map(delivery.vehicleTypes(), feedProvider)
+      );
+      var discovery = scope.fork(
+        "gbfs",
+        () -> discoveryFeedMapper.map(delivery.discovery(), feedProvider)
+      );
+      var systemInformation = scope.fork(
+        "system_information",
+        () -> systemInformationFeedMapper.map(delivery.systemInformation(), feedProvider)
+      );
+      var stationInformation = scope.fork(
+        "station_information",
+        () ->
+          stationInformationFeedMapper.map(delivery.stationInformation(), feedProvider)
+      );
+      // Station capacities by vehicle type are produced from the mapped vehicle types
+      var stationStatus = scope.fork(
+        "station_status",
+        mappedVehicleTypes,
+        vehicleTypes ->
+          stationStatusFeedMapper.map(
+            delivery.stationStatus(),
+            feedProvider,
+            status -> VehicleTypeCapacityProducer.addToStations(status, vehicleTypes)
+          )
+      );
+      var freeBikeStatus = scope.fork(
+        "free_bike_status",
+        () -> freeBikeStatusFeedMapper.map(delivery.freeBikeStatus(), feedProvider)
+      );
+      var systemHours = scope.fork(
+        "system_hours",
+        () -> systemHoursFeedMapper.map(delivery.systemHours(), feedProvider)
+      );
+      var systemCalendar = scope.fork(
+        "system_calendar",
+        () -> systemCalendarFeedMapper.map(delivery.systemCalendar(), feedProvider)
+      );
+      var systemRegions = scope.fork(
+        "system_regions",
+        () -> systemRegionsFeedMapper.map(delivery.systemRegions(), feedProvider)
+      );
+      var systemPricingPlans = scope.fork(
+        "system_pricing_plans",
+        () ->
+          systemPricingPlansFeedMapper.map(delivery.systemPricingPlans(), feedProvider)
+      );
+      var systemAlerts = scope.fork(
+        "system_alerts",
+        () -> systemAlertsFeedMapper.map(delivery.systemAlerts(), feedProvider)
+      );
+      var geofencingZones = scope.fork(
+        "geofencing_zones",
+        () -> geofencingZonesFeedMapper.map(delivery.geofencingZones(), feedProvider)
+      );
+      return new GbfsV2Delivery(
+        discovery.get(),
+        // Lamassu currently only support producing a single version of GBFS, therefore
+        // mapping of the versions file, if it exists, is intentionally skipped.
+        // TODO since we now produce v2.x and v3.x we can generate the versions feed
+        null,
+        systemInformation.get(),
+        mappedVehicleTypes.get(),
+        stationInformation.get(),
+        stationStatus.get(),
+        freeBikeStatus.get(),
+        systemHours.get(),
+        systemCalendar.get(),
+        systemRegions.get(),
+        systemPricingPlans.get(),
+        systemAlerts.get(),
+        geofencingZones.get(),
+        null
+      );
+    }
+  }
+
+  /**
+   * Map a single feed of a delivery as mapGbfsDelivery would, or return null if the feed
+   * is not produced
+   */
+  public Object mapFeed(
+    GBFSFeedName feedName,
+    GbfsV2Delivery delivery,
+    FeedProvider feedProvider
+  ) {
+    return switch (feedName) {
+      case GBFS -> delivery.discovery() != null
+        ? discoveryFeedMapper.map(delivery.discovery(), feedProvider)
+        : null;
+      case SystemInformation -> systemInformationFeedMapper.map(
+        delivery.systemInformation(),
+        feedProvider
+      );
+      case VehicleTypes -> vehicleTypesFeedMapper.map(
+        delivery.vehicleTypes(),
+        feedProvider
+      );
+      case StationInformation -> stationInformationFeedMapper.map(
+        delivery.stationInformation(),
+        feedProvider
+      );
+      case StationStatus -> {
+        var mappedVehicleTypes = vehicleTypesFeedMapper.map(
+          delivery.vehicleTypes(),
+          feedProvider
+        );
+        yield stationStatusFeedMapper.map(
+          delivery.stationStatus(),
+          feedProvider,
+          stationStatus ->
+            VehicleTypeCapacityProducer.addToStations(stationStatus, mappedVehicleTypes)
+        );
+      }
+      case FreeBikeStatus -> freeBikeStatusFeedMapper.map(
+        delivery.freeBikeStatus(),
+        feedProvider
+      );
+      case SystemHours -> systemHoursFeedMapper.map(delivery.systemHours(), feedProvider);
+      case SystemCalendar -> systemCalendarFeedMapper.map(
+        delivery.systemCalendar(),
+        feedProvider
+      );
+      case SystemRegions -> systemRegionsFeedMapper.map(
+        delivery.systemRegions(),
+        feedProvider
+      );
+      case SystemPricingPlans -> systemPricingPlansFeedMapper.map(
+        delivery.systemPricingPlans(),
+        feedProvider
+      );
+      case SystemAlerts -> systemAlertsFeedMapper.map(
+        delivery.systemAlerts(),
+        feedProvider
+      );
+      case GeofencingZones -> geofencingZonesFeedMapper.map(
+        delivery.geofencingZones(),
+        feedProvider
+      );
+      default -> null;
+    };
   }
 }
@@ -20,6 +20,7 @@ package org.entur.lamassu.mapper.feedmapper.v3;
 
 import org.entur.gbfs.loader.v3.GbfsV3Delivery;
 import org.entur.lamassu.mapper.feedmapper.FeedMapper;
+import org.entur.lamassu.mapper.feedmapper.FeedMappingStage;
 import org.entur.lamassu.model.provider.FeedProvider;
 import org.mobilitydata.gbfs.v3_0.gbfs.GBFSGbfs;
 import org.mobilitydata.gbfs.v3_0.geofencing_zones.GBFSGeofencingZones;
@@ -54,6 +55,7 @@ public class GbfsV3DeliveryMapper {
   private final FeedMapper<GBFSStationInformation> stationInformationFeedMapper;
   private final FeedMapper<GBFSStationStatus> stationStatusFeedMapper;
   private final FeedMapper<GBFSVehicleStatus> vehicleStatusFeedMapper;
+  private final FeedMappingStage feedMappingStage;
 
   @Autowired
   public GbfsV3DeliveryMapper(
@@ -66,7 +68,8 @@ public class GbfsV3DeliveryMapper {
     FeedMapper<GBFSGeofencingZones> geofencingZonesFeedMapper,
     FeedMapper<GBFSStationInformation> stationInformationFeedMapper,
     FeedMapper<GBFSStationStatus> stationStatusFeedMapper,
-    FeedMapper<GBFSVehicleStatus> vehicleStatusFeedMapper
+    FeedMapper<GBFSVehicleStatus> vehicleStatusFeedMapper,
+    FeedMappingStage feedMappingStage
   ) {
     this.discoveryFeedMapper = discoveryFeedMapper;
     this.systemInformationFeedMapper = systemInformationFeedMapper;
@@ -78,34 +81,80 @@ public class GbfsV3DeliveryMapper {
     this.stationInformationFeedMapper = stationInformationFeedMapper;
     this.stationStatusFeedMapper = stationStatusFeedMapper;
     this.vehicleStatusFeedMapper = vehicleStatusFeedMapper;
+    this.feedMappingStage = feedMappingStage;
   }
 
   public GbfsV3Delivery mapGbfsDelivery(
     GbfsV3Delivery delivery,
     FeedProvider feedProvider
   ) {
-    return new GbfsV3Delivery(
-      discoveryFeedMapper.map(delivery.discovery(), feedProvider),
-      // Lamassu currently only support producing a single version of GBFS, therefore
-      // mapping of the versions file, if it exists, is intentionally skipped.
-      // TODO since we now produce v2.x and v3.x we can generate the versions feed
-      null,
-      systemInformationFeedMapper.map(delivery.systemInformation(), feedProvider),
-      vehicleTypesFeedMapper.map(delivery.vehicleTypes(), feedProvider),
-      stationInformationFeedMapper.map(delivery.stationInformation(), feedProvider),
-      stationStatusFeedMapper.map(
-        delivery.stationStatus(),
-        feedProvider
-        // TODO Should we continue to support this?
-        //stationStatus ->
-        //        VehicleTypeCapacityProducer.addToStations(stationStatus, mappedVehicleTypes)
-      ),
-      vehicleStatusFeedMapper.map(delivery.vehicleStatus(), feedProvider),
-      systemRegionsFeedMapper.map(delivery.systemRegions(), feedProvider),
-      systemPricingPlansFeedMapper.map(delivery.systemPricingPlans(), feedProvider),
-      systemAlertsFeedMapper.map(delivery.systemAlerts(), feedProvider),
-      geofencingZonesFeedMapper.map(delivery.geofencingZones(), feedProvider),
-      null
-    );
+    try (var scope = feedMappingStage.open(feedProvider)) {
+      var discovery = scope.fork(
+        "gbfs",
+        () -> discoveryFeedMapper.map(delivery.discovery(), feedProvider)
+      );
+      var systemInformation = scope.fork(
+        "system_information",
+        () -> systemInformationFeedMapper.map(delivery.systemInformation(), feedProvider)
+      );
+      var vehicleTypes = scope.fork(
+        "vehicle_types",
+        () -> vehicleTypesFeedMapper.map(delivery.vehicleTypes(), feedProvider)
+      );
+      var stationInformation = scope.fork(
+        "station_information",
+        () ->
+          stationInformationFeedMapper.map(delivery.stationInformation(), feedProvider)
+      );
+      var stationStatus = scope.fork(
+        "station_status",
+        () ->
+          stationStatusFeedMapper.map(
+            delivery.stationStatus(),
+            feedProvider
+            // TODO Should we continue to support this?
+            //stationStatus ->
+            //  VehicleTypeCapacityProducer.addToStations(stationStatus, mappedVehicleTypes)
+          )
+      );
+      var vehicleStatus = scope.fork(
+        "vehicle_status",
+        () -> vehicleStatusFeedMapper.map(delivery.vehicleStatus(), feedProvider)
+      );
+      var systemRegions = scope.fork(
+        "system_regions",
+        () -> systemRegionsFeedMapper.map(delivery.systemRegions(), feedProvider)
+      );
+      var systemPricingPlans = scope.fork(
+        "system_pricing_plans",
+        () ->
+          systemPricingPlansFeedMapper.map(delivery.systemPricingPlans(), feedProvider)
+      );
+      var systemAlerts = scope.fork(
+        "system_alerts",
+        () -> systemAlertsFeedMapper.map(delivery.systemAlerts(), feedProvider)
+      );
+      var geofencingZones = scope.fork(
+        "geofencing_zones",
+        () -> geofencingZonesFeedMapper.map(delivery.geofencingZones(), feedProvider)
+      );
+      return new GbfsV3Delivery(
+        discovery.get(),
+        // Lamassu currently only support producing a single version of GBFS, therefore
+        // mapping of the versions file, if it exists, is intentionally skipped.
+        // TODO since we now produce v2.x and v3.x we can generate the versions feed
+        null,
+        systemInformation.get(),
+        vehicleTypes.get(),
+        stationInformation.get(),
+        stationStatus.get(),
+        vehicleStatus.get(),
+        systemRegions.get(),
+        systemPricingPlans.get(),
+        systemAlerts.get(),
+        geofencingZones.get(),
+        null
+      );
+    }
   }
 }
@@ -1,6 +1,5 @@
 package org.entur.lamassu.metrics;
 
-import java.util.Arrays;
 import org.entur.lamassu.config.feedprovider.FeedProviderConfig;
 import org.entur.lamassu.model.provider.FeedProvider;
 import org.entur.lamassu.service.FeedFreshnessService;
@@ -34,15 +33,12 @@ public class MetricUpdater {
   }
 
   private void updateOutdatedFeedMetrics(FeedProvider feedProvider) {
-    int overdueFilesCount = Arrays
-      .asList(GBFSFeed.Name.values())
+    int overdueFilesCount = (int) feedFreshnessService
+      .getOverdueFeeds(feedProvider)
       .stream()
       // Since gbfs is not yet updated regularly, we skip it explicitly
       .filter(feedName -> !GBFSFeed.Name.GBFS.equals(feedName))
-      .mapToInt(feedName ->
-        feedFreshnessService.isFeedOverdue(feedProvider, feedName) ? 1 : 0
-      )
-      .sum();
+      .count();
 
     metricsService.registerOverdueFilesCount(feedProvider, overdueFilesCount);
   }
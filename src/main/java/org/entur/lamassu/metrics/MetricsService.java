@@ -18,9 +18,13 @@
 
 package org.entur.lamassu.metrics;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -43,6 +47,18 @@ public class MetricsService {
   protected static final String SUBSCRIPTION_FAILEDSETUP =
     "app.lamassu.gbfs.subscription.failedsetup";
   public static final String FILES_OVERDUE = "app.lamassu.gbfs.filesoverdue";
+  public static final String CACHE_COMMIT = "app.lamassu.entity.cachecommit";
+  public static final String POLLING_LAG = "app.lamassu.gbfs.polling.lag";
+  public static final String DELIVERIES = "app.lamassu.gbfs.deliveries";
+  public static final String DELIVERY_FILES = "app.lamassu.gbfs.delivery.files";
+  public static final String LABEL_OUTCOME = "outcome";
+  public static final String DELTA_BASE_READS = "app.lamassu.gbfs.deltabase.reads";
+  public static final String DELTA_BASE_BYTES_SAVED =
+    "app.lamassu.gbfs.deltabase.bytessaved";
+  public static final String LABEL_SOURCE = "source";
+  public static final String FEED_MAPPING = "app.lamassu.gbfs.mapping";
+  public static final String LABEL_FEED = "feed";
+  public static final String SYSTEM_ENTITY_COUNT = "app.lamassu.entity.systemcount";
   public static final String LABEL_ENTITY = "entity";
 
   public static final String ENTITY_VEHICLE = "vehicle";
@@ -63,6 +79,8 @@ public class MetricsService {
     new ConcurrentHashMap<>();
   private final Map<String, AtomicInteger> overdueFilesCounters =
     new ConcurrentHashMap<>();
+  private final Map<String, AtomicInteger> systemEntityCounters =
+    new ConcurrentHashMap<>();
 
   public MetricsService(MeterRegistry meterRegistry) {
     this.meterRegistry = meterRegistry;
@@ -104,6 +122,138 @@ public class MetricsService {
     }
   }
 
+  public void registerSystemEntityCount(
+    String entity,
+    FeedProvider feedProvider,
+    int entityCount
+  ) {
+    systemEntityCounters
+      .computeIfAbsent(
+        entity + ":" + feedProvider.getSystemId(),
+        key -> {
+          var counter = new AtomicInteger();
+          Gauge
+            .builder(SYSTEM_ENTITY_COUNT, counter, AtomicInteger::doubleValue)
+            .strongReference(true)
+            .tags(
+              List.of(
+                Tag.of(LABEL_ENTITY, entity),
+                Tag.of(LABEL_SYSTEM, feedProvider.getSystemId())
+              )
+            )
+            .register(meterRegistry);
+          return counter;
+        }
+      )
+      .set(entityCount);
+  }
+
+  public void registerCacheCommit(
+    String entity,
+    FeedProvider feedProvider,
+    Duration duration
+  ) {
+    Timer
+      .builder(CACHE_COMMIT)
+      .tags(
+        List.of(
+          Tag.of(LABEL_ENTITY, entity),
+          Tag.of(LABEL_SYSTEM, feedProvider.getSystemId())
+        )
+      )
+      .register(meterRegistry)
+      .record(duration);
+  }
+
+  /**
+   * Record how long mapping a feed of a delivery took
+   */
+  public void registerFeedMapping(
+    FeedProvider feedProvider,
+    String feedName,
+    Duration duration
+  ) {
+    Timer
+      .builder(FEED_MAPPING)
+      .tags(
+        List.of(
+          Tag.of(LABEL_SYSTEM, feedProvider.getSystemId()),
+          Tag.of(LABEL_FEED, feedName)
+        )
+      )
+      .register(meterRegistry)
+      .record(duration);
+  }
+
+  /**
+   * Record how long after its last delivery expired a feed was polled
+   */
+  public void registerPollingLag(FeedProvider feedProvider, Duration lag) {
+    Timer
+      .builder(POLLING_LAG)
+      .tags(List.of(Tag.of(LABEL_SYSTEM, feedProvider.getSystemId())))
+      .register(meterRegistry)
+      .record(lag);
+  }
+
+  /**
+   * Count the deliveries skipped for being unchanged and the unchanged files of each
+   * delivery, from which the skip ratios of a system are derived
+   */
+  public void registerDeliveryComparison(
+    FeedProvider feedProvider,
+    int files,
+    int unchangedFiles,
+    boolean skipped
+  ) {
+    var system = Tag.of(LABEL_SYSTEM, feedProvider.getSystemId());
+    Counter
+      .builder(DELIVERIES)
+      .tags(List.of(system, Tag.of(LABEL_OUTCOME, skipped ? "skipped" : "processed")))
+      .register(meterRegistry)
+      .increment();
+    Counter
+      .builder(DELIVERY_FILES)
+      .tags(List.of(system, Tag.of(LABEL_OUTCOME, "unchanged")))
+      .register(meterRegistry)
+      .increment(unchangedFiles);
+    Counter
+      .builder(DELIVERY_FILES)
+      .tags(List.of(system, Tag.of(LABEL_OUTCOME, "changed")))
+      .register(meterRegistry)
+      .increment((double) files - unchangedFiles);
+  }
+
+  /**
+   * Count where the base of an entity update was read from, the leader's memory or the
+   * feed cache
+   */
+  public void registerDeltaBaseRead(FeedProvider feedProvider, boolean local) {
+    Counter
+      .builder(DELTA_BASE_READS)
+      .tags(
+        List.of(
+          Tag.of(LABEL_SYSTEM, feedProvider.getSystemId()),
+          Tag.of(LABEL_SOURCE, local ? "local" : "cache")
+        )
+      )
+      .register(meterRegistry)
+      .increment();
+  }
+
+  /**
+   * Record the bytes of an update cycle not read from the feed cache, because the base of
+   * the entity update was kept by the leader
+   */
+  public void registerDeltaBaseBytesSaved(FeedProvider feedProvider, long bytes) {
+    DistributionSummary
+      .builder(DELTA_BASE_BYTES_SAVED)
+      .baseUnit("bytes")
+      .tags(List.of(Tag.of(LABEL_SYSTEM, feedProvider.getSystemId())))
+      .register(meterRegistry)
+      .record(bytes);
+  }
+
   public void registerOverdueFilesCount(
     FeedProvider feedProvider,
     int overdueFilesCount
@@ -21,7 +21,7 @@ package org.entur.lamassu.model.entities;
 import java.util.List;
 import java.util.Objects;
 
-public class Station implements LocationEntity, SystemEntity {
+public class Station implements LocationEntity, SystemEntity, Cloneable {
 
   private String id;
   private TranslatedString name;
@@ -472,6 +472,17 @@ public class Station implements LocationEntity, SystemEntity {
     );
   }
 
+  /**
+   * Create a shallow copy of the station, sharing everything but its top level fields
+   */
+  public Station copy() {
+    try {
+      return (Station) super.clone();
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
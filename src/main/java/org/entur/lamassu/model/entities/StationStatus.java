@@ -0,0 +1,130 @@
+package org.entur.lamassu.model.entities;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The part of a station that comes from station_status, stored apart from the rest of
+ * the station so that status changes can be written without rewriting the station.
+ */
+public class StationStatus implements Serializable {
+
+  private Integer numBikesAvailable;
+  private Integer numVehiclesAvailable;
+  private List<VehicleTypeAvailability> vehicleTypesAvailable;
+  private Integer numBikesDisabled;
+  private Integer numVehiclesDisabled;
+  private Integer numDocksAvailable;
+  private List<VehicleDocksAvailability> vehicleDocksAvailable;
+  private Integer numDocksDisabled;
+  private Boolean isInstalled;
+  private Boolean isRenting;
+  private Boolean isReturning;
+  private Long lastReported;
+
+  /**
+   * Create the status part of the given station
+   */
+  public static StationStatus of(Station station) {
+    var status = new StationStatus();
+    status.numBikesAvailable = station.getNumBikesAvailable();
+    status.numVehiclesAvailable = station.getNumVehiclesAvailable();
+    status.vehicleTypesAvailable = station.getVehicleTypesAvailable();
+    status.numBikesDisabled = station.getNumBikesDisabled();
+    status.numVehiclesDisabled = station.getNumVehiclesDisabled();
+    status.numDocksAvailable = station.getNumDocksAvailable();
+    status.vehicleDocksAvailable = station.getVehicleDocksAvailable();
+    status.numDocksDisabled = station.getNumDocksDisabled();
+    status.isInstalled = station.getInstalled();
+    status.isRenting = station.getRenting();
+    status.isReturning = station.getReturning();
+    status.lastReported = station.getLastReported();
+    return status;
+  }
+
+  /**
+   * Overwrite the status fields of the given station with this status
+   */
+  public void applyTo(Station station) {
+    station.setNumBikesAvailable(numBikesAvailable);
+    station.setNumVehiclesAvailable(numVehiclesAvailable);
+    station.setVehicleTypesAvailable(vehicleTypesAvailable);
+    station.setNumBikesDisabled(numBikesDisabled);
+    station.setNumVehiclesDisabled(numVehiclesDisabled);
+    station.setNumDocksAvailable(numDocksAvailable);
+    station.setVehicleDocksAvailable(vehicleDocksAvailable);
+    station.setNumDocksDisabled(numDocksDisabled);
+    station.setInstalled(isInstalled);
+    station.setRenting(isRenting);
+    station.setReturning(isReturning);
+    station.setLastReported(lastReported);
+  }
+
+  public Integer getNumBikesAvailable() {
+    return numBikesAvailable;
+  }
+
+  public Integer getNumVehiclesAvailable() {
+    return numVehiclesAvailable;
+  }
+
+  public List<VehicleTypeAvailability> getVehicleTypesAvailable() {
+    return vehicleTypesAvailable;
+  }
+
+  public Integer getNumBikesDisabled() {
+    return numBikesDisabled;
+  }
+
+  public Integer getNumVehiclesDisabled() {
+    return numVehiclesDisabled;
+  }
+
+  public Integer getNumDocksAvailable() {
+    return numDocksAvailable;
+  }
+
+  public List<VehicleDocksAvailability> getVehicleDocksAvailable() {
+    return vehicleDocksAvailable;
+  }
+
+  public Integer getNumDocksDisabled() {
+    return numDocksDisabled;
+  }
+
+  public Boolean getInstalled() {
+    return isInstalled;
+  }
+
+  public Boolean getRenting() {
+    return isRenting;
+  }
+
+  public Boolean getReturning() {
+    return isReturning;
+  }
+
+  public Long getLastReported() {
+    return lastReported;
+  }
+
+  @Override
+  public String toString() {
+    return (
+      "StationStatus{" +
+      "numVehiclesAvailable=" +
+      numVehiclesAvailable +
+      ", numDocksAvailable=" +
+      numDocksAvailable +
+      ", isInstalled=" +
+      isInstalled +
+      ", isRenting=" +
+      isRenting +
+      ", isReturning=" +
+      isReturning +
+      ", lastReported=" +
+      lastReported +
+      '}'
+    );
+  }
+}
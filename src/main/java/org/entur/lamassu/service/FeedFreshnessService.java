@@ -18,14 +18,15 @@
 
 package org.entur.lamassu.service;
 
-import java.lang.reflect.InvocationTargetException;
 import java.time.Instant;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import org.entur.lamassu.cache.GBFSV3FeedCache;
+import org.entur.lamassu.cache.FeedFreshness;
+import org.entur.lamassu.cache.FeedFreshnessCache;
 import org.entur.lamassu.model.provider.FeedProvider;
 import org.mobilitydata.gbfs.v3_0.gbfs.GBFSFeed;
-import org.mobilitydata.gbfs.v3_0.gbfs.GBFSFeedName;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -33,8 +34,9 @@ import org.springframework.stereotype.Service;
  * Derives data-freshness signals for a feed provider from the cached GBFS feeds.
  *
  * <p>This reflects whether a system is actually receiving fresh data, independent
- * of its (durable) subscription desired-state. It reads the shared feed cache, so
- * it produces the same answer on leader and follower instances.
+ * of its (durable) subscription desired-state. It reads the shared feed freshness
+ * cache, which is written together with the feed cache, so it produces the same
+ * answer on leader and follower instances without loading any feeds.
  */
 @Service
 public class FeedFreshnessService {
@@ -44,16 +46,16 @@ public class FeedFreshnessService {
     GBFSFeed.Name.STATION_STATUS,
   };
 
-  private final GBFSV3FeedCache feedCache;
+  private final FeedFreshnessCache feedFreshnessCache;
   private final int maxToleratedOverdueSeconds;
 
   public FeedFreshnessService(
-    GBFSV3FeedCache feedCache,
+    FeedFreshnessCache feedFreshnessCache,
     @Value(
       "${org.entur.lamassu.max-tolerated-overdue-seconds:120}"
     ) int maxToleratedOverdueSeconds
   ) {
-    this.feedCache = feedCache;
+    this.feedFreshnessCache = feedFreshnessCache;
     this.maxToleratedOverdueSeconds = maxToleratedOverdueSeconds;
   }
 
@@ -62,8 +64,11 @@ public class FeedFreshnessService {
    * (vehicle_status or station_status) is present in the cache and not overdue.
    */
   public boolean isLive(FeedProvider feedProvider) {
+    var freshness = feedFreshnessCache.findAll(feedProvider.getSystemId());
+    long now = Instant.now().getEpochSecond();
     for (GBFSFeed.Name feedName : REALTIME_FEEDS) {
-      if (isFeedFresh(feedProvider, feedName)) {
+      var feedFreshness = freshness.get(feedName.value());
+      if (feedFreshness != null && !isOverdue(feedFreshness, now)) {
         return true;
       }
     }
@@ -75,14 +80,18 @@ public class FeedFreshnessService {
    * or empty if none are present.
    */
   public Optional<Instant> lastUpdated(FeedProvider feedProvider) {
-    Instant latest = null;
+    var freshness = feedFreshnessCache.findAll(feedProvider.getSystemId());
+    Long latest = null;
     for (GBFSFeed.Name feedName : REALTIME_FEEDS) {
-      Instant timestamp = feedLastUpdated(feedProvider, feedName);
-      if (timestamp != null && (latest == null || timestamp.isAfter(latest))) {
-        latest = timestamp;
+      var feedFreshness = freshness.get(feedName.value());
+      if (
+        feedFreshness != null &&
+        (latest == null || feedFreshness.getLastUpdated() > latest)
+      ) {
+        latest = feedFreshness.getLastUpdated();
       }
     }
-    return Optional.ofNullable(latest);
+    return Optional.ofNullable(latest).map(Instant::ofEpochSecond);
   }
 
   /**
@@ -90,52 +99,35 @@ public class FeedFreshnessService {
    * tolerated overdue window). Absent feeds are not considered overdue.
    */
   public boolean isFeedOverdue(FeedProvider feedProvider, GBFSFeed.Name feedName) {
-    Object feed = feedCache.find(feedName, feedProvider);
-    if (feed != null) {
-      long absoluteTtl = getAbsoluteTtl(GBFSFeedName.implementingClass(feedName), feed);
-      return absoluteTtl + maxToleratedOverdueSeconds < Instant.now().getEpochSecond();
-    }
-    return false;
-  }
-
-  private boolean isFeedFresh(FeedProvider feedProvider, GBFSFeed.Name feedName) {
-    Object feed = feedCache.find(feedName, feedProvider);
-    if (feed == null) {
-      return false;
-    }
-    long absoluteTtl = getAbsoluteTtl(GBFSFeedName.implementingClass(feedName), feed);
-    return absoluteTtl + maxToleratedOverdueSeconds >= Instant.now().getEpochSecond();
+    var feedFreshness = feedFreshnessCache.find(
+      feedProvider.getSystemId(),
+      feedName.value()
+    );
+    return (
+      feedFreshness != null && isOverdue(feedFreshness, Instant.now().getEpochSecond())
+    );
   }
 
-  private Instant feedLastUpdated(FeedProvider feedProvider, GBFSFeed.Name feedName) {
-    Object feed = feedCache.find(feedName, feedProvider);
-    if (feed == null) {
-      return null;
-    }
-    try {
-      Date lastUpdated = (Date) GBFSFeedName
-        .implementingClass(feedName)
-        .getMethod("getLastUpdated")
-        .invoke(feed);
-      return lastUpdated == null
-        ? null
-        : Instant.ofEpochSecond(lastUpdated.getTime() / 1000);
-    } catch (
-      NoSuchMethodException | InvocationTargetException | IllegalAccessException e
-    ) {
-      return null;
+  /**
+   * The feed files of a system which are overdue, read in one lookup. Absent feeds
+   * are not considered overdue.
+   */
+  public List<GBFSFeed.Name> getOverdueFeeds(FeedProvider feedProvider) {
+    Map<String, FeedFreshness> freshness = feedFreshnessCache.findAll(
+      feedProvider.getSystemId()
+    );
+    long now = Instant.now().getEpochSecond();
+    List<GBFSFeed.Name> overdueFeeds = new ArrayList<>();
+    for (GBFSFeed.Name feedName : GBFSFeed.Name.values()) {
+      var feedFreshness = freshness.get(feedName.value());
+      if (feedFreshness != null && isOverdue(feedFreshness, now)) {
+        overdueFeeds.add(feedName);
+      }
     }
+    return overdueFeeds;
   }
 
-  private <T> long getAbsoluteTtl(Class<?> feedClass, T feed) {
-    try {
-      Date lastUpdated = (Date) feedClass.getMethod("getLastUpdated").invoke(feed);
-      Integer ttl = (Integer) feedClass.getMethod("getTtl").invoke(feed);
-      return lastUpdated.getTime() / 1000 + ttl;
-    } catch (
-      NoSuchMethodException | InvocationTargetException | IllegalAccessException e
-    ) {
-      return 0;
-    }
+  private boolean isOverdue(FeedFreshness feedFreshness, long now) {
+    return feedFreshness.getExpiresAt() + maxToleratedOverdueSeconds < now;
   }
 }
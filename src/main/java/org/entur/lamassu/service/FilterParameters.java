@@ -26,6 +26,7 @@ public abstract class FilterParameters {
   private List<String> systems;
   private List<String> operators;
   private Integer count;
+  private int offset;
 
   public FilterParameters(
     List<String> codespaces,
@@ -70,4 +71,15 @@ public abstract class FilterParameters {
   public void setCount(Integer count) {
     this.count = count;
   }
+
+  /**
+   * Number of matching entities to skip, used to page through large result sets.
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  public void setOffset(int offset) {
+    this.offset = offset;
+  }
 }
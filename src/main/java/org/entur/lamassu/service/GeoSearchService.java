@@ -2,6 +2,7 @@ package org.entur.lamassu.service;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 import org.entur.lamassu.model.entities.Station;
 import org.entur.lamassu.model.entities.Vehicle;
 
@@ -22,6 +23,47 @@ public interface GeoSearchService {
     BoundingBoxQueryParameters boundingBoxQueryParameters,
     StationFilterParameters stationFilterParameters
   );
+
+  /**
+   * Find the vehicles within range like getVehiclesWithinRange, reading them from the
+   * entity cache a chunk at a time as the returned stream is consumed
+   */
+  Stream<List<Vehicle>> getVehicleChunksWithinRange(
+    RangeQueryParameters rangeQueryParameters,
+    VehicleFilterParameters vehicleFilterParameters,
+    int chunkSize
+  );
+
+  /**
+   * Find the vehicles in the bounding box like getVehiclesInBoundingBox, reading them
+   * from the entity cache a chunk at a time as the returned stream is consumed
+   */
+  Stream<List<Vehicle>> getVehicleChunksInBoundingBox(
+    BoundingBoxQueryParameters boundingBoxQueryParameters,
+    VehicleFilterParameters vehicleFilterParameters,
+    int chunkSize
+  );
+
+  /**
+   * Find the stations within range like getStationsWithinRange, reading them from the
+   * entity cache a chunk at a time as the returned stream is consumed
+   */
+  Stream<List<Station>> getStationChunksWithinRange(
+    RangeQueryParameters rangeQueryParameters,
+    StationFilterParameters stationFilterParameters,
+    int chunkSize
+  );
+
+  /**
+   * Find the stations in the bounding box like getStationsInBoundingBox, reading them
+   * from the entity cache a chunk at a time as the returned stream is consumed
+   */
+  Stream<List<Station>> getStationChunksInBoundingBox(
+    BoundingBoxQueryParameters boundingBoxQueryParameters,
+    StationFilterParameters stationFilterParameters,
+    int chunkSize
+  );
+
   Collection<String> getVehicleSpatialIndexOrphans();
   Collection<String> removeVehicleSpatialIndexOrphans();
 }
@@ -3,6 +3,7 @@ package org.entur.lamassu.service;
 import java.util.List;
 import java.util.stream.Collectors;
 import org.entur.lamassu.cache.EntityCache;
+import org.entur.lamassu.cache.EntityReader;
 import org.entur.lamassu.cache.StationSpatialIndexId;
 import org.entur.lamassu.cache.VehicleSpatialIndexId;
 import org.entur.lamassu.model.entities.Station;
@@ -27,7 +28,15 @@ public class SpatialIndexIdGeneratorService {
     Vehicle vehicle,
     FeedProvider provider
   ) {
-    VehicleType vehicleType = vehicleTypeCache.get(vehicle.getVehicleTypeId());
+    return createVehicleIndexId(vehicle, provider, vehicleTypeCache);
+  }
+
+  public VehicleSpatialIndexId createVehicleIndexId(
+    Vehicle vehicle,
+    FeedProvider provider,
+    EntityReader<VehicleType> vehicleTypes
+  ) {
+    VehicleType vehicleType = vehicleTypes.get(vehicle.getVehicleTypeId());
     if (vehicleType == null) {
       throw new IllegalStateException(
         "Vehicle type not found for id: " + vehicle.getVehicleTypeId()
@@ -49,6 +58,14 @@ public class SpatialIndexIdGeneratorService {
   public StationSpatialIndexId createStationIndexId(
     Station station,
     FeedProvider provider
+  ) {
+    return createStationIndexId(station, provider, vehicleTypeCache);
+  }
+
+  public StationSpatialIndexId createStationIndexId(
+    Station station,
+    FeedProvider provider,
+    EntityReader<VehicleType> vehicleTypes
   ) {
     var id = new StationSpatialIndexId();
     id.setId(station.getId());
@@ -63,13 +80,13 @@ public class SpatialIndexIdGeneratorService {
         .map(VehicleTypeAvailability::getVehicleTypeId)
         .collect(Collectors.toSet());
 
-      List<VehicleType> vehicleTypes = vehicleTypeCache.getAll(vehicleTypeIds);
+      List<VehicleType> availableVehicleTypes = vehicleTypes.getAll(vehicleTypeIds);
 
       id.setAvailableFormFactors(
-        vehicleTypes.stream().map(VehicleType::getFormFactor).toList()
+        availableVehicleTypes.stream().map(VehicleType::getFormFactor).toList()
       );
       id.setAvailablePropulsionTypes(
-        vehicleTypes.stream().map(VehicleType::getPropulsionType).toList()
+        availableVehicleTypes.stream().map(VehicleType::getPropulsionType).toList()
       );
     } else {
       id.setAvailableFormFactors(List.of());
@@ -1,25 +1,32 @@
 package org.entur.lamassu.service.impl;
 
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import org.entur.lamassu.cache.EntityCache;
+import org.entur.lamassu.cache.SpatialIndexDictionary;
+import org.entur.lamassu.cache.SpatialIndexId;
+import org.entur.lamassu.cache.SpatialIndexSearchResult;
 import org.entur.lamassu.cache.StationSpatialIndex;
 import org.entur.lamassu.cache.StationSpatialIndexId;
 import org.entur.lamassu.cache.VehicleSpatialIndex;
 import org.entur.lamassu.cache.VehicleSpatialIndexId;
+import org.entur.lamassu.model.entities.Entity;
 import org.entur.lamassu.model.entities.Station;
 import org.entur.lamassu.model.entities.Vehicle;
 import org.entur.lamassu.service.BoundingBoxQueryParameters;
+import org.entur.lamassu.service.FilterParameters;
 import org.entur.lamassu.service.GeoSearchService;
 import org.entur.lamassu.service.RangeQueryParameters;
 import org.entur.lamassu.service.StationFilterParameters;
 import org.entur.lamassu.service.VehicleFilterParameters;
-import org.entur.lamassu.util.GeoUtils;
 import org.entur.lamassu.util.SpatialIndexIdFilter;
-import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.redisson.api.geo.GeoOrder;
 import org.redisson.api.geo.GeoUnit;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,57 +35,82 @@ import org.springframework.stereotype.Component;
 @Component
 public class GeoSearchServiceImpl implements GeoSearchService {
 
+  // Smallest number of ids requested from the spatial index per page
+  private static final int MINIMUM_PAGE_SIZE = 100;
+  private static final int PAGE_GROWTH_FACTOR = 4;
+
   private final VehicleSpatialIndex vehicleSpatialIndex;
   private final StationSpatialIndex stationSpatialIndex;
   private final EntityCache<Vehicle> vehicleCache;
   private final EntityCache<Station> stationCache;
+  private final SpatialIndexDictionary spatialIndexDictionary;
 
   @Autowired
   public GeoSearchServiceImpl(
     VehicleSpatialIndex vehicleSpatialIndex,
     StationSpatialIndex stationSpatialIndex,
     EntityCache<Vehicle> vehicleCache,
-    EntityCache<Station> stationCache
+    EntityCache<Station> stationCache,
+    SpatialIndexDictionary spatialIndexDictionary
   ) {
     this.vehicleSpatialIndex = vehicleSpatialIndex;
     this.stationSpatialIndex = stationSpatialIndex;
     this.vehicleCache = vehicleCache;
     this.stationCache = stationCache;
+    this.spatialIndexDictionary = spatialIndexDictionary;
   }
 
   @Override
   public List<Vehicle> getVehiclesWithinRange(
     RangeQueryParameters rangeQueryParameters,
     VehicleFilterParameters vehicleFilterParameters
+  ) {
+    return getVehicles(
+      searchVehiclesWithinRange(rangeQueryParameters, vehicleFilterParameters)
+    );
+  }
+
+  @Override
+  public Stream<List<Vehicle>> getVehicleChunksWithinRange(
+    RangeQueryParameters rangeQueryParameters,
+    VehicleFilterParameters vehicleFilterParameters,
+    int chunkSize
+  ) {
+    return getChunks(
+      searchVehiclesWithinRange(rangeQueryParameters, vehicleFilterParameters)
+        .stream()
+        .map(VehicleSpatialIndexId::getId)
+        .toList(),
+      vehicleCache,
+      chunkSize
+    );
+  }
+
+  private List<VehicleSpatialIndexId> searchVehiclesWithinRange(
+    RangeQueryParameters rangeQueryParameters,
+    VehicleFilterParameters vehicleFilterParameters
   ) {
     Double longitude = rangeQueryParameters.getLon();
     Double latitude = rangeQueryParameters.getLat();
     Double range = rangeQueryParameters.getRange();
-
-    List<VehicleSpatialIndexId> indexIds = vehicleSpatialIndex.radius(
-      longitude,
-      latitude,
-      range,
-      GeoUnit.METERS,
-      GeoOrder.ASC
+    var matcher = SpatialIndexIdFilter.compileVehicleFilter(
+      vehicleFilterParameters,
+      spatialIndexDictionary
     );
 
-    var stream = indexIds
-      .stream()
-      .filter(Objects::nonNull)
-      .filter(id -> SpatialIndexIdFilter.filterVehicle(id, vehicleFilterParameters));
-
-    Integer count = vehicleFilterParameters.getCount();
-
-    if (count != null) {
-      stream = stream.limit(count.longValue());
-    }
-
-    Set<String> vehicleIds = stream
-      .map(VehicleSpatialIndexId::getId)
-      .collect(Collectors.toSet());
-
-    return vehicleCache.getAll(vehicleIds);
+    return search(
+      limit ->
+        vehicleSpatialIndex.radius(
+          longitude,
+          latitude,
+          range,
+          GeoUnit.METERS,
+          GeoOrder.ASC,
+          limit,
+          matcher
+        ),
+      vehicleFilterParameters
+    );
   }
 
   @Override
@@ -86,55 +118,102 @@ public class GeoSearchServiceImpl implements GeoSearchService {
     BoundingBoxQueryParameters boundingBoxQueryParameters,
     VehicleFilterParameters vehicleFilterParameters
   ) {
-    ReferencedEnvelope envelope = GeoUtils.mapToEnvelope(boundingBoxQueryParameters);
-    RangeQueryParameters rangeQueryParameters = GeoUtils.mapToRangeQueryParameters(
-      envelope
+    return getVehicles(
+      searchVehiclesInBoundingBox(boundingBoxQueryParameters, vehicleFilterParameters)
     );
+  }
 
-    List<Vehicle> vehicles = getVehiclesWithinRange(
-      rangeQueryParameters,
-      vehicleFilterParameters
+  @Override
+  public Stream<List<Vehicle>> getVehicleChunksInBoundingBox(
+    BoundingBoxQueryParameters boundingBoxQueryParameters,
+    VehicleFilterParameters vehicleFilterParameters,
+    int chunkSize
+  ) {
+    return getChunks(
+      searchVehiclesInBoundingBox(boundingBoxQueryParameters, vehicleFilterParameters)
+        .stream()
+        .map(VehicleSpatialIndexId::getId)
+        .toList(),
+      vehicleCache,
+      chunkSize
     );
+  }
 
-    return vehicles
-      .stream()
-      .filter(vehicle -> envelope.contains(vehicle.getLon(), vehicle.getLat()))
-      .toList();
+  private List<VehicleSpatialIndexId> searchVehiclesInBoundingBox(
+    BoundingBoxQueryParameters boundingBoxQueryParameters,
+    VehicleFilterParameters vehicleFilterParameters
+  ) {
+    var matcher = SpatialIndexIdFilter.compileVehicleFilter(
+      vehicleFilterParameters,
+      spatialIndexDictionary
+    );
+
+    return search(
+      limit ->
+        vehicleSpatialIndex.boundingBox(
+          boundingBoxQueryParameters.getMinimumLongitude(),
+          boundingBoxQueryParameters.getMinimumLatitude(),
+          boundingBoxQueryParameters.getMaximumLongitude(),
+          boundingBoxQueryParameters.getMaximumLatitude(),
+          GeoOrder.ASC,
+          limit,
+          matcher
+        ),
+      vehicleFilterParameters
+    );
   }
 
   @Override
   public List<Station> getStationsWithinRange(
     RangeQueryParameters rangeQueryParameters,
     StationFilterParameters filterParameters
+  ) {
+    return getStations(
+      searchStationsWithinRange(rangeQueryParameters, filterParameters)
+    );
+  }
+
+  @Override
+  public Stream<List<Station>> getStationChunksWithinRange(
+    RangeQueryParameters rangeQueryParameters,
+    StationFilterParameters filterParameters,
+    int chunkSize
+  ) {
+    return getChunks(
+      searchStationsWithinRange(rangeQueryParameters, filterParameters)
+        .stream()
+        .map(StationSpatialIndexId::getId)
+        .toList(),
+      stationCache,
+      chunkSize
+    );
+  }
+
+  private List<StationSpatialIndexId> searchStationsWithinRange(
+    RangeQueryParameters rangeQueryParameters,
+    StationFilterParameters filterParameters
   ) {
     Double longitude = rangeQueryParameters.getLon();
     Double latitude = rangeQueryParameters.getLat();
     Double range = rangeQueryParameters.getRange();
-
-    List<StationSpatialIndexId> indexIds = stationSpatialIndex.radius(
-      longitude,
-      latitude,
-      range,
-      GeoUnit.METERS,
-      GeoOrder.ASC
+    var matcher = SpatialIndexIdFilter.compileStationFilter(
+      filterParameters,
+      spatialIndexDictionary
     );
 
-    var stream = indexIds
-      .stream()
-      .filter(Objects::nonNull)
-      .filter(id -> SpatialIndexIdFilter.filterStation(id, filterParameters));
-
-    Integer count = filterParameters.getCount();
-
-    if (count != null) {
-      stream = stream.limit(count.longValue());
-    }
-
-    Set<String> stationIds = stream
-      .map(StationSpatialIndexId::getId)
-      .collect(Collectors.toSet());
-
-    return stationCache.getAll(stationIds);
+    return search(
+      limit ->
+        stationSpatialIndex.radius(
+          longitude,
+          latitude,
+          range,
+          GeoUnit.METERS,
+          GeoOrder.ASC,
+          limit,
+          matcher
+        ),
+      filterParameters
+    );
   }
 
   @Override
@@ -142,18 +221,135 @@ public class GeoSearchServiceImpl implements GeoSearchService {
     BoundingBoxQueryParameters boundingBoxQueryParameters,
     StationFilterParameters stationFilterParameters
   ) {
-    ReferencedEnvelope envelope = GeoUtils.mapToEnvelope(boundingBoxQueryParameters);
-    RangeQueryParameters rangeQueryParameters = GeoUtils.mapToRangeQueryParameters(
-      envelope
+    return getStations(
+      searchStationsInBoundingBox(boundingBoxQueryParameters, stationFilterParameters)
     );
-    List<Station> stations = getStationsWithinRange(
-      rangeQueryParameters,
+  }
+
+  @Override
+  public Stream<List<Station>> getStationChunksInBoundingBox(
+    BoundingBoxQueryParameters boundingBoxQueryParameters,
+    StationFilterParameters stationFilterParameters,
+    int chunkSize
+  ) {
+    return getChunks(
+      searchStationsInBoundingBox(boundingBoxQueryParameters, stationFilterParameters)
+        .stream()
+        .map(StationSpatialIndexId::getId)
+        .toList(),
+      stationCache,
+      chunkSize
+    );
+  }
+
+  private List<StationSpatialIndexId> searchStationsInBoundingBox(
+    BoundingBoxQueryParameters boundingBoxQueryParameters,
+    StationFilterParameters stationFilterParameters
+  ) {
+    var matcher = SpatialIndexIdFilter.compileStationFilter(
+      stationFilterParameters,
+      spatialIndexDictionary
+    );
+
+    return search(
+      limit ->
+        stationSpatialIndex.boundingBox(
+          boundingBoxQueryParameters.getMinimumLongitude(),
+          boundingBoxQueryParameters.getMinimumLatitude(),
+          boundingBoxQueryParameters.getMaximumLongitude(),
+          boundingBoxQueryParameters.getMaximumLatitude(),
+          GeoOrder.ASC,
+          limit,
+          matcher
+        ),
       stationFilterParameters
     );
-    return stations
+  }
+
+  /**
+   * Find the index ids matching the filter, skipping offset matches. When count is set,
+   * ids are searched in growing pages, stopping as soon as enough ids match, instead of
+   * searching every id in the area.
+   */
+  static <S extends SpatialIndexId> List<S> search(
+    IntFunction<SpatialIndexSearchResult<S>> searchPage,
+    FilterParameters filterParameters
+  ) {
+    int offset = filterParameters.getOffset();
+    Integer count = filterParameters.getCount();
+
+    if (count == null) {
+      return searchPage
+        .apply(Integer.MAX_VALUE)
+        .ids()
+        .stream()
+        .filter(Objects::nonNull)
+        .skip(offset)
+        .toList();
+    }
+
+    long wanted = (long) offset + count;
+    int pageSize = (int) Math.min(
+      Math.max(wanted * 2, MINIMUM_PAGE_SIZE),
+      Integer.MAX_VALUE / PAGE_GROWTH_FACTOR
+    );
+
+    while (true) {
+      var page = searchPage.apply(pageSize);
+      List<S> matches = page.ids().stream().filter(Objects::nonNull).toList();
+
+      if (
+        matches.size() >= wanted ||
+        page.exhausted() ||
+        pageSize >= Integer.MAX_VALUE / PAGE_GROWTH_FACTOR
+      ) {
+        return matches.stream().limit(wanted).skip(offset).toList();
+      }
+
+      pageSize *= PAGE_GROWTH_FACTOR;
+    }
+  }
+
+  /**
+   * Read the entities from the cache a chunk at a time, as the returned stream is
+   * consumed
+   */
+  private static <T extends Entity> Stream<List<T>> getChunks(
+    List<String> entityIds,
+    EntityCache<T> entityCache,
+    int chunkSize
+  ) {
+    List<String> ids = entityIds.stream().distinct().toList();
+    return IntStream
+      .range(0, (ids.size() + chunkSize - 1) / chunkSize)
+      .mapToObj(chunk ->
+        entityCache.getAll(
+          new HashSet<>(
+            ids.subList(
+              chunk * chunkSize,
+              Math.min(ids.size(), (chunk + 1) * chunkSize)
+            )
+          )
+        )
+      );
+  }
+
+  private List<Vehicle> getVehicles(List<VehicleSpatialIndexId> indexIds) {
+    Set<String> vehicleIds = indexIds
       .stream()
-      .filter(station -> envelope.contains(station.getLon(), station.getLat()))
-      .toList();
+      .map(VehicleSpatialIndexId::getId)
+      .collect(Collectors.toSet());
+
+    return vehicleCache.getAll(vehicleIds);
+  }
+
+  private List<Station> getStations(List<StationSpatialIndexId> indexIds) {
+    Set<String> stationIds = indexIds
+      .stream()
+      .map(StationSpatialIndexId::getId)
+      .collect(Collectors.toSet());
+
+    return stationCache.getAll(stationIds);
   }
 
   @Override
@@ -1,7 +1,15 @@
 package org.entur.lamassu.util;
 
+import java.util.BitSet;
+import java.util.List;
+import org.entur.lamassu.cache.PackedSpatialIndexId;
+import org.entur.lamassu.cache.SpatialIndexDictionary;
+import org.entur.lamassu.cache.SpatialIndexIdMatcher;
 import org.entur.lamassu.cache.StationSpatialIndexId;
 import org.entur.lamassu.cache.VehicleSpatialIndexId;
+import org.entur.lamassu.model.entities.FormFactor;
+import org.entur.lamassu.model.entities.PropulsionType;
+import org.entur.lamassu.service.FilterParameters;
 import org.entur.lamassu.service.StationFilterParameters;
 import org.entur.lamassu.service.VehicleFilterParameters;
 
@@ -108,4 +116,85 @@ public class SpatialIndexIdFilter {
 
     return true;
   }
+
+  /**
+   * Compile the vehicle filter into a matcher evaluated on packed spatial index members,
+   * equivalent to {@link #filterVehicle}.
+   */
+  public static SpatialIndexIdMatcher compileVehicleFilter(
+    VehicleFilterParameters filters,
+    SpatialIndexDictionary dictionary
+  ) {
+    long excluded =
+      (filters.getIncludeReserved() ? 0 : PackedSpatialIndexId.RESERVED) |
+      (filters.getIncludeDisabled() ? 0 : PackedSpatialIndexId.DISABLED);
+
+    return compile(
+      filters,
+      dictionary,
+      filters.getFormFactors(),
+      filters.getPropulsionTypes(),
+      excluded
+    );
+  }
+
+  /**
+   * Compile the station filter into a matcher evaluated on packed spatial index members,
+   * equivalent to {@link #filterStation}.
+   */
+  public static SpatialIndexIdMatcher compileStationFilter(
+    StationFilterParameters filters,
+    SpatialIndexDictionary dictionary
+  ) {
+    return compile(
+      filters,
+      dictionary,
+      filters.getAvailableFormFactors(),
+      filters.getAvailablePropulsionTypes(),
+      0
+    );
+  }
+
+  private static SpatialIndexIdMatcher compile(
+    FilterParameters filters,
+    SpatialIndexDictionary dictionary,
+    List<FormFactor> formFactors,
+    List<PropulsionType> propulsionTypes,
+    long excluded
+  ) {
+    BitSet codespaces = codes(filters.getCodespaces(), dictionary);
+    BitSet systems = codes(filters.getSystems(), dictionary);
+    BitSet operators = codes(filters.getOperators(), dictionary);
+    boolean anyFormFactor = formFactors == null;
+    long formFactorMask = PackedSpatialIndexId.formFactors(formFactors);
+    boolean anyPropulsionType = propulsionTypes == null;
+    long propulsionTypeMask = PackedSpatialIndexId.propulsionTypes(propulsionTypes);
+
+    return member -> {
+      long attributes = PackedSpatialIndexId.attributes(member);
+      return (
+        (attributes & excluded) == 0 &&
+        (anyFormFactor || (attributes & formFactorMask) != 0) &&
+        (anyPropulsionType || (attributes & propulsionTypeMask) != 0) &&
+        (codespaces == null || codespaces.get(PackedSpatialIndexId.codespace(member))) &&
+        (systems == null || systems.get(PackedSpatialIndexId.system(member))) &&
+        (operators == null || operators.get(PackedSpatialIndexId.operator(member)))
+      );
+    };
+  }
+
+  private static BitSet codes(List<String> values, SpatialIndexDictionary dictionary) {
+    if (values == null) {
+      return null;
+    }
+
+    var codes = new BitSet();
+    for (String value : values) {
+      int code = dictionary.findCode(value);
+      if (code >= 0) {
+        codes.set(code);
+      }
+    }
+    return codes;
+  }
 }
@@ -0,0 +1,125 @@
+package org.entur.lamassu.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.entur.lamassu.model.entities.VehicleType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class NearCacheEntityReaderTest {
+
+  @Mock
+  private EntityReader<VehicleType> delegate;
+
+  private final AtomicLong now = new AtomicLong();
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private NearCacheEntityReader<VehicleType> reader;
+
+  @BeforeEach
+  void setUp() {
+    reader =
+      new NearCacheEntityReader<>(
+        delegate,
+        "vehicleType",
+        2,
+        Duration.ofSeconds(60),
+        meterRegistry,
+        now::get
+      );
+  }
+
+  @Test
+  void testRepeatedReadsAreServedLocally() {
+    var vehicleType = aVehicleType("type-1");
+    when(delegate.get("type-1")).thenReturn(vehicleType);
+
+    assertSame(vehicleType, reader.get("type-1"));
+    assertSame(vehicleType, reader.get("type-1"));
+    assertSame(vehicleType, reader.getAllAsMap(Set.of("type-1")).get("type-1"));
+
+    verify(delegate, times(1)).get("type-1");
+    assertEquals(2.0, requests("hit"));
+    assertEquals(1.0, requests("miss"));
+  }
+
+  @Test
+  void testOnlyMissingKeysAreReadFromDelegate() {
+    when(delegate.get("type-1")).thenReturn(aVehicleType("type-1"));
+    when(delegate.getAllAsMap(Set.of("type-2")))
+      .thenReturn(Map.of("type-2", aVehicleType("type-2")));
+
+    reader.get("type-1");
+    var result = reader.getAllAsMap(Set.of("type-1", "type-2"));
+
+    assertEquals(Set.of("type-1", "type-2"), result.keySet());
+  }
+
+  @Test
+  void testEntriesExpire() {
+    when(delegate.get("type-1")).thenReturn(aVehicleType("type-1"));
+
+    reader.get("type-1");
+    now.addAndGet(Duration.ofSeconds(61).toNanos());
+    reader.get("type-1");
+
+    verify(delegate, times(2)).get("type-1");
+  }
+
+  @Test
+  void testUpdatedEntitiesAreInvalidated() {
+    when(delegate.get("type-1"))
+      .thenReturn(aVehicleType("type-1"), aVehicleType("type-1"));
+
+    reader.get("type-1");
+    reader.onEntityUpdated("type-1", aVehicleType("type-1"));
+    reader.get("type-1");
+
+    verify(delegate, times(2)).get("type-1");
+  }
+
+  @Test
+  void testLeastRecentlyUsedEntriesAreEvicted() {
+    when(delegate.getAllAsMap(Set.of("type-1", "type-2", "type-3")))
+      .thenReturn(
+        Map.of(
+          "type-1",
+          aVehicleType("type-1"),
+          "type-2",
+          aVehicleType("type-2"),
+          "type-3",
+          aVehicleType("type-3")
+        )
+      );
+
+    reader.getAllAsMap(Set.of("type-1", "type-2", "type-3"));
+
+    assertEquals(2, reader.size());
+  }
+
+  private double requests(String result) {
+    return meterRegistry
+      .get(NearCacheEntityReader.NEAR_CACHE_REQUESTS)
+      .tag(NearCacheEntityReader.LABEL_RESULT, result)
+      .counter()
+      .count();
+  }
+
+  private VehicleType aVehicleType(String id) {
+    var vehicleType = new VehicleType();
+    vehicleType.setId(id);
+    return vehicleType;
+  }
+}
@@ -0,0 +1,109 @@
+package org.entur.lamassu.cache.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.Set;
+import org.entur.lamassu.TestLamassuApplication;
+import org.entur.lamassu.cache.CacheWriteBatchFactory;
+import org.entur.lamassu.cache.EntityCache;
+import org.entur.lamassu.cache.VehicleSpatialIndex;
+import org.entur.lamassu.cache.VehicleSpatialIndexId;
+import org.entur.lamassu.model.entities.FormFactor;
+import org.entur.lamassu.model.entities.PropulsionType;
+import org.entur.lamassu.model.entities.Vehicle;
+import org.entur.lamassu.model.entities.VehicleType;
+import org.entur.lamassu.model.provider.FeedProvider;
+import org.entur.lamassu.util.TestSpatialIndexBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+/**
+ * Integration tests for batched cache writes using embedded Redis.
+ */
+@ActiveProfiles({ "test", "leader" })
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = TestLamassuApplication.class)
+class CacheWriteBatchIntegrationTest {
+
+  @Autowired
+  private CacheWriteBatchFactory cacheWriteBatchFactory;
+
+  @Autowired
+  private EntityCache<Vehicle> vehicleCache;
+
+  @Autowired
+  private VehicleSpatialIndex vehicleSpatialIndex;
+
+  private final Vehicle vehicle = aVehicle();
+  private final VehicleSpatialIndexId spatialIndexId =
+    TestSpatialIndexBuilder.createVehicleIndexId(vehicle, aProvider());
+
+  @AfterEach
+  void cleanup() {
+    vehicleCache.removeAll(Set.of(vehicle.getId()));
+    vehicleSpatialIndex.removeAll(Set.of(spatialIndexId));
+  }
+
+  @Test
+  void testWritesAreAppliedWhenBatchIsExecuted() {
+    var batch = cacheWriteBatchFactory.create();
+    batch.updateAll(vehicleCache, Map.of(vehicle.getId(), vehicle));
+    batch.addAll(vehicleSpatialIndex, Map.of(spatialIndexId, vehicle));
+
+    assertNull(vehicleCache.get(vehicle.getId()));
+    assertFalse(vehicleSpatialIndex.getAll().contains(spatialIndexId));
+
+    batch.execute();
+
+    assertEquals(vehicle.getId(), vehicleCache.get(vehicle.getId()).getId());
+    assertTrue(vehicleSpatialIndex.getAll().contains(spatialIndexId));
+  }
+
+  @Test
+  void testWritesAreAppliedInOrder() {
+    var batch = cacheWriteBatchFactory.create();
+    batch.updateAll(vehicleCache, Map.of(vehicle.getId(), vehicle));
+    batch.addAll(vehicleSpatialIndex, Map.of(spatialIndexId, vehicle));
+    batch.removeAll(vehicleSpatialIndex, Set.of(spatialIndexId));
+    batch.removeAll(vehicleCache, Set.of(vehicle.getId()));
+    batch.execute();
+
+    assertNull(vehicleCache.get(vehicle.getId()));
+    assertFalse(vehicleSpatialIndex.getAll().contains(spatialIndexId));
+  }
+
+  private Vehicle aVehicle() {
+    var vehicleType = new VehicleType();
+    vehicleType.setId("TST:VehicleType:Scooter");
+    vehicleType.setFormFactor(FormFactor.SCOOTER);
+    vehicleType.setPropulsionType(PropulsionType.ELECTRIC);
+
+    var vehicle = new Vehicle();
+    vehicle.setId("TST:Vehicle:batched");
+    vehicle.setLat(59.91);
+    vehicle.setLon(10.75);
+    vehicle.setReserved(false);
+    vehicle.setDisabled(false);
+    vehicle.setVehicleType(vehicleType);
+    return vehicle;
+  }
+
+  private FeedProvider aProvider() {
+    var provider = new FeedProvider();
+    provider.setCodespace("TST");
+    provider.setSystemId("TST:System:testprovider");
+    provider.setOperatorId("TST:Operator:test");
+    return provider;
+  }
+}
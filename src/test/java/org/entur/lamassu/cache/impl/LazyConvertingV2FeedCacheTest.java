@@ -0,0 +1,185 @@
+package org.entur.lamassu.cache.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Date;
+import java.util.List;
+import org.entur.lamassu.cache.FeedBody;
+import org.entur.lamassu.cache.FeedMetadata;
+import org.entur.lamassu.cache.GBFSV3FeedCache;
+import org.entur.lamassu.leader.feedcachesupdater.FeedBodySerializer;
+import org.entur.lamassu.mapper.feedmapper.v2.GbfsV2DeliveryMapper;
+import org.entur.lamassu.model.provider.FeedProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mobilitydata.gbfs.v2_3.free_bike_status.GBFSFreeBikeStatus;
+import org.mobilitydata.gbfs.v2_3.gbfs.GBFSFeedName;
+import org.mobilitydata.gbfs.v2_3.station_status.GBFSStationStatus;
+import org.mobilitydata.gbfs.v3_0.gbfs.GBFSFeed;
+import org.mobilitydata.gbfs.v3_0.vehicle_status.GBFSData;
+import org.mobilitydata.gbfs.v3_0.vehicle_status.GBFSVehicleStatus;
+import org.mobilitydata.gbfs.v3_0.vehicle_types.GBFSVehicleTypes;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class LazyConvertingV2FeedCacheTest {
+
+  @Mock
+  private GBFSV2FeedCacheImpl delegate;
+
+  @Mock
+  private GBFSV3FeedCache v3FeedCache;
+
+  @Mock
+  private GbfsV2DeliveryMapper deliveryMapper;
+
+  @Mock
+  private FeedBodySerializer feedBodySerializer;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private LazyConvertingV2FeedCache feedCache;
+  private FeedProvider feedProvider;
+
+  @BeforeEach
+  void setUp() {
+    feedCache =
+      new LazyConvertingV2FeedCache(
+        delegate,
+        v3FeedCache,
+        deliveryMapper,
+        feedBodySerializer,
+        10,
+        meterRegistry
+      );
+    feedProvider = new FeedProvider();
+    feedProvider.setSystemId("test-system");
+    feedProvider.setLanguage("en");
+    feedProvider.setVersion("3.0");
+  }
+
+  @Test
+  void testFeedsOfV2SystemsAreReadFromDelegate() {
+    feedProvider.setVersion("2.3");
+    var feed = new GBFSFreeBikeStatus();
+    when(delegate.find(GBFSFeedName.FreeBikeStatus, feedProvider)).thenReturn(feed);
+
+    assertSame(feed, feedCache.find(GBFSFeedName.FreeBikeStatus, feedProvider));
+    verify(v3FeedCache, never()).findMetadata(any(), any());
+  }
+
+  @Test
+  void testConvertedFeedIsMemoizedUntilV3FeedIsUpdated() {
+    var converted = new GBFSFreeBikeStatus();
+    var body = new FeedBody(new byte[0], new byte[0], metadata(1000));
+    givenV3VehicleStatus(1000);
+    when(
+      deliveryMapper.mapFeed(eq(GBFSFeedName.FreeBikeStatus), any(), eq(feedProvider))
+    )
+      .thenReturn(converted);
+    when(feedBodySerializer.serialize(converted)).thenReturn(body);
+
+    assertSame(converted, feedCache.find(GBFSFeedName.FreeBikeStatus, feedProvider));
+    assertSame(body, feedCache.findBody(GBFSFeedName.FreeBikeStatus, feedProvider));
+    assertEquals(
+      1000,
+      feedCache.findMetadata(GBFSFeedName.FreeBikeStatus, feedProvider).getLastUpdated()
+    );
+
+    verify(deliveryMapper, times(1)).mapFeed(any(), any(), any());
+    assertEquals(2.0, requests("hit"));
+    assertEquals(1.0, requests("miss"));
+
+    givenV3VehicleStatus(1010);
+    feedCache.find(GBFSFeedName.FreeBikeStatus, feedProvider);
+
+    verify(deliveryMapper, times(2)).mapFeed(any(), any(), any());
+    assertEquals(2.0, requests("miss"));
+  }
+
+  @Test
+  void testStationStatusIsConvertedAgainWhenVehicleTypesAreUpdated() {
+    var converted = new GBFSStationStatus();
+    givenV3StationStatus(1000);
+    givenV3VehicleTypes(900);
+    when(deliveryMapper.mapFeed(eq(GBFSFeedName.StationStatus), any(), eq(feedProvider)))
+      .thenReturn(converted);
+
+    feedCache.find(GBFSFeedName.StationStatus, feedProvider);
+    feedCache.find(GBFSFeedName.StationStatus, feedProvider);
+    verify(deliveryMapper, times(1)).mapFeed(any(), any(), any());
+
+    givenV3VehicleTypes(1010);
+    feedCache.find(GBFSFeedName.StationStatus, feedProvider);
+
+    verify(deliveryMapper, times(2)).mapFeed(any(), any(), any());
+    assertEquals(2.0, requests("miss"));
+  }
+
+  @Test
+  void testMissingV3FeedIsNotConverted() {
+    assertNull(feedCache.find(GBFSFeedName.FreeBikeStatus, feedProvider));
+    verify(deliveryMapper, never()).mapFeed(any(), any(), any());
+  }
+
+  @Test
+  void testFeedsWithoutV3CounterpartAreNotConverted() {
+    assertNull(feedCache.find(GBFSFeedName.SystemCalendar, feedProvider));
+    verify(v3FeedCache, never()).findMetadata(any(), any());
+  }
+
+  private void givenV3VehicleStatus(long lastUpdated) {
+    var vehicleStatus = new GBFSVehicleStatus();
+    vehicleStatus.setLastUpdated(new Date(lastUpdated * 1000));
+    vehicleStatus.setTtl(10);
+    var data = new GBFSData();
+    data.setVehicles(List.of());
+    vehicleStatus.setData(data);
+    when(v3FeedCache.findMetadata(GBFSFeed.Name.VEHICLE_STATUS, feedProvider))
+      .thenReturn(metadata(lastUpdated));
+    when(v3FeedCache.find(GBFSFeed.Name.VEHICLE_STATUS, feedProvider))
+      .thenReturn(vehicleStatus);
+  }
+
+  private void givenV3StationStatus(long lastUpdated) {
+    var stationStatus = new org.mobilitydata.gbfs.v3_0.station_status.GBFSStationStatus();
+    stationStatus.setLastUpdated(new Date(lastUpdated * 1000));
+    stationStatus.setTtl(10);
+    when(v3FeedCache.findMetadata(GBFSFeed.Name.STATION_STATUS, feedProvider))
+      .thenReturn(metadata(lastUpdated));
+    when(v3FeedCache.find(GBFSFeed.Name.STATION_STATUS, feedProvider))
+      .thenReturn(stationStatus);
+  }
+
+  private void givenV3VehicleTypes(long lastUpdated) {
+    var vehicleTypes = new GBFSVehicleTypes();
+    vehicleTypes.setLastUpdated(new Date(lastUpdated * 1000));
+    vehicleTypes.setTtl(10);
+    when(v3FeedCache.findMetadata(GBFSFeed.Name.VEHICLE_TYPES, feedProvider))
+      .thenReturn(metadata(lastUpdated));
+    when(v3FeedCache.find(GBFSFeed.Name.VEHICLE_TYPES, feedProvider))
+      .thenReturn(vehicleTypes);
+  }
+
+  private FeedMetadata metadata(long lastUpdated) {
+    return new FeedMetadata(lastUpdated, 10, "hash-" + lastUpdated, 0);
+  }
+
+  private double requests(String result) {
+    return meterRegistry
+      .get(LazyConvertingV2FeedCache.CONVERSION_REQUESTS)
+      .tag(LazyConvertingV2FeedCache.LABEL_RESULT, result)
+      .counter()
+      .count();
+  }
+}
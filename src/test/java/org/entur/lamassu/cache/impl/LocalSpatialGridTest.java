@@ -0,0 +1,73 @@
+package org.entur.lamassu.cache.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.geo.GeoOrder;
+
+class LocalSpatialGridTest {
+
+  @Test
+  void testRadiusReturnsMembersWithinDistanceOrderedByDistance() {
+    var grid = new LocalSpatialGrid<String>();
+    grid.put("far", 59.9200, 10.7522, "far");
+    grid.put("near", 59.9140, 10.7522, "near");
+    grid.put("outside", 60.0000, 10.7522, "outside");
+
+    var result = grid.radius(59.9139, 10.7522, 1000.0, GeoOrder.ASC);
+
+    assertEquals(List.of("near", "far"), result);
+  }
+
+  @Test
+  void testPutMovesExistingMember() {
+    var grid = new LocalSpatialGrid<String>();
+    grid.put("a", 59.9139, 10.7522, "a");
+    grid.put("a", 63.4305, 10.3951, "a");
+
+    assertEquals(1, grid.size());
+    assertTrue(grid.radius(59.9139, 10.7522, 1000.0, null).isEmpty());
+    assertEquals(List.of("a"), grid.radius(63.4305, 10.3951, 1000.0, null));
+  }
+
+  @Test
+  void testPutIfAbsentDoesNotOverwrite() {
+    var grid = new LocalSpatialGrid<String>();
+    grid.put("a", 59.9139, 10.7522, "first");
+
+    assertFalse(grid.putIfAbsent("a", 63.4305, 10.3951, "second"));
+    assertEquals(List.of("first"), grid.getAll());
+  }
+
+  @Test
+  void testRemoveKeepsOtherMembersInCell() {
+    var grid = new LocalSpatialGrid<String>();
+    for (int i = 0; i < 20; i++) {
+      grid.put("id" + i, 59.9139, 10.7522 + i * 0.00001, "id" + i);
+    }
+
+    grid.remove("id3");
+    grid.remove("id19");
+
+    assertEquals(18, grid.size());
+    var result = grid.radius(59.9139, 10.7522, 500.0, null);
+    assertEquals(18, result.size());
+    assertFalse(result.contains("id3"));
+    assertFalse(result.contains("id19"));
+  }
+
+  @Test
+  void testBoundingBoxIsInclusive() {
+    var grid = new LocalSpatialGrid<String>();
+    grid.put("inside", 59.91, 10.75, "inside");
+    grid.put("edge", 59.90, 10.70, "edge");
+    grid.put("outside", 59.89, 10.75, "outside");
+
+    var result = grid.boundingBox(59.90, 10.70, 59.95, 10.80, GeoOrder.ASC);
+
+    assertEquals(List.of("inside", "edge"), result);
+  }
+}
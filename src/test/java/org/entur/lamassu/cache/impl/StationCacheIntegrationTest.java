@@ -0,0 +1,134 @@
+package org.entur.lamassu.cache.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.entur.lamassu.TestLamassuApplication;
+import org.entur.lamassu.cache.CacheWriteBatchFactory;
+import org.entur.lamassu.cache.EntityCache;
+import org.entur.lamassu.cache.EntityListener;
+import org.entur.lamassu.model.entities.Station;
+import org.entur.lamassu.model.entities.StationStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.redisson.api.RMapCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+/**
+ * Integration tests for storing the status of stations apart from the rest of them,
+ * using embedded Redis.
+ */
+@ActiveProfiles({ "test", "leader" })
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = TestLamassuApplication.class)
+class StationCacheIntegrationTest {
+
+  private static final String STATION_ID = "TST:Station:partial";
+
+  @Autowired
+  private EntityCache<Station> stationCache;
+
+  @Autowired
+  private RMapCache<String, Station> stationInformationCache;
+
+  @Autowired
+  private RMapCache<String, StationStatus> stationStatusCache;
+
+  @Autowired
+  private CacheWriteBatchFactory cacheWriteBatchFactory;
+
+  @AfterEach
+  void cleanup() {
+    stationCache.removeAll(Set.of(STATION_ID));
+  }
+
+  @Test
+  void testStatusUpdateIsMergedWithStation() {
+    stationCache.updateAll(Map.of(STATION_ID, aStation("Station", 5)));
+    stationCache.updateAllStatus(Map.of(STATION_ID, aStation("Renamed", 3)));
+
+    var station = stationCache.get(STATION_ID);
+    assertEquals("Station", station.getAddress());
+    assertEquals(3, station.getNumVehiclesAvailable());
+    assertEquals(
+      3,
+      stationCache.getAll(Set.of(STATION_ID)).getFirst().getNumVehiclesAvailable()
+    );
+  }
+
+  @Test
+  void testStatusUpdateDoesNotRewriteStation() {
+    stationCache.updateAll(Map.of(STATION_ID, aStation("Station", 5)));
+
+    var batch = cacheWriteBatchFactory.create();
+    batch.updateAllStatus(stationCache, Map.of(STATION_ID, aStation("Renamed", 3)));
+    batch.execute();
+
+    assertNull(stationInformationCache.get(STATION_ID).getNumVehiclesAvailable());
+    assertEquals(3, stationStatusCache.get(STATION_ID).getNumVehiclesAvailable());
+  }
+
+  @Test
+  void testRemoveRemovesBothParts() {
+    stationCache.updateAll(Map.of(STATION_ID, aStation("Station", 5)));
+
+    var batch = cacheWriteBatchFactory.create();
+    batch.removeAll(stationCache, Set.of(STATION_ID));
+    batch.execute();
+
+    assertNull(stationCache.get(STATION_ID));
+    assertNull(stationStatusCache.get(STATION_ID));
+  }
+
+  @Test
+  void testListenersGetStationsMergedWithEachStatus() throws InterruptedException {
+    BlockingQueue<Station> updated = new LinkedBlockingQueue<>();
+    stationCache.addListener(
+      new EntityListener<>() {
+        @Override
+        public void onEntityCreated(String id, Station entity) {}
+
+        @Override
+        public void onEntityUpdated(String id, Station entity) {
+          updated.add(entity);
+        }
+
+        @Override
+        public void onEntityDeleted(String id, Station entity) {}
+      }
+    );
+    stationCache.updateAll(Map.of(STATION_ID, aStation("Station", 5)));
+    Thread.sleep(500);
+
+    stationCache.updateAllStatus(Map.of(STATION_ID, aStation("Renamed", 3)));
+    var first = updated.poll(5, TimeUnit.SECONDS);
+    stationCache.updateAllStatus(Map.of(STATION_ID, aStation("Renamed", 2)));
+    var second = updated.poll(5, TimeUnit.SECONDS);
+
+    assertEquals("Station", first.getAddress());
+    assertEquals(3, first.getNumVehiclesAvailable());
+    assertEquals("Station", second.getAddress());
+    assertEquals(2, second.getNumVehiclesAvailable());
+  }
+
+  private Station aStation(String address, int numVehiclesAvailable) {
+    var station = new Station();
+    station.setId(STATION_ID);
+    station.setAddress(address);
+    station.setLat(59.91);
+    station.setLon(10.75);
+    station.setNumVehiclesAvailable(numVehiclesAvailable);
+    return station;
+  }
+}
@@ -0,0 +1,123 @@
+package org.entur.lamassu.cache.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+import java.util.Set;
+import org.entur.lamassu.TestLamassuApplication;
+import org.entur.lamassu.cache.CacheWriteBatchFactory;
+import org.entur.lamassu.cache.EntityCache;
+import org.entur.lamassu.model.entities.Vehicle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+/**
+ * Integration tests for the index of entities by system, using embedded Redis.
+ */
+@ActiveProfiles({ "test", "leader" })
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = TestLamassuApplication.class)
+class SystemEntityIndexIntegrationTest {
+
+  private static final String SYSTEM_ID = "TST:System:index";
+  private static final String OTHER_SYSTEM_ID = "TST:System:other";
+
+  @Autowired
+  private EntityCache<Vehicle> vehicleCache;
+
+  @Autowired
+  private CacheWriteBatchFactory cacheWriteBatchFactory;
+
+  @AfterEach
+  void cleanup() {
+    vehicleCache.removeAll(Set.of("TST:Vehicle:1", "TST:Vehicle:2", "TST:Vehicle:3"));
+  }
+
+  @Test
+  void testEntitiesAreIndexedBySystem() {
+    vehicleCache.updateAll(
+      Map.of(
+        "TST:Vehicle:1",
+        aVehicle("TST:Vehicle:1", SYSTEM_ID),
+        "TST:Vehicle:2",
+        aVehicle("TST:Vehicle:2", SYSTEM_ID),
+        "TST:Vehicle:3",
+        aVehicle("TST:Vehicle:3", OTHER_SYSTEM_ID)
+      )
+    );
+
+    assertEquals(
+      Set.of("TST:Vehicle:1", "TST:Vehicle:2"),
+      vehicleCache.getKeysBySystem(SYSTEM_ID)
+    );
+    assertEquals(2, vehicleCache.countBySystem(SYSTEM_ID));
+    assertEquals(1, vehicleCache.countBySystem(OTHER_SYSTEM_ID));
+  }
+
+  @Test
+  void testRemovedEntitiesAreRemovedFromIndex() {
+    vehicleCache.updateAll(
+      Map.of(
+        "TST:Vehicle:1",
+        aVehicle("TST:Vehicle:1", SYSTEM_ID),
+        "TST:Vehicle:2",
+        aVehicle("TST:Vehicle:2", SYSTEM_ID)
+      )
+    );
+
+    vehicleCache.removeAll(Set.of("TST:Vehicle:1"));
+    assertEquals(Set.of("TST:Vehicle:2"), vehicleCache.getKeysBySystem(SYSTEM_ID));
+
+    var batch = cacheWriteBatchFactory.create();
+    batch.removeAll(vehicleCache, Set.of("TST:Vehicle:2"));
+    batch.execute();
+    assertEquals(0, vehicleCache.countBySystem(SYSTEM_ID));
+  }
+
+  @Test
+  void testEntitiesOfSeveralSystemsAreRemovedFromIndex() {
+    vehicleCache.updateAll(
+      Map.of(
+        "TST:Vehicle:1",
+        aVehicle("TST:Vehicle:1", SYSTEM_ID),
+        "TST:Vehicle:2",
+        aVehicle("TST:Vehicle:2", SYSTEM_ID),
+        "TST:Vehicle:3",
+        aVehicle("TST:Vehicle:3", OTHER_SYSTEM_ID)
+      )
+    );
+
+    vehicleCache.removeAll(Set.of("TST:Vehicle:1", "TST:Vehicle:2", "TST:Vehicle:3"));
+
+    assertEquals(0, vehicleCache.countBySystem(SYSTEM_ID));
+    assertEquals(0, vehicleCache.countBySystem(OTHER_SYSTEM_ID));
+  }
+
+  @Test
+  void testBatchWritesAreIndexed() {
+    var batch = cacheWriteBatchFactory.create();
+    batch.updateAll(
+      vehicleCache,
+      Map.of("TST:Vehicle:1", aVehicle("TST:Vehicle:1", SYSTEM_ID))
+    );
+    batch.execute();
+
+    assertEquals(Set.of("TST:Vehicle:1"), vehicleCache.getKeysBySystem(SYSTEM_ID));
+  }
+
+  private Vehicle aVehicle(String id, String systemId) {
+    var vehicle = new Vehicle();
+    vehicle.setId(id);
+    vehicle.setSystemId(systemId);
+    vehicle.setLat(59.91);
+    vehicle.setLon(10.75);
+    return vehicle;
+  }
+}
@@ -2,11 +2,17 @@ package org.entur.lamassu.controller;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Date;
 import java.util.List;
+import org.entur.lamassu.cache.FeedBody;
+import org.entur.lamassu.cache.FeedMetadata;
 import org.entur.lamassu.cache.GBFSV3FeedCache;
 import org.entur.lamassu.model.provider.FeedProvider;
 import org.entur.lamassu.service.FeedProviderService;
@@ -18,6 +24,7 @@ import org.junit.rules.ExpectedException;
 import org.mobilitydata.gbfs.v3_0.gbfs.GBFSData;
 import org.mobilitydata.gbfs.v3_0.gbfs.GBFSFeed;
 import org.mobilitydata.gbfs.v3_0.gbfs.GBFSGbfs;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.server.ResponseStatusException;
@@ -52,14 +59,14 @@ public class GBFSV3FeedControllerTest {
     expectedException.expect(ResponseStatusException.class);
     expectedException.expectMessage("400 BAD_REQUEST");
 
-    feedController.getV3Feed("anySystem", "no-gbfs-feed", null);
+    feedController.getV3Feed("anySystem", "no-gbfs-feed", null, null);
   }
 
   @Test
   public void throws404OnNonConfiguredSystemRequest() {
     expectedException.expect(ResponseStatusException.class);
     expectedException.expectMessage("404 NOT_FOUND");
-    feedController.getV3Feed("unknownSystem", "gbfs", null);
+    feedController.getV3Feed("unknownSystem", "gbfs", null, null);
   }
 
   @Test
@@ -70,7 +77,7 @@ public class GBFSV3FeedControllerTest {
       .thenReturn(feedProvider);
 
     expectedException.expect(UpstreamFeedNotYetAvailableException.class);
-    feedController.getV3Feed(KNOWN_SYSTEM_ID, "gbfs", null);
+    feedController.getV3Feed(KNOWN_SYSTEM_ID, "gbfs", null, null);
   }
 
   @Test
@@ -86,7 +93,7 @@ public class GBFSV3FeedControllerTest {
       .thenReturn(null);
     expectedException.expect(ResponseStatusException.class);
     expectedException.expectMessage("404 NOT_FOUND");
-    feedController.getV3Feed(KNOWN_SYSTEM_ID, "geofencing_zones", null);
+    feedController.getV3Feed(KNOWN_SYSTEM_ID, "geofencing_zones", null, null);
   }
 
   @Test
@@ -101,7 +108,7 @@ public class GBFSV3FeedControllerTest {
     when(mockedFeedCache.find(GBFSFeed.Name.GEOFENCING_ZONES, feedProvider))
       .thenReturn(null);
     expectedException.expect(UpstreamFeedNotYetAvailableException.class);
-    feedController.getV3Feed(KNOWN_SYSTEM_ID, "geofencing_zones", null);
+    feedController.getV3Feed(KNOWN_SYSTEM_ID, "geofencing_zones", null, null);
   }
 
   @Test
@@ -117,7 +124,7 @@ public class GBFSV3FeedControllerTest {
     when(mockedFeedCache.find(GBFSFeed.Name.GEOFENCING_ZONES, feedProvider))
       .thenReturn(null);
     expectedException.expect(UpstreamFeedNotYetAvailableException.class);
-    feedController.getV3Feed(KNOWN_SYSTEM_ID, "geofencing_zones", null);
+    feedController.getV3Feed(KNOWN_SYSTEM_ID, "geofencing_zones", null, null);
   }
 
   @Test
@@ -133,6 +140,7 @@ public class GBFSV3FeedControllerTest {
     ResponseEntity<Object> response = feedController.getV3Feed(
       KNOWN_SYSTEM_ID,
       "gbfs",
+      null,
       null
     );
 
@@ -153,6 +161,7 @@ public class GBFSV3FeedControllerTest {
     ResponseEntity<Object> firstResponse = feedController.getV3Feed(
       KNOWN_SYSTEM_ID,
       "gbfs",
+      null,
       null
     );
     String etag = firstResponse.getHeaders().getETag();
@@ -161,12 +170,86 @@ public class GBFSV3FeedControllerTest {
     ResponseEntity<Object> response = feedController.getV3Feed(
       KNOWN_SYSTEM_ID,
       "gbfs",
-      etag
+      etag,
+      null
     );
 
     assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
   }
 
+  @Test
+  public void returnsStoredFeedBody() {
+    var feedProvider = new FeedProvider();
+    feedProvider.setSystemId(KNOWN_SYSTEM_ID);
+    var body = storeFeedBody(feedProvider);
+
+    when(mockedFeedProviderService.getFeedProviderBySystemId(KNOWN_SYSTEM_ID))
+      .thenReturn(feedProvider);
+
+    ResponseEntity<Object> response = feedController.getV3Feed(
+      KNOWN_SYSTEM_ID,
+      "gbfs",
+      null,
+      "deflate"
+    );
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertSame(body.getJson(), response.getBody());
+    assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    assertEquals(1640000000000L, response.getHeaders().getLastModified());
+  }
+
+  @Test
+  public void returnsCompressedFeedBodyWhenGzipIsAccepted() {
+    var feedProvider = new FeedProvider();
+    feedProvider.setSystemId(KNOWN_SYSTEM_ID);
+    var body = storeFeedBody(feedProvider);
+
+    when(mockedFeedProviderService.getFeedProviderBySystemId(KNOWN_SYSTEM_ID))
+      .thenReturn(feedProvider);
+
+    ResponseEntity<Object> response = feedController.getV3Feed(
+      KNOWN_SYSTEM_ID,
+      "gbfs",
+      null,
+      "gzip, deflate, br"
+    );
+
+    assertSame(body.getGzip(), response.getBody());
+    assertEquals("gzip", response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+  }
+
+  @Test
+  public void returns304FromFeedMetadataWithoutFetchingFeedBody() {
+    var feedProvider = new FeedProvider();
+    feedProvider.setSystemId(KNOWN_SYSTEM_ID);
+    var body = storeFeedBody(feedProvider);
+
+    when(mockedFeedProviderService.getFeedProviderBySystemId(KNOWN_SYSTEM_ID))
+      .thenReturn(feedProvider);
+
+    ResponseEntity<Object> response = feedController.getV3Feed(
+      KNOWN_SYSTEM_ID,
+      "gbfs",
+      body.getMetadata().getETag(),
+      null
+    );
+
+    assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+    assertEquals(body.getMetadata().getETag(), response.getHeaders().getETag());
+    verify(mockedFeedCache, never()).findBody(GBFSFeed.Name.GBFS, feedProvider);
+    verify(mockedFeedCache, never()).find(GBFSFeed.Name.GBFS, feedProvider);
+  }
+
+  private FeedBody storeFeedBody(FeedProvider feedProvider) {
+    var metadata = new FeedMetadata(1640000000L, 60, "0123456789abcdef", 2);
+    var body = new FeedBody("{}".getBytes(), new byte[] { 1 }, metadata);
+    when(mockedFeedCache.findMetadata(GBFSFeed.Name.GBFS, feedProvider))
+      .thenReturn(metadata);
+    when(mockedFeedCache.findBody(GBFSFeed.Name.GBFS, feedProvider)).thenReturn(body);
+    return body;
+  }
+
   public GBFSGbfs createDiscoveryFileWithFeed(GBFSFeed.Name feedName) {
     var gbfs = new GBFSGbfs();
     var data = new GBFSData();
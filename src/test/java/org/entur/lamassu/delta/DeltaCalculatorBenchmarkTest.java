@@ -0,0 +1,284 @@
+package org.entur.lamassu.delta;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mobilitydata.gbfs.v3_0.station_status.GBFSStation;
+import org.mobilitydata.gbfs.v3_0.station_status.GBFSStationStatus;
+import org.mobilitydata.gbfs.v3_0.vehicle_status.GBFSVehicle;
+import org.mobilitydata.gbfs.v3_0.vehicle_status.GBFSVehicleStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reports throughput and allocations of the delta calculators for vehicle and station
+ * files of different sizes, against the previous implementation using list lookups
+ * and resolving setters with reflection for every changed entity.
+ *
+ * <p>The previous implementation is only measured up to 10k entities, as it is
+ * quadratic in the number of entities. The benchmarks are excluded from the default
+ * build, and run with the benchmark profile.
+ */
+class DeltaCalculatorBenchmarkTest {
+
+  private static final Logger logger = LoggerFactory.getLogger(
+    DeltaCalculatorBenchmarkTest.class
+  );
+
+  private static final int[] SIZES = { 1_000, 10_000, 100_000 };
+  private static final int LEGACY_MAX_ENTITIES = 10_000;
+  private static final long MIN_MEASUREMENT_NANOS = 500_000_000L;
+  private static final double CHURN = 0.3;
+
+  private final GBFSVehicleStatusDeltaCalculator vehicleCalculator =
+    new GBFSVehicleStatusDeltaCalculator();
+  private final GBFSStationStatusDeltaCalculator stationCalculator =
+    new GBFSStationStatusDeltaCalculator();
+
+  @Test
+  @Tag("benchmark")
+  void benchmarkVehicleStatus() {
+    for (int entities : SIZES) {
+      var base = vehicleStatus(entities, 0);
+      var compare = vehicleStatus(entities, 1);
+
+      report(
+        "vehicle_status",
+        entities,
+        () -> vehicleCalculator.calculateDelta(base, compare),
+        () ->
+          legacyDelta(
+            base.getData().getVehicles(),
+            compare.getData().getVehicles(),
+            GBFSVehicle::getVehicleId,
+            GBFSVehicle::new
+          )
+      );
+    }
+  }
+
+  @Test
+  @Tag("benchmark")
+  void benchmarkStationStatus() {
+    for (int entities : SIZES) {
+      var base = stationStatus(entities, 0);
+      var compare = stationStatus(entities, 1);
+
+      report(
+        "station_status",
+        entities,
+        () -> stationCalculator.calculateDelta(base, compare),
+        () ->
+          legacyDelta(
+            base.getData().getStations(),
+            compare.getData().getStations(),
+            GBFSStation::getStationId,
+            GBFSStation::new
+          )
+      );
+    }
+  }
+
+  @Test
+  void testCalculatorsMatchPreviousImplementation() {
+    var baseVehicles = vehicleStatus(1_000, 0);
+    var compareVehicles = vehicleStatus(1_000, 1);
+    assertEquals(
+      legacyDelta(
+        baseVehicles.getData().getVehicles(),
+        compareVehicles.getData().getVehicles(),
+        GBFSVehicle::getVehicleId,
+        GBFSVehicle::new
+      ),
+      vehicleCalculator.calculateDelta(baseVehicles, compareVehicles).entityDelta()
+    );
+
+    var baseStations = stationStatus(1_000, 0);
+    var compareStations = stationStatus(1_000, 1);
+    assertEquals(
+      legacyDelta(
+        baseStations.getData().getStations(),
+        compareStations.getData().getStations(),
+        GBFSStation::getStationId,
+        GBFSStation::new
+      ),
+      stationCalculator.calculateDelta(baseStations, compareStations).entityDelta()
+    );
+  }
+
+  private void report(
+    String fileName,
+    int entities,
+    Supplier<?> calculator,
+    Supplier<?> legacyCalculator
+  ) {
+    var current = measure(calculator);
+    logger.info(
+      "{} with {} entities: {} ops/s, {} bytes allocated per op",
+      fileName,
+      entities,
+      String.format("%.1f", current.opsPerSecond()),
+      current.bytesPerOp()
+    );
+
+    if (entities <= LEGACY_MAX_ENTITIES) {
+      var legacy = measure(legacyCalculator);
+      logger.info(
+        "{} with {} entities, previous implementation: {} ops/s, {} bytes allocated per op",
+        fileName,
+        entities,
+        String.format("%.1f", legacy.opsPerSecond()),
+        legacy.bytesPerOp()
+      );
+    }
+  }
+
+  private record Measurement(double opsPerSecond, long bytesPerOp) {}
+
+  private Measurement measure(Supplier<?> operation) {
+    // Warm up
+    operation.get();
+
+    var threadMXBean =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long allocatedBefore = threadMXBean.getCurrentThreadAllocatedBytes();
+    long start = System.nanoTime();
+    long ops = 0;
+    long elapsed;
+    do {
+      operation.get();
+      ops++;
+      elapsed = System.nanoTime() - start;
+    } while (elapsed < MIN_MEASUREMENT_NANOS);
+    long allocated = threadMXBean.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+    return new Measurement(ops * 1_000_000_000.0 / elapsed, allocated / ops);
+  }
+
+  private GBFSVehicleStatus vehicleStatus(int entities, int version) {
+    var vehicles = new ArrayList<GBFSVehicle>(entities);
+    for (int i = 0; i < entities; i++) {
+      var vehicle = new GBFSVehicle();
+      vehicle.setVehicleId("vehicle" + i);
+      vehicle.setLat(59.9 + (i % 1000) * 0.0001 + (isChanged(i, version) ? 0.001 : 0));
+      vehicle.setLon(10.7 + (i / 1000) * 0.0001);
+      vehicle.setIsReserved(false);
+      vehicle.setIsDisabled(false);
+      vehicle.setCurrentRangeMeters(1000.0 + i);
+      vehicle.setVehicleTypeId("type");
+      vehicle.setPricingPlanId("plan");
+      vehicles.add(vehicle);
+    }
+    // Replace the first vehicles with new ones in the compared file
+    for (int i = 0; i < version * entities / 100; i++) {
+      vehicles.get(i).setVehicleId("vehicle" + (entities + i));
+    }
+
+    var data = new org.mobilitydata.gbfs.v3_0.vehicle_status.GBFSData();
+    data.setVehicles(vehicles);
+    var vehicleStatus = new GBFSVehicleStatus();
+    vehicleStatus.setLastUpdated(new Date(version * 60_000L));
+    vehicleStatus.setTtl(60);
+    vehicleStatus.setData(data);
+    return vehicleStatus;
+  }
+
+  private GBFSStationStatus stationStatus(int entities, int version) {
+    var stations = new ArrayList<GBFSStation>(entities);
+    for (int i = 0; i < entities; i++) {
+      var station = new GBFSStation();
+      station.setStationId("station" + i);
+      station.setNumVehiclesAvailable(5 + (isChanged(i, version) ? 1 : 0));
+      station.setNumDocksAvailable(10 - (isChanged(i, version) ? 1 : 0));
+      station.setIsInstalled(true);
+      station.setIsRenting(true);
+      station.setIsReturning(true);
+      station.setLastReported(new Date(isChanged(i, version) ? 60_000L : 0L));
+      stations.add(station);
+    }
+
+    var data = new org.mobilitydata.gbfs.v3_0.station_status.GBFSData();
+    data.setStations(stations);
+    var stationStatus = new GBFSStationStatus();
+    stationStatus.setLastUpdated(new Date(version * 60_000L));
+    stationStatus.setTtl(60);
+    stationStatus.setData(data);
+    return stationStatus;
+  }
+
+  private boolean isChanged(int i, int version) {
+    return version > 0 && i % 100 < CHURN * 100;
+  }
+
+  /**
+   * The delta calculation as implemented before the calculators used hashed id sets
+   * and cached property accessors.
+   */
+  private static <T> List<GBFSEntityDelta<T>> legacyDelta(
+    List<T> baseEntities,
+    List<T> compareEntities,
+    Function<T, String> getEntityId,
+    Supplier<T> createEntity
+  ) {
+    Map<String, T> baseEntityMap = baseEntities
+      .stream()
+      .collect(Collectors.toMap(getEntityId, v -> v, (existing, duplicate) -> existing));
+    List<String> baseEntityIds = baseEntityMap.keySet().stream().toList();
+    List<String> compareEntityIds = compareEntities.stream().map(getEntityId).toList();
+
+    List<GBFSEntityDelta<T>> entityDeltas = new ArrayList<>();
+    baseEntities
+      .stream()
+      .map(getEntityId)
+      .filter(id -> !compareEntityIds.contains(id))
+      .forEach(id -> entityDeltas.add(new GBFSEntityDelta<>(id, DeltaType.DELETE, null)));
+    compareEntities
+      .stream()
+      .filter(entity -> !entity.equals(baseEntityMap.get(getEntityId.apply(entity))))
+      .forEach(entity -> {
+        var entityId = getEntityId.apply(entity);
+        if (baseEntityIds.contains(entityId)) {
+          T delta = createEntity.get();
+          legacyCopy(entity, delta);
+          entityDeltas.add(new GBFSEntityDelta<>(entityId, DeltaType.UPDATE, delta));
+        } else {
+          entityDeltas.add(new GBFSEntityDelta<>(entityId, DeltaType.CREATE, entity));
+        }
+      });
+    return entityDeltas;
+  }
+
+  private static void legacyCopy(Object source, Object target) {
+    Method[] methods = source.getClass().getDeclaredMethods();
+    for (Method method : methods) {
+      if (
+        method.getParameterCount() == 0 &&
+        !List.of("toString", "hashCode", "equals").contains(method.getName())
+      ) {
+        String setterName = method.getName().replace("get", "set");
+        Arrays
+          .stream(methods)
+          .filter(setter -> setter.getName().equals(setterName))
+          .findFirst()
+          .ifPresent(setter -> {
+            try {
+              setter.invoke(target, method.invoke(source));
+            } catch (ReflectiveOperationException e) {
+              throw new GBFSDeltaException("Failed to set value", e);
+            }
+          });
+      }
+    }
+  }
+}
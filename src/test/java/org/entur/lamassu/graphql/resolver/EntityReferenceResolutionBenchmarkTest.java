@@ -0,0 +1,235 @@
+package org.entur.lamassu.graphql.resolver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.entur.lamassu.cache.EntityReader;
+import org.entur.lamassu.graphql.resolver.vehicle.VehiclePricingPlanResolver;
+import org.entur.lamassu.graphql.resolver.vehicle.VehicleStationResolver;
+import org.entur.lamassu.graphql.resolver.vehicle.VehicleSystemResolver;
+import org.entur.lamassu.graphql.resolver.vehicle.VehicleTypeResolver;
+import org.entur.lamassu.model.entities.Entity;
+import org.entur.lamassu.model.entities.PricingPlan;
+import org.entur.lamassu.model.entities.Station;
+import org.entur.lamassu.model.entities.System;
+import org.entur.lamassu.model.entities.Vehicle;
+import org.entur.lamassu.model.entities.VehicleType;
+import org.entur.lamassu.stubs.EntityCacheStub;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checks the number of entity reader calls, each of them being one round trip to
+ * Redis, needed to resolve the references of the vehicles in one response. The
+ * benchmark reporting it against resolving the references of each vehicle on its own
+ * is excluded from the default build, and run with the benchmark profile.
+ */
+class EntityReferenceResolutionBenchmarkTest {
+
+  private static final Logger logger = LoggerFactory.getLogger(
+    EntityReferenceResolutionBenchmarkTest.class
+  );
+
+  private static final int VEHICLES = 500;
+  private static final int SYSTEMS = 3;
+  private static final int VEHICLE_TYPES = 5;
+  private static final int STATIONS = 50;
+
+  private final CountingEntityReader<System> systemReader = new CountingEntityReader<>();
+  private final CountingEntityReader<VehicleType> vehicleTypeReader =
+    new CountingEntityReader<>();
+  private final CountingEntityReader<PricingPlan> pricingPlanReader =
+    new CountingEntityReader<>();
+  private final CountingEntityReader<Station> stationReader =
+    new CountingEntityReader<>();
+
+  @Test
+  void testReferencesOfResponseAreResolvedWithOneReadEach() {
+    var vehicles = populate();
+
+    // One response asking for the vehicle type, pricing plan, system and station of
+    // every vehicle
+    var vehicleTypes = new VehicleTypeResolver(vehicleTypeReader).resolve(vehicles);
+    var pricingPlans = new VehiclePricingPlanResolver(
+      pricingPlanReader,
+      vehicleTypeReader
+    )
+      .resolve(vehicles);
+    var systems = new VehicleSystemResolver(systemReader).resolve(vehicles);
+    var stations = new VehicleStationResolver(stationReader).resolve(vehicles);
+
+    // One read of vehicle types for the vehicle types, one for the default pricing
+    // plans, and one of each of pricing plans, systems and stations
+    assertEquals(5, countReads());
+    for (int i = 0; i < VEHICLES; i++) {
+      var vehicle = vehicles.get(i);
+      assertEquals(vehicle.getVehicleTypeId(), vehicleTypes.get(i).getId());
+      assertEquals(vehicle.getSystemId(), systems.get(i).getId());
+      assertEquals(
+        vehicle.getPricingPlanId() == null
+          ? vehicleTypes.get(i).getDefaultPricingPlanId()
+          : vehicle.getPricingPlanId(),
+        pricingPlans.get(i).getId()
+      );
+      if (vehicle.getStationId() == null) {
+        assertNull(stations.get(i));
+      } else {
+        assertEquals(vehicle.getStationId(), stations.get(i).getId());
+      }
+    }
+  }
+
+  @Test
+  @Tag("benchmark")
+  void benchmarkVehicleResponse() {
+    var vehicles = populate();
+
+    new VehicleTypeResolver(vehicleTypeReader).resolve(vehicles);
+    new VehiclePricingPlanResolver(pricingPlanReader, vehicleTypeReader)
+      .resolve(vehicles);
+    new VehicleSystemResolver(systemReader).resolve(vehicles);
+    new VehicleStationResolver(stationReader).resolve(vehicles);
+    long batchedReads = countReads();
+
+    resetReads();
+    for (Vehicle vehicle : vehicles) {
+      vehicleTypeReader.get(vehicle.getVehicleTypeId());
+      if (vehicle.getPricingPlanId() == null) {
+        pricingPlanReader.get(
+          vehicleTypeReader.get(vehicle.getVehicleTypeId()).getDefaultPricingPlanId()
+        );
+      } else {
+        pricingPlanReader.get(vehicle.getPricingPlanId());
+      }
+      systemReader.get(vehicle.getSystemId());
+      if (vehicle.getStationId() != null) {
+        stationReader.get(vehicle.getStationId());
+      }
+    }
+    long perObjectReads = countReads();
+
+    logger.info(
+      "Resolved references of {} vehicles with {} entity reader calls, {} when resolving each vehicle on its own",
+      VEHICLES,
+      batchedReads,
+      perObjectReads
+    );
+  }
+
+  private List<Vehicle> populate() {
+    Map<String, System> systems = new HashMap<>();
+    for (int i = 0; i < SYSTEMS; i++) {
+      var system = new System();
+      system.setId("TST:System:" + i);
+      systems.put(system.getId(), system);
+    }
+    systemReader.cache.updateAll(systems);
+
+    Map<String, VehicleType> vehicleTypes = new HashMap<>();
+    Map<String, PricingPlan> pricingPlans = new HashMap<>();
+    for (int i = 0; i < VEHICLE_TYPES; i++) {
+      var pricingPlan = new PricingPlan();
+      pricingPlan.setId("TST:PricingPlan:" + i);
+      pricingPlans.put(pricingPlan.getId(), pricingPlan);
+
+      var vehicleType = new VehicleType();
+      vehicleType.setId("TST:VehicleType:" + i);
+      vehicleType.setDefaultPricingPlanId(pricingPlan.getId());
+      vehicleTypes.put(vehicleType.getId(), vehicleType);
+    }
+    vehicleTypeReader.cache.updateAll(vehicleTypes);
+    pricingPlanReader.cache.updateAll(pricingPlans);
+
+    Map<String, Station> stations = new HashMap<>();
+    for (int i = 0; i < STATIONS; i++) {
+      var station = new Station();
+      station.setId("TST:Station:" + i);
+      stations.put(station.getId(), station);
+    }
+    stationReader.cache.updateAll(stations);
+
+    List<Vehicle> vehicles = new ArrayList<>(VEHICLES);
+    for (int i = 0; i < VEHICLES; i++) {
+      var vehicle = new Vehicle();
+      vehicle.setId("TST:Vehicle:" + i);
+      vehicle.setSystemId("TST:System:" + (i % SYSTEMS));
+      vehicle.setVehicleTypeId("TST:VehicleType:" + (i % VEHICLE_TYPES));
+      if (i % 2 == 0) {
+        vehicle.setPricingPlanId("TST:PricingPlan:" + (i % VEHICLE_TYPES));
+      }
+      if (i % 10 == 0) {
+        vehicle.setStationId("TST:Station:" + (i % STATIONS));
+      }
+      vehicles.add(vehicle);
+    }
+    return vehicles;
+  }
+
+  private long countReads() {
+    return (
+      systemReader.reads +
+      vehicleTypeReader.reads +
+      pricingPlanReader.reads +
+      stationReader.reads
+    );
+  }
+
+  private void resetReads() {
+    systemReader.reads = 0;
+    vehicleTypeReader.reads = 0;
+    pricingPlanReader.reads = 0;
+    stationReader.reads = 0;
+  }
+
+  /**
+   * Counts the reads sent to an in-memory entity cache
+   */
+  private static class CountingEntityReader<T extends Entity> implements EntityReader<T> {
+
+    private final EntityCacheStub<T> cache = new EntityCacheStub<>();
+    private long reads = 0;
+
+    @Override
+    public List<T> getAll(Set<String> keys) {
+      reads++;
+      return cache.getAll(keys);
+    }
+
+    @Override
+    public List<T> getAll() {
+      reads++;
+      return cache.getAll();
+    }
+
+    @Override
+    public Map<String, T> getAllAsMap(Set<String> keys) {
+      reads++;
+      return cache.getAllAsMap(keys);
+    }
+
+    @Override
+    public T get(String key) {
+      reads++;
+      return cache.get(key);
+    }
+
+    @Override
+    public boolean hasKey(String key) {
+      reads++;
+      return cache.hasKey(key);
+    }
+
+    @Override
+    public int count() {
+      reads++;
+      return cache.count();
+    }
+  }
+}
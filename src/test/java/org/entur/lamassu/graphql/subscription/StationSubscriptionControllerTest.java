@@ -3,6 +3,8 @@ package org.entur.lamassu.graphql.subscription;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -83,7 +85,13 @@ class StationSubscriptionControllerTest {
     Flux<List<StationUpdate>> testPublisher = Flux.just(List.of(testUpdate));
 
     // Mock the subscription handler
-    when(subscriptionHandler.getPublisher(any(StationUpdateFilter.class)))
+    when(
+      subscriptionHandler.getPublisher(
+        any(StationUpdateFilter.class),
+        eq(false),
+        isNull()
+      )
+    )
       .thenReturn(testPublisher);
 
     // Execute the controller method with bounding box parameters
@@ -99,6 +107,8 @@ class StationSubscriptionControllerTest {
       List.of(TEST_SYSTEM_ID),
       null,
       null,
+      null,
+      null,
       null
     );
 
@@ -117,7 +127,8 @@ class StationSubscriptionControllerTest {
     ArgumentCaptor<StationUpdateFilter> filterCaptor = ArgumentCaptor.forClass(
       StationUpdateFilter.class
     );
-    verify(subscriptionHandler).getPublisher(filterCaptor.capture());
+    verify(subscriptionHandler)
+      .getPublisher(filterCaptor.capture(), eq(false), isNull());
 
     StationUpdateFilter capturedFilter = filterCaptor.getValue();
     assertNotNull(capturedFilter.getBoundingBoxParameters());
@@ -144,7 +155,13 @@ class StationSubscriptionControllerTest {
     Flux<List<StationUpdate>> testPublisher = Flux.just(List.of(testUpdate));
 
     // Mock the subscription handler
-    when(subscriptionHandler.getPublisher(any(StationUpdateFilter.class)))
+    when(
+      subscriptionHandler.getPublisher(
+        any(StationUpdateFilter.class),
+        eq(false),
+        isNull()
+      )
+    )
       .thenReturn(testPublisher);
 
     // Execute the controller method with range parameters
@@ -160,6 +177,8 @@ class StationSubscriptionControllerTest {
       null,
       null,
       null,
+      null,
+      null,
       null
     );
 
@@ -178,7 +197,8 @@ class StationSubscriptionControllerTest {
     ArgumentCaptor<StationUpdateFilter> filterCaptor = ArgumentCaptor.forClass(
       StationUpdateFilter.class
     );
-    verify(subscriptionHandler).getPublisher(filterCaptor.capture());
+    verify(subscriptionHandler)
+      .getPublisher(filterCaptor.capture(), eq(false), isNull());
 
     StationUpdateFilter capturedFilter = filterCaptor.getValue();
     assertNotNull(capturedFilter.getRangeQueryParameters());
@@ -201,7 +221,13 @@ class StationSubscriptionControllerTest {
     Flux<List<StationUpdate>> testPublisher = Flux.just(List.of(testUpdate));
 
     // Mock the subscription handler
-    when(subscriptionHandler.getPublisher(any(StationUpdateFilter.class)))
+    when(
+      subscriptionHandler.getPublisher(
+        any(StationUpdateFilter.class),
+        eq(false),
+        isNull()
+      )
+    )
       .thenReturn(testPublisher);
 
     // Execute the controller method with vehicle type filters
@@ -217,7 +243,9 @@ class StationSubscriptionControllerTest {
       null,
       null,
       List.of(FormFactor.BICYCLE),
-      List.of(PropulsionType.ELECTRIC)
+      List.of(PropulsionType.ELECTRIC),
+      null,
+      null
     );
 
     // Verify the result
@@ -235,7 +263,8 @@ class StationSubscriptionControllerTest {
     ArgumentCaptor<StationUpdateFilter> filterCaptor = ArgumentCaptor.forClass(
       StationUpdateFilter.class
     );
-    verify(subscriptionHandler).getPublisher(filterCaptor.capture());
+    verify(subscriptionHandler)
+      .getPublisher(filterCaptor.capture(), eq(false), isNull());
 
     StationUpdateFilter capturedFilter = filterCaptor.getValue();
     StationFilterParameters filterParams = capturedFilter.getFilterParameters();
@@ -265,7 +294,13 @@ class StationSubscriptionControllerTest {
     Flux<List<StationUpdate>> testPublisher = Flux.just(List.of(testUpdate));
 
     // Mock the subscription handler
-    when(subscriptionHandler.getPublisher(any(StationUpdateFilter.class)))
+    when(
+      subscriptionHandler.getPublisher(
+        any(StationUpdateFilter.class),
+        eq(false),
+        isNull()
+      )
+    )
       .thenReturn(testPublisher);
 
     // Execute the controller method with operator filter
@@ -281,6 +316,8 @@ class StationSubscriptionControllerTest {
       null,
       List.of("test-operator"),
       null,
+      null,
+      null,
       null
     );
 
@@ -299,7 +336,8 @@ class StationSubscriptionControllerTest {
     ArgumentCaptor<StationUpdateFilter> filterCaptor = ArgumentCaptor.forClass(
       StationUpdateFilter.class
     );
-    verify(subscriptionHandler).getPublisher(filterCaptor.capture());
+    verify(subscriptionHandler)
+      .getPublisher(filterCaptor.capture(), eq(false), isNull());
 
     StationUpdateFilter capturedFilter = filterCaptor.getValue();
     StationFilterParameters filterParams = capturedFilter.getFilterParameters();
@@ -4,6 +4,8 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -84,7 +86,13 @@ class VehicleSubscriptionControllerTest {
     Flux<List<VehicleUpdate>> testPublisher = Flux.just(List.of(testUpdate));
 
     // Mock the subscription handler
-    when(subscriptionHandler.getPublisher(any(VehicleUpdateFilter.class)))
+    when(
+      subscriptionHandler.getPublisher(
+        any(VehicleUpdateFilter.class),
+        eq(false),
+        isNull()
+      )
+    )
       .thenReturn(testPublisher);
 
     // Execute the controller method with bounding box parameters
@@ -102,6 +110,8 @@ class VehicleSubscriptionControllerTest {
       null,
       null,
       null,
+      null,
+      null,
       null
     );
 
@@ -120,7 +130,8 @@ class VehicleSubscriptionControllerTest {
     ArgumentCaptor<VehicleUpdateFilter> filterCaptor = ArgumentCaptor.forClass(
       VehicleUpdateFilter.class
     );
-    verify(subscriptionHandler).getPublisher(filterCaptor.capture());
+    verify(subscriptionHandler)
+      .getPublisher(filterCaptor.capture(), eq(false), isNull());
 
     VehicleUpdateFilter capturedFilter = filterCaptor.getValue();
     assertNotNull(capturedFilter.getBoundingBoxParameters());
@@ -147,7 +158,13 @@ class VehicleSubscriptionControllerTest {
     Flux<List<VehicleUpdate>> testPublisher = Flux.just(List.of(testUpdate));
 
     // Mock the subscription handler
-    when(subscriptionHandler.getPublisher(any(VehicleUpdateFilter.class)))
+    when(
+      subscriptionHandler.getPublisher(
+        any(VehicleUpdateFilter.class),
+        eq(false),
+        isNull()
+      )
+    )
       .thenReturn(testPublisher);
 
     // Execute the controller method with range parameters
@@ -165,6 +182,8 @@ class VehicleSubscriptionControllerTest {
       null,
       null,
       null,
+      null,
+      null,
       null
     );
 
@@ -183,7 +202,8 @@ class VehicleSubscriptionControllerTest {
     ArgumentCaptor<VehicleUpdateFilter> filterCaptor = ArgumentCaptor.forClass(
       VehicleUpdateFilter.class
     );
-    verify(subscriptionHandler).getPublisher(filterCaptor.capture());
+    verify(subscriptionHandler)
+      .getPublisher(filterCaptor.capture(), eq(false), isNull());
 
     VehicleUpdateFilter capturedFilter = filterCaptor.getValue();
     assertNotNull(capturedFilter.getRangeQueryParameters());
@@ -206,7 +226,13 @@ class VehicleSubscriptionControllerTest {
     Flux<List<VehicleUpdate>> testPublisher = Flux.just(List.of(testUpdate));
 
     // Mock the subscription handler
-    when(subscriptionHandler.getPublisher(any(VehicleUpdateFilter.class)))
+    when(
+      subscriptionHandler.getPublisher(
+        any(VehicleUpdateFilter.class),
+        eq(false),
+        isNull()
+      )
+    )
       .thenReturn(testPublisher);
 
     // Execute the controller method with vehicle type filters
@@ -224,6 +250,8 @@ class VehicleSubscriptionControllerTest {
       List.of(FormFactor.BICYCLE),
       List.of(PropulsionType.ELECTRIC),
       null,
+      null,
+      null,
       null
     );
 
@@ -242,7 +270,8 @@ class VehicleSubscriptionControllerTest {
     ArgumentCaptor<VehicleUpdateFilter> filterCaptor = ArgumentCaptor.forClass(
       VehicleUpdateFilter.class
     );
-    verify(subscriptionHandler).getPublisher(filterCaptor.capture());
+    verify(subscriptionHandler)
+      .getPublisher(filterCaptor.capture(), eq(false), isNull());
 
     VehicleUpdateFilter capturedFilter = filterCaptor.getValue();
     VehicleFilterParameters filterParams = capturedFilter.getFilterParameters();
@@ -269,7 +298,13 @@ class VehicleSubscriptionControllerTest {
     Flux<List<VehicleUpdate>> testPublisher = Flux.just(List.of(testUpdate));
 
     // Mock the subscription handler
-    when(subscriptionHandler.getPublisher(any(VehicleUpdateFilter.class)))
+    when(
+      subscriptionHandler.getPublisher(
+        any(VehicleUpdateFilter.class),
+        eq(false),
+        isNull()
+      )
+    )
       .thenReturn(testPublisher);
 
     // Execute the controller method with status filters
@@ -287,7 +322,9 @@ class VehicleSubscriptionControllerTest {
       null,
       null,
       true, // includeReserved
-      false // includeDisabled
+      false // includeDisabled,
+      null,
+      null
     );
 
     // Verify the result
@@ -305,7 +342,8 @@ class VehicleSubscriptionControllerTest {
     ArgumentCaptor<VehicleUpdateFilter> filterCaptor = ArgumentCaptor.forClass(
       VehicleUpdateFilter.class
     );
-    verify(subscriptionHandler).getPublisher(filterCaptor.capture());
+    verify(subscriptionHandler)
+      .getPublisher(filterCaptor.capture(), eq(false), isNull());
 
     VehicleUpdateFilter capturedFilter = filterCaptor.getValue();
     VehicleFilterParameters filterParams = capturedFilter.getFilterParameters();
@@ -327,7 +365,13 @@ class VehicleSubscriptionControllerTest {
     Flux<List<VehicleUpdate>> testPublisher = Flux.just(List.of(testUpdate));
 
     // Mock the subscription handler
-    when(subscriptionHandler.getPublisher(any(VehicleUpdateFilter.class)))
+    when(
+      subscriptionHandler.getPublisher(
+        any(VehicleUpdateFilter.class),
+        eq(false),
+        isNull()
+      )
+    )
       .thenReturn(testPublisher);
 
     // Execute the controller method with operator filter
@@ -345,6 +389,8 @@ class VehicleSubscriptionControllerTest {
       null,
       null,
       null,
+      null,
+      null,
       null
     );
 
@@ -363,7 +409,8 @@ class VehicleSubscriptionControllerTest {
     ArgumentCaptor<VehicleUpdateFilter> filterCaptor = ArgumentCaptor.forClass(
       VehicleUpdateFilter.class
     );
-    verify(subscriptionHandler).getPublisher(filterCaptor.capture());
+    verify(subscriptionHandler)
+      .getPublisher(filterCaptor.capture(), eq(false), isNull());
 
     VehicleUpdateFilter capturedFilter = filterCaptor.getValue();
     VehicleFilterParameters filterParams = capturedFilter.getFilterParameters();
@@ -18,14 +18,23 @@
 
 package org.entur.lamassu.graphql.subscription.handler;
 
-// No static assertions needed for this test class
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.verify;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import org.entur.lamassu.cache.EntityCache;
+import org.entur.lamassu.cache.EntityEvent;
+import org.entur.lamassu.cache.EntityEventStream;
 import org.entur.lamassu.graphql.subscription.model.UpdateType;
 import org.entur.lamassu.model.entities.Entity;
 import org.junit.jupiter.api.BeforeEach;
@@ -33,6 +42,8 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
 import reactor.test.StepVerifier;
 
 /**
@@ -52,11 +63,13 @@ class EntitySubscriptionHandlerTest {
   @Mock
   private EntityCache<TestEntity> entityCache;
 
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
   private TestEntitySubscriptionHandler handler;
 
   @BeforeEach
   void setUp() {
-    handler = new TestEntitySubscriptionHandler(entityCache);
+    handler = new TestEntitySubscriptionHandler(entityCache, meterRegistry);
     verify(entityCache).addListener(handler);
   }
 
@@ -242,6 +255,281 @@ class EntitySubscriptionHandlerTest {
       .verify(Duration.ofSeconds(5));
   }
 
+  @Test
+  void testConflatingPublisherDeliversLatestUpdateOfEachEntity() {
+    List<TestUpdate> initialUpdates = List.of(
+      new TestUpdate("1", UpdateType.CREATE, new TestEntity("1"))
+    );
+
+    StepVerifier
+      .create(
+        handler.getPublisher(
+          initialUpdates,
+          update -> true,
+          SubscriptionRoute.EVERYWHERE,
+          true
+        )
+      )
+      .expectNextMatches(updates -> updates.size() == 1)
+      .then(() -> {
+        // Five updates of one entity, and an entity created and deleted again
+        for (int i = 0; i < 5; i++) {
+          handler.onEntityUpdated("1", new TestEntity("1"));
+        }
+        handler.onEntityCreated("2", new TestEntity("2"));
+        handler.onEntityDeleted("2", new TestEntity("2"));
+      })
+      .expectNextMatches(updates ->
+        updates.size() == 1 &&
+        updates.getFirst().getEntity().getId().equals("1") &&
+        updates.getFirst().getUpdateType() == UpdateType.UPDATE
+      )
+      .thenCancel()
+      .verify(Duration.ofSeconds(2));
+
+    assertEquals(
+      4.0,
+      meterRegistry
+        .get("app.lamassu.subscription.conflated")
+        .tag("outcome", "merged")
+        .counter()
+        .count()
+    );
+    assertEquals(
+      2.0,
+      meterRegistry
+        .get("app.lamassu.subscription.conflated")
+        .tag("outcome", "cancelled")
+        .counter()
+        .count()
+    );
+  }
+
+  @Test
+  void testSnapshotIsReadOneChunkAtATime() {
+    List<Integer> chunksRead = new ArrayList<>();
+    Supplier<Stream<List<TestEntity>>> chunks = () ->
+      IntStream
+        .range(0, 3)
+        .mapToObj(chunk -> {
+          chunksRead.add(chunk);
+          return IntStream
+            .range(0, 2)
+            .mapToObj(i -> new TestEntity(chunk + "-" + i))
+            .toList();
+        });
+
+    StepVerifier
+      .create(handler.getSnapshot(chunks), 1)
+      .expectNextMatches(update -> update.getId().equals("0-0"))
+      .then(() -> assertEquals(List.of(0), chunksRead))
+      .thenRequest(5)
+      .expectNextCount(5)
+      .verifyComplete();
+
+    assertEquals(List.of(0, 1, 2), chunksRead);
+  }
+
+  @Test
+  void testUpdatesDuringSnapshotAreDeliveredAfterIt() {
+    Sinks.Many<TestUpdate> snapshot = Sinks.many().unicast().onBackpressureBuffer();
+
+    StepVerifier
+      .create(
+        handler.getPublisher(
+          snapshot.asFlux(),
+          update -> true,
+          SubscriptionRoute.EVERYWHERE,
+          false
+        )
+      )
+      .then(() -> {
+        snapshot.tryEmitNext(new TestUpdate("1", UpdateType.CREATE, new TestEntity("1")));
+        handler.onEntityUpdated("1", new TestEntity("1"));
+        snapshot.tryEmitNext(new TestUpdate("2", UpdateType.CREATE, new TestEntity("2")));
+        snapshot.tryEmitComplete();
+      })
+      .expectNextMatches(updates ->
+        updates
+          .stream()
+          .map(update -> update.getId() + ":" + update.getUpdateType())
+          .toList()
+          .equals(List.of("1:CREATE", "2:CREATE", "1:UPDATE"))
+      )
+      .thenCancel()
+      .verify(Duration.ofSeconds(2));
+  }
+
+  @Test
+  void testResumeTokenReplaysMissedUpdates() {
+    var eventStream = new TestEventStream(100);
+    var resumableHandler = new TestEntitySubscriptionHandler(
+      entityCache,
+      eventStream,
+      meterRegistry
+    );
+    eventStream.append(event(EntityEvent.Type.CREATED, "1"));
+    eventStream.append(event(EntityEvent.Type.UPDATED, "2"));
+    eventStream.append(event(EntityEvent.Type.DELETED, "3"));
+
+    List<TestUpdate> updates = resumableHandler
+      .getInitialUpdates(
+        ResumeToken.encode("1-0"),
+        Flux.error(new AssertionError("Resumed subscriptions should not take a snapshot"))
+      )
+      .collectList()
+      .block();
+
+    assertEquals(2, updates.size());
+    assertEquals("2", updates.get(0).getId());
+    assertEquals(UpdateType.UPDATE, updates.get(0).getUpdateType());
+    assertEquals(ResumeToken.encode("2-0"), updates.get(0).getResumeToken());
+    assertEquals("3", updates.get(1).getId());
+    assertEquals(UpdateType.DELETE, updates.get(1).getUpdateType());
+    assertEquals(ResumeToken.encode("3-0"), updates.get(1).getResumeToken());
+    assertEquals(1.0, resumedCount("replayed"));
+  }
+
+  @Test
+  void testResumeTokenOfTrimmedEventFallsBackToSnapshot() {
+    var eventStream = new TestEventStream(2);
+    var resumableHandler = new TestEntitySubscriptionHandler(
+      entityCache,
+      eventStream,
+      meterRegistry
+    );
+    for (int i = 1; i <= 4; i++) {
+      eventStream.append(event(EntityEvent.Type.UPDATED, String.valueOf(i)));
+    }
+
+    List<TestUpdate> updates = resumableHandler
+      .getInitialUpdates(
+        ResumeToken.encode("1-0"),
+        Flux.just(new TestUpdate("5", UpdateType.CREATE, new TestEntity("5")))
+      )
+      .collectList()
+      .block();
+
+    assertEquals(1, updates.size());
+    assertEquals("5", updates.getFirst().getId());
+    assertEquals(ResumeToken.encode("4-0"), updates.getFirst().getResumeToken());
+    assertEquals(1.0, resumedCount("snapshot"));
+  }
+
+  @Test
+  void testInvalidResumeTokenFallsBackToSnapshot() {
+    var resumableHandler = new TestEntitySubscriptionHandler(
+      entityCache,
+      new TestEventStream(100),
+      meterRegistry
+    );
+
+    List<TestUpdate> updates = resumableHandler
+      .getInitialUpdates(
+        "not a token",
+        Flux.just(new TestUpdate("1", UpdateType.CREATE, new TestEntity("1")))
+      )
+      .collectList()
+      .block();
+
+    assertEquals(1, updates.size());
+    assertNull(updates.getFirst().getResumeToken());
+    assertEquals(1.0, resumedCount("snapshot"));
+  }
+
+  @Test
+  void testStreamEventsAreDeliveredWithResumeToken() {
+    var eventStream = new TestEventStream(100);
+    var resumableHandler = new TestEntitySubscriptionHandler(
+      entityCache,
+      eventStream,
+      meterRegistry
+    );
+
+    StepVerifier
+      .create(resumableHandler.getPublisher(List.of(), update -> true))
+      .then(() -> eventStream.append(event(EntityEvent.Type.CREATED, "1")))
+      .expectNextMatches(updates ->
+        updates.size() == 1 &&
+        updates.getFirst().getUpdateType() == UpdateType.CREATE &&
+        ResumeToken.encode("1-0").equals(updates.getFirst().getResumeToken())
+      )
+      .thenCancel()
+      .verify(Duration.ofSeconds(2));
+  }
+
+  private double resumedCount(String outcome) {
+    return meterRegistry
+      .get("app.lamassu.subscription.resumed")
+      .tag("outcome", outcome)
+      .counter()
+      .count();
+  }
+
+  private static EntityEvent<TestEntity> event(EntityEvent.Type type, String id) {
+    return new EntityEvent<>(type, id, new TestEntity(id));
+  }
+
+  // In-memory entity event stream, positioned by the number of appended events
+  private static class TestEventStream implements EntityEventStream<TestEntity> {
+
+    private final int maxLength;
+    private final List<EntityEvent<TestEntity>> events = new ArrayList<>();
+    private final List<Consumer<EntityEvent<TestEntity>>> consumers = new ArrayList<>();
+    private long appended = 0;
+
+    private TestEventStream(int maxLength) {
+      this.maxLength = maxLength;
+    }
+
+    @Override
+    public void append(EntityEvent<TestEntity> event) {
+      var positioned = event.withPosition(++appended + "-0");
+      events.add(positioned);
+      if (events.size() > maxLength) {
+        events.removeFirst();
+      }
+      consumers.forEach(consumer -> consumer.accept(positioned));
+    }
+
+    @Override
+    public List<EntityEvent<TestEntity>> readAfter(String position, int count) {
+      return events
+        .stream()
+        .filter(event -> compare(event.getPosition(), position) > 0)
+        .limit(count)
+        .toList();
+    }
+
+    @Override
+    public String getFirstPosition() {
+      return events.isEmpty() ? null : events.getFirst().getPosition();
+    }
+
+    @Override
+    public String getLastPosition() {
+      return events.isEmpty() ? null : events.getLast().getPosition();
+    }
+
+    @Override
+    public void listen(Consumer<EntityEvent<TestEntity>> consumer) {
+      consumers.add(consumer);
+    }
+
+    @Override
+    public int compare(String position, String otherPosition) {
+      return Long.compare(sequence(position), sequence(otherPosition));
+    }
+
+    private static long sequence(String position) {
+      int separator = position.indexOf('-');
+      if (separator < 0) {
+        throw new IllegalArgumentException("Invalid position " + position);
+      }
+      return Long.parseLong(position.substring(0, separator));
+    }
+  }
+
   // Test entity class
   private static class TestEntity implements Entity {
 
@@ -260,16 +548,30 @@ class EntitySubscriptionHandlerTest {
   // Test update class
   private static class TestUpdate {
 
+    private final String id;
     private final UpdateType updateType;
     private final TestEntity entity;
+    private final String resumeToken;
 
     public TestUpdate(String id, UpdateType updateType, TestEntity entity) {
-      // The id field is needed for the constructor but not used directly
+      this(id, updateType, entity, null);
+    }
+
+    public TestUpdate(
+      String id,
+      UpdateType updateType,
+      TestEntity entity,
+      String resumeToken
+    ) {
+      this.id = id;
       this.updateType = updateType;
       this.entity = entity;
+      this.resumeToken = resumeToken;
     }
 
-    // getId() method removed as it's not used locally
+    public String getId() {
+      return id;
+    }
 
     public UpdateType getUpdateType() {
       return updateType;
@@ -278,6 +580,10 @@ class EntitySubscriptionHandlerTest {
     public TestEntity getEntity() {
       return entity;
     }
+
+    public String getResumeToken() {
+      return resumeToken;
+    }
   }
 
   /**
@@ -288,8 +594,19 @@ class EntitySubscriptionHandlerTest {
   private static class TestEntitySubscriptionHandler
     extends EntitySubscriptionHandler<TestEntity, TestUpdate> {
 
-    public TestEntitySubscriptionHandler(EntityCache<TestEntity> entityCache) {
-      super(entityCache);
+    public TestEntitySubscriptionHandler(
+      EntityCache<TestEntity> entityCache,
+      SimpleMeterRegistry meterRegistry
+    ) {
+      super(entityCache, "test", meterRegistry);
+    }
+
+    public TestEntitySubscriptionHandler(
+      EntityCache<TestEntity> entityCache,
+      EntityEventStream<TestEntity> eventStream,
+      SimpleMeterRegistry meterRegistry
+    ) {
+      super(entityCache, null, eventStream, "test", meterRegistry);
     }
 
     @Override
@@ -300,5 +617,35 @@ class EntitySubscriptionHandlerTest {
     ) {
       return new TestUpdate(id, updateType, entity);
     }
+
+    @Override
+    protected String getEntityId(TestUpdate update) {
+      return update.getId();
+    }
+
+    @Override
+    protected UpdateType getUpdateType(TestUpdate update) {
+      return update.getUpdateType();
+    }
+
+    @Override
+    protected TestEntity getEntity(TestUpdate update) {
+      return update.getEntity();
+    }
+
+    @Override
+    protected TestUpdate withResumeToken(TestUpdate update, String resumeToken) {
+      return new TestUpdate(
+        update.getId(),
+        update.getUpdateType(),
+        update.getEntity(),
+        resumeToken
+      );
+    }
+
+    @Override
+    protected String getResumeToken(TestUpdate update) {
+      return update.getResumeToken();
+    }
   }
 }
@@ -0,0 +1,197 @@
+package org.entur.lamassu.graphql.subscription.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+import org.entur.lamassu.cache.EntityEvent;
+import org.entur.lamassu.cache.EntityEventShards;
+import org.entur.lamassu.cache.EntityListener;
+import org.entur.lamassu.model.entities.Vehicle;
+import org.junit.jupiter.api.Test;
+
+class ShardSubscriptionsTest {
+
+  private static final SubscriptionRoute OSLO = new SubscriptionRoute(
+    59.8,
+    10.6,
+    59.99,
+    10.9,
+    null
+  );
+
+  private final InMemoryEntityEventShards shards = new InMemoryEntityEventShards();
+  private final List<String> received = new ArrayList<>();
+  private final ShardSubscriptions<Vehicle> subscriptions = new ShardSubscriptions<>(
+    shards,
+    new EntityListener<>() {
+      @Override
+      public void onEntityCreated(String id, Vehicle entity) {
+        received.add(id);
+      }
+
+      @Override
+      public void onEntityUpdated(String id, Vehicle entity) {
+        received.add(id);
+      }
+
+      @Override
+      public void onEntityDeleted(String id, Vehicle entity) {
+        received.add(id);
+      }
+    }
+  );
+
+  @Test
+  void receivesEventsOfCoveredShards() {
+    subscriptions.add(OSLO);
+
+    publish("oslo", 59.9, 10.7);
+    publish("bergen", 60.4, 5.3);
+    publish("unlocated", null, null);
+
+    assertEquals(List.of("oslo", "unlocated"), received);
+  }
+
+  @Test
+  void unsubscribesWhenLastSubscriptionOfShardIsRemoved() {
+    subscriptions.add(OSLO);
+    subscriptions.add(OSLO);
+    assertEquals(2, subscriptions.getSubscriptionCount());
+
+    subscriptions.remove(OSLO);
+    publish("oslo", 59.9, 10.7);
+    subscriptions.remove(OSLO);
+    publish("oslo", 59.9, 10.7);
+
+    assertEquals(List.of("oslo"), received);
+    assertEquals(0, subscriptions.getSubscriptionCount());
+    assertTrue(shards.consumers.isEmpty());
+  }
+
+  @Test
+  void receivesEveryShardOnceWhileSubscribedToAll() {
+    subscriptions.add(OSLO);
+    subscriptions.add(SubscriptionRoute.EVERYWHERE);
+
+    publish("oslo", 59.9, 10.7);
+    publish("bergen", 60.4, 5.3);
+    subscriptions.remove(SubscriptionRoute.EVERYWHERE);
+    publish("oslo", 59.9, 10.7);
+    publish("bergen", 60.4, 5.3);
+
+    assertEquals(List.of("oslo", "bergen", "oslo"), received);
+  }
+
+  @Test
+  void receivesCoveredShardsUntilAllShardsSubscriptionIsConfirmed() {
+    shards.allShardsSubscribed = new CompletableFuture<>();
+    subscriptions.add(OSLO);
+    subscriptions.add(SubscriptionRoute.EVERYWHERE);
+
+    publish("oslo", 59.9, 10.7);
+    publish("bergen", 60.4, 5.3);
+    shards.allShardsSubscribed.complete(shards.allShardsSubscriptionId);
+    publish("oslo", 59.9, 10.7);
+    publish("bergen", 60.4, 5.3);
+
+    assertEquals(List.of("oslo", "oslo", "bergen"), received);
+  }
+
+  @Test
+  void unsubscribesAllShardsRemovedBeforeConfirmation() {
+    shards.allShardsSubscribed = new CompletableFuture<>();
+    subscriptions.add(SubscriptionRoute.EVERYWHERE);
+    subscriptions.remove(SubscriptionRoute.EVERYWHERE);
+
+    shards.allShardsSubscribed.complete(shards.allShardsSubscriptionId);
+    publish("oslo", 59.9, 10.7);
+
+    assertTrue(received.isEmpty());
+    assertTrue(shards.consumers.isEmpty());
+  }
+
+  @Test
+  void coversWideAreasWithAllShards() {
+    assertNull(
+      ShardSubscriptions.getShards(new SubscriptionRoute(58.0, 4.0, 71.0, 31.0, null))
+    );
+    assertEquals(
+      Set.of(EntityEventShards.NO_LOCATION_SHARD, "59:10"),
+      ShardSubscriptions.getShards(OSLO)
+    );
+  }
+
+  private void publish(String id, Double lat, Double lon) {
+    var vehicle = new Vehicle();
+    vehicle.setId(id);
+    vehicle.setLat(lat);
+    vehicle.setLon(lon);
+    shards.publish(
+      EntityEventShards.shard(lat, lon),
+      new EntityEvent<>(EntityEvent.Type.UPDATED, id, vehicle)
+    );
+  }
+
+  /**
+   * Passes published events to the consumers of their shard, and of every shard. The
+   * subscription of every shard is confirmed right away, unless a pending confirmation
+   * is set.
+   */
+  private static class InMemoryEntityEventShards implements EntityEventShards<Vehicle> {
+
+    private final Map<Integer, Consumer<EntityEvent<Vehicle>>> consumers =
+      new HashMap<>();
+    private final Map<Integer, String> consumerShards = new HashMap<>();
+    private int nextId = 0;
+    private CompletableFuture<Integer> allShardsSubscribed = null;
+    private int allShardsSubscriptionId;
+
+    @Override
+    public void publish(String shard, EntityEvent<Vehicle> event) {
+      consumers.forEach((id, consumer) -> {
+        String consumerShard = consumerShards.get(id);
+        if (consumerShard == null || consumerShard.equals(shard)) {
+          consumer.accept(event);
+        }
+      });
+    }
+
+    @Override
+    public int subscribe(String shard, Consumer<EntityEvent<Vehicle>> consumer) {
+      consumers.put(nextId, consumer);
+      consumerShards.put(nextId, shard);
+      return nextId++;
+    }
+
+    @Override
+    public void unsubscribe(String shard, int subscriptionId) {
+      consumers.remove(subscriptionId);
+      consumerShards.remove(subscriptionId);
+    }
+
+    @Override
+    public CompletionStage<Integer> subscribeAll(
+      Consumer<EntityEvent<Vehicle>> consumer
+    ) {
+      consumers.put(nextId, consumer);
+      allShardsSubscriptionId = nextId++;
+      return allShardsSubscribed != null
+        ? allShardsSubscribed
+        : CompletableFuture.completedFuture(allShardsSubscriptionId);
+    }
+
+    @Override
+    public void unsubscribeAll(int subscriptionId) {
+      consumers.remove(subscriptionId);
+    }
+  }
+}
@@ -25,10 +25,13 @@ import static org.mockito.Mockito.mock;
 // Removed unused import
 import static org.mockito.Mockito.when;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 import org.entur.lamassu.cache.EntityCache;
 import org.entur.lamassu.graphql.subscription.filter.StationUpdateFilter;
 import org.entur.lamassu.graphql.subscription.model.StationUpdate;
@@ -73,7 +76,14 @@ class StationSubscriptionHandlerTest {
 
   @BeforeEach
   void setUp() {
-    handler = new StationSubscriptionHandler(geoSearchService, stationCache);
+    handler =
+      new StationSubscriptionHandler(
+        geoSearchService,
+        stationCache,
+        Optional.empty(),
+        Optional.empty(),
+        new SimpleMeterRegistry()
+      );
   }
 
   /**
@@ -105,8 +115,14 @@ class StationSubscriptionHandlerTest {
     );
 
     // Mock the geo search service
-    when(geoSearchService.getStationsWithinRange(rangeParams, filterParams))
-      .thenReturn(stations);
+    when(
+      geoSearchService.getStationChunksWithinRange(
+        rangeParams,
+        filterParams,
+        EntitySubscriptionHandler.SNAPSHOT_CHUNK_SIZE
+      )
+    )
+      .thenReturn(Stream.of(stations));
 
     // Mock the filter to accept all updates using lenient to avoid UnnecessaryStubbingException
     lenient().when(filter.test(any())).thenReturn(true);
@@ -167,8 +183,14 @@ class StationSubscriptionHandlerTest {
     );
 
     // Mock the geo search service
-    when(geoSearchService.getStationsInBoundingBox(bboxParams, filterParams))
-      .thenReturn(stations);
+    when(
+      geoSearchService.getStationChunksInBoundingBox(
+        bboxParams,
+        filterParams,
+        EntitySubscriptionHandler.SNAPSHOT_CHUNK_SIZE
+      )
+    )
+      .thenReturn(Stream.of(stations));
 
     // Mock the filter to accept all updates using lenient to avoid UnnecessaryStubbingException
     lenient().when(filter.test(any())).thenReturn(true);
@@ -225,8 +247,14 @@ class StationSubscriptionHandlerTest {
     List<Station> initialStations = Arrays.asList(createStation("1", 59.92, 10.75));
 
     // Mock the geo search service
-    when(geoSearchService.getStationsInBoundingBox(bboxParams, filterParams))
-      .thenReturn(initialStations);
+    when(
+      geoSearchService.getStationChunksInBoundingBox(
+        bboxParams,
+        filterParams,
+        EntitySubscriptionHandler.SNAPSHOT_CHUNK_SIZE
+      )
+    )
+      .thenReturn(Stream.of(initialStations));
 
     // Mock the filter to accept all updates using lenient to avoid UnnecessaryStubbingException
     lenient().when(filter.test(any())).thenReturn(true);
@@ -291,8 +319,14 @@ class StationSubscriptionHandlerTest {
     List<Station> initialStations = Arrays.asList(createStation("1", 59.92, 10.75));
 
     // Mock the geo search service
-    when(geoSearchService.getStationsInBoundingBox(bboxParams, filterParams))
-      .thenReturn(initialStations);
+    when(
+      geoSearchService.getStationChunksInBoundingBox(
+        bboxParams,
+        filterParams,
+        EntitySubscriptionHandler.SNAPSHOT_CHUNK_SIZE
+      )
+    )
+      .thenReturn(Stream.of(initialStations));
 
     // Mock the filter to accept all updates using lenient to avoid UnnecessaryStubbingException
     lenient().when(filter.test(any())).thenReturn(true);
@@ -407,8 +441,14 @@ class StationSubscriptionHandlerTest {
     }
 
     // Mock the geo search service
-    when(geoSearchService.getStationsInBoundingBox(bboxParams, filterParams))
-      .thenReturn(initialStations);
+    when(
+      geoSearchService.getStationChunksInBoundingBox(
+        bboxParams,
+        filterParams,
+        EntitySubscriptionHandler.SNAPSHOT_CHUNK_SIZE
+      )
+    )
+      .thenReturn(Stream.of(initialStations));
 
     // Mock the filter to accept all updates using lenient to avoid UnnecessaryStubbingException
     lenient().when(filter.test(any())).thenReturn(true);
@@ -464,8 +504,14 @@ class StationSubscriptionHandlerTest {
     }
 
     // Mock the geo search service
-    when(geoSearchService.getStationsInBoundingBox(bboxParams, filterParams))
-      .thenReturn(stations);
+    when(
+      geoSearchService.getStationChunksInBoundingBox(
+        bboxParams,
+        filterParams,
+        EntitySubscriptionHandler.SNAPSHOT_CHUNK_SIZE
+      )
+    )
+      .thenReturn(Stream.of(stations));
 
     // Mock the filter to accept all updates using lenient to avoid UnnecessaryStubbingException
     lenient().when(filter.test(any())).thenReturn(true);
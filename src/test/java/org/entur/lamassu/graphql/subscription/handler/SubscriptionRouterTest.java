@@ -0,0 +1,168 @@
+package org.entur.lamassu.graphql.subscription.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.entur.lamassu.service.RangeQueryParameters;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+class SubscriptionRouterTest {
+
+  private static final Logger logger = LoggerFactory.getLogger(
+    SubscriptionRouterTest.class
+  );
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final SubscriptionRouter<String> router = new SubscriptionRouter<>(
+    "test",
+    meterRegistry
+  );
+
+  @Test
+  void routesUpdatesToSubscriptionsCoveringTheirLocation() {
+    var oslo = subscribe(new SubscriptionRoute(59.9, 10.7, 60.0, 10.8, null));
+    var bergen = subscribe(new SubscriptionRoute(60.3, 5.3, 60.4, 5.4, null));
+
+    router.route("oslo", 59.95, 10.75, "system");
+    router.route("bergen", 60.35, 5.35, "system");
+
+    assertEquals(List.of("oslo"), oslo);
+    assertEquals(List.of("bergen"), bergen);
+  }
+
+  @Test
+  void appliesFilterOfRoutedSubscriptions() {
+    List<String> received = new ArrayList<>();
+    router
+      .register(
+        new SubscriptionRoute(59.9, 10.7, 60.0, 10.8, null),
+        update -> update.startsWith("a")
+      )
+      .asFlux()
+      .subscribe(received::add);
+
+    router.route("a", 59.95, 10.75, "system");
+    router.route("b", 59.95, 10.75, "system");
+
+    assertEquals(List.of("a"), received);
+  }
+
+  @Test
+  void skipsSubscriptionsOfOtherSystems() {
+    var subscription = subscribe(
+      new SubscriptionRoute(59.9, 10.7, 60.0, 10.8, Set.of("system-1"))
+    );
+
+    router.route("system-1", 59.95, 10.75, "system-1");
+    router.route("system-2", 59.95, 10.75, "system-2");
+
+    assertEquals(List.of("system-1"), subscription);
+  }
+
+  @Test
+  void routesToSubscriptionsWithoutArea() {
+    var everywhere = subscribe(SubscriptionRoute.EVERYWHERE);
+    var wide = subscribe(new SubscriptionRoute(50.0, 0.0, 70.0, 30.0, null));
+
+    router.route("update", 59.95, 10.75, "system");
+
+    assertEquals(List.of("update"), everywhere);
+    assertEquals(List.of("update"), wide);
+  }
+
+  @Test
+  void routesUpdatesWithoutLocationToAllSubscriptions() {
+    var oslo = subscribe(new SubscriptionRoute(59.9, 10.7, 60.0, 10.8, null));
+
+    router.route("update", null, null, null);
+
+    assertEquals(List.of("update"), oslo);
+  }
+
+  @Test
+  void stopsRoutingToUnregisteredSubscriptions() {
+    List<String> received = new ArrayList<>();
+    var subscription = router.register(SubscriptionRoute.EVERYWHERE, update -> true);
+    subscription.asFlux().subscribe(received::add);
+
+    router.route("before", 59.95, 10.75, "system");
+    router.unregister(subscription);
+    router.route("after", 59.95, 10.75, "system");
+
+    assertEquals(List.of("before"), received);
+    assertEquals(0, router.getSubscriptionCount());
+  }
+
+  @Test
+  void rangeRouteCoversRange() {
+    var route = SubscriptionRoute.of(
+      null,
+      new RangeQueryParameters(59.95, 10.75, 1000.0),
+      null
+    );
+
+    assertTrue(route.minimumLatitude() < 59.941 && route.maximumLatitude() > 59.959);
+    assertTrue(route.minimumLongitude() < 10.732 && route.maximumLongitude() > 10.768);
+  }
+
+  /**
+   * Reports the number of filter evaluations needed to route updates spread over
+   * Norway to subscriptions of city sized areas, against testing every update
+   * against every subscription.
+   */
+  @Test
+  void benchmarkRouting() {
+    int subscriptionCount = 2000;
+    int updateCount = 10000;
+    var random = new Random(42);
+
+    for (int i = 0; i < subscriptionCount; i++) {
+      double lat = 58 + random.nextDouble() * 12;
+      double lon = 5 + random.nextDouble() * 25;
+      subscribe(new SubscriptionRoute(lat, lon, lat + 0.1, lon + 0.2, null));
+    }
+    for (int i = 0; i < updateCount; i++) {
+      router.route(
+        "update",
+        58 + random.nextDouble() * 12,
+        5 + random.nextDouble() * 25,
+        "system"
+      );
+    }
+
+    double candidates = meterRegistry
+      .get("app.lamassu.subscription.candidates")
+      .summary()
+      .totalAmount();
+    double deliveries = meterRegistry
+      .get("app.lamassu.subscription.fanout")
+      .summary()
+      .totalAmount();
+    long unrouted = (long) subscriptionCount * updateCount;
+
+    logger.info(
+      "Routed {} updates to {} subscriptions with {} filter evaluations and {} deliveries, {} filter evaluations without routing",
+      updateCount,
+      subscriptionCount,
+      (long) candidates,
+      (long) deliveries,
+      unrouted
+    );
+
+    assertTrue(candidates < unrouted / 100.0);
+    assertTrue(deliveries <= candidates);
+  }
+
+  private List<String> subscribe(SubscriptionRoute route) {
+    List<String> received = new ArrayList<>();
+    router.register(route, update -> true).asFlux().subscribe(received::add);
+    return received;
+  }
+}
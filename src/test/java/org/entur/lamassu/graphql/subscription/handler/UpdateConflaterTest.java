@@ -0,0 +1,99 @@
+package org.entur.lamassu.graphql.subscription.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import org.entur.lamassu.graphql.subscription.model.UpdateType;
+import org.entur.lamassu.graphql.subscription.model.VehicleUpdate;
+import org.entur.lamassu.model.entities.Vehicle;
+import org.junit.jupiter.api.Test;
+
+class UpdateConflaterTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final Counter mergedCounter = meterRegistry.counter("merged");
+  private final Counter cancelledCounter = meterRegistry.counter("cancelled");
+  private final UpdateConflater<VehicleUpdate> conflater = new UpdateConflater<>(
+    VehicleUpdate::getVehicleId,
+    VehicleUpdate::getUpdateType,
+    (update, updateType) ->
+      new VehicleUpdate(update.getVehicleId(), updateType, update.getVehicle()),
+    mergedCounter,
+    cancelledCounter
+  );
+
+  @Test
+  void keepsLatestUpdateOfEachVehicle() {
+    var first = update("1", UpdateType.UPDATE);
+    var latest = update("1", UpdateType.UPDATE);
+    var other = update("2", UpdateType.UPDATE);
+
+    conflater.add(first);
+    conflater.add(other);
+    conflater.add(latest);
+
+    assertEquals(List.of(latest, other), conflater.drain());
+    assertEquals(1.0, mergedCounter.count());
+  }
+
+  @Test
+  void keepsCreationOfUpdatedVehicle() {
+    conflater.add(update("1", UpdateType.CREATE));
+    var latest = update("1", UpdateType.UPDATE);
+    conflater.add(latest);
+
+    var updates = conflater.drain();
+    assertEquals(1, updates.size());
+    assertEquals(UpdateType.CREATE, updates.getFirst().getUpdateType());
+    assertEquals(latest.getVehicle(), updates.getFirst().getVehicle());
+  }
+
+  @Test
+  void cancelsCreationAndDeletion() {
+    conflater.add(update("1", UpdateType.CREATE));
+    conflater.add(update("1", UpdateType.UPDATE));
+    conflater.add(update("1", UpdateType.DELETE));
+
+    assertTrue(conflater.drain().isEmpty());
+    assertEquals(1.0, mergedCounter.count());
+    assertEquals(2.0, cancelledCounter.count());
+  }
+
+  @Test
+  void updatesDeletedAndCreatedVehicle() {
+    conflater.add(update("1", UpdateType.DELETE));
+    conflater.add(update("1", UpdateType.CREATE));
+
+    var updates = conflater.drain();
+    assertEquals(1, updates.size());
+    assertEquals(UpdateType.UPDATE, updates.getFirst().getUpdateType());
+  }
+
+  @Test
+  void keepsDeletionOfUpdatedVehicle() {
+    conflater.add(update("1", UpdateType.UPDATE));
+    conflater.add(update("1", UpdateType.DELETE));
+
+    var updates = conflater.drain();
+    assertEquals(1, updates.size());
+    assertEquals(UpdateType.DELETE, updates.getFirst().getUpdateType());
+  }
+
+  @Test
+  void drainRemovesPendingUpdates() {
+    conflater.add(update("1", UpdateType.UPDATE));
+
+    assertEquals(1, conflater.drain().size());
+    assertEquals(0, conflater.size());
+    assertTrue(conflater.drain().isEmpty());
+  }
+
+  private static VehicleUpdate update(String id, UpdateType updateType) {
+    var vehicle = new Vehicle();
+    vehicle.setId(id);
+    return new VehicleUpdate(id, updateType, vehicle);
+  }
+}
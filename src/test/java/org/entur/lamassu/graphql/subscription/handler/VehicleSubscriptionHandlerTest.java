@@ -27,9 +27,12 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 // Removed unused import
 import org.entur.lamassu.cache.EntityCache;
 import org.entur.lamassu.graphql.subscription.filter.VehicleUpdateFilter;
@@ -73,7 +76,14 @@ class VehicleSubscriptionHandlerTest {
 
   @BeforeEach
   void setUp() {
-    handler = new VehicleSubscriptionHandler(geoSearchService, vehicleCache);
+    handler =
+      new VehicleSubscriptionHandler(
+        geoSearchService,
+        vehicleCache,
+        Optional.empty(),
+        Optional.empty(),
+        new SimpleMeterRegistry()
+      );
     verify(vehicleCache).addListener(handler);
   }
 
@@ -108,8 +118,14 @@ class VehicleSubscriptionHandlerTest {
     );
 
     // Mock the geo search service
-    when(geoSearchService.getVehiclesWithinRange(rangeParams, filterParams))
-      .thenReturn(vehicles);
+    when(
+      geoSearchService.getVehicleChunksWithinRange(
+        rangeParams,
+        filterParams,
+        EntitySubscriptionHandler.SNAPSHOT_CHUNK_SIZE
+      )
+    )
+      .thenReturn(Stream.of(vehicles));
 
     // Mock the filter to accept all updates using lenient to avoid UnnecessaryStubbingException
     lenient().when(filter.test(any())).thenReturn(true);
@@ -171,8 +187,14 @@ class VehicleSubscriptionHandlerTest {
     );
 
     // Mock the geo search service
-    when(geoSearchService.getVehiclesInBoundingBox(bboxParams, filterParams))
-      .thenReturn(vehicles);
+    when(
+      geoSearchService.getVehicleChunksInBoundingBox(
+        bboxParams,
+        filterParams,
+        EntitySubscriptionHandler.SNAPSHOT_CHUNK_SIZE
+      )
+    )
+      .thenReturn(Stream.of(vehicles));
 
     // Mock the filter to accept all updates using lenient to avoid UnnecessaryStubbingException
     lenient().when(filter.test(any())).thenReturn(true);
@@ -230,8 +252,14 @@ class VehicleSubscriptionHandlerTest {
     List<Vehicle> initialVehicles = Arrays.asList(createVehicle("initial", 59.5, 10.5));
 
     // Mock the geo search service
-    when(geoSearchService.getVehiclesInBoundingBox(bboxParams, filterParams))
-      .thenReturn(initialVehicles);
+    when(
+      geoSearchService.getVehicleChunksInBoundingBox(
+        bboxParams,
+        filterParams,
+        EntitySubscriptionHandler.SNAPSHOT_CHUNK_SIZE
+      )
+    )
+      .thenReturn(Stream.of(initialVehicles));
 
     // Mock the filter to accept all updates using lenient to avoid UnnecessaryStubbingException
     lenient().when(filter.test(any())).thenReturn(true);
@@ -300,8 +328,14 @@ class VehicleSubscriptionHandlerTest {
     List<Vehicle> initialVehicles = Arrays.asList(createVehicle("initial", 59.5, 10.5));
 
     // Mock the geo search service
-    when(geoSearchService.getVehiclesInBoundingBox(bboxParams, filterParams))
-      .thenReturn(initialVehicles);
+    when(
+      geoSearchService.getVehicleChunksInBoundingBox(
+        bboxParams,
+        filterParams,
+        EntitySubscriptionHandler.SNAPSHOT_CHUNK_SIZE
+      )
+    )
+      .thenReturn(Stream.of(initialVehicles));
 
     // Mock the filter to accept all updates using lenient to avoid UnnecessaryStubbingException
     lenient().when(filter.test(any())).thenReturn(true);
@@ -410,8 +444,14 @@ class VehicleSubscriptionHandlerTest {
     List<Vehicle> initialVehicles = Arrays.asList(createVehicle("initial", 59.5, 10.5));
 
     // Mock the geo search service
-    when(geoSearchService.getVehiclesInBoundingBox(bboxParams, filterParams))
-      .thenReturn(initialVehicles);
+    when(
+      geoSearchService.getVehicleChunksInBoundingBox(
+        bboxParams,
+        filterParams,
+        EntitySubscriptionHandler.SNAPSHOT_CHUNK_SIZE
+      )
+    )
+      .thenReturn(Stream.of(initialVehicles));
 
     // Mock the filter to accept all updates using lenient to avoid UnnecessaryStubbingException
     lenient().when(filter.test(any())).thenReturn(true);
@@ -475,8 +515,14 @@ class VehicleSubscriptionHandlerTest {
     }
 
     // Mock the geo search service
-    when(geoSearchService.getVehiclesInBoundingBox(bboxParams, filterParams))
-      .thenReturn(vehicles);
+    when(
+      geoSearchService.getVehicleChunksInBoundingBox(
+        bboxParams,
+        filterParams,
+        EntitySubscriptionHandler.SNAPSHOT_CHUNK_SIZE
+      )
+    )
+      .thenReturn(Stream.of(vehicles));
 
     // Mock the filter to accept all updates using lenient to avoid UnnecessaryStubbingException
     lenient().when(filter.test(any())).thenReturn(true);
@@ -0,0 +1,52 @@
+package org.entur.lamassu.graphql.validation;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import graphql.GraphqlErrorException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import org.entur.lamassu.graphql.query.QueryCursor;
+import org.entur.lamassu.service.FeedProviderService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class QueryParameterValidatorTest {
+
+  @Mock
+  private FeedProviderService feedProviderService;
+
+  @Test
+  void testCursorOfPreviousPageIsValid() {
+    var validator = new QueryParameterValidator(feedProviderService);
+
+    assertDoesNotThrow(() -> validator.validateCursor(null));
+    assertDoesNotThrow(() -> validator.validateCursor(QueryCursor.encode(20)));
+    assertEquals(20, QueryCursor.decode(QueryCursor.encode(20)));
+  }
+
+  @Test
+  void testInvalidCursorIsRejected() {
+    var validator = new QueryParameterValidator(feedProviderService);
+
+    assertThrows(GraphqlErrorException.class, () -> validator.validateCursor("!invalid"));
+    assertThrows(
+      GraphqlErrorException.class,
+      () -> validator.validateCursor(encoded("something else"))
+    );
+    assertThrows(
+      GraphqlErrorException.class,
+      () -> validator.validateCursor(encoded("offset:-1"))
+    );
+  }
+
+  private static String encoded(String value) {
+    return Base64
+      .getUrlEncoder()
+      .encodeToString(value.getBytes(StandardCharsets.UTF_8));
+  }
+}
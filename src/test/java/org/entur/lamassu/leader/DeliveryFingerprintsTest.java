@@ -0,0 +1,282 @@
+package org.entur.lamassu.leader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import org.entur.gbfs.loader.v3.GbfsV3Delivery;
+import org.entur.lamassu.leader.feedcachesupdater.FeedBodySerializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mobilitydata.gbfs.v3_0.system_information.GBFSSystemInformation;
+import org.mobilitydata.gbfs.v3_0.vehicle_status.GBFSData;
+import org.mobilitydata.gbfs.v3_0.vehicle_status.GBFSVehicle;
+import org.mobilitydata.gbfs.v3_0.vehicle_status.GBFSVehicleStatus;
+
+/**
+ * Unit tests for the DeliveryFingerprints class.
+ */
+class DeliveryFingerprintsTest {
+
+  private static final String SYSTEM_ID = "test-system-id";
+  private static final Instant NOW = Instant.parse("2025-01-01T12:00:00Z");
+
+  private DeliveryFingerprints deliveryFingerprints;
+
+  @BeforeEach
+  void setUp() {
+    deliveryFingerprints = new DeliveryFingerprints(Duration.ofMinutes(30));
+  }
+
+  @Test
+  void testFirstDeliveryIsNotUnchanged() {
+    var comparison = deliveryFingerprints.compare(
+      SYSTEM_ID,
+      DeliveryFingerprints.of(delivery(1000, "vehicle-1")),
+      NOW
+    );
+
+    assertFalse(comparison.unchanged());
+    assertEquals(2, comparison.fingerprints().size());
+    assertEquals(0, comparison.unchangedFiles().size());
+  }
+
+  @Test
+  void testFileIsOnlyDigestedWhenLastUpdatedIsUnchanged() {
+    process(delivery(1000, "vehicle-1"), NOW);
+
+    var comparison = deliveryFingerprints.compare(
+      SYSTEM_ID,
+      DeliveryFingerprints.of(delivery(1010, "vehicle-1")),
+      NOW.plusSeconds(10)
+    );
+
+    assertNull(comparison.fingerprints().get("vehicle_status").contentHash());
+    assertNotNull(comparison.fingerprints().get("system_information").contentHash());
+  }
+
+  @Test
+  void testFileIsProcessedTheFirstTimeItsLastUpdatedRepeats() {
+    process(delivery(1000, "vehicle-1"), NOW);
+
+    var comparison = deliveryFingerprints.compare(
+      SYSTEM_ID,
+      DeliveryFingerprints.of(delivery(1000, "vehicle-1")),
+      NOW.plusSeconds(10)
+    );
+
+    assertFalse(comparison.unchanged());
+    assertEquals(0, comparison.unchangedFiles().size());
+  }
+
+  @Test
+  void testIdenticalDeliveryIsUnchanged() {
+    process(delivery(1000, "vehicle-1"), NOW);
+    process(delivery(1000, "vehicle-1"), NOW.plusSeconds(10));
+
+    var comparison = deliveryFingerprints.compare(
+      SYSTEM_ID,
+      DeliveryFingerprints.of(delivery(1000, "vehicle-1")),
+      NOW.plusSeconds(20)
+    );
+
+    assertTrue(comparison.unchanged());
+    assertEquals(2, comparison.unchangedFiles().size());
+  }
+
+  @Test
+  void testDeliveryWithNewLastUpdatedIsChanged() {
+    process(delivery(1000, "vehicle-1"), NOW);
+    process(delivery(1000, "vehicle-1"), NOW.plusSeconds(10));
+
+    var comparison = deliveryFingerprints.compare(
+      SYSTEM_ID,
+      DeliveryFingerprints.of(delivery(1010, "vehicle-1")),
+      NOW.plusSeconds(20)
+    );
+
+    assertFalse(comparison.unchanged());
+    assertEquals(Set.of("system_information"), comparison.unchangedFiles());
+  }
+
+  @Test
+  void testDeliveryWithNewContentIsChanged() {
+    process(delivery(1000, "vehicle-1"), NOW);
+    process(delivery(1000, "vehicle-1"), NOW.plusSeconds(10));
+
+    var comparison = deliveryFingerprints.compare(
+      SYSTEM_ID,
+      DeliveryFingerprints.of(delivery(1000, "vehicle-2")),
+      NOW.plusSeconds(20)
+    );
+
+    assertFalse(comparison.unchanged());
+    assertEquals(Set.of("system_information"), comparison.unchangedFiles());
+  }
+
+  @Test
+  void testUnchangedIndependentFilesOfChangedDeliveryAreSkipped() {
+    process(delivery(1000, "vehicle-1"), NOW);
+    process(delivery(1010, "vehicle-1"), NOW.plusSeconds(10));
+
+    var comparison = deliveryFingerprints.compare(
+      SYSTEM_ID,
+      DeliveryFingerprints.of(delivery(1020, "vehicle-1")),
+      NOW.plusSeconds(20)
+    );
+
+    assertFalse(comparison.unchanged());
+    assertEquals(Set.of("system_information"), comparison.skippedFiles());
+  }
+
+  @Test
+  void testUnchangedStatusFileIsNotSkippedInChangedDelivery() {
+    process(delivery(1000, "vehicle-1"), NOW);
+    process(delivery(1000, "vehicle-1"), NOW.plusSeconds(10));
+    var changedSystemInformation = delivery(1000, "vehicle-1");
+    changedSystemInformation.systemInformation().setLastUpdated(new Date(600_000));
+
+    var comparison = deliveryFingerprints.compare(
+      SYSTEM_ID,
+      DeliveryFingerprints.of(changedSystemInformation),
+      NOW.plusSeconds(20)
+    );
+
+    assertEquals(Set.of("vehicle_status"), comparison.unchangedFiles());
+    assertTrue(comparison.skippedFiles().isEmpty());
+  }
+
+  @Test
+  void testSkippedFileIsProcessedAfterMaximumAge() {
+    process(delivery(1000, "vehicle-1"), NOW);
+    process(delivery(1010, "vehicle-1"), NOW.plusSeconds(10));
+    process(delivery(1020, "vehicle-1"), NOW.plus(Duration.ofMinutes(20)));
+
+    var comparison = deliveryFingerprints.compare(
+      SYSTEM_ID,
+      DeliveryFingerprints.of(delivery(1030, "vehicle-1")),
+      NOW.plus(Duration.ofMinutes(31))
+    );
+
+    assertTrue(comparison.skippedFiles().isEmpty());
+  }
+
+  @Test
+  void testDeliveryWithMissingFileIsChanged() {
+    process(delivery(1000, "vehicle-1"), NOW);
+    process(delivery(1000, "vehicle-1"), NOW.plusSeconds(10));
+    var withoutVehicleStatus = new GbfsV3Delivery(
+      null,
+      null,
+      systemInformation(),
+      null,
+      null,
+      null,
+      null,
+      null,
+      null,
+      null,
+      null,
+      null
+    );
+
+    var comparison = deliveryFingerprints.compare(
+      SYSTEM_ID,
+      DeliveryFingerprints.of(withoutVehicleStatus),
+      NOW.plusSeconds(20)
+    );
+
+    assertFalse(comparison.unchanged());
+  }
+
+  @Test
+  void testUnchangedDeliveryIsProcessedAfterMaximumAge() {
+    process(delivery(1000, "vehicle-1"), NOW);
+    process(delivery(1000, "vehicle-1"), NOW.plusSeconds(10));
+
+    var comparison = deliveryFingerprints.compare(
+      SYSTEM_ID,
+      DeliveryFingerprints.of(delivery(1000, "vehicle-1")),
+      NOW.plusSeconds(10).plus(Duration.ofMinutes(30))
+    );
+
+    assertFalse(comparison.unchanged());
+  }
+
+  @Test
+  void testRemovedSystemIsNotUnchanged() {
+    process(delivery(1000, "vehicle-1"), NOW);
+    process(delivery(1000, "vehicle-1"), NOW.plusSeconds(10));
+    deliveryFingerprints.remove(SYSTEM_ID);
+
+    var comparison = deliveryFingerprints.compare(
+      SYSTEM_ID,
+      DeliveryFingerprints.of(delivery(1000, "vehicle-1")),
+      NOW.plusSeconds(20)
+    );
+
+    assertFalse(comparison.unchanged());
+  }
+
+  @Test
+  void testContentHashIsDigestOfFeedBody() {
+    var delivery = delivery(1000, "vehicle-1");
+    process(delivery, NOW);
+
+    var fingerprint = deliveryFingerprints
+      .compare(SYSTEM_ID, DeliveryFingerprints.of(delivery), NOW.plusSeconds(10))
+      .fingerprints()
+      .get("vehicle_status");
+    var body = new FeedBodySerializer().serialize(delivery.vehicleStatus());
+
+    assertEquals(body.getMetadata().getContentHash(), fingerprint.contentHash());
+  }
+
+  private void process(GbfsV3Delivery delivery, Instant now) {
+    var comparison = deliveryFingerprints.compare(
+      SYSTEM_ID,
+      DeliveryFingerprints.of(delivery),
+      now
+    );
+    deliveryFingerprints.processed(SYSTEM_ID, comparison, now);
+  }
+
+  private GbfsV3Delivery delivery(long lastUpdated, String vehicleId) {
+    var vehicle = new GBFSVehicle();
+    vehicle.setVehicleId(vehicleId);
+    var data = new GBFSData();
+    data.setVehicles(List.of(vehicle));
+    var vehicleStatus = new GBFSVehicleStatus();
+    vehicleStatus.setLastUpdated(new Date(lastUpdated * 1000));
+    vehicleStatus.setTtl(10);
+    vehicleStatus.setData(data);
+    return new GbfsV3Delivery(
+      null,
+      null,
+      systemInformation(),
+      null,
+      null,
+      null,
+      vehicleStatus,
+      null,
+      null,
+      null,
+      null,
+      null
+    );
+  }
+
+  private GBFSSystemInformation systemInformation() {
+    var systemInformation = new GBFSSystemInformation();
+    systemInformation.setLastUpdated(new Date(500_000));
+    systemInformation.setTtl(3600);
+    return systemInformation;
+  }
+}
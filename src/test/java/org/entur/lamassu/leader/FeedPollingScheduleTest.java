@@ -0,0 +1,136 @@
+package org.entur.lamassu.leader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Random;
+import org.entur.lamassu.model.provider.FeedProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the FeedPollingSchedule class.
+ */
+class FeedPollingScheduleTest {
+
+  private static final String SYSTEM_ID = "test-system-id";
+  private static final Instant NOW = Instant.parse("2025-01-01T12:00:00Z");
+
+  private FeedPollingSchedule schedule;
+  private FeedProvider feedProvider;
+
+  @BeforeEach
+  void setUp() {
+    schedule =
+      new FeedPollingSchedule(
+        Duration.ofSeconds(5),
+        Duration.ofMinutes(5),
+        Duration.ofSeconds(30),
+        0,
+        new Random()
+      );
+    feedProvider = new FeedProvider();
+    feedProvider.setSystemId(SYSTEM_ID);
+    schedule.add(feedProvider, NOW);
+  }
+
+  @Test
+  void testAddedFeedIsDueAfterDefaultInterval() {
+    assertTrue(schedule.poll(NOW.plusSeconds(29)).isEmpty());
+    assertEquals(1, schedule.poll(NOW.plusSeconds(30)).size());
+  }
+
+  @Test
+  void testDeliveredFeedIsDueWhenItExpires() {
+    schedule.delivered(SYSTEM_ID, NOW.plusSeconds(15), NOW);
+
+    assertTrue(schedule.poll(NOW.plusSeconds(14)).isEmpty());
+    var due = schedule.poll(NOW.plusSeconds(16));
+    assertEquals(1, due.size());
+    assertEquals(NOW.plusSeconds(15), due.get(0).dueAt());
+  }
+
+  @Test
+  void testIntervalIsClampedToMinimum() {
+    schedule.delivered(SYSTEM_ID, NOW.minusSeconds(10), NOW);
+
+    assertTrue(schedule.poll(NOW.plusSeconds(4)).isEmpty());
+    assertEquals(1, schedule.poll(NOW.plusSeconds(5)).size());
+  }
+
+  @Test
+  void testStaleFeedUsesDefaultInterval() {
+    schedule.delivered(SYSTEM_ID, NOW.minusSeconds(60), NOW);
+
+    assertTrue(schedule.poll(NOW.plusSeconds(29)).isEmpty());
+    assertEquals(1, schedule.poll(NOW.plusSeconds(30)).size());
+  }
+
+  @Test
+  void testFeedWithoutTtlUsesMinimumInterval() {
+    schedule.delivered(SYSTEM_ID, NOW, NOW);
+
+    assertTrue(schedule.poll(NOW.plusSeconds(4)).isEmpty());
+    assertEquals(1, schedule.poll(NOW.plusSeconds(5)).size());
+  }
+
+  @Test
+  void testIntervalIsClampedToMaximum() {
+    schedule.delivered(SYSTEM_ID, NOW.plus(Duration.ofHours(1)), NOW);
+
+    assertTrue(schedule.poll(NOW.plus(Duration.ofMinutes(5)).minusSeconds(1)).isEmpty());
+    assertEquals(1, schedule.poll(NOW.plus(Duration.ofMinutes(5))).size());
+  }
+
+  @Test
+  void testUnknownExpiryUsesDefaultInterval() {
+    schedule.delivered(SYSTEM_ID, null, NOW);
+
+    assertTrue(schedule.poll(NOW.plusSeconds(29)).isEmpty());
+    assertEquals(1, schedule.poll(NOW.plusSeconds(30)).size());
+  }
+
+  @Test
+  void testPolledFeedIsRetriedAfterDefaultInterval() {
+    var polledAt = NOW.plusSeconds(30);
+    assertEquals(1, schedule.poll(polledAt).size());
+
+    assertTrue(schedule.poll(polledAt.plusSeconds(29)).isEmpty());
+    assertEquals(1, schedule.poll(polledAt.plusSeconds(30)).size());
+  }
+
+  @Test
+  void testJitterOnlyDelaysDueTime() {
+    schedule =
+      new FeedPollingSchedule(
+        Duration.ofSeconds(5),
+        Duration.ofMinutes(5),
+        Duration.ofSeconds(30),
+        0.5,
+        new Random(1)
+      );
+    schedule.add(feedProvider, NOW);
+    schedule.delivered(SYSTEM_ID, NOW.plusSeconds(20), NOW);
+
+    assertTrue(schedule.poll(NOW.plusSeconds(19)).isEmpty());
+    assertEquals(1, schedule.poll(NOW.plusSeconds(30)).size());
+  }
+
+  @Test
+  void testRemovedFeedIsNotPolled() {
+    schedule.remove(SYSTEM_ID);
+
+    assertEquals(0, schedule.size());
+    assertTrue(schedule.poll(NOW.plus(Duration.ofHours(1))).isEmpty());
+  }
+
+  @Test
+  void testDeliveryOfRemovedFeedDoesNotScheduleIt() {
+    schedule.remove(SYSTEM_ID);
+    schedule.delivered(SYSTEM_ID, NOW.plusSeconds(15), NOW);
+
+    assertEquals(0, schedule.size());
+  }
+}
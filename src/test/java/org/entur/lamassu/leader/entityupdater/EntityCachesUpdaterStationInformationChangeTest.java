@@ -7,6 +7,7 @@ import java.util.Date;
 import java.util.List;
 import org.entur.gbfs.loader.v3.GbfsV3Delivery;
 import org.entur.lamassu.cache.StationSpatialIndex;
+import org.entur.lamassu.cache.impl.DirectCacheWriteBatch;
 import org.entur.lamassu.leader.GbfsUpdateContinuityTracker;
 import org.entur.lamassu.mapper.entitymapper.RentalUrisMapper;
 import org.entur.lamassu.mapper.entitymapper.StationMapper;
@@ -93,7 +94,9 @@ class EntityCachesUpdaterStationInformationChangeTest {
       spatialIndex,
       new StationMapper(new TranslationMapper(), new RentalUrisMapper()),
       metricsService,
-      new SpatialIndexIdGeneratorService(vehicleTypeCache)
+      new SpatialIndexIdGeneratorService(vehicleTypeCache),
+      vehicleTypeCache,
+      DirectCacheWriteBatch::new
     );
 
     var continuityTracker = new GbfsUpdateContinuityTracker(
@@ -14,10 +14,12 @@ import static org.mockito.Mockito.when;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import org.entur.lamassu.cache.EntityCache;
 import org.entur.lamassu.cache.StationSpatialIndex;
+import org.entur.lamassu.cache.impl.DirectCacheWriteBatch;
 import org.entur.lamassu.delta.DeltaType;
 import org.entur.lamassu.delta.GBFSEntityDelta;
 import org.entur.lamassu.delta.GBFSFileDelta;
@@ -77,7 +79,9 @@ class StationsUpdaterTest {
         spatialIndex,
         stationMapper,
         metricsService,
-        spatialIndexIdGeneratorService
+        spatialIndexIdGeneratorService,
+        vehicleTypeCache,
+        DirectCacheWriteBatch::new
       );
   }
 
@@ -125,7 +129,8 @@ class StationsUpdaterTest {
     stationInformationFeed.setData(data);
 
     // Mock behavior
-    when(stationCache.get(stationId)).thenReturn(currentStation);
+    when(stationCache.getAllAsMap(Set.of(stationId)))
+      .thenReturn(Map.of(stationId, currentStation));
 
     var delta = new GBFSFileDelta<org.mobilitydata.gbfs.v3_0.station_status.GBFSStation>(
       1000L,
@@ -140,7 +145,8 @@ class StationsUpdaterTest {
     // Then
     verify(spatialIndex).addAll(any());
     verify(spatialIndex).removeAll(any());
-    verify(stationCache).updateAll(any());
+    verify(stationCache).updateAllStatus(any());
+    verify(stationCache, never()).updateAll(anyMap());
     verify(stationCache, never()).removeAll(anySet());
   }
 
@@ -160,7 +166,8 @@ class StationsUpdaterTest {
     currentStation.setLon(10.7);
 
     // Mock behavior
-    when(stationCache.get(stationId)).thenReturn(currentStation);
+    when(stationCache.getAllAsMap(Set.of(stationId)))
+      .thenReturn(Map.of(stationId, currentStation));
 
     var delta = new GBFSFileDelta<org.mobilitydata.gbfs.v3_0.station_status.GBFSStation>(
       1000L,
@@ -217,9 +224,6 @@ class StationsUpdaterTest {
     data.setStations(List.of(stationInfo));
     stationInformationFeed.setData(data);
 
-    // Mock behavior
-    when(stationCache.get(stationId)).thenReturn(null);
-
     var delta = new GBFSFileDelta<>(
       1000L,
       2000L,
@@ -252,7 +256,8 @@ class StationsUpdaterTest {
     stationStatus.setNumVehiclesAvailable(5);
 
     // Mock behavior
-    when(stationCache.get(stationId)).thenReturn(currentStation);
+    when(stationCache.getAllAsMap(Set.of(stationId)))
+      .thenReturn(Map.of(stationId, currentStation));
 
     var delta = new GBFSFileDelta<>(
       1000L,
@@ -285,9 +290,6 @@ class StationsUpdaterTest {
     stationStatus.setStationId(stationId);
     stationStatus.setNumVehiclesAvailable(5);
 
-    // Mock behavior
-    when(stationCache.get(stationId)).thenReturn(null);
-
     var delta = new GBFSFileDelta<>(
       1000L,
       2000L,
@@ -320,7 +322,7 @@ class StationsUpdaterTest {
     stationStatus.setNumVehiclesAvailable(5);
 
     // Mock behavior - station is not in the entity cache
-    when(stationCache.get(stationId)).thenReturn(null);
+    when(stationCache.getAllAsMap(Set.of(stationId))).thenReturn(Map.of());
 
     var delta = new GBFSFileDelta<>(
       1000L,
@@ -336,6 +338,7 @@ class StationsUpdaterTest {
     // continuity must be broken
     assertFalse(fullyApplied);
     verify(stationCache, never()).updateAll(anyMap());
+    verify(stationCache, never()).updateAllStatus(anyMap());
   }
 
   @Test
@@ -410,9 +413,11 @@ class StationsUpdaterTest {
     stationInformationFeed.setData(data);
 
     // Mock behavior
-    when(stationCache.get(stationId)).thenReturn(currentStation);
+    when(stationCache.getAllAsMap(Set.of(stationId)))
+      .thenReturn(Map.of(stationId, currentStation));
+    when(vehicleTypeCache.getAllAsMap(Set.of(bikeTypeId, scooterTypeId)))
+      .thenReturn(Map.of(bikeTypeId, bikeType, scooterTypeId, scooterType));
     when(vehicleTypeCache.getAll(Set.of(bikeTypeId))).thenReturn(List.of(bikeType));
-    when(vehicleTypeCache.getAll(Set.of(scooterTypeId))).thenReturn(List.of(scooterType));
 
     var delta = new GBFSFileDelta<>(
       1000L,
@@ -433,7 +438,7 @@ class StationsUpdaterTest {
     // Then
     verify(spatialIndex).removeAll(Set.of(oldSpatialIndexId));
     verify(spatialIndex).addAll(any());
-    verify(stationCache).updateAll(any());
+    verify(stationCache).updateAllStatus(any());
     verify(stationCache, never()).removeAll(anySet());
   }
 
@@ -452,11 +457,10 @@ class StationsUpdaterTest {
     station2.setId("station-2");
     station2.setSystemId("system-1");
 
-    var station3 = new Station();
-    station3.setId("station-3");
-    station3.setSystemId("system-2"); // Different system
-
-    when(stationCache.getAll()).thenReturn(List.of(station1, station2, station3));
+    when(stationCache.getKeysBySystem("system-1"))
+      .thenReturn(Set.of("station-1", "station-2"));
+    when(stationCache.getAll(Set.of("station-1", "station-2")))
+      .thenReturn(List.of(station1, station2));
 
     stationsUpdater =
       new StationsUpdater(
@@ -464,7 +468,9 @@ class StationsUpdaterTest {
         spatialIndex,
         stationMapper,
         metricsService,
-        spatialIndexIdGeneratorService
+        spatialIndexIdGeneratorService,
+        vehicleTypeCache,
+        DirectCacheWriteBatch::new
       );
 
     var delta = new GBFSFileDelta<org.mobilitydata.gbfs.v3_0.station_status.GBFSStation>(
@@ -546,8 +552,10 @@ class StationsUpdaterTest {
     stationInformationFeed.setData(data);
 
     // Mock behavior
-    when(stationCache.get(stationId)).thenReturn(currentStation);
-    when(vehicleTypeCache.getAll(Set.of(bikeTypeId))).thenReturn(List.of(bikeType));
+    when(stationCache.getAllAsMap(Set.of(stationId)))
+      .thenReturn(Map.of(stationId, currentStation));
+    when(vehicleTypeCache.getAllAsMap(Set.of(bikeTypeId)))
+      .thenReturn(Map.of(bikeTypeId, bikeType));
 
     var delta = new GBFSFileDelta<org.mobilitydata.gbfs.v3_0.station_status.GBFSStation>(
       1000L,
@@ -562,7 +570,7 @@ class StationsUpdaterTest {
     // Then
     verify(spatialIndex).addAll(any());
     verify(spatialIndex).removeAll(any());
-    verify(stationCache).updateAll(any());
+    verify(stationCache).updateAllStatus(any());
     verify(stationCache, never()).removeAll(anySet());
   }
 }
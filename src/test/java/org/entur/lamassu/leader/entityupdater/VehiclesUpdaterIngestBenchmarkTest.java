@@ -0,0 +1,364 @@
+package org.entur.lamassu.leader.entityupdater;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.entur.lamassu.TestLamassuApplication;
+import org.entur.lamassu.cache.CacheWriteBatchFactory;
+import org.entur.lamassu.cache.EntityCache;
+import org.entur.lamassu.cache.EntityListener;
+import org.entur.lamassu.cache.VehicleSpatialIndex;
+import org.entur.lamassu.delta.DeltaType;
+import org.entur.lamassu.delta.GBFSEntityDelta;
+import org.entur.lamassu.delta.GBFSFileDelta;
+import org.entur.lamassu.mapper.entitymapper.VehicleMapper;
+import org.entur.lamassu.metrics.MetricsService;
+import org.entur.lamassu.model.entities.Entity;
+import org.entur.lamassu.model.entities.FormFactor;
+import org.entur.lamassu.model.entities.PricingPlan;
+import org.entur.lamassu.model.entities.PropulsionType;
+import org.entur.lamassu.model.entities.Station;
+import org.entur.lamassu.model.entities.Vehicle;
+import org.entur.lamassu.model.entities.VehicleType;
+import org.entur.lamassu.model.provider.FeedProvider;
+import org.entur.lamassu.service.SpatialIndexIdGeneratorService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mobilitydata.gbfs.v3_0.vehicle_status.GBFSVehicle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+/**
+ * Ingests vehicle status deltas into embedded Redis, checking that the number of reads
+ * sent to the entity caches per update does not grow with the number of changed
+ * vehicles. The benchmark reporting the time per update is excluded from the default
+ * build, and run with the benchmark profile.
+ */
+@ActiveProfiles({ "test", "leader" })
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = TestLamassuApplication.class)
+class VehiclesUpdaterIngestBenchmarkTest {
+
+  private static final Logger logger = LoggerFactory.getLogger(
+    VehiclesUpdaterIngestBenchmarkTest.class
+  );
+
+  private static final int VEHICLES = 5_000;
+  private static final int UPDATES = 10;
+  private static final int CHANGED = (int) (VEHICLES * 0.3);
+
+  // Vehicles, stations, pricing plans and vehicle types, and the vehicle counts
+  private static final int MAX_READS_PER_UPDATE = 6;
+
+  private static final String SYSTEM_ID = "TST:System:ingest";
+  private static final String VEHICLE_TYPE_ID = "TST:VehicleType:ingest";
+  private static final String PRICING_PLAN_ID = "TST:PricingPlan:ingest";
+
+  @Autowired
+  private EntityCache<Vehicle> vehicleCache;
+
+  @Autowired
+  private EntityCache<Station> stationCache;
+
+  @Autowired
+  private EntityCache<VehicleType> vehicleTypeCache;
+
+  @Autowired
+  private EntityCache<PricingPlan> pricingPlanCache;
+
+  @Autowired
+  private VehicleSpatialIndex vehicleSpatialIndex;
+
+  @Autowired
+  private VehicleMapper vehicleMapper;
+
+  @Autowired
+  private MetricsService metricsService;
+
+  @Autowired
+  private SpatialIndexIdGeneratorService spatialIndexIdGeneratorService;
+
+  @Autowired
+  private VehicleFilter vehicleFilter;
+
+  @Autowired
+  private CacheWriteBatchFactory cacheWriteBatchFactory;
+
+  private final FeedProvider feedProvider = aProvider();
+
+  private CountingEntityCache<Vehicle> countingVehicleCache;
+  private CountingEntityCache<Station> countingStationCache;
+  private CountingEntityCache<VehicleType> countingVehicleTypeCache;
+  private CountingEntityCache<PricingPlan> countingPricingPlanCache;
+  private VehiclesUpdater vehiclesUpdater;
+
+  @BeforeEach
+  void setup() {
+    var vehicleType = new VehicleType();
+    vehicleType.setId(VEHICLE_TYPE_ID);
+    vehicleType.setFormFactor(FormFactor.SCOOTER);
+    vehicleType.setPropulsionType(PropulsionType.ELECTRIC);
+    vehicleTypeCache.updateAll(Map.of(VEHICLE_TYPE_ID, vehicleType));
+
+    var pricingPlan = new PricingPlan();
+    pricingPlan.setId(PRICING_PLAN_ID);
+    pricingPlanCache.updateAll(Map.of(PRICING_PLAN_ID, pricingPlan));
+
+    countingVehicleCache = new CountingEntityCache<>(vehicleCache);
+    countingStationCache = new CountingEntityCache<>(stationCache);
+    countingVehicleTypeCache = new CountingEntityCache<>(vehicleTypeCache);
+    countingPricingPlanCache = new CountingEntityCache<>(pricingPlanCache);
+
+    vehiclesUpdater =
+      new VehiclesUpdater(
+        countingVehicleCache,
+        vehicleSpatialIndex,
+        vehicleMapper,
+        metricsService,
+        spatialIndexIdGeneratorService,
+        vehicleFilter,
+        countingStationCache,
+        countingVehicleTypeCache,
+        countingPricingPlanCache,
+        cacheWriteBatchFactory
+      );
+  }
+
+  @AfterEach
+  void cleanup() {
+    vehiclesUpdater.clearExistingEntities(feedProvider);
+    vehicleTypeCache.removeAll(Set.of(VEHICLE_TYPE_ID));
+    pricingPlanCache.removeAll(Set.of(PRICING_PLAN_ID));
+  }
+
+  @Test
+  void testReadsPerUpdateDoNotGrowWithChurn() {
+    ingestVehicles();
+
+    for (int update = 1; update <= UPDATES; update++) {
+      resetCounts();
+      vehiclesUpdater.update(feedProvider, updateDelta(update));
+
+      long readsInUpdate = countReads();
+      assertTrue(
+        readsInUpdate <= MAX_READS_PER_UPDATE,
+        "Expected at most " +
+        MAX_READS_PER_UPDATE +
+        " reads per update, was " +
+        readsInUpdate
+      );
+    }
+  }
+
+  @Test
+  @Tag("benchmark")
+  void benchmarkUpdates() {
+    ingestVehicles();
+
+    long reads = 0;
+    long elapsed = 0;
+    for (int update = 1; update <= UPDATES; update++) {
+      var delta = updateDelta(update);
+      resetCounts();
+      long start = System.nanoTime();
+      vehiclesUpdater.update(feedProvider, delta);
+      elapsed += System.nanoTime() - start;
+      reads += countReads();
+    }
+
+    logger.info(
+      "Ingested {} updates of {} changed vehicles: {} entity cache reads per update, {} ms per update",
+      UPDATES,
+      CHANGED,
+      (double) reads / UPDATES,
+      TimeUnit.NANOSECONDS.toMillis(elapsed) / UPDATES
+    );
+  }
+
+  private void ingestVehicles() {
+    List<GBFSEntityDelta<GBFSVehicle>> created = new ArrayList<>();
+    for (int i = 0; i < VEHICLES; i++) {
+      created.add(
+        new GBFSEntityDelta<>(vehicleId(i), DeltaType.CREATE, aVehicle(i, 0))
+      );
+    }
+    vehiclesUpdater.update(feedProvider, delta(0, created));
+    assertEquals(
+      VEHICLES,
+      vehicleCache.getAllAsMap(allVehicleIds()).size(),
+      "All vehicles should have been ingested"
+    );
+  }
+
+  private GBFSFileDelta<GBFSVehicle> updateDelta(int update) {
+    List<GBFSEntityDelta<GBFSVehicle>> updated = new ArrayList<>();
+    for (int i = 0; i < CHANGED; i++) {
+      int vehicle = (update * CHANGED + i) % VEHICLES;
+      updated.add(
+        new GBFSEntityDelta<>(
+          vehicleId(vehicle),
+          DeltaType.UPDATE,
+          aVehicle(vehicle, update)
+        )
+      );
+    }
+    return delta(update, updated);
+  }
+
+  private GBFSFileDelta<GBFSVehicle> delta(
+    int update,
+    List<GBFSEntityDelta<GBFSVehicle>> entityDelta
+  ) {
+    return new GBFSFileDelta<>(
+      (update - 1) * 30000L,
+      update * 30000L,
+      "vehicle_status",
+      entityDelta
+    );
+  }
+
+  private Set<String> allVehicleIds() {
+    return IntStream
+      .range(0, VEHICLES)
+      .mapToObj(this::vehicleId)
+      .collect(Collectors.toSet());
+  }
+
+  private String vehicleId(int i) {
+    return "TST:Vehicle:ingest" + i;
+  }
+
+  private GBFSVehicle aVehicle(int i, int update) {
+    var vehicle = new GBFSVehicle();
+    vehicle.setVehicleId(vehicleId(i));
+    vehicle.setLat(59.9 + (i % 100) * 0.001 + update * 0.0001);
+    vehicle.setLon(10.7 + (i / 100) * 0.001);
+    vehicle.setIsReserved(false);
+    vehicle.setIsDisabled(false);
+    vehicle.setVehicleTypeId(VEHICLE_TYPE_ID);
+    vehicle.setPricingPlanId(PRICING_PLAN_ID);
+    return vehicle;
+  }
+
+  private FeedProvider aProvider() {
+    var provider = new FeedProvider();
+    provider.setCodespace("TST");
+    provider.setSystemId(SYSTEM_ID);
+    provider.setOperatorId("TST:Operator:ingest");
+    return provider;
+  }
+
+  private void resetCounts() {
+    countingVehicleCache.reads = 0;
+    countingStationCache.reads = 0;
+    countingVehicleTypeCache.reads = 0;
+    countingPricingPlanCache.reads = 0;
+  }
+
+  private long countReads() {
+    return (
+      countingVehicleCache.reads +
+      countingStationCache.reads +
+      countingVehicleTypeCache.reads +
+      countingPricingPlanCache.reads
+    );
+  }
+
+  /**
+   * Counts the reads sent to the wrapped cache, each of them being one round trip to
+   * Redis.
+   */
+  private static class CountingEntityCache<T extends Entity> implements EntityCache<T> {
+
+    private final EntityCache<T> delegate;
+    private long reads = 0;
+
+    CountingEntityCache(EntityCache<T> delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public List<T> getAll(Set<String> keys) {
+      reads++;
+      return delegate.getAll(keys);
+    }
+
+    @Override
+    public List<T> getAll() {
+      reads++;
+      return delegate.getAll();
+    }
+
+    @Override
+    public Map<String, T> getAllAsMap(Set<String> keys) {
+      reads++;
+      return delegate.getAllAsMap(keys);
+    }
+
+    @Override
+    public T get(String key) {
+      reads++;
+      return delegate.get(key);
+    }
+
+    @Override
+    public boolean hasKey(String key) {
+      reads++;
+      return delegate.hasKey(key);
+    }
+
+    @Override
+    public int count() {
+      reads++;
+      return delegate.count();
+    }
+
+    @Override
+    public Set<String> getKeysBySystem(String systemId) {
+      reads++;
+      return delegate.getKeysBySystem(systemId);
+    }
+
+    @Override
+    public int countBySystem(String systemId) {
+      reads++;
+      return delegate.countBySystem(systemId);
+    }
+
+    @Override
+    public void updateAll(Map<String, T> entities) {
+      delegate.updateAll(entities);
+    }
+
+    @Override
+    public void updateAll(Map<String, T> entities, int ttl, TimeUnit timeUnit) {
+      delegate.updateAll(entities, ttl, timeUnit);
+    }
+
+    @Override
+    public void removeAll(Set<String> keys) {
+      delegate.removeAll(keys);
+    }
+
+    @Override
+    public void addListener(EntityListener<T> listener) {
+      delegate.addListener(listener);
+    }
+  }
+}
@@ -5,6 +5,7 @@ import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.anySet;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -17,6 +18,7 @@ import java.util.concurrent.TimeUnit;
 import org.entur.lamassu.cache.EntityCache;
 import org.entur.lamassu.cache.VehicleSpatialIndex;
 import org.entur.lamassu.cache.VehicleSpatialIndexId;
+import org.entur.lamassu.cache.impl.DirectCacheWriteBatch;
 import org.entur.lamassu.delta.DeltaType;
 import org.entur.lamassu.delta.GBFSEntityDelta;
 import org.entur.lamassu.delta.GBFSFileDelta;
@@ -25,6 +27,7 @@ import org.entur.lamassu.mapper.entitymapper.VehicleMapper;
 import org.entur.lamassu.metrics.MetricsService;
 import org.entur.lamassu.model.entities.FormFactor;
 import org.entur.lamassu.model.entities.LocationEntity;
+import org.entur.lamassu.model.entities.PricingPlan;
 import org.entur.lamassu.model.entities.PropulsionType;
 import org.entur.lamassu.model.entities.Station;
 import org.entur.lamassu.model.entities.Vehicle;
@@ -58,6 +61,9 @@ class VehiclesUpdaterTest {
   @Mock
   private EntityCache<Station> stationCache;
 
+  @Mock
+  private EntityCache<PricingPlan> pricingPlanCache;
+
   @Mock
   private VehicleFilter vehicleFilter;
 
@@ -82,7 +88,10 @@ class VehiclesUpdaterTest {
         metricsService,
         spatialIndexIdGeneratorService,
         vehicleFilter,
-        stationCache
+        stationCache,
+        vehicleTypeCache,
+        pricingPlanCache,
+        DirectCacheWriteBatch::new
       );
   }
 
@@ -120,8 +129,10 @@ class VehiclesUpdaterTest {
     gbfsVehicle.setIsDisabled(false);
 
     // Mock behavior
-    when(vehicleCache.get(vehicleId)).thenReturn(currentVehicle);
-    when(vehicleTypeCache.get(bikeTypeId)).thenReturn(bikeType);
+    when(vehicleCache.getAllAsMap(Set.of(vehicleId)))
+      .thenReturn(Map.of(vehicleId, currentVehicle));
+    when(vehicleTypeCache.getAllAsMap(Set.of(bikeTypeId)))
+      .thenReturn(Map.of(bikeTypeId, bikeType));
 
     var delta = new GBFSFileDelta<GBFSVehicle>(
       30000L,
@@ -179,9 +190,12 @@ class VehiclesUpdaterTest {
     station.setLon(stationLon);
 
     // Mock behavior
-    when(vehicleCache.get(vehicleId)).thenReturn(currentVehicle);
-    when(vehicleTypeCache.get(bikeTypeId)).thenReturn(bikeType);
-    when(stationCache.get(stationId)).thenReturn(station);
+    when(vehicleCache.getAllAsMap(Set.of(vehicleId)))
+      .thenReturn(Map.of(vehicleId, currentVehicle));
+    when(vehicleTypeCache.getAllAsMap(Set.of(bikeTypeId)))
+      .thenReturn(Map.of(bikeTypeId, bikeType));
+    when(stationCache.getAllAsMap(Set.of(stationId)))
+      .thenReturn(Map.of(stationId, station));
 
     var delta = new GBFSFileDelta<GBFSVehicle>(
       30000L,
@@ -230,7 +244,10 @@ class VehiclesUpdaterTest {
     currentVehicle.setDisabled(false);
 
     // Mock behavior
-    when(vehicleCache.get(vehicleId)).thenReturn(currentVehicle);
+    when(vehicleCache.getAllAsMap(Set.of(vehicleId)))
+      .thenReturn(Map.of(vehicleId, currentVehicle));
+    when(vehicleTypeCache.getAllAsMap(Set.of(bikeTypeId)))
+      .thenReturn(Map.of(bikeTypeId, bikeType));
     when(vehicleTypeCache.get(bikeTypeId)).thenReturn(bikeType);
 
     var delta = new GBFSFileDelta<GBFSVehicle>(
@@ -281,8 +298,9 @@ class VehiclesUpdaterTest {
     gbfsVehicle.setIsDisabled(false);
 
     // Mock behavior
-    when(vehicleTypeCache.get(bikeTypeId)).thenReturn(bikeType);
-    when(vehicleFilter.test(gbfsVehicle)).thenReturn(true);
+    when(vehicleTypeCache.getAllAsMap(Set.of(bikeTypeId)))
+      .thenReturn(Map.of(bikeTypeId, bikeType));
+    when(vehicleFilter.test(eq(gbfsVehicle), any(), any(), any())).thenReturn(true);
 
     var delta = new GBFSFileDelta<GBFSVehicle>(
       1000L,
@@ -322,7 +340,7 @@ class VehiclesUpdaterTest {
     gbfsVehicle.setIsDisabled(false);
 
     // Mock behavior
-    when(vehicleCache.get(vehicleId)).thenReturn(null);
+    when(vehicleCache.getAllAsMap(Set.of(vehicleId))).thenReturn(Map.of());
 
     var delta = new GBFSFileDelta<GBFSVehicle>(
       1000L,
@@ -360,17 +378,16 @@ class VehiclesUpdaterTest {
     vehicle2.setReserved(false);
     vehicle2.setDisabled(false);
 
-    var vehicle3 = new Vehicle();
-    vehicle3.setId("vehicle-3");
-    vehicle3.setSystemId("system-2"); // Different system
-    vehicle3.setVehicleTypeId("type-1");
-
     var vehicleType = new VehicleType();
     vehicleType.setFormFactor(FormFactor.BICYCLE);
     vehicleType.setPropulsionType(PropulsionType.HUMAN);
 
-    when(vehicleTypeCache.get("type-1")).thenReturn(vehicleType);
-    when(vehicleCache.getAll()).thenReturn(List.of(vehicle1, vehicle2, vehicle3));
+    when(vehicleTypeCache.getAllAsMap(Set.of("type-1")))
+      .thenReturn(Map.of("type-1", vehicleType));
+    when(vehicleCache.getKeysBySystem("system-1"))
+      .thenReturn(Set.of("vehicle-1", "vehicle-2"));
+    when(vehicleCache.getAll(Set.of("vehicle-1", "vehicle-2")))
+      .thenReturn(List.of(vehicle1, vehicle2));
 
     var delta = new GBFSFileDelta<GBFSVehicle>(null, 1000L, "vehicle_status", List.of());
 
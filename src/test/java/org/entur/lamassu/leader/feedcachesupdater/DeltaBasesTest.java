@@ -0,0 +1,50 @@
+package org.entur.lamassu.leader.feedcachesupdater;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+import org.mobilitydata.gbfs.v3_0.gbfs.GBFSFeed;
+
+class DeltaBasesTest {
+
+  private final DeltaBases deltaBases = new DeltaBases(100);
+
+  @Test
+  void testLeastRecentlyUpdatedFeedsAreEvictedBeyondMaximumLength() {
+    deltaBases.put("system-1", GBFSFeed.Name.VEHICLE_STATUS, "feed-1", 40);
+    deltaBases.put("system-2", GBFSFeed.Name.VEHICLE_STATUS, "feed-2", 40);
+    deltaBases.put("system-3", GBFSFeed.Name.VEHICLE_STATUS, "feed-3", 40);
+
+    assertNull(deltaBases.get("system-1", GBFSFeed.Name.VEHICLE_STATUS));
+    assertNotNull(deltaBases.get("system-2", GBFSFeed.Name.VEHICLE_STATUS));
+    assertNotNull(deltaBases.get("system-3", GBFSFeed.Name.VEHICLE_STATUS));
+  }
+
+  @Test
+  void testReplacedFeedIsNotCountedTwice() {
+    deltaBases.put("system-1", GBFSFeed.Name.VEHICLE_STATUS, "feed-1", 40);
+    deltaBases.put("system-2", GBFSFeed.Name.VEHICLE_STATUS, "feed-2", 40);
+    deltaBases.put("system-2", GBFSFeed.Name.VEHICLE_STATUS, "feed-3", 40);
+
+    assertEquals(2, deltaBases.size());
+  }
+
+  @Test
+  void testFeedLongerThanMaximumLengthIsNotKept() {
+    deltaBases.put("system-1", GBFSFeed.Name.VEHICLE_STATUS, "feed-1", 40);
+    deltaBases.put("system-2", GBFSFeed.Name.VEHICLE_STATUS, "feed-2", 200);
+
+    assertEquals(0, deltaBases.size());
+  }
+
+  @Test
+  void testRemovedFeedIsNotCounted() {
+    deltaBases.put("system-1", GBFSFeed.Name.VEHICLE_STATUS, "feed-1", 60);
+    deltaBases.remove("system-1", GBFSFeed.Name.VEHICLE_STATUS);
+    deltaBases.put("system-2", GBFSFeed.Name.VEHICLE_STATUS, "feed-2", 60);
+
+    assertEquals(1, deltaBases.size());
+  }
+}
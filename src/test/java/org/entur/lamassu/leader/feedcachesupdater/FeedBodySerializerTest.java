@@ -0,0 +1,71 @@
+package org.entur.lamassu.leader.feedcachesupdater;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mobilitydata.gbfs.v2_3.gbfs.GBFS;
+import org.mobilitydata.gbfs.v3_0.gbfs.GBFSGbfs;
+
+class FeedBodySerializerTest {
+
+  // 2021-12-20T11:33:20Z
+  private static final int LAST_UPDATED = 1640000000;
+
+  private final FeedBodySerializer serializer = new FeedBodySerializer();
+
+  @Test
+  void readsMetadataOfV2Feed() {
+    var body = serializer.serialize(new GBFS().withLastUpdated(LAST_UPDATED).withTtl(60));
+
+    Assertions.assertEquals(LAST_UPDATED, body.getMetadata().getLastUpdated());
+    Assertions.assertEquals(60, body.getMetadata().getTtl());
+    Assertions.assertEquals(body.getJson().length, body.getMetadata().getLength());
+  }
+
+  @Test
+  void readsMetadataOfV3Feed() {
+    var body = serializer.serialize(
+      new GBFSGbfs().withLastUpdated(new Date(LAST_UPDATED * 1000L)).withTtl(60)
+    );
+
+    Assertions.assertEquals(LAST_UPDATED, body.getMetadata().getLastUpdated());
+    Assertions.assertEquals(60, body.getMetadata().getTtl());
+  }
+
+  @Test
+  void contentHashChangesWithContent() {
+    var body = serializer.serialize(new GBFS().withLastUpdated(LAST_UPDATED).withTtl(60));
+    var sameBody = serializer.serialize(
+      new GBFS().withLastUpdated(LAST_UPDATED).withTtl(60)
+    );
+    var otherBody = serializer.serialize(
+      new GBFS().withLastUpdated(LAST_UPDATED).withTtl(120)
+    );
+
+    Assertions.assertEquals(
+      body.getMetadata().getETag(),
+      sameBody.getMetadata().getETag()
+    );
+    Assertions.assertNotEquals(
+      body.getMetadata().getETag(),
+      otherBody.getMetadata().getETag()
+    );
+  }
+
+  @Test
+  void compressesBody() throws IOException {
+    var body = serializer.serialize(new GBFS().withLastUpdated(LAST_UPDATED).withTtl(60));
+
+    try (var in = new GZIPInputStream(new ByteArrayInputStream(body.getGzip()))) {
+      Assertions.assertArrayEquals(body.getJson(), in.readAllBytes());
+    }
+  }
+
+  @Test
+  void returnsNullWithoutLastUpdated() {
+    Assertions.assertNull(serializer.serialize(new GBFS().withTtl(60)));
+  }
+}
@@ -0,0 +1,267 @@
+package org.entur.lamassu.leader.feedcachesupdater;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import org.entur.gbfs.loader.v3.GbfsV3Delivery;
+import org.entur.lamassu.cache.FeedFreshnessCache;
+import org.entur.lamassu.cache.GBFSV3FeedCache;
+import org.entur.lamassu.leader.GbfsUpdateContinuityTracker;
+import org.entur.lamassu.metrics.MetricsService;
+import org.entur.lamassu.model.provider.FeedProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mobilitydata.gbfs.v3_0.gbfs.GBFSFeed;
+import org.mobilitydata.gbfs.v3_0.system_information.GBFSSystemInformation;
+import org.mobilitydata.gbfs.v3_0.vehicle_status.GBFSData;
+import org.mobilitydata.gbfs.v3_0.vehicle_status.GBFSVehicleStatus;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+class V3FeedCachesUpdaterTest {
+
+  @Mock
+  private GBFSV3FeedCache feedCache;
+
+  @Mock
+  private FeedFreshnessCache feedFreshnessCache;
+
+  @Mock
+  private GbfsUpdateContinuityTracker updateContinuityTracker;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private V3FeedCachesUpdater updater;
+  private FeedProvider feedProvider;
+
+  @BeforeEach
+  void setUp() {
+    updater =
+      new V3FeedCachesUpdater(
+        feedCache,
+        new FeedBodySerializer(),
+        feedFreshnessCache,
+        updateContinuityTracker,
+        new MetricsService(meterRegistry),
+        true,
+        1_000_000
+      );
+    ReflectionTestUtils.setField(updater, "feedCacheTtlPadding", 3600);
+    ReflectionTestUtils.setField(updater, "feedCacheMinimumTtl", 3600);
+    feedProvider = new FeedProvider();
+    feedProvider.setSystemId("test-system");
+    feedProvider.setAggregate(true);
+  }
+
+  @Test
+  void testFirstUpdateReadsBaseFromFeedCache() {
+    var cached = vehicleStatus(Instant.now().getEpochSecond() - 10);
+    when(
+      feedCache.getAndUpdate(
+        eq(GBFSFeed.Name.VEHICLE_STATUS),
+        eq(feedProvider),
+        any(),
+        anyInt(),
+        any()
+      )
+    )
+      .thenReturn(cached);
+
+    var oldDelivery = updater.updateFeedCaches(
+      feedProvider,
+      delivery(vehicleStatus(Instant.now().getEpochSecond()))
+    );
+
+    assertSame(cached, oldDelivery.vehicleStatus());
+    assertEquals(1.0, reads("cache"));
+  }
+
+  @Test
+  void testContinuousUpdateUsesLocalBase() {
+    var first = vehicleStatus(Instant.now().getEpochSecond() - 10);
+    updater.updateFeedCaches(feedProvider, delivery(first));
+    when(
+      updateContinuityTracker.isVehicleUpdateBase("test-system", first.getLastUpdated())
+    )
+      .thenReturn(true);
+
+    var oldDelivery = updater.updateFeedCaches(
+      feedProvider,
+      delivery(vehicleStatus(Instant.now().getEpochSecond()))
+    );
+
+    assertSame(first, oldDelivery.vehicleStatus());
+    verify(feedCache, times(1))
+      .getAndUpdate(eq(GBFSFeed.Name.VEHICLE_STATUS), any(), any(), anyInt(), any());
+    assertEquals(1.0, reads("local"));
+    assertEquals(
+      2,
+      meterRegistry.get(MetricsService.DELTA_BASE_BYTES_SAVED).summary().count()
+    );
+  }
+
+  @Test
+  void testDiscontinuousUpdateReadsBaseFromFeedCache() {
+    updater.updateFeedCaches(
+      feedProvider,
+      delivery(vehicleStatus(Instant.now().getEpochSecond() - 10))
+    );
+
+    updater.updateFeedCaches(
+      feedProvider,
+      delivery(vehicleStatus(Instant.now().getEpochSecond()))
+    );
+
+    verify(feedCache, times(2))
+      .getAndUpdate(eq(GBFSFeed.Name.VEHICLE_STATUS), any(), any(), anyInt(), any());
+    assertEquals(2.0, reads("cache"));
+  }
+
+  @Test
+  void testBaseIsNotReadForSystemsWhichAreNotAggregated() {
+    feedProvider.setAggregate(false);
+
+    var oldDelivery = updater.updateFeedCaches(
+      feedProvider,
+      delivery(vehicleStatus(Instant.now().getEpochSecond()))
+    );
+
+    assertNull(oldDelivery.vehicleStatus());
+    verify(feedCache, never()).getAndUpdate(any(), any(), any(), anyInt(), any());
+    verify(feedCache)
+      .update(eq(GBFSFeed.Name.VEHICLE_STATUS), eq(feedProvider), any(), anyInt(), any());
+  }
+
+  @Test
+  void testBaseIsNotKeptForSystemsWhichAreNotAggregated() {
+    feedProvider.setAggregate(false);
+    var first = vehicleStatus(Instant.now().getEpochSecond() - 10);
+    updater.updateFeedCaches(feedProvider, delivery(first));
+    feedProvider.setAggregate(true);
+    // The base would be continuous, had it been kept
+    lenient()
+      .when(
+        updateContinuityTracker.isVehicleUpdateBase("test-system", first.getLastUpdated())
+      )
+      .thenReturn(true);
+
+    updater.updateFeedCaches(
+      feedProvider,
+      delivery(vehicleStatus(Instant.now().getEpochSecond()))
+    );
+
+    verify(feedCache, times(1))
+      .getAndUpdate(eq(GBFSFeed.Name.VEHICLE_STATUS), any(), any(), anyInt(), any());
+    assertEquals(1.0, reads("cache"));
+  }
+
+  @Test
+  void testBodyOfPreviousFeedIsRemovedWhenFeedCanNotBeSerialized() {
+    var withoutTtl = vehicleStatus(Instant.now().getEpochSecond());
+    withoutTtl.setTtl(null);
+
+    updater.updateFeedCaches(feedProvider, delivery(withoutTtl));
+
+    verify(feedCache).removeBody(GBFSFeed.Name.VEHICLE_STATUS, feedProvider);
+    verify(feedCache, never()).updateBody(any(), any(), any(), anyInt(), any());
+  }
+
+  @Test
+  void testFreshnessIsRecordedWhenFeedCanNotBeSerialized() {
+    var withoutTtl = vehicleStatus(Instant.now().getEpochSecond());
+    withoutTtl.setTtl(null);
+
+    updater.updateFeedCaches(feedProvider, delivery(withoutTtl));
+
+    verify(feedFreshnessCache)
+      .update(
+        eq("test-system"),
+        eq(GBFSFeed.Name.VEHICLE_STATUS.value()),
+        any(),
+        anyInt(),
+        any()
+      );
+  }
+
+  @Test
+  void testSkippedFeedIsRefreshedInsteadOfWritten() {
+    var systemInformation = new GBFSSystemInformation();
+    systemInformation.setLastUpdated(new Date());
+    systemInformation.setTtl(3600);
+    var delivery = new GbfsV3Delivery(
+      null,
+      null,
+      systemInformation,
+      null,
+      null,
+      null,
+      null,
+      null,
+      null,
+      null,
+      null,
+      null
+    );
+
+    updater.updateFeedCaches(
+      feedProvider,
+      delivery,
+      Set.of(GBFSFeed.Name.SYSTEM_INFORMATION.value())
+    );
+
+    verify(feedCache).findMetadata(GBFSFeed.Name.SYSTEM_INFORMATION, feedProvider);
+    verify(feedCache, never()).update(any(), any(), any(), anyInt(), any());
+    verify(feedCache, never()).updateBody(any(), any(), any(), anyInt(), any());
+  }
+
+  private double reads(String source) {
+    return meterRegistry
+      .get(MetricsService.DELTA_BASE_READS)
+      .tag(MetricsService.LABEL_SOURCE, source)
+      .counter()
+      .count();
+  }
+
+  private GBFSVehicleStatus vehicleStatus(long lastUpdated) {
+    var data = new GBFSData();
+    data.setVehicles(List.of());
+    var vehicleStatus = new GBFSVehicleStatus();
+    vehicleStatus.setLastUpdated(new Date(lastUpdated * 1000));
+    vehicleStatus.setTtl(10);
+    vehicleStatus.setData(data);
+    return vehicleStatus;
+  }
+
+  private GbfsV3Delivery delivery(GBFSVehicleStatus vehicleStatus) {
+    return new GbfsV3Delivery(
+      null,
+      null,
+      null,
+      null,
+      null,
+      null,
+      vehicleStatus,
+      null,
+      null,
+      null,
+      null,
+      null
+    );
+  }
+}
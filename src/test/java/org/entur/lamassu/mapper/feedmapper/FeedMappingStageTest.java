@@ -0,0 +1,107 @@
+package org.entur.lamassu.mapper.feedmapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.entur.lamassu.metrics.MetricsService;
+import org.entur.lamassu.model.provider.FeedProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FeedMappingStageTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private FeedMappingStage stage;
+  private FeedProvider feedProvider;
+
+  @BeforeEach
+  void setUp() {
+    feedProvider = new FeedProvider();
+    feedProvider.setSystemId("test-system");
+  }
+
+  @AfterEach
+  void tearDown() {
+    stage.destroy();
+  }
+
+  @Test
+  void testFeedsAreMappedOnCallingThreadWhenNotParallel() {
+    stage = new FeedMappingStage(new MetricsService(meterRegistry), false, 2);
+    var thread = Thread.currentThread();
+
+    try (var scope = stage.open(feedProvider)) {
+      var mapping = scope.fork("system_information", Thread::currentThread);
+      assertEquals(thread, mapping.get());
+    }
+    assertEquals(1, timer("system_information"));
+  }
+
+  @Test
+  void testIndependentFeedsAreMappedConcurrently() {
+    stage = new FeedMappingStage(new MetricsService(meterRegistry), true, 2);
+    var started = new CountDownLatch(2);
+
+    try (var scope = stage.open(feedProvider)) {
+      // Each mapping waits for the other to have started
+      var stationStatus = scope.fork("station_status", () -> await(started));
+      var vehicleStatus = scope.fork("vehicle_status", () -> await(started));
+      assertEquals(true, stationStatus.get());
+      assertEquals(true, vehicleStatus.get());
+    }
+    assertEquals(1, timer("station_status"));
+    assertEquals(1, timer("vehicle_status"));
+  }
+
+  @Test
+  void testDependentFeedIsMappedFromMappedDependency() {
+    stage = new FeedMappingStage(new MetricsService(meterRegistry), true, 2);
+
+    try (var scope = stage.open(feedProvider)) {
+      var vehicleTypes = scope.fork("vehicle_types", () -> "mapped");
+      var stationStatus = scope.fork(
+        "station_status",
+        vehicleTypes,
+        mapped -> mapped + " capacities"
+      );
+      assertEquals("mapped capacities", stationStatus.get());
+    }
+  }
+
+  @Test
+  void testExceptionOfMapperIsRethrown() {
+    stage = new FeedMappingStage(new MetricsService(meterRegistry), true, 2);
+
+    try (var scope = stage.open(feedProvider)) {
+      var mapping = scope.fork(
+        "system_information",
+        () -> {
+          throw new IllegalStateException("failed");
+        }
+      );
+      assertThrows(IllegalStateException.class, mapping::get);
+    }
+  }
+
+  private boolean await(CountDownLatch latch) {
+    latch.countDown();
+    try {
+      return latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private long timer(String feedName) {
+    return meterRegistry
+      .get(MetricsService.FEED_MAPPING)
+      .tag(MetricsService.LABEL_FEED, feedName)
+      .timer()
+      .count();
+  }
+}
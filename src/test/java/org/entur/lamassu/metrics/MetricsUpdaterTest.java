@@ -4,23 +4,23 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.util.Date;
+import java.time.Instant;
 import java.util.List;
-import org.entur.lamassu.cache.GBFSV3FeedCache;
+import java.util.Map;
+import org.entur.lamassu.cache.FeedFreshness;
+import org.entur.lamassu.cache.FeedFreshnessCache;
 import org.entur.lamassu.config.feedprovider.FeedProviderConfig;
 import org.entur.lamassu.model.provider.FeedProvider;
 import org.entur.lamassu.service.FeedFreshnessService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mobilitydata.gbfs.v3_0.gbfs.GBFSFeed;
-import org.mobilitydata.gbfs.v3_0.gbfs.GBFSGbfs;
-import org.mobilitydata.gbfs.v3_0.station_information.GBFSStationInformation;
 
 public class MetricsUpdaterTest {
 
   MetricsService mockedMetricsService = mock(MetricsService.class);
   FeedProviderConfig mockedFeedProviderConfig = mock(FeedProviderConfig.class);
-  GBFSV3FeedCache mockedFeedCache = mock(GBFSV3FeedCache.class);
+  FeedFreshnessCache mockedFeedFreshnessCache = mock(FeedFreshnessCache.class);
   MetricUpdater metricUpdater;
   FeedProvider aFeedProvider = new FeedProvider();
 
@@ -32,17 +32,14 @@ public class MetricsUpdaterTest {
       new MetricUpdater(
         mockedMetricsService,
         mockedFeedProviderConfig,
-        new FeedFreshnessService(mockedFeedCache, 120)
+        new FeedFreshnessService(mockedFeedFreshnessCache, 120)
       );
   }
 
   @Test
   public void testRecentlyUpdatedFileIsNotOverdue() {
-    GBFSStationInformation gbfsStationInformation = new GBFSStationInformation()
-      .withLastUpdated(new Date())
-      .withTtl(0);
-    when(mockedFeedCache.find(GBFSFeed.Name.STATION_INFORMATION, aFeedProvider))
-      .thenReturn(gbfsStationInformation);
+    long now = Instant.now().getEpochSecond();
+    cacheFreshness(GBFSFeed.Name.STATION_INFORMATION, new FeedFreshness(now, 0, now));
 
     metricUpdater.updateOutdatedFeedMetrics();
 
@@ -51,11 +48,7 @@ public class MetricsUpdaterTest {
 
   @Test
   public void testOutdatedFileIsOverdue() {
-    GBFSStationInformation gbfsStationInformation = new GBFSStationInformation()
-      .withLastUpdated(new Date(0))
-      .withTtl(0);
-    when(mockedFeedCache.find(GBFSFeed.Name.STATION_INFORMATION, aFeedProvider))
-      .thenReturn(gbfsStationInformation);
+    cacheFreshness(GBFSFeed.Name.STATION_INFORMATION, new FeedFreshness(0, 0, 0));
 
     metricUpdater.updateOutdatedFeedMetrics();
 
@@ -65,11 +58,15 @@ public class MetricsUpdaterTest {
   @Test
   public void testOutdatedGbfsFileIsNotCountedAsOverdue() {
     // As long as gbfs is not updated, we don't include it in overdue count
-    GBFSGbfs gbfs = new GBFSGbfs().withLastUpdated(new Date(0)).withTtl(0);
-    when(mockedFeedCache.find(GBFSFeed.Name.GBFS, aFeedProvider)).thenReturn(gbfs);
+    cacheFreshness(GBFSFeed.Name.GBFS, new FeedFreshness(0, 0, 0));
 
     metricUpdater.updateOutdatedFeedMetrics();
 
     verify(mockedMetricsService).registerOverdueFilesCount(aFeedProvider, 0);
   }
+
+  private void cacheFreshness(GBFSFeed.Name feedName, FeedFreshness freshness) {
+    when(mockedFeedFreshnessCache.findAll("TestSystem"))
+      .thenReturn(Map.of(feedName.value(), freshness));
+  }
 }
@@ -0,0 +1,206 @@
+package org.entur.lamassu.service;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.entur.lamassu.cache.StationSpatialIndex;
+import org.entur.lamassu.cache.impl.LocalVehicleSpatialIndexImpl;
+import org.entur.lamassu.cache.impl.VehicleSpatialIndexIdCodec;
+import org.entur.lamassu.cache.impl.VehicleSpatialIndexImpl;
+import org.entur.lamassu.model.entities.FormFactor;
+import org.entur.lamassu.model.entities.PropulsionType;
+import org.entur.lamassu.model.entities.Station;
+import org.entur.lamassu.model.entities.Vehicle;
+import org.entur.lamassu.model.entities.VehicleType;
+import org.entur.lamassu.model.provider.FeedProvider;
+import org.entur.lamassu.service.impl.GeoSearchServiceImpl;
+import org.entur.lamassu.stubs.EntityCacheStub;
+import org.entur.lamassu.stubs.SpatialIndexDictionaryStub;
+import org.entur.lamassu.util.GeoUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Searches vehicles in bounding boxes with the local grid spatial index, comparing the
+ * results with a linear scan of the vehicles.
+ *
+ * <p>The benchmark compares the number of entities fetched from the entity cache per
+ * bounding box query using a native box search, against the previous approach of
+ * searching the circle enclosing the box and filtering afterwards. It is excluded from
+ * the default build, and run with the benchmark profile.
+ */
+class BoundingBoxSearchBenchmarkTest {
+
+  private static final Logger logger = LoggerFactory.getLogger(
+    BoundingBoxSearchBenchmarkTest.class
+  );
+
+  private static final int VEHICLES = 20_000;
+  private static final int QUERIES = 200;
+
+  private final CountingEntityCacheStub vehicleCache = new CountingEntityCacheStub();
+  private final SpatialIndexDictionaryStub dictionary = new SpatialIndexDictionaryStub();
+  private final List<Vehicle> vehicles = new ArrayList<>();
+  private final VehicleFilterParameters filter = new VehicleFilterParameters(
+    null,
+    null,
+    null,
+    null,
+    null,
+    null,
+    true,
+    true
+  );
+  private GeoSearchService service;
+
+  private final Random random = new Random(42);
+
+  @BeforeEach
+  void setup() {
+    var feedProvider = new FeedProvider();
+    feedProvider.setSystemId("bar");
+    var vehicleType = new VehicleType();
+    vehicleType.setId("bar_scooter");
+    vehicleType.setFormFactor(FormFactor.SCOOTER);
+    vehicleType.setPropulsionType(PropulsionType.ELECTRIC);
+    var vehicleTypeCache = new EntityCacheStub<VehicleType>();
+    vehicleTypeCache.updateAll(Map.of(vehicleType.getId(), vehicleType));
+
+    var redisIndex = mock(VehicleSpatialIndexImpl.class);
+    when(redisIndex.getCodec()).thenReturn(new VehicleSpatialIndexIdCodec(dictionary));
+    when(redisIndex.getAllPacked()).thenReturn(List.of());
+    var feedProviderService = mock(FeedProviderService.class);
+    when(feedProviderService.getFeedProviderBySystemId("bar")).thenReturn(feedProvider);
+    var index = new LocalVehicleSpatialIndexImpl(
+      redisIndex,
+      vehicleCache,
+      feedProviderService,
+      new SpatialIndexIdGeneratorService(vehicleTypeCache)
+    );
+    index.bootstrap();
+
+    for (int i = 0; i < VEHICLES; i++) {
+      var vehicle = new Vehicle();
+      vehicle.setId("bar_" + i);
+      vehicle.setSystemId("bar");
+      vehicle.setVehicleTypeId(vehicleType.getId());
+      vehicle.setVehicleType(vehicleType);
+      vehicle.setReserved(false);
+      vehicle.setDisabled(false);
+      vehicle.setLat(59.85 + random.nextDouble() * 0.15);
+      vehicle.setLon(10.60 + random.nextDouble() * 0.30);
+      vehicles.add(vehicle);
+      index.onEntityCreated(vehicle.getId(), vehicle);
+    }
+
+    vehicleCache.updateAll(
+      vehicles.stream().collect(Collectors.toMap(Vehicle::getId, v -> v)),
+      0,
+      TimeUnit.SECONDS
+    );
+
+    service =
+      new GeoSearchServiceImpl(
+        index,
+        mock(StationSpatialIndex.class),
+        vehicleCache,
+        new EntityCacheStub<Station>(),
+        dictionary
+      );
+  }
+
+  @Test
+  void testBoundingBoxSearchMatchesLinearScan() {
+    for (int i = 0; i < QUERIES; i++) {
+      var box = viewport();
+      var envelope = GeoUtils.mapToEnvelope(box);
+
+      var expected = vehicles
+        .stream()
+        .filter(vehicle -> envelope.contains(vehicle.getLon(), vehicle.getLat()))
+        .map(Vehicle::getId)
+        .collect(Collectors.toSet());
+      var result = service
+        .getVehiclesInBoundingBox(box, filter)
+        .stream()
+        .map(Vehicle::getId)
+        .collect(Collectors.toSet());
+
+      Assertions.assertEquals(expected, result);
+    }
+  }
+
+  @Test
+  @Tag("benchmark")
+  void benchmarkEntitiesFetchedForLandscapeViewports() {
+    long boxFetched = 0;
+    long circleFetched = 0;
+    long returned = 0;
+
+    for (int i = 0; i < QUERIES; i++) {
+      var box = viewport();
+
+      vehicleCache.resetFetched();
+      var result = service.getVehiclesInBoundingBox(box, filter);
+      boxFetched += vehicleCache.getFetched();
+      returned += result.size();
+
+      vehicleCache.resetFetched();
+      var envelope = GeoUtils.mapToEnvelope(box);
+      service.getVehiclesWithinRange(
+        GeoUtils.mapToRangeQueryParameters(envelope),
+        filter
+      );
+      circleFetched += vehicleCache.getFetched();
+    }
+
+    logger.info(
+      "Entities fetched per query: box={} circle={} (returned={})",
+      boxFetched / QUERIES,
+      circleFetched / QUERIES,
+      returned / QUERIES
+    );
+
+    Assertions.assertEquals(returned, boxFetched);
+    Assertions.assertTrue(boxFetched < circleFetched);
+  }
+
+  /**
+   * A wide, thin viewport with a 4:1 aspect ratio
+   */
+  private BoundingBoxQueryParameters viewport() {
+    double minLat = 59.87 + random.nextDouble() * 0.1;
+    double minLon = 10.62 + random.nextDouble() * 0.2;
+    return new BoundingBoxQueryParameters(minLat, minLon, minLat + 0.01, minLon + 0.08);
+  }
+
+  private static class CountingEntityCacheStub extends EntityCacheStub<Vehicle> {
+
+    private long fetched = 0;
+
+    @Override
+    public List<Vehicle> getAll(Set<String> keys) {
+      fetched += keys.size();
+      return super.getAll(keys);
+    }
+
+    long getFetched() {
+      return fetched;
+    }
+
+    void resetFetched() {
+      fetched = 0;
+    }
+  }
+}
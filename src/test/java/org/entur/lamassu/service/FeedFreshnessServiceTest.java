@@ -21,21 +21,19 @@ package org.entur.lamassu.service;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 
 import java.time.Instant;
-import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import org.entur.lamassu.cache.GBFSV3FeedCache;
+import org.entur.lamassu.cache.FeedFreshness;
+import org.entur.lamassu.cache.FeedFreshnessCache;
 import org.entur.lamassu.model.provider.FeedProvider;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mobilitydata.gbfs.v3_0.gbfs.GBFSFeed;
-import org.mobilitydata.gbfs.v3_0.station_status.GBFSStationStatus;
-import org.mobilitydata.gbfs.v3_0.vehicle_status.GBFSVehicleStatus;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
@@ -46,30 +44,28 @@ import org.mockito.quality.Strictness;
 class FeedFreshnessServiceTest {
 
   private static final int MAX_TOLERATED_OVERDUE_SECONDS = 120;
+  private static final String SYSTEM_ID = "boltoslo";
 
   @Mock
-  private GBFSV3FeedCache feedCache;
+  private FeedFreshnessCache feedFreshnessCache;
 
   private FeedFreshnessService service;
   private FeedProvider provider;
 
   @BeforeEach
   void setUp() {
-    service = new FeedFreshnessService(feedCache, MAX_TOLERATED_OVERDUE_SECONDS);
+    service =
+      new FeedFreshnessService(feedFreshnessCache, MAX_TOLERATED_OVERDUE_SECONDS);
     provider = new FeedProvider();
-    provider.setSystemId("boltoslo");
+    provider.setSystemId(SYSTEM_ID);
+    when(feedFreshnessCache.findAll(SYSTEM_ID)).thenReturn(Map.of());
   }
 
-  private GBFSVehicleStatus vehicleStatus(long lastUpdatedEpochSec, int ttl) {
-    return new GBFSVehicleStatus()
-      .withLastUpdated(new Date(lastUpdatedEpochSec * 1000))
-      .withTtl(ttl);
-  }
-
-  private GBFSStationStatus stationStatus(long lastUpdatedEpochSec, int ttl) {
-    return new GBFSStationStatus()
-      .withLastUpdated(new Date(lastUpdatedEpochSec * 1000))
-      .withTtl(ttl);
+  private void cacheFreshness(GBFSFeed.Name feedName, long lastUpdatedEpochSec, int ttl) {
+    var freshness = new FeedFreshness(lastUpdatedEpochSec, ttl, now());
+    when(feedFreshnessCache.findAll(SYSTEM_ID))
+      .thenReturn(Map.of(feedName.value(), freshness));
+    when(feedFreshnessCache.find(SYSTEM_ID, feedName.value())).thenReturn(freshness);
   }
 
   private long now() {
@@ -78,24 +74,21 @@ class FeedFreshnessServiceTest {
 
   @Test
   void isLive_returnsTrue_whenVehicleStatusIsFresh() {
-    when(feedCache.find(eq(GBFSFeed.Name.VEHICLE_STATUS), any()))
-      .thenReturn(vehicleStatus(now(), 60));
+    cacheFreshness(GBFSFeed.Name.VEHICLE_STATUS, now(), 60);
 
     assertTrue(service.isLive(provider));
   }
 
   @Test
   void isLive_returnsTrue_whenStationStatusIsFresh() {
-    when(feedCache.find(eq(GBFSFeed.Name.STATION_STATUS), any()))
-      .thenReturn(stationStatus(now(), 60));
+    cacheFreshness(GBFSFeed.Name.STATION_STATUS, now(), 60);
 
     assertTrue(service.isLive(provider));
   }
 
   @Test
   void isLive_returnsFalse_whenVehicleStatusIsOverdue() {
-    when(feedCache.find(eq(GBFSFeed.Name.VEHICLE_STATUS), any()))
-      .thenReturn(vehicleStatus(now() - 1000, 60));
+    cacheFreshness(GBFSFeed.Name.VEHICLE_STATUS, now() - 1000, 60);
 
     assertFalse(service.isLive(provider));
   }
@@ -105,11 +98,17 @@ class FeedFreshnessServiceTest {
     assertFalse(service.isLive(provider));
   }
 
+  @Test
+  void isLive_returnsFalse_whenOnlyStaticFeedIsFresh() {
+    cacheFreshness(GBFSFeed.Name.STATION_INFORMATION, now(), 60);
+
+    assertFalse(service.isLive(provider));
+  }
+
   @Test
   void lastUpdated_returnsVehicleStatusTimestamp_whenPresent() {
     long ts = now() - 30;
-    when(feedCache.find(eq(GBFSFeed.Name.VEHICLE_STATUS), any()))
-      .thenReturn(vehicleStatus(ts, 60));
+    cacheFreshness(GBFSFeed.Name.VEHICLE_STATUS, ts, 60);
 
     assertEquals(Optional.of(Instant.ofEpochSecond(ts)), service.lastUpdated(provider));
   }
@@ -126,9 +125,26 @@ class FeedFreshnessServiceTest {
 
   @Test
   void isFeedOverdue_returnsTrue_whenPastTtlPlusTolerance() {
-    when(feedCache.find(eq(GBFSFeed.Name.VEHICLE_STATUS), any()))
-      .thenReturn(vehicleStatus(now() - 1000, 60));
+    cacheFreshness(GBFSFeed.Name.VEHICLE_STATUS, now() - 1000, 60);
 
     assertTrue(service.isFeedOverdue(provider, GBFSFeed.Name.VEHICLE_STATUS));
   }
+
+  @Test
+  void getOverdueFeeds_returnsOnlyOverdueFeeds() {
+    when(feedFreshnessCache.findAll(SYSTEM_ID))
+      .thenReturn(
+        Map.of(
+          GBFSFeed.Name.VEHICLE_STATUS.value(),
+          new FeedFreshness(now() - 1000, 60, now() - 1000),
+          GBFSFeed.Name.STATION_STATUS.value(),
+          new FeedFreshness(now(), 60, now())
+        )
+      );
+
+    assertEquals(
+      List.of(GBFSFeed.Name.VEHICLE_STATUS),
+      service.getOverdueFeeds(provider)
+    );
+  }
 }
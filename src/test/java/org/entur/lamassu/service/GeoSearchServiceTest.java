@@ -18,19 +18,26 @@
 
 package org.entur.lamassu.service;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.PrimitiveIterator;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.entur.lamassu.cache.EntityCache;
+import org.entur.lamassu.cache.SpatialIndexSearchResult;
 import org.entur.lamassu.cache.StationSpatialIndex;
 import org.entur.lamassu.cache.VehicleSpatialIndex;
+import org.entur.lamassu.cache.VehicleSpatialIndexId;
 import org.entur.lamassu.model.entities.FormFactor;
 import org.entur.lamassu.model.entities.PropulsionType;
 import org.entur.lamassu.model.entities.Station;
@@ -39,6 +46,7 @@ import org.entur.lamassu.model.entities.VehicleType;
 import org.entur.lamassu.model.provider.FeedProvider;
 import org.entur.lamassu.service.impl.GeoSearchServiceImpl;
 import org.entur.lamassu.stubs.EntityCacheStub;
+import org.entur.lamassu.stubs.SpatialIndexDictionaryStub;
 import org.entur.lamassu.util.TestSpatialIndexBuilder;
 import org.junit.Before;
 import org.junit.Test;
@@ -55,7 +63,8 @@ public class GeoSearchServiceTest {
     vehicleSpatialIndex,
     stationSpatialIndex,
     vehicleCache,
-    stationCache
+    stationCache,
+    new SpatialIndexDictionaryStub()
   );
 
   @Before
@@ -115,6 +124,93 @@ public class GeoSearchServiceTest {
       );
   }
 
+  @Test
+  public void testGetVehiclesWithinRangeStopsAtCountAndSkipsOffset() {
+    var indexIds = new ArrayList<>(vehicleSpatialIndex.getAll());
+    when(
+      vehicleSpatialIndex.radius(
+        anyDouble(),
+        anyDouble(),
+        anyDouble(),
+        any(),
+        any(),
+        anyInt(),
+        any()
+      )
+    )
+      .thenAnswer(invocation -> {
+        int limit = invocation.getArgument(5);
+        return new SpatialIndexSearchResult<>(
+          indexIds.subList(0, Math.min(limit, indexIds.size())),
+          limit >= indexIds.size()
+        );
+      });
+
+    var filterParameters = new VehicleFilterParameters(
+      null,
+      null,
+      null,
+      3,
+      null,
+      null,
+      true,
+      true
+    );
+    filterParameters.setOffset(2);
+
+    var vehicles = service.getVehiclesWithinRange(
+      new RangeQueryParameters(59.9, 10.7, 1000.0),
+      filterParameters
+    );
+
+    var expectedIds = indexIds
+      .subList(2, 5)
+      .stream()
+      .map(VehicleSpatialIndexId::getId)
+      .collect(Collectors.toSet());
+    Assertions.assertEquals(
+      expectedIds,
+      vehicles.stream().map(Vehicle::getId).collect(Collectors.toSet())
+    );
+    verify(vehicleSpatialIndex, never())
+      .radius(anyDouble(), anyDouble(), anyDouble(), any(), any());
+  }
+
+  @Test
+  public void testGetVehicleChunksInBoundingBoxReadsEveryVehicleInChunks() {
+    var indexIds = new ArrayList<>(vehicleSpatialIndex.getAll());
+    when(
+      vehicleSpatialIndex.boundingBox(
+        anyDouble(),
+        anyDouble(),
+        anyDouble(),
+        anyDouble(),
+        any(),
+        anyInt(),
+        any()
+      )
+    )
+      .thenReturn(new SpatialIndexSearchResult<>(indexIds, true));
+
+    var chunks = service
+      .getVehicleChunksInBoundingBox(
+        new BoundingBoxQueryParameters(59.0, 10.0, 60.0, 11.0),
+        new VehicleFilterParameters(null, null, null, null, null, null, true, true),
+        4
+      )
+      .toList();
+
+    Assertions.assertEquals(List.of(4, 4, 2), chunks.stream().map(List::size).toList());
+    Assertions.assertEquals(
+      indexIds.stream().map(VehicleSpatialIndexId::getId).collect(Collectors.toSet()),
+      chunks
+        .stream()
+        .flatMap(List::stream)
+        .map(Vehicle::getId)
+        .collect(Collectors.toSet())
+    );
+  }
+
   private Vehicle getVehicle(int i) {
     var vehicle = new Vehicle();
     vehicle.setId("foo_" + i);
@@ -0,0 +1,42 @@
+package org.entur.lamassu.stubs;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.entur.lamassu.cache.SpatialIndexDictionary;
+
+/**
+ * In-memory stub implementation of SpatialIndexDictionary for testing.
+ */
+public class SpatialIndexDictionaryStub implements SpatialIndexDictionary {
+
+  private final Map<String, Integer> codes = new HashMap<>();
+  private final Map<Integer, String> values = new HashMap<>();
+
+  @Override
+  public int code(String value) {
+    if (value == null) {
+      return NULL_CODE;
+    }
+    return codes.computeIfAbsent(
+      value,
+      v -> {
+        int code = codes.size() + 1;
+        values.put(code, v);
+        return code;
+      }
+    );
+  }
+
+  @Override
+  public int findCode(String value) {
+    if (value == null) {
+      return NULL_CODE;
+    }
+    return codes.getOrDefault(value, -1);
+  }
+
+  @Override
+  public String value(int code) {
+    return values.get(code);
+  }
+}
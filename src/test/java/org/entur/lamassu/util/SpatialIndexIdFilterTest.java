@@ -3,6 +3,8 @@ package org.entur.lamassu.util;
 import java.util.List;
 import org.entur.lamassu.cache.StationSpatialIndexId;
 import org.entur.lamassu.cache.VehicleSpatialIndexId;
+import org.entur.lamassu.cache.impl.StationSpatialIndexIdCodec;
+import org.entur.lamassu.cache.impl.VehicleSpatialIndexIdCodec;
 import org.entur.lamassu.model.entities.FormFactor;
 import org.entur.lamassu.model.entities.PropulsionType;
 import org.entur.lamassu.model.entities.Station;
@@ -12,6 +14,7 @@ import org.entur.lamassu.model.entities.VehicleTypeAvailability;
 import org.entur.lamassu.model.provider.FeedProvider;
 import org.entur.lamassu.service.StationFilterParameters;
 import org.entur.lamassu.service.VehicleFilterParameters;
+import org.entur.lamassu.stubs.SpatialIndexDictionaryStub;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -145,6 +148,68 @@ public class SpatialIndexIdFilterTest {
     Assert.assertFalse(SpatialIndexIdFilter.filterStation(testId, params));
   }
 
+  @Test
+  public void testPackedVehicleIdRoundTrip() {
+    var codec = new VehicleSpatialIndexIdCodec(new SpatialIndexDictionaryStub());
+    for (var testId : List.of(aVehicleId(), aReservedId(), aDisabledId())) {
+      Assert.assertEquals(testId, codec.decode(codec.encode(testId)));
+    }
+  }
+
+  @Test
+  public void testPackedStationIdRoundTrip() {
+    var codec = new StationSpatialIndexIdCodec(new SpatialIndexDictionaryStub());
+    var testId = aStationId();
+    Assert.assertEquals(testId, codec.decode(codec.encode(testId)));
+  }
+
+  @Test
+  public void testCompiledVehicleFilterMatchesPackedId() {
+    var dictionary = new SpatialIndexDictionaryStub();
+    var codec = new VehicleSpatialIndexIdCodec(dictionary);
+    var params = aVehicleFilterParams();
+    params.setSystems(List.of("TST:System:testprovider"));
+    params.setFormFactors(List.of(FormFactor.SCOOTER, FormFactor.BICYCLE));
+
+    for (var testId : List.of(aVehicleId(), aReservedId(), aDisabledId())) {
+      var matcher = SpatialIndexIdFilter.compileVehicleFilter(params, dictionary);
+      Assert.assertEquals(
+        SpatialIndexIdFilter.filterVehicle(testId, params),
+        matcher.matches(codec.encode(testId))
+      );
+    }
+
+    // Values without a code can not match any member
+    params.setOperators(List.of("FOO:Operator:foo"));
+    var matcher = SpatialIndexIdFilter.compileVehicleFilter(params, dictionary);
+    Assert.assertFalse(matcher.matches(codec.encode(aVehicleId())));
+  }
+
+  @Test
+  public void testCompiledStationFilterMatchesPackedId() {
+    var dictionary = new SpatialIndexDictionaryStub();
+    var codec = new StationSpatialIndexIdCodec(dictionary);
+    var member = codec.encode(aStationId());
+    var params = new StationFilterParameters(
+      List.of("TST"),
+      null,
+      null,
+      null,
+      List.of(FormFactor.SCOOTER),
+      List.of(PropulsionType.ELECTRIC)
+    );
+
+    Assert.assertTrue(
+      SpatialIndexIdFilter.compileStationFilter(params, dictionary).matches(member)
+    );
+
+    params.setAvailablePropulsionTypes(List.of(PropulsionType.HUMAN));
+
+    Assert.assertFalse(
+      SpatialIndexIdFilter.compileStationFilter(params, dictionary).matches(member)
+    );
+  }
+
   private VehicleSpatialIndexId aVehicleId() {
     return TestSpatialIndexBuilder.createVehicleIndexId(aVehicle(), aProvider());
   }